@@ -0,0 +1,126 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.gcp.bigquery.sink;
+
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.cdap.api.data.schema.Schema;
+import io.cdap.plugin.format.avro.StructuredToAvroTransformer;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.mapred.AvroKey;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the conversion of records to Avro by {@link BigQueryAvroConverter} and {@link StructuredToAvroTransformer},
+ * for narrow and wide schemas.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BigQueryAvroConverterBenchmark {
+
+  @Param({"5", "100"})
+  private int fields;
+
+  private Schema schema;
+  private StructuredRecord record;
+  private BigQueryAvroConverter converter;
+  private StructuredToAvroTransformer transformer;
+
+  @Setup
+  public void setUp() {
+    // Cycle through the common BigQuery column types
+    List<Schema.Field> schemaFields = new ArrayList<>();
+    for (int i = 0; i < fields; i++) {
+      String name = "field" + i;
+      switch (i % 5) {
+        case 0:
+          schemaFields.add(Schema.Field.of(name, Schema.of(Schema.Type.LONG)));
+          break;
+        case 1:
+          schemaFields.add(Schema.Field.of(name, Schema.nullableOf(Schema.of(Schema.Type.STRING))));
+          break;
+        case 2:
+          schemaFields.add(Schema.Field.of(name, Schema.of(Schema.LogicalType.TIMESTAMP_MICROS)));
+          break;
+        case 3:
+          schemaFields.add(Schema.Field.of(name, Schema.nullableOf(Schema.of(Schema.Type.DOUBLE))));
+          break;
+        default:
+          schemaFields.add(Schema.Field.of(name, Schema.arrayOf(Schema.of(Schema.Type.STRING))));
+      }
+    }
+    schema = Schema.recordOf("record", schemaFields);
+
+    StructuredRecord.Builder builder = StructuredRecord.builder(schema);
+    for (int i = 0; i < fields; i++) {
+      String name = "field" + i;
+      switch (i % 5) {
+        case 0:
+        case 2:
+          builder.set(name, (long) i);
+          break;
+        case 1:
+          builder.set(name, "value" + i);
+          break;
+        case 3:
+          builder.set(name, i / 3d);
+          break;
+        default:
+          builder.set(name, Arrays.asList("a", "b", "c"));
+      }
+    }
+    record = builder.build();
+    converter = new BigQueryAvroConverter();
+    transformer = new StructuredToAvroTransformer(null);
+  }
+
+  @Benchmark
+  public AvroKey<GenericRecord> compiledConverter() throws IOException {
+    return converter.transform(record, schema);
+  }
+
+  @Benchmark
+  public AvroKey<GenericRecord> genericTransformer() throws IOException {
+    return new AvroKey<>(transformer.transform(record, schema));
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(BigQueryAvroConverterBenchmark.class.getSimpleName()).build()).run();
+  }
+}
@@ -0,0 +1,240 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.gcp.gcs.sink;
+
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.cdap.api.data.schema.Schema;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.mapreduce.JobContext;
+import org.apache.hadoop.mapreduce.OutputCommitter;
+import org.apache.hadoop.mapreduce.OutputFormat;
+import org.apache.hadoop.mapreduce.RecordWriter;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.TaskAttemptID;
+import org.apache.hadoop.mapreduce.task.TaskAttemptContextImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares writing records to a filtering record writer per destination, as the sink did with an output per
+ * destination, with routing them through a {@link RecordRouterOutputFormat}, for 10, 100 and 1000 destinations.
+ * Written records are discarded.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RecordRouterBenchmark {
+  private static final int RECORDS = 1000;
+  private static final Schema INPUT_SCHEMA = Schema.recordOf(
+    "input",
+    Schema.Field.of("tablename", Schema.of(Schema.Type.STRING)),
+    Schema.Field.of("id", Schema.of(Schema.Type.LONG)),
+    Schema.Field.of("name", Schema.nullableOf(Schema.of(Schema.Type.STRING))),
+    Schema.Field.of("score", Schema.of(Schema.Type.DOUBLE)));
+  private static final Schema OUTPUT_SCHEMA = Schema.recordOf(
+    "output",
+    Schema.Field.of("id", Schema.of(Schema.Type.LONG)),
+    Schema.Field.of("name", Schema.nullableOf(Schema.of(Schema.Type.STRING))),
+    Schema.Field.of("score", Schema.of(Schema.Type.DOUBLE)));
+
+  @Param({"10", "100", "1000"})
+  private int destinations;
+
+  private List<StructuredRecord> records;
+  private List<RecordWriter<NullWritable, StructuredRecord>> filterWriters;
+  private RecordWriter<NullWritable, StructuredRecord> routerWriter;
+
+  @Setup
+  public void setUp() throws IOException, InterruptedException {
+    List<String> names = new ArrayList<>();
+    for (int i = 0; i < destinations; i++) {
+      names.add("table" + i);
+    }
+
+    records = new ArrayList<>();
+    for (int i = 0; i < RECORDS; i++) {
+      records.add(StructuredRecord.builder(INPUT_SCHEMA)
+                    .set("tablename", names.get(i % destinations))
+                    .set("id", (long) i)
+                    .set("name", "name" + i)
+                    .set("score", i / 7d)
+                    .build());
+    }
+
+    filterWriters = new ArrayList<>();
+    for (String name : names) {
+      filterWriters.add(new FilterRecordWriter(new DiscardingRecordWriter(), "tablename", name, OUTPUT_SCHEMA));
+    }
+
+    Configuration hConf = new Configuration(false);
+    RecordRouterOutputFormat.configure(DiscardingOutputFormat.class.getName(), "tablename", "gs://bucket/dir", "",
+                                       names).forEach(hConf::set);
+    for (String name : names) {
+      RecordRouterOutputFormat.configureDestination(name, OUTPUT_SCHEMA, Collections.emptyMap()).forEach(hConf::set);
+    }
+    hConf.setInt(RecordRouterOutputFormat.MAX_OPEN_WRITERS, destinations);
+    routerWriter = new RecordRouterOutputFormat()
+      .getRecordWriter(new TaskAttemptContextImpl(hConf, new TaskAttemptID()));
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(RECORDS)
+  public void filterPerDestination() throws IOException, InterruptedException {
+    for (StructuredRecord record : records) {
+      for (RecordWriter<NullWritable, StructuredRecord> filterWriter : filterWriters) {
+        filterWriter.write(NullWritable.get(), record);
+      }
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(RECORDS)
+  public void router() throws IOException, InterruptedException {
+    for (StructuredRecord record : records) {
+      routerWriter.write(NullWritable.get(), record);
+    }
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(RecordRouterBenchmark.class.getSimpleName()).build()).run();
+  }
+
+  /**
+   * Output format of record writers that discard the records.
+   */
+  public static class DiscardingOutputFormat extends OutputFormat<NullWritable, StructuredRecord> {
+
+    @Override
+    public RecordWriter<NullWritable, StructuredRecord> getRecordWriter(TaskAttemptContext context) {
+      return new DiscardingRecordWriter();
+    }
+
+    @Override
+    public void checkOutputSpecs(JobContext context) {
+      // no-op
+    }
+
+    @Override
+    public OutputCommitter getOutputCommitter(TaskAttemptContext context) {
+      return new OutputCommitter() {
+        @Override
+        public void setupJob(JobContext jobContext) {
+          // no-op
+        }
+
+        @Override
+        public void setupTask(TaskAttemptContext taskContext) {
+          // no-op
+        }
+
+        @Override
+        public boolean needsTaskCommit(TaskAttemptContext taskContext) {
+          return false;
+        }
+
+        @Override
+        public void commitTask(TaskAttemptContext taskContext) {
+          // no-op
+        }
+
+        @Override
+        public void abortTask(TaskAttemptContext taskContext) {
+          // no-op
+        }
+      };
+    }
+  }
+
+  /**
+   * Record writer that writes the records of a single destination without the filter field, which every
+   * destination had before records were routed.
+   */
+  private static class FilterRecordWriter extends RecordWriter<NullWritable, StructuredRecord> {
+    private final RecordWriter<NullWritable, StructuredRecord> delegate;
+    private final String filterField;
+    private final String passthroughValue;
+    private final Schema schema;
+
+    private FilterRecordWriter(RecordWriter<NullWritable, StructuredRecord> delegate, String filterField,
+                               String passthroughValue, Schema schema) {
+      this.delegate = delegate;
+      this.filterField = filterField;
+      this.passthroughValue = passthroughValue;
+      this.schema = schema;
+    }
+
+    @Override
+    public void write(NullWritable key, StructuredRecord record) throws IOException, InterruptedException {
+      String val = record.get(filterField);
+      if (!passthroughValue.equalsIgnoreCase(val)) {
+        return;
+      }
+
+      StructuredRecord.Builder recordBuilder = StructuredRecord.builder(schema);
+      for (Schema.Field field : record.getSchema().getFields()) {
+        String fieldName = field.getName();
+        if (filterField.equals(fieldName)) {
+          continue;
+        }
+        recordBuilder.set(fieldName, record.get(fieldName));
+      }
+      delegate.write(key, recordBuilder.build());
+    }
+
+    @Override
+    public void close(TaskAttemptContext context) throws IOException, InterruptedException {
+      delegate.close(context);
+    }
+  }
+
+  private static class DiscardingRecordWriter extends RecordWriter<NullWritable, StructuredRecord> {
+    private long written;
+
+    @Override
+    public void write(NullWritable key, StructuredRecord record) {
+      written++;
+    }
+
+    @Override
+    public void close(TaskAttemptContext context) {
+      // no-op
+    }
+  }
+}
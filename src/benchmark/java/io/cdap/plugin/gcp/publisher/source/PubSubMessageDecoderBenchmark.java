@@ -0,0 +1,166 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.gcp.publisher.source;
+
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.cdap.api.data.schema.Schema;
+import io.cdap.cdap.format.StructuredRecordStringConverter;
+import io.cdap.plugin.format.avro.AvroToStructuredTransformer;
+import io.cdap.plugin.gcp.publisher.PubSubConstants;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.generic.GenericDatumWriter;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.io.BinaryDecoder;
+import org.apache.avro.io.BinaryEncoder;
+import org.apache.avro.io.DatumReader;
+import org.apache.avro.io.DecoderFactory;
+import org.apache.avro.io.EncoderFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the messages decoded per second on a single thread by {@link PubSubMessageDecoder}, and by the previous
+ * mapping of {@link GoogleSubscriber} that parsed the schemas and created the readers for every message.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(1)
+public class PubSubMessageDecoderBenchmark {
+
+  @Param({PubSubConstants.AVRO, PubSubConstants.JSON})
+  private String format;
+
+  @Param({"5", "50"})
+  private int fields;
+
+  private String schemaJson;
+  private PubSubMessage message;
+  private PubSubMessageDecoder decoder;
+
+  @Setup
+  public void setUp() throws IOException {
+    List<Schema.Field> schemaFields = new ArrayList<>();
+    for (int i = 0; i < fields; i++) {
+      schemaFields.add(Schema.Field.of("field" + i, Schema.of(i % 2 == 0 ? Schema.Type.STRING : Schema.Type.LONG)));
+    }
+    Schema messageSchema = Schema.recordOf("payload", schemaFields);
+    Schema outputSchema =
+      Schema.recordOf("event",
+                      Schema.Field.of("message", messageSchema),
+                      Schema.Field.of("id", Schema.of(Schema.Type.STRING)),
+                      Schema.Field.of("timestamp", Schema.of(Schema.LogicalType.TIMESTAMP_MICROS)),
+                      Schema.Field.of("attributes", Schema.mapOf(Schema.of(Schema.Type.STRING),
+                                                                 Schema.of(Schema.Type.STRING))));
+    schemaJson = outputSchema.toString();
+
+    StructuredRecord.Builder builder = StructuredRecord.builder(messageSchema);
+    for (int i = 0; i < fields; i++) {
+      builder.set("field" + i, i % 2 == 0 ? "value" + i : (Object) (long) i);
+    }
+    StructuredRecord payload = builder.build();
+    byte[] data = format.equals(PubSubConstants.AVRO) ? toAvro(payload, messageSchema) :
+      StructuredRecordStringConverter.toJsonString(payload).getBytes(StandardCharsets.UTF_8);
+
+    Map<String, String> attributes = new HashMap<>();
+    attributes.put("key1", "value1");
+    attributes.put("key2", "value2");
+    message = new PubSubMessage("id", null, "ackId", data, attributes, Instant.now());
+    decoder = new PubSubMessageDecoder(outputSchema, format, null);
+  }
+
+  @Benchmark
+  public StructuredRecord cachedDecoder() throws IOException {
+    return decoder.decode(message);
+  }
+
+  @Benchmark
+  public StructuredRecord perMessageDecoding() throws IOException {
+    // The schema of the config was parsed for every message
+    Schema outputSchema = Schema.parseJson(schemaJson);
+    Schema messageSchema = outputSchema.getField("message").getSchema();
+    HashMap<String, String> attributes = new HashMap<>(message.getAttributes());
+    String data = new String(message.getData());
+
+    StructuredRecord payload;
+    if (format.equals(PubSubConstants.AVRO)) {
+      org.apache.avro.Schema avroSchema = new org.apache.avro.Schema.Parser().parse(String.valueOf(messageSchema));
+      DatumReader<GenericRecord> datumReader = new GenericDatumReader<>(avroSchema);
+      BinaryDecoder binaryDecoder =
+        DecoderFactory.get().binaryDecoder(new ByteArrayInputStream(message.getData()), null);
+      payload = new AvroToStructuredTransformer().transform(datumReader.read(null, binaryDecoder));
+    } else {
+      payload = StructuredRecordStringConverter.fromJsonString(data, messageSchema);
+    }
+
+    return StructuredRecord.builder(outputSchema)
+      .set("message", payload)
+      .set("id", message.getMessageId())
+      .setTimestamp("timestamp", ZonedDateTime.ofInstant(message.getPublishTime(),
+                                                         ZoneId.ofOffset("UTC", ZoneOffset.UTC)))
+      .set("attributes", attributes)
+      .build();
+  }
+
+  private static byte[] toAvro(StructuredRecord record, Schema schema) throws IOException {
+    org.apache.avro.Schema avroSchema = new org.apache.avro.Schema.Parser().parse(schema.toString());
+    GenericRecord avroRecord = new GenericData.Record(avroSchema);
+    for (Schema.Field field : schema.getFields()) {
+      avroRecord.put(field.getName(), record.get(field.getName()));
+    }
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    BinaryEncoder encoder = EncoderFactory.get().binaryEncoder(os, null);
+    new GenericDatumWriter<GenericRecord>(avroSchema).write(avroRecord, encoder);
+    encoder.flush();
+    return os.toByteArray();
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(PubSubMessageDecoderBenchmark.class.getSimpleName()).build()).run();
+  }
+}
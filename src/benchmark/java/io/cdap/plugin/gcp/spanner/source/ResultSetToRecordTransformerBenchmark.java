@@ -0,0 +1,161 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.gcp.spanner.source;
+
+import com.google.cloud.Date;
+import com.google.cloud.Timestamp;
+import com.google.cloud.spanner.ResultSet;
+import com.google.cloud.spanner.ResultSets;
+import com.google.cloud.spanner.Struct;
+import com.google.cloud.spanner.Type;
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.cdap.api.data.schema.Schema;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Compares the cost per row of {@link ResultSetToRecordTransformer}, and of the previous transformation that
+ * resolved every column by name and converted arrays through intermediate lists, over a synthetic result set.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(1)
+public class ResultSetToRecordTransformerBenchmark {
+
+  @Param({"5", "50"})
+  private int columns;
+
+  private Schema schema;
+  private ResultSet resultSet;
+  private ResultSetToRecordTransformer transformer;
+
+  @Setup
+  public void setUp() {
+    List<Schema.Field> fields = new ArrayList<>();
+    Struct.Builder row = Struct.newBuilder();
+    Timestamp timestamp = Timestamp.ofTimeSecondsAndNanos(1600000000L, 123456789);
+    for (int i = 0; i < columns; i++) {
+      String name = "column" + i;
+      switch (i % 5) {
+        case 0:
+          fields.add(Schema.Field.of(name, Schema.of(Schema.Type.LONG)));
+          row.set(name).to((long) i);
+          break;
+        case 1:
+          fields.add(Schema.Field.of(name, Schema.nullableOf(Schema.of(Schema.Type.STRING))));
+          row.set(name).to("value" + i);
+          break;
+        case 2:
+          fields.add(Schema.Field.of(name, Schema.of(Schema.LogicalType.TIMESTAMP_MICROS)));
+          row.set(name).to(timestamp);
+          break;
+        case 3:
+          fields.add(Schema.Field.of(name, Schema.arrayOf(Schema.of(Schema.Type.LONG))));
+          row.set(name).toInt64Array(Arrays.asList(1L, 2L, 3L, 4L));
+          break;
+        default:
+          fields.add(Schema.Field.of(name, Schema.arrayOf(Schema.of(Schema.LogicalType.DATE))));
+          row.set(name).toDateArray(Arrays.asList(Date.fromYearMonthDay(2020, 1, 1),
+                                                  Date.fromYearMonthDay(2021, 6, 30)));
+          break;
+      }
+    }
+    schema = Schema.recordOf("row", fields);
+    Struct struct = row.build();
+    resultSet = ResultSets.forRows(struct.getType(), Collections.singletonList(struct));
+    resultSet.next();
+    transformer = new ResultSetToRecordTransformer(schema);
+  }
+
+  @Benchmark
+  public StructuredRecord columnIndexPlan() {
+    return transformer.transform(resultSet);
+  }
+
+  @Benchmark
+  public StructuredRecord columnNameLookup() {
+    // The previous transformation, for the column types of the synthetic result set
+    StructuredRecord.Builder builder = StructuredRecord.builder(schema);
+    for (Schema.Field field : schema.getFields()) {
+      String fieldName = field.getName();
+      Type columnType = resultSet.getColumnType(fieldName);
+      if (resultSet.isNull(fieldName) && columnType.getCode() != Type.Code.ARRAY) {
+        continue;
+      }
+      switch (columnType.getCode()) {
+        case INT64:
+          builder.set(fieldName, resultSet.getLong(fieldName));
+          break;
+        case STRING:
+          builder.set(fieldName, resultSet.getString(fieldName));
+          break;
+        case TIMESTAMP:
+          Timestamp spannerTs = resultSet.getTimestamp(fieldName);
+          Instant instant = Instant.ofEpochSecond(spannerTs.getSeconds()).plusNanos(spannerTs.getNanos());
+          builder.setTimestamp(fieldName, ZonedDateTime.ofInstant(instant, ZoneId.ofOffset("UTC", ZoneOffset.UTC)));
+          break;
+        case ARRAY:
+          List<?> values;
+          if (columnType.getArrayElementType().getCode() == Type.Code.INT64) {
+            values = resultSet.getLongList(fieldName);
+          } else {
+            values = resultSet.getDateList(fieldName)
+              .stream()
+              .map(date -> Math.toIntExact(LocalDate.of(date.getYear(), date.getMonth(), date.getDayOfMonth())
+                                             .toEpochDay()))
+              .collect(Collectors.toList());
+          }
+          builder.set(fieldName, values.toArray());
+          break;
+      }
+    }
+    return builder.build();
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(ResultSetToRecordTransformerBenchmark.class.getSimpleName()).build()).run();
+  }
+}
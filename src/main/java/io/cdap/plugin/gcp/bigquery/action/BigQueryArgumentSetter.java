@@ -35,6 +35,7 @@ import io.cdap.cdap.api.annotation.Name;
 import io.cdap.cdap.api.annotation.Plugin;
 import io.cdap.cdap.etl.api.action.Action;
 import io.cdap.cdap.etl.api.action.ActionContext;
+import io.cdap.plugin.gcp.bigquery.util.BigQueryJobWaiter;
 import io.cdap.plugin.gcp.common.GCPUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -87,9 +88,12 @@ public final class BigQueryArgumentSetter extends AbstractBigQueryAction {
     LOG.debug("The BigQuery SQL  {}", queryConfig.getQuery());
 
     // Wait for the query to complete
-    queryJob.waitFor();
+    queryJob = new BigQueryJobWaiter(bigQuery).await(queryJob.getJobId(), null);
 
     // Check for errors
+    if (queryJob == null) {
+      throw new RuntimeException(String.format("BigQuery job %s does not exist.", jobId.getJob()));
+    }
     if (queryJob.getStatus().getError() != null) {
       throw new RuntimeException(queryJob.getStatus().getExecutionErrors().toString());
     }
@@ -60,6 +60,7 @@ import io.cdap.plugin.gcp.bigquery.source.BigQuerySource;
 import io.cdap.plugin.gcp.bigquery.source.BigQuerySourceConfig;
 import io.cdap.plugin.gcp.bigquery.sqlengine.BigQuerySQLEngine;
 import io.cdap.plugin.gcp.bigquery.util.BigQueryDataParser;
+import io.cdap.plugin.gcp.bigquery.util.BigQueryJobWaiter;
 import io.cdap.plugin.gcp.bigquery.util.BigQueryUtil;
 import io.cdap.plugin.gcp.common.GCPUtils;
 
@@ -243,7 +244,7 @@ public final class BigQueryConnector implements DirectConnector {
     Job queryJob = bigQuery.create(JobInfo.newBuilder(queryConfig).setJobId(jobId).build());
     // Wait for the job to finish
     try {
-      queryJob = queryJob.waitFor();
+      queryJob = new BigQueryJobWaiter(bigQuery).await(queryJob.getJobId(), null);
     } catch (InterruptedException e) {
       throw new IOException(String.format("Query job %s interrupted.", id), e);
     }
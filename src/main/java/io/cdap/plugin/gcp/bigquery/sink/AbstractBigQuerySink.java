@@ -223,6 +223,7 @@ public abstract class AbstractBigQuerySink extends BatchSink<StructuredRecord, S
       gcsChunkSize = config.getGcsChunkSize();
     }
     baseConfiguration.set("fs.gs.outputstream.upload.chunk.size", gcsChunkSize);
+    baseConfiguration.setInt(BigQueryConstants.CONFIG_LOAD_JOB_CONCURRENCY, config.getLoadJobConcurrency());
     return baseConfiguration;
   }
 
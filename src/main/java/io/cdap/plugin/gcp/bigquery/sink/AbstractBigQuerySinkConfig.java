@@ -28,6 +28,7 @@ import io.cdap.plugin.common.Constants;
 import io.cdap.plugin.common.IdUtils;
 import io.cdap.plugin.gcp.bigquery.common.BigQueryBaseConfig;
 import io.cdap.plugin.gcp.bigquery.connector.BigQueryConnectorConfig;
+import io.cdap.plugin.gcp.bigquery.util.BigQueryConstants;
 import io.cdap.plugin.gcp.bigquery.util.BigQueryUtil;
 import io.cdap.plugin.gcp.common.CmekUtils;
 
@@ -48,6 +49,8 @@ public abstract class AbstractBigQuerySinkConfig extends BigQueryBaseConfig {
   public static final String NAME_LOCATION = "location";
   private static final String NAME_GCS_CHUNK_SIZE = "gcsChunkSize";
   protected static final String NAME_UPDATE_SCHEMA = "allowSchemaRelaxation";
+  public static final String NAME_LOAD_JOB_CONCURRENCY = "loadJobConcurrency";
+  public static final int MAX_LOAD_JOB_CONCURRENCY = 20;
   private static final String SCHEME = "gs://";
 
   @Name(Constants.Reference.REFERENCE_NAME)
@@ -61,6 +64,14 @@ public abstract class AbstractBigQuerySinkConfig extends BigQueryBaseConfig {
     "number of bytes. By default, 8388608 bytes (8MB) will be used as upload request chunk size.")
   protected String gcsChunkSize;
 
+  @Name(NAME_LOAD_JOB_CONCURRENCY)
+  @Macro
+  @Nullable
+  @Description("Maximum number of load jobs that run at the same time when more than 10000 files are imported into " +
+    "a table. The files are then loaded in batches into a temporary table, which is copied or merged into the " +
+    "destination table once all batches are loaded. Defaults to 4.")
+  protected Integer loadJobConcurrency;
+
   @Name(NAME_UPDATE_SCHEMA)
   @Macro
   @Nullable
@@ -104,6 +115,10 @@ public abstract class AbstractBigQuerySinkConfig extends BigQueryBaseConfig {
     return gcsChunkSize;
   }
 
+  public int getLoadJobConcurrency() {
+    return loadJobConcurrency == null ? BigQueryConstants.DEFAULT_LOAD_JOB_CONCURRENCY : loadJobConcurrency;
+  }
+
   public boolean isAllowSchemaRelaxation() {
     return allowSchemaRelaxation == null ? false : allowSchemaRelaxation;
   }
@@ -131,6 +146,13 @@ public abstract class AbstractBigQuerySinkConfig extends BigQueryBaseConfig {
     if (!containsMacro(NAME_GCS_CHUNK_SIZE)) {
       BigQueryUtil.validateGCSChunkSize(gcsChunkSize, NAME_GCS_CHUNK_SIZE, collector);
     }
+    if (!containsMacro(NAME_LOAD_JOB_CONCURRENCY) && loadJobConcurrency != null
+      && (loadJobConcurrency < 1 || loadJobConcurrency > MAX_LOAD_JOB_CONCURRENCY)) {
+      collector.addFailure(String.format("Invalid load job concurrency '%d'.", loadJobConcurrency),
+                           String.format("Set the load job concurrency to a value between 1 and %d.",
+                                         MAX_LOAD_JOB_CONCURRENCY))
+        .withConfigProperty(NAME_LOAD_JOB_CONCURRENCY);
+    }
     if (!containsMacro(NAME_DATASET)) {
       BigQueryUtil.validateDataset(dataset, NAME_DATASET, collector);
     }
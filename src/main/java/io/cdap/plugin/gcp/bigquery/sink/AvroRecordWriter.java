@@ -82,10 +82,15 @@ public class AvroRecordWriter extends RecordWriter<AvroKey<GenericRecord>, NullW
       createFileWriter(writerSchema);
     }
 
-    if (prevSchema != null && !prevSchema.equals(writerSchema)) {
-      mAvroFileWriter.sync();
-      mAvroFileWriter.close();
-      createFileWriter(writerSchema);
+    // Records converted with the same schema share the schema instance, so the schemas are compared only when
+    // the instance changes.
+    if (prevSchema != writerSchema) {
+      if (!prevSchema.equals(writerSchema)) {
+        mAvroFileWriter.sync();
+        mAvroFileWriter.close();
+        createFileWriter(writerSchema);
+      }
+      prevSchema = writerSchema;
     }
     mAvroFileWriter.append(record.datum());
   }
@@ -16,28 +16,274 @@
 package io.cdap.plugin.gcp.bigquery.sink;
 
 import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.cdap.api.data.format.UnexpectedFormatException;
 import io.cdap.cdap.api.data.schema.Schema;
 import io.cdap.plugin.common.RecordConverter;
 import io.cdap.plugin.format.avro.StructuredToAvroTransformer;
+import org.apache.avro.AvroRuntimeException;
+import org.apache.avro.generic.GenericData;
 import org.apache.avro.generic.GenericRecord;
 import org.apache.avro.mapred.AvroKey;
 
 import java.io.IOException;
+import java.lang.reflect.Array;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
 import javax.annotation.Nullable;
 
 /**
  * BigQueryAvroConverter converts a {@link StructuredRecord} to {@link AvroKey<GenericRecord>}
+ * <p>
+ * Records are converted the same way as with {@link StructuredToAvroTransformer}, but the conversion is planned once
+ * per schema: the Avro schema, the fields to copy and the conversion of their values are resolved when a schema is
+ * first seen, so that converting a record only copies its values. Schemas are looked up by reference, and by their
+ * fingerprint when a new schema instance is seen.
  */
 public class BigQueryAvroConverter extends RecordConverter<StructuredRecord, AvroKey<GenericRecord>> {
 
-  private final StructuredToAvroTransformer structuredToAvroTransformer;
+  private final SchemaCache<RecordPlan> recordPlans;
 
   BigQueryAvroConverter() {
-    structuredToAvroTransformer = new StructuredToAvroTransformer(null);
+    recordPlans = new SchemaCache<>(RecordPlan::new);
   }
 
   @Override
   public AvroKey<GenericRecord> transform(StructuredRecord record, @Nullable Schema schema) throws IOException {
-    return new AvroKey<>(structuredToAvroTransformer.transform(record, schema == null ? record.getSchema() : schema));
+    return new AvroKey<>(recordPlans.get(schema == null ? record.getSchema() : schema).convert(record));
+  }
+
+  /**
+   * Converts a value to its Avro representation.
+   */
+  private interface ValueConverter {
+    Object convert(Object value) throws IOException;
+  }
+
+  /**
+   * Conversion of records to an output schema.
+   */
+  private static final class RecordPlan {
+    private final org.apache.avro.Schema avroSchema;
+    private final List<org.apache.avro.Schema.Field> avroFields;
+    private final String[] fieldNames;
+    private final boolean[] acceptsNull;
+    // Converters of the fields, for every schema of the converted records
+    private final SchemaCache<ValueConverter[]> fieldConverters;
+
+    RecordPlan(Schema outputSchema) {
+      avroSchema = new org.apache.avro.Schema.Parser().parse(outputSchema.toString());
+      avroFields = avroSchema.getFields();
+      fieldNames = new String[avroFields.size()];
+      acceptsNull = new boolean[avroFields.size()];
+      for (org.apache.avro.Schema.Field field : avroFields) {
+        fieldNames[field.pos()] = field.name();
+        acceptsNull[field.pos()] = acceptsNull(field.schema());
+      }
+      fieldConverters = new SchemaCache<>(this::createFieldConverters);
+    }
+
+    GenericRecord convert(StructuredRecord record) throws IOException {
+      ValueConverter[] converters = fieldConverters.get(record.getSchema());
+      GenericData.Record avroRecord = new GenericData.Record(avroSchema);
+      for (int i = 0; i < fieldNames.length; i++) {
+        Object value = converters[i].convert(record.get(fieldNames[i]));
+        if (value == null && !acceptsNull[i]) {
+          throw new AvroRuntimeException("Field " + avroFields.get(i) + " does not accept null values");
+        }
+        avroRecord.put(i, value);
+      }
+      return avroRecord;
+    }
+
+    /**
+     * Fields are converted according to their schema in the converted records.
+     */
+    private ValueConverter[] createFieldConverters(Schema recordSchema) {
+      ValueConverter[] converters = new ValueConverter[fieldNames.length];
+      for (int i = 0; i < fieldNames.length; i++) {
+        Schema.Field field = recordSchema.getField(fieldNames[i]);
+        if (field == null) {
+          throw new IllegalArgumentException("Input record does not contain the " + fieldNames[i] + " field.");
+        }
+        converters[i] = createFieldConverter(field);
+      }
+      return converters;
+    }
+
+    private static boolean acceptsNull(org.apache.avro.Schema schema) {
+      if (schema.getType() == org.apache.avro.Schema.Type.NULL) {
+        return true;
+      }
+      if (schema.getType() == org.apache.avro.Schema.Type.UNION) {
+        return schema.getTypes().stream().anyMatch(type -> type.getType() == org.apache.avro.Schema.Type.NULL);
+      }
+      return false;
+    }
+  }
+
+  private static ValueConverter createFieldConverter(Schema.Field field) {
+    ValueConverter converter = createConverter(field.getSchema());
+    String name = field.getName();
+    return value -> {
+      try {
+        return converter.convert(value);
+      } catch (IOException e) {
+        throw e;
+      } catch (Exception e) {
+        throw new IllegalArgumentException(String.format("Error converting field '%s': %s", name, e.getMessage()), e);
+      }
+    };
+  }
+
+  private static ValueConverter createConverter(Schema schema) {
+    if (schema.getType() == Schema.Type.UNION) {
+      return createUnionConverter(schema.getUnionSchemas());
+    }
+
+    ValueConverter converter;
+    switch (schema.getType()) {
+      case RECORD:
+        // Created on first use, as record schemas can be recursive
+        converter = new ValueConverter() {
+          private RecordPlan plan;
+
+          @Override
+          public Object convert(Object value) throws IOException {
+            if (plan == null) {
+              plan = new RecordPlan(schema);
+            }
+            return plan.convert((StructuredRecord) value);
+          }
+        };
+        break;
+      case ARRAY:
+        converter = createArrayConverter(createConverter(schema.getComponentSchema()));
+        break;
+      case MAP:
+        Map.Entry<Schema, Schema> mapSchema = schema.getMapSchema();
+        converter = createMapConverter(createConverter(mapSchema.getKey()), createConverter(mapSchema.getValue()));
+        break;
+      case NULL:
+        converter = value -> null;
+        break;
+      case STRING:
+        converter = Object::toString;
+        break;
+      case BYTES:
+        converter = value -> value instanceof ByteBuffer ? value : ByteBuffer.wrap((byte[]) value);
+        break;
+      case INT:
+      case LONG:
+      case FLOAT:
+      case DOUBLE:
+      case BOOLEAN:
+        converter = value -> value;
+        break;
+      default:
+        converter = value -> {
+          throw new UnexpectedFormatException("field type " + schema.getType() + " is not supported.");
+        };
+    }
+
+    ValueConverter typeConverter = converter;
+    return value -> {
+      if (value == null) {
+        throw new NullPointerException("Found a null value for a non-nullable field.");
+      }
+      return typeConverter.convert(value);
+    };
+  }
+
+  /**
+   * Values are converted with the first schema of the union that can convert them.
+   */
+  private static ValueConverter createUnionConverter(List<Schema> unionSchemas) {
+    List<ValueConverter> converters = new ArrayList<>();
+    boolean nullable = false;
+    for (Schema unionSchema : unionSchemas) {
+      if (unionSchema.getType() == Schema.Type.NULL) {
+        nullable = true;
+      } else {
+        converters.add(createConverter(unionSchema));
+      }
+    }
+
+    boolean acceptsNull = nullable;
+    ValueConverter[] branches = converters.toArray(new ValueConverter[0]);
+    return value -> {
+      if (value == null && acceptsNull) {
+        return null;
+      }
+      for (ValueConverter branch : branches) {
+        try {
+          return branch.convert(value);
+        } catch (Exception e) {
+          // Try the next schema of the union
+        }
+      }
+      if (acceptsNull) {
+        return null;
+      }
+      throw new UnexpectedFormatException("unable to determine union type.");
+    };
+  }
+
+  private static ValueConverter createArrayConverter(ValueConverter componentConverter) {
+    return value -> {
+      if (value instanceof Collection) {
+        Collection<?> collection = (Collection<?>) value;
+        List<Object> list = new ArrayList<>(collection.size());
+        for (Object element : collection) {
+          list.add(componentConverter.convert(element));
+        }
+        return list;
+      }
+      int length = Array.getLength(value);
+      List<Object> list = new ArrayList<>(length);
+      for (int i = 0; i < length; i++) {
+        list.add(componentConverter.convert(Array.get(value, i)));
+      }
+      return list;
+    };
+  }
+
+  private static ValueConverter createMapConverter(ValueConverter keyConverter, ValueConverter valueConverter) {
+    return value -> {
+      Map<Object, Object> map = new HashMap<>();
+      for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+        map.put(keyConverter.convert(entry.getKey()), valueConverter.convert(entry.getValue()));
+      }
+      return map;
+    };
+  }
+
+  /**
+   * Cache of values computed from schemas. The last schema is matched by reference, the other ones by fingerprint,
+   * as schemas are equal when their fingerprints are.
+   */
+  private static final class SchemaCache<T> {
+    private final Function<Schema, T> loader;
+    private final Map<Schema, T> values;
+    private Schema lastSchema;
+    private T lastValue;
+
+    SchemaCache(Function<Schema, T> loader) {
+      this.loader = loader;
+      this.values = new HashMap<>();
+    }
+
+    T get(Schema schema) {
+      if (schema != lastSchema) {
+        T value = values.computeIfAbsent(schema, loader);
+        lastSchema = schema;
+        lastValue = value;
+      }
+      return lastValue;
+    }
   }
 }
@@ -15,35 +15,33 @@
  */
 package io.cdap.plugin.gcp.bigquery.sink;
 
-import com.google.gson.JsonObject;
-import com.google.gson.internal.bind.JsonTreeWriter;
 import io.cdap.cdap.api.data.format.StructuredRecord;
 import io.cdap.cdap.api.data.schema.Schema;
 import io.cdap.plugin.common.RecordConverter;
+import org.apache.hadoop.io.Text;
 
 import java.io.IOException;
-import java.util.Objects;
 import javax.annotation.Nullable;
 
 /**
- * BigQueryJsonConverter converts a {@link StructuredRecord} to {@link JsonObject}
+ * BigQueryJsonConverter converts a {@link StructuredRecord} to a line of JSON in {@link Text}.
+ *
+ * The returned {@link Text} is reused, its content is only valid until the next record is converted.
  */
-public class BigQueryJsonConverter extends RecordConverter<StructuredRecord, JsonObject> {
+public class BigQueryJsonConverter extends RecordConverter<StructuredRecord, Text> {
+
+  private final Text text = new Text();
+  private BigQueryJsonEncoder encoder;
+  private Schema encoderSchema;
 
   @Override
-  public JsonObject transform(StructuredRecord input, @Nullable Schema schema) throws IOException {
-    try (JsonTreeWriter writer = new JsonTreeWriter()) {
-      writer.beginObject();
-      for (Schema.Field recordField : Objects.requireNonNull(input.getSchema().getFields())) {
-        // From all the fields in input record, write only those fields that are present in output schema
-        if (schema != null && schema.getField(recordField.getName()) == null) {
-          continue;
-        }
-        BigQueryRecordToJson.write(writer, recordField.getName(), input.get(recordField.getName()),
-                                   recordField.getSchema());
-      }
-      writer.endObject();
-      return writer.get().getAsJsonObject();
+  public Text transform(StructuredRecord input, @Nullable Schema schema) throws IOException {
+    if (encoder == null || schema != encoderSchema) {
+      encoder = new BigQueryJsonEncoder(schema);
+      encoderSchema = schema;
     }
+    encoder.encode(input);
+    text.set(encoder.getBytes(), 0, encoder.getLength());
+    return text;
   }
 }
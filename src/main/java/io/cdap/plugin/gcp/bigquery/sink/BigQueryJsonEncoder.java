@@ -0,0 +1,602 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.gcp.bigquery.sink;
+
+import io.cdap.cdap.api.common.Bytes;
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.cdap.api.data.schema.Schema;
+import io.cdap.plugin.gcp.bigquery.util.BigQueryTypeSize;
+import io.cdap.plugin.gcp.bigquery.util.BigQueryUtil;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+
+/**
+ * Encodes {@link StructuredRecord StructuredRecords} as JSON objects in the format expected by BigQuery
+ * NEWLINE_DELIMITED_JSON load jobs.
+ *
+ * The schema is compiled once into a plan that holds the encoded field names and one encoder per field, so encoding
+ * a record only walks the plan and writes UTF-8 bytes to a reusable buffer, without building a JSON tree or
+ * intermediate strings for dates, times, timestamps and decimals. The output is the same as the one produced by
+ * {@link BigQueryRecordToJson}.
+ */
+final class BigQueryJsonEncoder {
+  private static final byte[] NULL = "null".getBytes(StandardCharsets.US_ASCII);
+  private static final byte[] TRUE = "true".getBytes(StandardCharsets.US_ASCII);
+  private static final byte[] FALSE = "false".getBytes(StandardCharsets.US_ASCII);
+  private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+  private static final long MICROS_PER_SECOND = TimeUnit.SECONDS.toMicros(1);
+  private static final long MICROS_PER_DAY = TimeUnit.DAYS.toMicros(1);
+  private static final int MAX_FORMATTED_YEAR = 9999;
+
+  private final Output output;
+  @Nullable
+  private final Schema outputSchema;
+  private Schema recordSchema;
+  private RecordPlan plan;
+
+  /**
+   * @param outputSchema schema of the output, fields of the records that are not part of it are not written.
+   *                     All fields are written if it is null.
+   */
+  BigQueryJsonEncoder(@Nullable Schema outputSchema) {
+    this.output = new Output();
+    this.outputSchema = outputSchema;
+  }
+
+  /**
+   * Encodes the given record. The result is available through {@link #getBytes()} and {@link #getLength()} until
+   * the next record is encoded.
+   */
+  void encode(StructuredRecord record) {
+    Schema schema = record.getSchema();
+    // Records of a stage normally share the same schema instance, so the plan is only compiled for the first one
+    if (plan == null || (schema != recordSchema && !schema.equals(recordSchema))) {
+      plan = new RecordPlan(schema, outputSchema);
+    }
+    recordSchema = schema;
+    output.reset();
+    plan.encode(output, record);
+  }
+
+  byte[] getBytes() {
+    return output.buffer;
+  }
+
+  int getLength() {
+    return output.length;
+  }
+
+  /**
+   * Encodes a single value, which may be null, of a field.
+   */
+  private interface ValueEncoder {
+    void encode(Output output, String name, @Nullable Object value);
+  }
+
+  /**
+   * Encoding plan of a record, with the encoded name and the encoder of every written field.
+   */
+  private static final class RecordPlan {
+    private final String[] names;
+    private final byte[][] encodedNames;
+    private final ValueEncoder[] encoders;
+
+    RecordPlan(Schema schema, @Nullable Schema filterSchema) {
+      List<Schema.Field> fields = new ArrayList<>();
+      for (Schema.Field field : Objects.requireNonNull(schema.getFields())) {
+        // From all the fields in input record, write only those fields that are present in output schema
+        if (filterSchema == null || filterSchema.getField(field.getName()) != null) {
+          fields.add(field);
+        }
+      }
+      this.names = new String[fields.size()];
+      this.encodedNames = new byte[fields.size()][];
+      this.encoders = new ValueEncoder[fields.size()];
+      for (int i = 0; i < names.length; i++) {
+        Schema.Field field = fields.get(i);
+        names[i] = field.getName();
+        Output name = new Output();
+        if (i > 0) {
+          name.write(',');
+        }
+        name.writeString(field.getName());
+        name.write(':');
+        encodedNames[i] = Arrays.copyOf(name.buffer, name.length);
+        encoders[i] = createEncoder(field.getName(), field.getSchema());
+      }
+    }
+
+    void encode(Output output, StructuredRecord record) {
+      output.write('{');
+      for (int i = 0; i < names.length; i++) {
+        output.write(encodedNames[i]);
+        encoders[i].encode(output, names[i], record.get(names[i]));
+      }
+      output.write('}');
+    }
+  }
+
+  private static ValueEncoder createEncoder(String fieldName, Schema fieldSchema) {
+    Schema schema = BigQueryUtil.getNonNullableSchema(fieldSchema);
+    switch (schema.getType()) {
+      case NULL:
+      case INT:
+      case LONG:
+      case FLOAT:
+      case DOUBLE:
+      case BOOLEAN:
+      case STRING:
+      case BYTES:
+        ValueEncoder encoder = createSimpleEncoder(fieldName, schema);
+        return (output, name, value) -> {
+          if (value == null) {
+            output.write(NULL);
+          } else {
+            encoder.encode(output, name, value);
+          }
+        };
+      case ARRAY:
+        return new ArrayEncoder(schema);
+      case RECORD:
+        RecordPlan plan = new RecordPlan(schema, null);
+        return (output, name, value) -> {
+          if (value == null) {
+            output.write(NULL);
+            return;
+          }
+          if (!(value instanceof StructuredRecord)) {
+            throw new IllegalStateException(
+              String.format("Value is of type '%s', expected type is '%s'",
+                            value.getClass().getSimpleName(), StructuredRecord.class.getSimpleName()));
+          }
+          plan.encode(output, (StructuredRecord) value);
+        };
+      default:
+        throw new IllegalStateException(
+          String.format("Field '%s' is of unsupported type '%s'", fieldName, fieldSchema.getType()));
+    }
+  }
+
+  /**
+   * Encoder of array values. Records in arrays are written with their own schema.
+   */
+  private static final class ArrayEncoder implements ValueEncoder {
+    private final Schema componentSchema;
+    private final boolean supported;
+    @Nullable
+    private final ValueEncoder elementEncoder;
+    private Schema elementSchema;
+    private RecordPlan elementPlan;
+
+    ArrayEncoder(Schema schema) {
+      this.componentSchema = BigQueryUtil.getNonNullableSchema(Objects.requireNonNull(schema.getComponentSchema()));
+      this.supported = !BigQueryUtil.UNSUPPORTED_ARRAY_TYPES.contains(componentSchema.getType());
+      this.elementEncoder = supported && componentSchema.getType() != Schema.Type.RECORD ?
+        createEncoder("", componentSchema) : null;
+    }
+
+    @Override
+    public void encode(Output output, String name, @Nullable Object value) {
+      if (value == null) {
+        throw new RuntimeException(
+          String.format("Field '%s' is of value null, which is not a valid value for BigQuery type array.", name));
+      }
+      Collection<?> collection;
+      if (value instanceof Collection) {
+        collection = (Collection<?>) value;
+      } else if (value instanceof Object[]) {
+        collection = Arrays.asList((Object[]) value);
+      } else {
+        throw new IllegalArgumentException(String.format(
+          "A value for the field '%s' is of type '%s' when it is expected to be a Collection or array.",
+          name, value.getClass().getSimpleName()));
+      }
+      if (!supported) {
+        throw new IllegalArgumentException(String.format("Field '%s' is an array of '%s', " +
+                                                           "which is not a valid BigQuery type.",
+                                                         name, componentSchema));
+      }
+
+      output.write('[');
+      boolean first = true;
+      for (Object element : collection) {
+        // BigQuery does not allow null values in array items
+        if (element == null) {
+          throw new IllegalArgumentException(String.format("Field '%s' contains null values in its array, " +
+                                                             "which is not allowed by BigQuery.", name));
+        }
+        if (!first) {
+          output.write(',');
+        }
+        first = false;
+        if (element instanceof StructuredRecord) {
+          encodeRecord(output, (StructuredRecord) element);
+        } else if (elementEncoder != null) {
+          elementEncoder.encode(output, name, element);
+        } else {
+          throw new IllegalStateException(
+            String.format("Value is of type '%s', expected type is '%s'",
+                          element.getClass().getSimpleName(), StructuredRecord.class.getSimpleName()));
+        }
+      }
+      output.write(']');
+    }
+
+    private void encodeRecord(Output output, StructuredRecord record) {
+      Schema schema = record.getSchema();
+      if (elementPlan == null || (schema != elementSchema && !schema.equals(elementSchema))) {
+        elementPlan = new RecordPlan(schema, null);
+      }
+      elementSchema = schema;
+      elementPlan.encode(output, record);
+    }
+  }
+
+  private static ValueEncoder createSimpleEncoder(String fieldName, Schema schema) {
+    Schema.LogicalType logicalType = schema.getLogicalType();
+    if (logicalType != null) {
+      switch (logicalType) {
+        case DATE:
+          return (output, name, value) -> output.writeDate((Integer) value);
+        case TIME_MILLIS:
+          return (output, name, value) -> output.writeTime(TimeUnit.MILLISECONDS.toMicros((Integer) value));
+        case TIME_MICROS:
+          return (output, name, value) -> output.writeTime((Long) value);
+        case TIMESTAMP_MILLIS:
+          //timestamp for json input should be in this format yyyy-MM-dd HH:mm:ss.SSSSSS
+          return (output, name, value) -> output.writeTimestamp((long) value, TimeUnit.MILLISECONDS);
+        case TIMESTAMP_MICROS:
+          return (output, name, value) -> output.writeTimestamp((long) value, TimeUnit.MICROSECONDS);
+        case DECIMAL:
+          int scale = schema.getScale();
+          return (output, name, value) -> {
+            // decimals are written as strings to keep their precision
+            output.write('"');
+            output.writeDecimal(name, toBytes(name, value), scale, schema);
+            output.write('"');
+          };
+        case DATETIME:
+          //datetime should be already an ISO-8601 string
+          return (output, name, value) -> output.writeString(value.toString());
+        default:
+          throw new IllegalStateException(
+            String.format("Field '%s' is of unsupported type '%s'", fieldName, logicalType.getToken()));
+      }
+    }
+
+    switch (schema.getType()) {
+      case NULL:
+        return (output, name, value) -> output.write(NULL);
+      case INT:
+      case LONG:
+        return (output, name, value) -> output.writeLong(((Number) value).longValue());
+      case FLOAT:
+      case DOUBLE:
+        return (output, name, value) -> output.writeFloatingPoint((Number) value);
+      case BOOLEAN:
+        return (output, name, value) -> output.write((Boolean) value ? TRUE : FALSE);
+      case STRING:
+        return (output, name, value) -> output.writeString(value.toString());
+      case BYTES:
+        return (output, name, value) -> output.writeBase64(toBytes(name, value));
+      default:
+        throw new IllegalStateException(String.format("Field '%s' is of unsupported type '%s'",
+                                                      fieldName, schema.getType()));
+    }
+  }
+
+  private static byte[] toBytes(String name, Object value) {
+    if (value instanceof byte[]) {
+      return (byte[]) value;
+    }
+    if (value instanceof ByteBuffer) {
+      return Bytes.toBytes((ByteBuffer) value);
+    }
+    throw new IllegalStateException(String.format("Expected value of Field '%s' to be bytes but got '%s'",
+                                                  name, value.getClass().getSimpleName()));
+  }
+
+  /**
+   * Growable buffer of UTF-8 encoded JSON.
+   */
+  private static final class Output {
+    private final byte[] digits = new byte[20];
+    private byte[] buffer = new byte[1024];
+    private int length;
+
+    void reset() {
+      length = 0;
+    }
+
+    void write(int b) {
+      ensureCapacity(1);
+      buffer[length++] = (byte) b;
+    }
+
+    void write(byte[] bytes) {
+      ensureCapacity(bytes.length);
+      System.arraycopy(bytes, 0, buffer, length, bytes.length);
+      length += bytes.length;
+    }
+
+    void writeLong(long value) {
+      if (value == Long.MIN_VALUE) {
+        writeAscii(Long.toString(value));
+        return;
+      }
+      if (value < 0) {
+        write('-');
+        value = -value;
+      }
+      int pos = digits.length;
+      do {
+        digits[--pos] = (byte) ('0' + value % 10);
+        value /= 10;
+      } while (value != 0);
+      ensureCapacity(digits.length - pos);
+      System.arraycopy(digits, pos, buffer, length, digits.length - pos);
+      length += digits.length - pos;
+    }
+
+    void writeFloatingPoint(Number value) {
+      double doubleValue = value.doubleValue();
+      if (Double.isNaN(doubleValue) || Double.isInfinite(doubleValue)) {
+        throw new IllegalArgumentException("JSON forbids NaN and infinities: " + value);
+      }
+      writeAscii(value.toString());
+    }
+
+    void writeDate(int epochDay) {
+      // LocalDate uses the proleptic year, from 0000 to 9999 in four digits
+      if (!writeDateDigits(epochDay, 0)) {
+        writeString(LocalDate.ofEpochDay(epochDay).toString());
+        return;
+      }
+      write('"');
+    }
+
+    void writeTime(long microOfDay) {
+      if (microOfDay < 0 || microOfDay >= MICROS_PER_DAY) {
+        // Fails the same way as the time conversion of other plugins
+        LocalTime.ofNanoOfDay(TimeUnit.MICROSECONDS.toNanos(microOfDay));
+      }
+      write('"');
+      writeTimeDigits(microOfDay);
+      write('"');
+    }
+
+    void writeTimestamp(long timestamp, TimeUnit unit) {
+      long micros = unit.toMicros(timestamp);
+      // The formatter uses the year of era, from 0001 to 9999 in four digits. Values that overflow while converting
+      // are left to the formatter as well.
+      if (micros == Long.MAX_VALUE || micros == Long.MIN_VALUE
+        || !writeDateDigits(Math.floorDiv(micros, MICROS_PER_DAY), 1)) {
+        writeString(BigQueryRecordToJson.formatTimestamp(timestamp, unit));
+        return;
+      }
+      write(' ');
+      writeTimeDigits(Math.floorMod(micros, MICROS_PER_DAY));
+      write('"');
+    }
+
+    /**
+     * Writes the opening quote and the yyyy-MM-dd digits of the given day.
+     *
+     * @return false if the year is outside of the given minimum and 9999, in which case nothing is written
+     */
+    private boolean writeDateDigits(long epochDay, int minYear) {
+      // Civil date from days since epoch, see http://howardhinnant.github.io/date_algorithms.html#civil_from_days
+      long z = epochDay + 719468;
+      long era = Math.floorDiv(z, 146097);
+      long dayOfEra = z - era * 146097;
+      long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+      long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+      long mp = (5 * dayOfYear + 2) / 153;
+      int day = (int) (dayOfYear - (153 * mp + 2) / 5 + 1);
+      int month = (int) (mp < 10 ? mp + 3 : mp - 9);
+      long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+      if (year < minYear || year > MAX_FORMATTED_YEAR) {
+        return false;
+      }
+
+      write('"');
+      writePadded((int) year, 4);
+      write('-');
+      writePadded(month, 2);
+      write('-');
+      writePadded(day, 2);
+      return true;
+    }
+
+    /**
+     * Writes the HH:mm:ss.SSSSSS digits of the given time.
+     */
+    private void writeTimeDigits(long microOfDay) {
+      long seconds = microOfDay / MICROS_PER_SECOND;
+      writePadded((int) (seconds / 3600), 2);
+      write(':');
+      writePadded((int) (seconds / 60 % 60), 2);
+      write(':');
+      writePadded((int) (seconds % 60), 2);
+      write('.');
+      writePadded((int) (microOfDay % MICROS_PER_SECOND), 6);
+    }
+
+    private void writePadded(int value, int width) {
+      ensureCapacity(width);
+      for (int i = width - 1; i >= 0; i--) {
+        buffer[length + i] = (byte) ('0' + value % 10);
+        value /= 10;
+      }
+      length += width;
+    }
+
+    void writeDecimal(String name, byte[] unscaled, int scale, Schema schema) {
+      // Values that do not fit in a long are rare, leave them to BigDecimal
+      if (unscaled.length == 0 || unscaled.length > Long.BYTES || scale > BigQueryTypeSize.BigNumeric.SCALE) {
+        writeAscii(BigQueryRecordToJson.getDecimal(name, unscaled, schema).toPlainString());
+        return;
+      }
+      long value = unscaled[0];
+      for (int i = 1; i < unscaled.length; i++) {
+        value = (value << 8) | (unscaled[i] & 0xFF);
+      }
+      if (value == Long.MIN_VALUE) {
+        writeAscii(BigQueryRecordToJson.getDecimal(name, unscaled, schema).toPlainString());
+        return;
+      }
+      if (scale == 0) {
+        writeLong(value);
+        return;
+      }
+      if (value < 0) {
+        write('-');
+        value = -value;
+      }
+      // Same as BigDecimal.toPlainString, with at least one digit before the point
+      int pos = digits.length;
+      do {
+        digits[--pos] = (byte) ('0' + value % 10);
+        value /= 10;
+      } while (value != 0);
+      int digitCount = digits.length - pos;
+      if (digitCount <= scale) {
+        write('0');
+        write('.');
+        for (int i = digitCount; i < scale; i++) {
+          write('0');
+        }
+        ensureCapacity(digitCount);
+        System.arraycopy(digits, pos, buffer, length, digitCount);
+        length += digitCount;
+      } else {
+        int integerDigits = digitCount - scale;
+        ensureCapacity(digitCount + 1);
+        System.arraycopy(digits, pos, buffer, length, integerDigits);
+        length += integerDigits;
+        buffer[length++] = '.';
+        System.arraycopy(digits, pos + integerDigits, buffer, length, scale);
+        length += scale;
+      }
+    }
+
+    void writeBase64(byte[] bytes) {
+      write('"');
+      write(Base64.getEncoder().encode(bytes));
+      write('"');
+    }
+
+    /**
+     * Writes a quoted and escaped string, with the same escaping as {@link com.google.gson.stream.JsonWriter}.
+     */
+    void writeString(String value) {
+      int size = value.length();
+      // Every char takes at most 6 bytes when escaped
+      ensureCapacity(size * 6 + 2);
+      byte[] buf = buffer;
+      int pos = length;
+      buf[pos++] = '"';
+      for (int i = 0; i < size; i++) {
+        char c = value.charAt(i);
+        if (c < 0x80) {
+          if (c >= 0x20 && c != '"' && c != '\\') {
+            buf[pos++] = (byte) c;
+            continue;
+          }
+          buf[pos++] = '\\';
+          switch (c) {
+            case '"':
+            case '\\':
+              buf[pos++] = (byte) c;
+              break;
+            case '\t':
+              buf[pos++] = 't';
+              break;
+            case '\b':
+              buf[pos++] = 'b';
+              break;
+            case '\n':
+              buf[pos++] = 'n';
+              break;
+            case '\r':
+              buf[pos++] = 'r';
+              break;
+            case '\f':
+              buf[pos++] = 'f';
+              break;
+            default:
+              pos = writeUnicodeEscape(buf, pos, c);
+          }
+        } else if (c == '\u2028' || c == '\u2029') {
+          buf[pos++] = '\\';
+          pos = writeUnicodeEscape(buf, pos, c);
+        } else if (c < 0x800) {
+          buf[pos++] = (byte) (0xC0 | (c >> 6));
+          buf[pos++] = (byte) (0x80 | (c & 0x3F));
+        } else if (Character.isHighSurrogate(c) && i + 1 < size && Character.isLowSurrogate(value.charAt(i + 1))) {
+          int codePoint = Character.toCodePoint(c, value.charAt(++i));
+          buf[pos++] = (byte) (0xF0 | (codePoint >> 18));
+          buf[pos++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+          buf[pos++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+          buf[pos++] = (byte) (0x80 | (codePoint & 0x3F));
+        } else if (Character.isSurrogate(c)) {
+          // Unpaired surrogates are replaced, as done by the UTF-8 encoder of the JDK
+          buf[pos++] = '?';
+        } else {
+          buf[pos++] = (byte) (0xE0 | (c >> 12));
+          buf[pos++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+          buf[pos++] = (byte) (0x80 | (c & 0x3F));
+        }
+      }
+      buf[pos++] = '"';
+      length = pos;
+    }
+
+    private static int writeUnicodeEscape(byte[] buf, int pos, char c) {
+      buf[pos++] = 'u';
+      buf[pos++] = HEX[(c >> 12) & 0xF];
+      buf[pos++] = HEX[(c >> 8) & 0xF];
+      buf[pos++] = HEX[(c >> 4) & 0xF];
+      buf[pos++] = HEX[c & 0xF];
+      return pos;
+    }
+
+    private void writeAscii(String value) {
+      ensureCapacity(value.length());
+      for (int i = 0; i < value.length(); i++) {
+        buffer[length++] = (byte) value.charAt(i);
+      }
+    }
+
+    private void ensureCapacity(int extra) {
+      if (length + extra > buffer.length) {
+        buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, length + extra));
+      }
+    }
+  }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.gcp.bigquery.sink;
+
+import com.google.api.services.bigquery.Bigquery;
+import com.google.api.services.bigquery.model.Dataset;
+import com.google.api.services.bigquery.model.Table;
+import com.google.api.services.bigquery.model.TableReference;
+import com.google.cloud.hadoop.io.bigquery.BigQueryStrings;
+import com.google.cloud.hadoop.util.ApiErrorExtractor;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.annotation.Nullable;
+
+/**
+ * Cache of the BigQuery table and dataset metadata fetched while committing the output of a run.
+ * <p>
+ * Committing a table looks up the same table and dataset several times. Lookups are served from the cache until the
+ * table is invalidated, which has to be done after every job or request that modifies the table.
+ * The cache is thread safe, so that it can be shared by the tables committed concurrently.
+ */
+class BigQueryMetadataCache {
+
+  private final Bigquery bigquery;
+  // Tables that don't exist are cached as empty
+  private final Map<String, Optional<Table>> tables;
+  private final Map<String, Dataset> datasets;
+
+  BigQueryMetadataCache(Bigquery bigquery) {
+    this.bigquery = bigquery;
+    this.tables = new ConcurrentHashMap<>();
+    this.datasets = new ConcurrentHashMap<>();
+  }
+
+  /**
+   * Gets a table. The table is shared by all the callers and must not be modified, changes are made with
+   * {@link #patchTable}.
+   *
+   * @return the table, or {@code null} if it doesn't exist
+   * @throws IOException if the table could not be fetched
+   */
+  @Nullable
+  Table getTable(TableReference tableRef) throws IOException {
+    String key = BigQueryStrings.toString(tableRef);
+    Optional<Table> table = tables.get(key);
+    if (table == null) {
+      table = Optional.ofNullable(fetchTable(tableRef));
+      tables.put(key, table);
+    }
+    return table.orElse(null);
+  }
+
+  boolean tableExists(TableReference tableRef) throws IOException {
+    return getTable(tableRef) != null;
+  }
+
+  /**
+   * Gets a dataset. Datasets are not modified while committing, so they are never invalidated.
+   *
+   * @throws IOException if the dataset could not be fetched
+   */
+  Dataset getDataset(String projectId, String datasetId) throws IOException {
+    String key = String.format("%s:%s", projectId, datasetId);
+    Dataset dataset = datasets.get(key);
+    if (dataset == null) {
+      dataset = bigquery.datasets().get(projectId, datasetId).execute();
+      datasets.put(key, dataset);
+    }
+    return dataset;
+  }
+
+  /**
+   * Updates the given properties of a table with a single request, leaving the other properties unchanged.
+   * The cached table is replaced by the updated one once the request succeeded. If the request failed, the table is
+   * removed from the cache, as it may or may not have been updated.
+   *
+   * @param tableRef the table to update
+   * @param patch table with only the properties to update set
+   * @throws IOException if the table could not be updated
+   */
+  void patchTable(TableReference tableRef, Table patch) throws IOException {
+    Table table;
+    try {
+      table = bigquery.tables()
+        .patch(tableRef.getProjectId(), tableRef.getDatasetId(), tableRef.getTableId(), patch)
+        .execute();
+    } catch (IOException | RuntimeException e) {
+      invalidate(tableRef);
+      throw e;
+    }
+    if (table == null) {
+      invalidate(tableRef);
+    } else {
+      tables.put(BigQueryStrings.toString(tableRef), Optional.of(table));
+    }
+  }
+
+  /**
+   * Removes a table from the cache, so that its next lookup fetches it again.
+   */
+  void invalidate(TableReference tableRef) {
+    tables.remove(BigQueryStrings.toString(tableRef));
+  }
+
+  @Nullable
+  private Table fetchTable(TableReference tableRef) throws IOException {
+    try {
+      return bigquery.tables().get(tableRef.getProjectId(), tableRef.getDatasetId(), tableRef.getTableId()).execute();
+    } catch (IOException e) {
+      if (ApiErrorExtractor.INSTANCE.itemNotFound(e)) {
+        return null;
+      }
+      throw e;
+    }
+  }
+}
@@ -146,6 +146,7 @@ public class BigQueryMultiSink extends AbstractBigQuerySink {
     String splitField = config.getSplitField();
     String projectName = config.getDatasetProject();
     String datasetName = config.getDataset();
+    conf.setInt(BigQueryConstants.CONFIG_MULTI_SINK_MAX_OPEN_WRITERS, config.getMaxOpenWriters());
     context.addOutput(Output.of(config.getReferenceName(),
                                 new DelegatingMultiSinkOutputFormatProvider(conf, splitField, bucket,
                                                                             projectName, datasetName)));
@@ -19,8 +19,11 @@ import com.google.common.base.Strings;
 import io.cdap.cdap.api.annotation.Description;
 import io.cdap.cdap.api.annotation.Macro;
 import io.cdap.cdap.api.annotation.Name;
+import io.cdap.cdap.etl.api.FailureCollector;
 import io.cdap.plugin.gcp.bigquery.connector.BigQueryConnectorConfig;
+import io.cdap.plugin.gcp.bigquery.util.BigQueryConstants;
 
+import java.util.Map;
 import javax.annotation.Nullable;
 
 /**
@@ -30,6 +33,7 @@ public class BigQueryMultiSinkConfig extends AbstractBigQuerySinkConfig {
 
   private static final String SPLIT_FIELD_DEFAULT = "tablename";
   private static final String NAME_ALLOW_FLEXIBLE_SCHEMA = "allowFlexibleSchema";
+  public static final String NAME_MAX_OPEN_WRITERS = "maxOpenWriters";
 
   @Macro
   @Nullable
@@ -43,6 +47,15 @@ public class BigQueryMultiSinkConfig extends AbstractBigQuerySinkConfig {
     "arguments will be processed. If enabled, all records will be written as-is.")
   private Boolean allowFlexibleSchema;
 
+  @Name(NAME_MAX_OPEN_WRITERS)
+  @Macro
+  @Nullable
+  @Description("Maximum number of tables a task writes to at the same time when flexible schemas are allowed. " +
+    "Each open table buffers up to the GCS upload request chunk size in memory. When the limit is reached, the " +
+    "least recently written table is flushed to GCS, and written to a new file if more records arrive for it. " +
+    "Defaults to 50.")
+  private Integer maxOpenWriters;
+
   private BigQueryMultiSinkConfig(BigQueryConnectorConfig connection, String dataset, String cmekKey, String bucket) {
     super(connection, dataset, cmekKey, bucket);
   }
@@ -59,6 +72,21 @@ public class BigQueryMultiSinkConfig extends AbstractBigQuerySinkConfig {
     return allowFlexibleSchema != null ? allowFlexibleSchema : false;
   }
 
+  public int getMaxOpenWriters() {
+    return maxOpenWriters == null ? BigQueryConstants.DEFAULT_MULTI_SINK_MAX_OPEN_WRITERS : maxOpenWriters;
+  }
+
+  @Override
+  public void validate(FailureCollector collector, Map<String, String> arguments) {
+    super.validate(collector, arguments);
+
+    if (!containsMacro(NAME_MAX_OPEN_WRITERS) && maxOpenWriters != null && maxOpenWriters < 1) {
+      collector.addFailure(String.format("Invalid maximum number of open writers '%d'.", maxOpenWriters),
+                           "Set the maximum number of open writers to a positive value.")
+        .withConfigProperty(NAME_MAX_OPEN_WRITERS);
+    }
+  }
+
   /**
    * BigQuery MultiSink configuration builder.
    */
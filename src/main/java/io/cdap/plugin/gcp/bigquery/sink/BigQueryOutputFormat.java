@@ -18,14 +18,9 @@ package io.cdap.plugin.gcp.bigquery.sink;
 
 import com.google.api.client.json.JsonParser;
 import com.google.api.client.json.jackson2.JacksonFactory;
-import com.google.api.client.util.BackOff;
-import com.google.api.client.util.ExponentialBackOff;
-import com.google.api.client.util.Sleeper;
-import com.google.api.services.bigquery.Bigquery;
 import com.google.api.services.bigquery.model.Clustering;
 import com.google.api.services.bigquery.model.Dataset;
 import com.google.api.services.bigquery.model.EncryptionConfiguration;
-import com.google.api.services.bigquery.model.ErrorProto;
 import com.google.api.services.bigquery.model.Job;
 import com.google.api.services.bigquery.model.JobConfiguration;
 import com.google.api.services.bigquery.model.JobConfigurationLoad;
@@ -40,6 +35,7 @@ import com.google.api.services.bigquery.model.TableSchema;
 import com.google.api.services.bigquery.model.TimePartitioning;
 import com.google.auth.Credentials;
 import com.google.cloud.bigquery.BigQuery;
+import com.google.cloud.bigquery.BigQueryError;
 import com.google.cloud.bigquery.BigQueryException;
 import com.google.cloud.bigquery.BigQueryOptions;
 import com.google.cloud.bigquery.Field;
@@ -54,17 +50,17 @@ import com.google.cloud.hadoop.io.bigquery.BigQueryFactory;
 import com.google.cloud.hadoop.io.bigquery.BigQueryFileFormat;
 import com.google.cloud.hadoop.io.bigquery.BigQueryHelper;
 import com.google.cloud.hadoop.io.bigquery.BigQueryStrings;
-import com.google.cloud.hadoop.io.bigquery.BigQueryUtils;
 import com.google.cloud.hadoop.io.bigquery.output.BigQueryOutputConfiguration;
 import com.google.cloud.hadoop.io.bigquery.output.ForwardingBigQueryFileOutputCommitter;
 import com.google.cloud.hadoop.io.bigquery.output.ForwardingBigQueryFileOutputFormat;
 import com.google.cloud.hadoop.util.ConfigurationUtil;
-import com.google.cloud.hadoop.util.ResilientOperation;
-import com.google.cloud.hadoop.util.RetryDeterminer;
 import com.google.common.base.Strings;
 import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import io.cdap.cdap.api.data.format.StructuredRecord;
 import io.cdap.plugin.gcp.bigquery.util.BigQueryConstants;
+import io.cdap.plugin.gcp.bigquery.util.BigQueryJobWaiter;
+import io.cdap.plugin.gcp.bigquery.util.BigQueryUtil;
 import io.cdap.plugin.gcp.common.GCPUtils;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.io.NullWritable;
@@ -87,6 +83,12 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 import javax.annotation.Nullable;
@@ -141,7 +143,11 @@ public class BigQueryOutputFormat extends ForwardingBigQueryFileOutputFormat<Str
    * BigQuery Output committer.
    */
   public static class BigQueryOutputCommitter extends ForwardingBigQueryFileOutputCommitter {
+    private final Configuration configuration;
+    private final Progressable progressable;
     private BigQueryHelper bigQueryHelper;
+    private BigQueryMetadataCache metadataCache;
+    private BigQueryJobWaiter jobWaiter;
 
     private Operation operation;
     private TableReference temporaryTableReference;
@@ -149,6 +155,9 @@ public class BigQueryOutputFormat extends ForwardingBigQueryFileOutputFormat<Str
     private List<String> orderedByList;
     private List<String> tableFieldsList;
     private String partitionFilter;
+    private int loadJobConcurrency;
+    // Limits the load jobs running at once, possibly with the committers of other tables
+    private Semaphore loadJobPermits;
 
     private boolean allowSchemaRelaxation;
     private boolean allowSchemaRelaxationOnEmptyOutput;
@@ -157,12 +166,33 @@ public class BigQueryOutputFormat extends ForwardingBigQueryFileOutputFormat<Str
 
     BigQueryOutputCommitter(TaskAttemptContext context, OutputCommitter delegate) throws IOException {
       super(context, delegate);
+      this.configuration = context.getConfiguration();
+      this.progressable = context;
       try {
         BigQueryFactory bigQueryFactory = new BigQueryFactory();
         this.bigQueryHelper = bigQueryFactory.getBigQueryHelper(context.getConfiguration());
       } catch (GeneralSecurityException e) {
         throw new IOException("Failed to create Bigquery client.", e);
       }
+      this.metadataCache = new BigQueryMetadataCache(bigQueryHelper.getRawBigquery());
+    }
+
+    BigQueryMetadataCache getMetadataCache() {
+      return metadataCache;
+    }
+
+    /**
+     * Sets the metadata cache, to share the table and dataset lookups with the committers of other tables.
+     */
+    void setMetadataCache(BigQueryMetadataCache metadataCache) {
+      this.metadataCache = metadataCache;
+    }
+
+    /**
+     * Sets the permits of the load jobs, to share the load job concurrency with the committers of other tables.
+     */
+    void setLoadJobPermits(Semaphore loadJobPermits) {
+      this.loadJobPermits = loadJobPermits;
     }
 
     @Override
@@ -209,6 +239,10 @@ public class BigQueryOutputFormat extends ForwardingBigQueryFileOutputFormat<Str
       partitionFilter = conf.get(BigQueryConstants.CONFIG_PARTITION_FILTER, null);
       LOG.debug("Partition filter: '{}'", partitionFilter);
       boolean tableExists = conf.getBoolean(BigQueryConstants.CONFIG_DESTINATION_TABLE_EXISTS, false);
+      loadJobConcurrency = BigQueryUtil.getLoadJobConcurrency(conf);
+      if (loadJobPermits == null) {
+        loadJobPermits = new Semaphore(loadJobConcurrency);
+      }
 
       try {
         importFromGcs(destProjectId, destTable, destSchema.orElse(null), kmsKeyName, outputFileFormat,
@@ -266,20 +300,17 @@ public class BigQueryOutputFormat extends ForwardingBigQueryFileOutputFormat<Str
 
       String jobId = getJobIdForImportGCS(conf);
       if (gcsPaths.isEmpty()) {
-        if (!bigQueryHelper.tableExists(tableRef)) {
+        if (!metadataCache.tableExists(tableRef)) {
           // If gcsPaths empty and destination table not exist - creating empty destination table.
           Table table = new Table();
           table.setSchema(schema);
           table.setTableReference(tableRef);
           bigQueryHelper.getRawBigquery().tables().insert(tableRef.getProjectId(), tableRef.getDatasetId(), table)
             .execute();
+          metadataCache.invalidate(tableRef);
         } else if (allowSchemaRelaxationOnEmptyOutput) {
           // If the table requires a schema update, apply if even when there are no records to write.
-          Table table = bigQueryHelper.getTable(tableRef);
-          table.setSchema(schema);
-          bigQueryHelper.getRawBigquery().tables()
-            .update(tableRef.getProjectId(), tableRef.getDatasetId(), tableRef.getTableId(), table)
-            .execute();
+          metadataCache.patchTable(tableRef, new Table().setSchema(schema));
         }
         return;
       }
@@ -291,7 +322,7 @@ public class BigQueryOutputFormat extends ForwardingBigQueryFileOutputFormat<Str
       // If schema change is not allowed and if the destination table already exists, use the destination table schema
       // See PLUGIN-395
       if (!allowSchemaRelaxation && tableExists) {
-        loadConfig.setSchema(bigQueryHelper.getTable(tableRef).getSchema());
+        loadConfig.setSchema(metadataCache.getTable(tableRef).getSchema());
       } else {
         loadConfig.setSchema(schema);
       }
@@ -299,7 +330,7 @@ public class BigQueryOutputFormat extends ForwardingBigQueryFileOutputFormat<Str
       Map<String, String> fieldDescriptions = new HashMap<>();
       if (JobInfo.WriteDisposition.WRITE_TRUNCATE
         .equals(JobInfo.WriteDisposition.valueOf(writeDisposition)) && tableExists) {
-          List<TableFieldSchema> tableFieldSchemas = Optional.ofNullable(bigQueryHelper.getTable(tableRef))
+          List<TableFieldSchema> tableFieldSchemas = Optional.ofNullable(metadataCache.getTable(tableRef))
             .map(it -> it.getSchema())
             .map(it -> it.getFields())
             .orElse(Collections.emptyList());
@@ -366,8 +397,7 @@ public class BigQueryOutputFormat extends ForwardingBigQueryFileOutputFormat<Str
       }
 
       // Get the dataset to determine the location
-      Dataset dataset =
-        bigQueryHelper.getRawBigquery().datasets().get(tableRef.getProjectId(), tableRef.getDatasetId()).execute();
+      Dataset dataset = metadataCache.getDataset(tableRef.getProjectId(), tableRef.getDatasetId());
 
       //Depending on Operation type and no of gcs paths present , trigger suitable BQ job.
       temporaryTableReference = null;
@@ -382,7 +412,7 @@ public class BigQueryOutputFormat extends ForwardingBigQueryFileOutputFormat<Str
         triggerBigqueryJob(projectId, jobId , dataset, config);
       } else {
         // First load the data in a temp table.
-        loadInBatchesInTempTable(tableRef, loadConfig, gcsPaths, projectId, jobId, dataset);
+        loadInBatchesInTempTable(tableRef, loadConfig, gcsPaths, projectId, jobId, dataset, loadJobConcurrency);
 
         if (operation.equals(Operation.INSERT)) { // For the case when gcs paths is more than 10000
           handleInsertOperation(tableRef, writeDisposition, loadConfig.getDestinationEncryptionConfiguration(),
@@ -391,6 +421,8 @@ public class BigQueryOutputFormat extends ForwardingBigQueryFileOutputFormat<Str
           handleUpdateUpsertOperation(tableRef, kmsKeyName, getJobIdForUpdateUpsert(conf), conf);
         }
       }
+      // The jobs modified the destination table
+      metadataCache.invalidate(tableRef);
 
       setTemporaryTableExpiration();
       updateFieldDescriptions(writeDisposition, tableRef, fieldDescriptions);
@@ -410,17 +442,28 @@ public class BigQueryOutputFormat extends ForwardingBigQueryFileOutputFormat<Str
       Job job = new Job();
       job.setConfiguration(jobConfiguration);
       job.setJobReference(jobReference);
-      // Insert and run job.
-      bigQueryHelper.insertJobOrFetchDuplicate(projectId, job);
-      // Poll until job is complete.
-      waitForJobCompletion(bigQueryHelper.getRawBigquery(), projectId, jobReference);
+      boolean loadJob = jobConfiguration.getLoad() != null;
+      if (loadJob) {
+        loadJobPermits.acquire();
+      }
+      try {
+        // Insert and run job.
+        bigQueryHelper.insertJobOrFetchDuplicate(projectId, job);
+        // Poll until job is complete.
+        waitForJobCompletion(projectId, jobReference);
+      } finally {
+        if (loadJob) {
+          loadJobPermits.release();
+        }
+      }
     }
 
     private void loadInBatchesInTempTable(TableReference tableRef, JobConfigurationLoad loadConfig,
-                                          List<String> gcsPaths, String projectId, String jobId, Dataset dataset)
+                                          List<String> gcsPaths, String projectId, String jobId, Dataset dataset,
+                                          int concurrency)
       throws IOException, InterruptedException {
 
-      LOG.info(" Importing into a temporary table first in batches of 10000");
+      LOG.info(" Importing into a temporary table first in batches of {}", BQ_IMPORT_MAX_BATCH_SIZE);
 
       String temporaryTableName = tableRef.getTableId() + "_"
         + UUID.randomUUID().toString().replaceAll("-", "_");
@@ -435,98 +478,108 @@ public class BigQueryOutputFormat extends ForwardingBigQueryFileOutputFormat<Str
       // Split the list of files in batches 10000 (current bq load job limit) and import /append onto a temp table
       List<List<String>> gcsPathsInBatches = Lists.partition(gcsPaths, BQ_IMPORT_MAX_BATCH_SIZE);
 
-      int jobcount = 1;
-      for (List<String> gcsPathBatch :  gcsPathsInBatches) {
-        LOG.debug(" Running for Batch {} with number of gcs paths : {}", jobcount, gcsPathBatch.size());
-        loadConfig.setSourceUris(gcsPathBatch);
-        JobConfiguration config = new JobConfiguration();
-        config.setLoad(loadConfig);
+      // The first batch creates the temporary table, with its partitioning and clustering, so it is loaded alone.
+      LOG.debug(" Running for Batch 1 with number of gcs paths : {}", gcsPathsInBatches.get(0).size());
+      triggerBigqueryJob(projectId, jobId + "_1", dataset,
+                         createLoadJobConfiguration(loadConfig, gcsPathsInBatches.get(0)));
+      if (gcsPathsInBatches.size() == 1) {
+        return;
+      }
 
-        triggerBigqueryJob(projectId, jobId + "_" + jobcount, dataset, config);
-        jobcount++;
+      // The remaining batches only append to the temporary table, so they can be loaded concurrently.
+      int threads = Math.min(concurrency, gcsPathsInBatches.size() - 1);
+      LOG.debug(" Running {} batches with up to {} concurrent load jobs", gcsPathsInBatches.size() - 1, threads);
+      ExecutorService executor = Executors.newFixedThreadPool(
+        threads, new ThreadFactoryBuilder().setNameFormat("bigquery-load-%d").setDaemon(true).build());
+      try {
+        CompletionService<Void> completionService = new ExecutorCompletionService<>(executor);
+        for (int i = 1; i < gcsPathsInBatches.size(); i++) {
+          List<String> gcsPathBatch = gcsPathsInBatches.get(i);
+          String batchJobId = jobId + "_" + (i + 1);
+          JobConfiguration config = createLoadJobConfiguration(loadConfig, gcsPathBatch);
+          completionService.submit(() -> {
+            LOG.debug(" Running for Batch {} with number of gcs paths : {}", batchJobId, gcsPathBatch.size());
+            triggerBigqueryJob(projectId, batchJobId, dataset, config);
+            return null;
+          });
+        }
+        // Wait for jobs in completion order, so that the first failure stops the remaining batches
+        for (int i = 1; i < gcsPathsInBatches.size(); i++) {
+          try {
+            completionService.take().get();
+          } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+              throw (IOException) e.getCause();
+            }
+            if (e.getCause() instanceof InterruptedException) {
+              throw (InterruptedException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+          }
+        }
+      } finally {
+        executor.shutdownNow();
       }
     }
 
+    private static JobConfiguration createLoadJobConfiguration(JobConfigurationLoad loadConfig,
+                                                               List<String> gcsPaths) {
+      JobConfigurationLoad batchLoadConfig = loadConfig.clone();
+      batchLoadConfig.setSourceUris(gcsPaths);
+      JobConfiguration config = new JobConfiguration();
+      config.setLoad(batchLoadConfig);
+      return config;
+    }
+
     private void setTemporaryTableExpiration() throws IOException {
-      if (temporaryTableReference != null && bigQueryHelper.tableExists(temporaryTableReference)) {
+      // The temporary table was created by the first load job
+      if (temporaryTableReference != null) {
         long expirationMillis = System.currentTimeMillis() + TimeUnit.DAYS.toMillis(1);
-        Table table = bigQueryHelper.getTable(temporaryTableReference).setExpirationTime(expirationMillis);
-        bigQueryHelper.getRawBigquery().tables().update(temporaryTableReference.getProjectId(),
-                                                        temporaryTableReference.getDatasetId(),
-                                                        temporaryTableReference.getTableId(), table).execute();
+        metadataCache.patchTable(temporaryTableReference, new Table().setExpirationTime(expirationMillis));
       }
     }
 
     /**
-     * This method is copied from BigQueryUtils#waitForJobCompletion for getting useful error message.
+     * Waits for the job to complete, failing with a useful error message if the job failed.
      */
-    private static void waitForJobCompletion(Bigquery bigquery, String projectId,
-                                             JobReference jobReference) throws IOException, InterruptedException {
-
-      Sleeper sleeper = Sleeper.DEFAULT;
-      BackOff pollBackOff =
-        new ExponentialBackOff.Builder()
-          .setMaxIntervalMillis(BigQueryUtils.POLL_WAIT_INTERVAL_MAX_MILLIS)
-          .setInitialIntervalMillis(BigQueryUtils.POLL_WAIT_INITIAL_MILLIS)
-          .setMaxElapsedTimeMillis(BigQueryUtils.POLL_WAIT_MAX_ELAPSED_MILLIS)
-          .build();
-
-      // Get starting time.
-      long startTime = System.currentTimeMillis();
-      long elapsedTime;
-      boolean notDone = true;
-
-      // While job is incomplete continue to poll.
-      while (notDone) {
-        BackOff operationBackOff = new ExponentialBackOff.Builder().build();
-        Bigquery.Jobs.Get get = bigquery.jobs().get(projectId, jobReference.getJobId())
-          .setLocation(jobReference.getLocation());
-
-        Job pollJob = ResilientOperation.retry(
-          ResilientOperation.getGoogleRequestCallable(get),
-          operationBackOff,
-          RetryDeterminer.RATE_LIMIT_ERRORS,
-          IOException.class,
-          sleeper);
-
-        elapsedTime = System.currentTimeMillis() - startTime;
-        LOG.debug("Job status ({} ms) {}: {}", elapsedTime, jobReference.getJobId(),
-                  pollJob.getStatus().getState());
-        if (pollJob.getStatus().getState().equals("DONE")) {
-          notDone = false;
-          if (pollJob.getStatus().getErrorResult() != null) {
-            List<ErrorProto> errors = pollJob.getStatus().getErrors();
-            int numOfErrors;
-            String errorMessage;
-            if (errors == null || errors.isEmpty()) {
-              errorMessage = pollJob.getStatus().getErrorResult().getMessage();
-              numOfErrors = 1;
-            } else {
-              errorMessage = errors.get(errors.size() - 1).getMessage();
-              numOfErrors = errors.size();
-            }
-            // Only add first error message in the exception. For other errors user should look at BigQuery job logs.
-            throw new IOException(String.format("Error occurred while importing data to BigQuery '%s'." +
-                                                  " There are total %s error(s) for BigQuery job %s. Please look at " +
-                                                  "BigQuery job logs for more information.",
-                                                errorMessage, numOfErrors, jobReference.getJobId()));
-          }
+    private void waitForJobCompletion(String projectId, JobReference jobReference)
+      throws IOException, InterruptedException {
+      JobId jobId = JobId.newBuilder()
+        .setProject(projectId)
+        .setJob(jobReference.getJobId())
+        .setLocation(jobReference.getLocation())
+        .build();
+      // The context is notified on every status check, to ensure the task doesn't time out.
+      com.google.cloud.bigquery.Job pollJob = getJobWaiter().await(jobId, progressable);
+      if (pollJob == null) {
+        throw new IOException(String.format("BigQuery job %s does not exist.", jobReference.getJobId()));
+      }
+      BigQueryError errorResult = pollJob.getStatus().getError();
+      if (errorResult != null) {
+        List<BigQueryError> errors = pollJob.getStatus().getExecutionErrors();
+        int numOfErrors;
+        String errorMessage;
+        if (errors == null || errors.isEmpty()) {
+          errorMessage = errorResult.getMessage();
+          numOfErrors = 1;
         } else {
-          long millisToWait = pollBackOff.nextBackOffMillis();
-          if (millisToWait == BackOff.STOP) {
-            throw new IOException(
-              String.format(
-                "Job %s failed to complete after %s millis.",
-                jobReference.getJobId(),
-                elapsedTime));
-          }
-          // Pause execution for the configured duration before polling job status again.
-          Thread.sleep(millisToWait);
-          // Call progress to ensure task doesn't time out.
-          Progressable progressable = () -> { };
-          progressable.progress();
+          errorMessage = errors.get(errors.size() - 1).getMessage();
+          numOfErrors = errors.size();
         }
+        // Only add first error message in the exception. For other errors user should look at BigQuery job logs.
+        throw new IOException(String.format("Error occurred while importing data to BigQuery '%s'." +
+                                              " There are total %s error(s) for BigQuery job %s. Please look at " +
+                                              "BigQuery job logs for more information.",
+                                            errorMessage, numOfErrors, jobReference.getJobId()));
+      }
+    }
+
+    private synchronized BigQueryJobWaiter getJobWaiter() throws IOException {
+      // Created on first use, all the jobs of the committer are waited on together
+      if (jobWaiter == null) {
+        jobWaiter = new BigQueryJobWaiter(getBigQuery(configuration));
       }
+      return jobWaiter;
     }
 
     /**
@@ -611,9 +664,19 @@ public class BigQueryOutputFormat extends ForwardingBigQueryFileOutputFormat<Str
         com.google.cloud.bigquery.Job queryJob = bigquery.create(JobInfo.newBuilder(queryConfig)
                                                                    .setJobId(jobId).build());
         // Wait for the query to complete.
-        queryJob.waitFor();
+        queryJob = getJobWaiter().await(queryJob.getJobId(), progressable);
+        if (queryJob == null) {
+          throw new IOException(String.format("BigQuery job %s does not exist.", jobId.getJob()));
+        }
+        BigQueryError queryError = queryJob.getStatus().getError();
+        if (queryError != null) {
+          // Fail like Job.waitFor does when the query failed
+          List<BigQueryError> errors = queryJob.getStatus().getExecutionErrors();
+          throw new BigQueryException(errors == null || errors.isEmpty() ?
+                                        Collections.singletonList(queryError) : errors);
+        }
       } catch (BigQueryException e) {
-        if (Operation.UPDATE.equals(operation) && !bigQueryHelper.tableExists(tableRef)) {
+        if (Operation.UPDATE.equals(operation) && !metadataCache.tableExists(tableRef)) {
           // ignore the exception. This is because we do not want to fail the pipeline as per below discussion
           // https://github.com/data-integrations/google-cloud/pull/290#discussion_r472405882
           LOG.warn("BigQuery Table {} does not exist. The operation update will not write any records to the table."
@@ -649,40 +712,38 @@ public class BigQueryOutputFormat extends ForwardingBigQueryFileOutputFormat<Str
 
     private void updateFieldDescriptions(String writeDisposition, TableReference tableRef,
                                          Map<String, String> fieldDescriptions) throws IOException {
+      // Nothing to restore if the truncated table had no descriptions
       if (JobInfo.WriteDisposition.WRITE_TRUNCATE
-        .equals(JobInfo.WriteDisposition.valueOf(writeDisposition))) {
+        .equals(JobInfo.WriteDisposition.valueOf(writeDisposition)) && !fieldDescriptions.isEmpty()) {
 
-        Table table = bigQueryHelper.getTable(tableRef);
-        List<TableFieldSchema> tableFieldSchemas = Optional.ofNullable(table)
-          .map(Table::getSchema)
-          .map(TableSchema::getFields)
-          .orElse(Collections.emptyList());
+        Table table = metadataCache.getTable(tableRef);
+        if (table == null || table.getSchema() == null) {
+          return;
+        }
 
-        tableFieldSchemas
+        // The cached table is left unchanged, it is replaced by the patched table once the patch succeeded
+        TableSchema schema = table.getSchema().clone();
+        schema.getFields()
           .forEach(it -> {
             Optional.ofNullable(fieldDescriptions.get(it.getName()))
               .ifPresent(it::setDescription);
           });
 
-        bigQueryHelper
-          .getRawBigquery()
-          .tables()
-          .update(tableRef.getProjectId(),
-                  tableRef.getDatasetId(),
-                  tableRef.getTableId(), table)
-          .execute();
+        // Only the schema is sent, the other properties of the table are left as they are
+        metadataCache.patchTable(tableRef, new Table().setSchema(schema));
       }
     }
 
     @Override
     protected void cleanup(JobContext context) throws IOException {
       super.cleanup(context);
-      if (temporaryTableReference != null && bigQueryHelper.tableExists(temporaryTableReference)) {
+      if (temporaryTableReference != null && metadataCache.tableExists(temporaryTableReference)) {
         bigQueryHelper.getRawBigquery().tables()
           .delete(temporaryTableReference.getProjectId(),
                   temporaryTableReference.getDatasetId(),
                   temporaryTableReference.getTableId())
           .execute();
+        metadataCache.invalidate(temporaryTableReference);
       }
     }
 
@@ -720,6 +781,7 @@ public class BigQueryOutputFormat extends ForwardingBigQueryFileOutputFormat<Str
       bigQueryHelper.getRawBigquery().tables()
         .insert(tableRef.getProjectId(), tableRef.getDatasetId(), table)
         .execute();
+      metadataCache.invalidate(tableRef);
     }
 
     private RangePartitioning createRangePartitioning(@Nullable String partitionByField, @Nullable Range range) {
@@ -732,8 +794,13 @@ public class BigQueryOutputFormat extends ForwardingBigQueryFileOutputFormat<Str
     }
   }
 
-  private static BigQuery getBigQuery(Configuration config) throws IOException {
+  static BigQuery getBigQuery(Configuration config) throws IOException {
     String projectId = ConfigurationUtil.getMandatoryConfig(config, BigQueryConfiguration.PROJECT_ID_KEY);
+    return GCPUtils.getBigQuery(projectId, getCredentials(config));
+  }
+
+  @Nullable
+  static Credentials getCredentials(Configuration config) throws IOException {
     String serviceAccount;
     boolean isServiceAccountFile = GCPUtils.SERVICE_ACCOUNT_TYPE_FILE_PATH
       .equals(config.get(GCPUtils.SERVICE_ACCOUNT_TYPE));
@@ -743,8 +810,7 @@ public class BigQueryOutputFormat extends ForwardingBigQueryFileOutputFormat<Str
       serviceAccount = config.get(String.format("%s.%s", GCPUtils.CLOUD_JSON_KEYFILE_PREFIX,
                                                 GCPUtils.CLOUD_ACCOUNT_JSON_SUFFIX));
     }
-    Credentials credentials = serviceAccount == null ? null :
+    return serviceAccount == null ? null :
       GCPUtils.loadServiceAccountCredentials(serviceAccount, isServiceAccountFile);
-    return GCPUtils.getBigQuery(projectId, credentials);
   }
 }
@@ -53,6 +53,10 @@ public class BigQueryOutputFormatProvider implements OutputFormatProvider {
 
   @Override
   public String getOutputFormatClassName() {
+    String writeMethod = configuration.get(BigQueryConstants.CONFIG_WRITE_METHOD, WriteMethod.LOAD.name());
+    if (WriteMethod.STORAGE_WRITE_API.name().equals(writeMethod)) {
+      return BigQueryStorageWriteOutputFormat.class.getName();
+    }
     return BigQueryOutputFormat.class.getName();
   }
 
@@ -0,0 +1,219 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.gcp.bigquery.sink;
+
+import com.google.cloud.bigquery.storage.v1beta2.BigDecimalByteStringEncoder;
+import com.google.cloud.bigquery.storage.v1beta2.CivilTimeEncoder;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.Descriptors;
+import com.google.protobuf.DynamicMessage;
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.cdap.api.data.schema.Schema;
+import io.cdap.plugin.common.RecordConverter;
+import io.cdap.plugin.gcp.bigquery.util.BigQueryUtil;
+import org.threeten.bp.LocalDateTime;
+import org.threeten.bp.LocalTime;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+
+/**
+ * BigQueryProtoConverter converts a {@link StructuredRecord} to a {@link DynamicMessage} of the given descriptor,
+ * as expected by the BigQuery Storage Write API.
+ *
+ * The descriptor is expected to be generated from the output schema, so the conversion of every field is resolved
+ * once when the converter is created instead of for every record.
+ */
+public class BigQueryProtoConverter extends RecordConverter<StructuredRecord, DynamicMessage> {
+
+  private final Schema outputSchema;
+  private final RecordPlan plan;
+
+  /**
+   * @param outputSchema CDAP schema of the records that are written
+   * @param descriptor proto descriptor generated from the BigQuery schema of the output schema
+   */
+  public BigQueryProtoConverter(Schema outputSchema, Descriptors.Descriptor descriptor) {
+    this.outputSchema = outputSchema;
+    this.plan = new RecordPlan(outputSchema, descriptor);
+  }
+
+  @Override
+  public DynamicMessage transform(StructuredRecord input, @Nullable Schema schema) throws IOException {
+    if (schema != null && schema != outputSchema && !schema.equals(outputSchema)) {
+      throw new IOException(String.format("Record schema '%s' does not match the schema '%s' used to create the " +
+                                            "write stream.", schema.getRecordName(), outputSchema.getRecordName()));
+    }
+    return plan.convert(input);
+  }
+
+  /**
+   * Converts a single non-null value to the representation of its proto field.
+   */
+  private interface ValueConverter {
+    Object convert(String name, Object value);
+  }
+
+  /**
+   * Conversion plan of a record, with one converter per field of the schema.
+   */
+  private static final class RecordPlan {
+    private final Descriptors.Descriptor descriptor;
+    private final String[] names;
+    private final Descriptors.FieldDescriptor[] fields;
+    private final ValueConverter[] converters;
+    private final boolean[] repeated;
+
+    RecordPlan(Schema schema, Descriptors.Descriptor descriptor) {
+      this.descriptor = descriptor;
+      Schema nonNullable = BigQueryUtil.getNonNullableSchema(schema);
+      Schema.Field[] schemaFields = Objects.requireNonNull(nonNullable.getFields()).toArray(new Schema.Field[0]);
+      this.names = new String[schemaFields.length];
+      this.fields = new Descriptors.FieldDescriptor[schemaFields.length];
+      this.converters = new ValueConverter[schemaFields.length];
+      this.repeated = new boolean[schemaFields.length];
+      for (int i = 0; i < schemaFields.length; i++) {
+        Schema.Field schemaField = schemaFields[i];
+        // The descriptor generated from the BigQuery schema has lowercase field names
+        Descriptors.FieldDescriptor field = descriptor.findFieldByName(schemaField.getName().toLowerCase());
+        if (field == null) {
+          throw new IllegalArgumentException(
+            String.format("Field '%s' is not present in the write stream schema.", schemaField.getName()));
+        }
+        Schema fieldSchema = BigQueryUtil.getNonNullableSchema(schemaField.getSchema());
+        names[i] = schemaField.getName();
+        fields[i] = field;
+        repeated[i] = fieldSchema.getType() == Schema.Type.ARRAY;
+        converters[i] = repeated[i] ?
+          createConverter(BigQueryUtil.getNonNullableSchema(Objects.requireNonNull(fieldSchema.getComponentSchema())),
+                          field) :
+          createConverter(fieldSchema, field);
+      }
+    }
+
+    DynamicMessage convert(StructuredRecord record) {
+      DynamicMessage.Builder builder = DynamicMessage.newBuilder(descriptor);
+      for (int i = 0; i < names.length; i++) {
+        Object value = record.get(names[i]);
+        if (value == null) {
+          if (repeated[i]) {
+            throw new IllegalArgumentException(String.format(
+              "Field '%s' is of value null, which is not a valid value for BigQuery type array.", names[i]));
+          }
+          continue;
+        }
+        if (repeated[i]) {
+          for (Object element : toCollection(names[i], value)) {
+            // BigQuery does not allow null values in array items
+            if (element == null) {
+              throw new IllegalArgumentException(String.format("Field '%s' contains null values in its array, " +
+                                                                 "which is not allowed by BigQuery.", names[i]));
+            }
+            builder.addRepeatedField(fields[i], converters[i].convert(names[i], element));
+          }
+        } else {
+          builder.setField(fields[i], converters[i].convert(names[i], value));
+        }
+      }
+      return builder.build();
+    }
+  }
+
+  private static ValueConverter createConverter(Schema schema, Descriptors.FieldDescriptor field) {
+    Schema.LogicalType logicalType = schema.getLogicalType();
+    if (logicalType != null) {
+      switch (logicalType) {
+        case DATE:
+          return (name, value) -> value;
+        case TIME_MILLIS:
+          return (name, value) -> CivilTimeEncoder.encodePacked64TimeMicros(
+            LocalTime.ofNanoOfDay(TimeUnit.MILLISECONDS.toNanos((Integer) value)));
+        case TIME_MICROS:
+          return (name, value) -> CivilTimeEncoder.encodePacked64TimeMicros(
+            LocalTime.ofNanoOfDay(TimeUnit.MICROSECONDS.toNanos((Long) value)));
+        case TIMESTAMP_MILLIS:
+          return (name, value) -> TimeUnit.MILLISECONDS.toMicros((Long) value);
+        case TIMESTAMP_MICROS:
+          return (name, value) -> value;
+        case DECIMAL:
+          int scale = schema.getScale();
+          return (name, value) -> BigDecimalByteStringEncoder.encodeToNumericByteString(
+            new BigDecimal(new BigInteger(toBytes(name, value)), scale));
+        case DATETIME:
+          return (name, value) -> CivilTimeEncoder.encodePacked64DatetimeMicros(LocalDateTime.parse(value.toString()));
+        default:
+          throw new IllegalStateException(String.format("Field '%s' is of unsupported type '%s'",
+                                                        field.getName(), logicalType.getToken()));
+      }
+    }
+
+    switch (schema.getType()) {
+      case INT:
+      case LONG:
+        return (name, value) -> ((Number) value).longValue();
+      case FLOAT:
+      case DOUBLE:
+        return (name, value) -> ((Number) value).doubleValue();
+      case BOOLEAN:
+      case STRING:
+        return (name, value) -> value;
+      case ENUM:
+        return (name, value) -> value.toString();
+      case BYTES:
+        return (name, value) -> ByteString.copyFrom(toBytes(name, value));
+      case RECORD:
+        RecordPlan nested = new RecordPlan(schema, field.getMessageType());
+        return (name, value) -> nested.convert((StructuredRecord) value);
+      default:
+        throw new IllegalStateException(String.format("Field '%s' is of unsupported type '%s'",
+                                                      field.getName(), schema.getType()));
+    }
+  }
+
+  private static byte[] toBytes(String name, Object value) {
+    if (value instanceof byte[]) {
+      return (byte[]) value;
+    }
+    if (value instanceof ByteBuffer) {
+      ByteBuffer buffer = ((ByteBuffer) value).duplicate();
+      byte[] bytes = new byte[buffer.remaining()];
+      buffer.get(bytes);
+      return bytes;
+    }
+    throw new IllegalStateException(String.format("Expected value of Field '%s' to be bytes but got '%s'",
+                                                  name, value.getClass().getSimpleName()));
+  }
+
+  private static Collection<?> toCollection(String name, Object value) {
+    if (value instanceof Collection) {
+      return (Collection<?>) value;
+    }
+    if (value instanceof Object[]) {
+      return Arrays.asList((Object[]) value);
+    }
+    throw new IllegalArgumentException(String.format(
+      "A value for the field '%s' is of type '%s' when it is expected to be a Collection or array.",
+      name, value.getClass().getSimpleName()));
+  }
+}
@@ -131,12 +131,10 @@ public final class BigQueryRecordToJson {
           break;
         case TIMESTAMP_MILLIS:
           //timestamp for json input should be in this format yyyy-MM-dd HH:mm:ss.SSSSSS
-          writer.value(DATETIME_FORMATTER.format(
-            Objects.requireNonNull(getZonedDateTime((long) object, TimeUnit.MILLISECONDS))));
+          writer.value(formatTimestamp((long) object, TimeUnit.MILLISECONDS));
           break;
         case TIMESTAMP_MICROS:
-          writer.value(DATETIME_FORMATTER.format(
-            Objects.requireNonNull(getZonedDateTime((long) object, TimeUnit.MICROSECONDS))));
+          writer.value(formatTimestamp((long) object, TimeUnit.MICROSECONDS));
           break;
         case DECIMAL:
           writer.value(Objects.requireNonNull(getDecimal(name, (byte[]) object, schema)).toPlainString());
@@ -261,6 +259,13 @@ public final class BigQueryRecordToJson {
     writer.endObject();
   }
 
+  /**
+   * Formats a timestamp in the yyyy-MM-dd HH:mm:ss.SSSSSS format expected by BigQuery for json input.
+   */
+  static String formatTimestamp(long ts, TimeUnit unit) {
+    return DATETIME_FORMATTER.format(Objects.requireNonNull(getZonedDateTime(ts, unit)));
+  }
+
   private static ZonedDateTime getZonedDateTime(long ts, TimeUnit unit) {
     long mod = unit.convert(1, TimeUnit.SECONDS);
     int fraction = (int) (ts % mod);
@@ -270,7 +275,7 @@ public final class BigQueryRecordToJson {
     return ZonedDateTime.ofInstant(instant, ZoneId.ofOffset("UTC", ZoneOffset.UTC));
   }
 
-  private static BigDecimal getDecimal(String name, byte[] value, Schema schema) {
+  static BigDecimal getDecimal(String name, byte[] value, Schema schema) {
     int scale = schema.getScale();
     // Checks from https://cloud.google.com/bigquery/docs/reference/standard-sql/data-types#numeric_types
     BigDecimal decimal = new BigDecimal(new BigInteger(value), scale);
@@ -43,6 +43,16 @@ public class BigQueryRecordWriter extends RecordWriter<StructuredRecord, NullWri
     initRecordConverter();
   }
 
+  /**
+   * Creates a writer that converts records with the given converter instead of picking one by file format.
+   */
+  public BigQueryRecordWriter(RecordWriter delegate, RecordConverter recordConverter, @Nullable Schema outputSchema) {
+    this.delegate = delegate;
+    this.fileFormat = null;
+    this.outputSchema = outputSchema;
+    this.recordConverter = recordConverter;
+  }
+
   private void initRecordConverter() {
     if (this.fileFormat == BigQueryFileFormat.NEWLINE_DELIMITED_JSON) {
       recordConverter = new BigQueryJsonConverter();
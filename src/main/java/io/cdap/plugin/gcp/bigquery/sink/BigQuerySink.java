@@ -242,6 +242,7 @@ public final class BigQuerySink extends AbstractBigQuerySink {
       baseConfiguration.set(BigQueryConstants.CONFIG_CLUSTERING_ORDER, getConfig().getClusteringOrder());
     }
     baseConfiguration.set(BigQueryConstants.CONFIG_OPERATION, getConfig().getOperation().name());
+    baseConfiguration.set(BigQueryConstants.CONFIG_WRITE_METHOD, getConfig().getWriteMethod().name());
     if (config.getRelationTableKey() != null) {
       baseConfiguration.set(BigQueryConstants.CONFIG_TABLE_KEY, getConfig().getRelationTableKey());
     }
@@ -72,6 +72,7 @@ public final class BigQuerySinkConfig extends AbstractBigQuerySinkConfig {
   public static final String NAME_RANGE_START = "rangeStart";
   public static final String NAME_RANGE_END = "rangeEnd";
   public static final String NAME_RANGE_INTERVAL = "rangeInterval";
+  public static final String NAME_WRITE_METHOD = "writeMethod";
 
   public static final int MAX_NUMBER_OF_COLUMNS = 4;
 
@@ -170,6 +171,14 @@ public final class BigQuerySinkConfig extends AbstractBigQuerySinkConfig {
     "This value is ignored if operation is not UPDATE or UPSERT.")
   protected String partitionFilter;
 
+  @Name(NAME_WRITE_METHOD)
+  @Macro
+  @Nullable
+  @Description("Method used to write records to BigQuery. 'Load' stages the records as files in the temporary GCS " +
+    "bucket and imports them with load jobs. 'Storage Write API' streams the records directly into BigQuery " +
+    "and commits them atomically when the pipeline run finishes.")
+  protected String writeMethod;
+
   @VisibleForTesting
   public BigQuerySinkConfig(String referenceName, String dataset, String table,
                             @Nullable String bucket, @Nullable String schema, @Nullable String partitioningType,
@@ -246,6 +255,10 @@ public final class BigQuerySinkConfig extends AbstractBigQuerySinkConfig {
     return  partitionFilter;
   }
 
+  public WriteMethod getWriteMethod() {
+    return Strings.isNullOrEmpty(writeMethod) ? WriteMethod.LOAD : WriteMethod.valueOf(writeMethod.toUpperCase());
+  }
+
   @Nullable
   public Long getRangeStart() {
     return rangeStart;
@@ -300,6 +313,13 @@ public final class BigQuerySinkConfig extends AbstractBigQuerySinkConfig {
                            "Set Truncate to false, or change the Operation to 'Insert'.")
         .withConfigProperty(NAME_TRUNCATE_TABLE).withConfigProperty(NAME_OPERATION);
     }
+
+    if (!containsMacro(NAME_WRITE_METHOD) && !Strings.isNullOrEmpty(writeMethod)
+      && Arrays.stream(WriteMethod.values()).noneMatch(method -> method.name().equalsIgnoreCase(writeMethod))) {
+      collector.addFailure(String.format("Write method has incorrect value '%s'.", writeMethod),
+                           "Set the write method to 'Load' or 'Storage Write API'.")
+        .withConfigProperty(NAME_WRITE_METHOD);
+    }
   }
 
   /**
@@ -318,6 +338,7 @@ public final class BigQuerySinkConfig extends AbstractBigQuerySinkConfig {
       validatePartitionProperties(schema, collector);
       validateClusteringOrder(schema, collector);
       validateOperationProperties(schema, collector);
+      validateWriteMethod(schema, collector);
       if (outputSchema == null) {
         return;
       }
@@ -644,6 +665,24 @@ public final class BigQuerySinkConfig extends AbstractBigQuerySinkConfig {
     }
   }
 
+  private void validateWriteMethod(@Nullable Schema schema, FailureCollector collector) {
+    if (containsMacro(NAME_WRITE_METHOD) || schema == null
+      || !WriteMethod.STORAGE_WRITE_API.name().equalsIgnoreCase(writeMethod)) {
+      return;
+    }
+    // The Storage Write API client maps NUMERIC columns only, BIGNUMERIC values cannot be encoded
+    for (Schema.Field field : Objects.requireNonNull(schema.getFields())) {
+      if (BigQuerySinkUtils.containsBigNumeric(field.getSchema())) {
+        collector.addFailure(
+          String.format("Field '%s' requires BigQuery type BIGNUMERIC, which is not supported by the Storage " +
+                          "Write API.", field.getName()),
+          "Reduce the decimal precision and scale to fit NUMERIC, or use the 'Load' write method.")
+          .withConfigProperty(NAME_WRITE_METHOD).withInputSchemaField(field.getName())
+          .withOutputSchemaField(field.getName());
+      }
+    }
+  }
+
   private Map<String, Integer> calculateDuplicates(List<String> values) {
     return values.stream()
       .map(v -> v.split(" ")[0])
@@ -573,4 +573,24 @@ public final class BigQuerySinkUtils {
     }
     return String.join(" ", queryWords);
   }
+
+  /**
+   * Checks whether the given schema, or any schema nested in it, is a decimal that maps to BigQuery BIGNUMERIC.
+   *
+   * @param schema CDAP schema
+   * @return true if a BIGNUMERIC column would be required for the schema
+   */
+  public static boolean containsBigNumeric(Schema schema) {
+    Schema nonNullable = BigQueryUtil.getNonNullableSchema(schema);
+    switch (nonNullable.getType()) {
+      case ARRAY:
+        return containsBigNumeric(Objects.requireNonNull(nonNullable.getComponentSchema()));
+      case RECORD:
+        return Objects.requireNonNull(nonNullable.getFields()).stream()
+          .anyMatch(field -> containsBigNumeric(field.getSchema()));
+      default:
+        return nonNullable.getLogicalType() == Schema.LogicalType.DECIMAL
+          && getTableDataType(nonNullable) == LegacySQLTypeName.BIGNUMERIC;
+    }
+  }
 }
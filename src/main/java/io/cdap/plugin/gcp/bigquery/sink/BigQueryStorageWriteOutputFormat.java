@@ -0,0 +1,533 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.gcp.bigquery.sink;
+
+import com.google.api.gax.core.FixedCredentialsProvider;
+import com.google.auth.Credentials;
+import com.google.auth.oauth2.ServiceAccountCredentials;
+import com.google.cloud.bigquery.BigQuery;
+import com.google.cloud.bigquery.BigQueryException;
+import com.google.cloud.bigquery.Clustering;
+import com.google.cloud.bigquery.CopyJobConfiguration;
+import com.google.cloud.bigquery.EncryptionConfiguration;
+import com.google.cloud.bigquery.Field;
+import com.google.cloud.bigquery.Job;
+import com.google.cloud.bigquery.JobId;
+import com.google.cloud.bigquery.JobInfo;
+import com.google.cloud.bigquery.QueryJobConfiguration;
+import com.google.cloud.bigquery.RangePartitioning;
+import com.google.cloud.bigquery.StandardTableDefinition;
+import com.google.cloud.bigquery.Table;
+import com.google.cloud.bigquery.TableId;
+import com.google.cloud.bigquery.TableInfo;
+import com.google.cloud.bigquery.TimePartitioning;
+import com.google.cloud.bigquery.storage.v1beta2.BQTableSchemaToProtoDescriptor;
+import com.google.cloud.bigquery.storage.v1beta2.BQV2ToBQStorageConverter;
+import com.google.cloud.bigquery.storage.v1beta2.BatchCommitWriteStreamsRequest;
+import com.google.cloud.bigquery.storage.v1beta2.BatchCommitWriteStreamsResponse;
+import com.google.cloud.bigquery.storage.v1beta2.BigQueryWriteClient;
+import com.google.cloud.bigquery.storage.v1beta2.BigQueryWriteSettings;
+import com.google.cloud.bigquery.storage.v1beta2.ProtoSchemaConverter;
+import com.google.cloud.bigquery.storage.v1beta2.StorageError;
+import com.google.cloud.bigquery.storage.v1beta2.TableName;
+import com.google.cloud.hadoop.io.bigquery.BigQueryConfiguration;
+import com.google.cloud.hadoop.io.bigquery.output.BigQueryOutputConfiguration;
+import com.google.cloud.hadoop.util.ConfigurationUtil;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Strings;
+import com.google.protobuf.Descriptors;
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.cdap.api.data.schema.Schema;
+import io.cdap.plugin.gcp.bigquery.util.BigQueryConstants;
+import io.cdap.plugin.gcp.bigquery.util.BigQueryJobWaiter;
+import io.cdap.plugin.gcp.common.GCPUtils;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.IOUtils;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.mapreduce.JobContext;
+import org.apache.hadoop.mapreduce.JobStatus;
+import org.apache.hadoop.mapreduce.OutputCommitter;
+import org.apache.hadoop.mapreduce.OutputFormat;
+import org.apache.hadoop.mapreduce.RecordWriter;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import javax.annotation.Nullable;
+
+/**
+ * An Output Format that writes records to BigQuery through pending streams of the BigQuery Storage Write API.
+ *
+ * Every task writes to its own stream, which is finalized when the task completes. All streams are committed
+ * atomically when the job is committed, so records only become visible if the job succeeds. Operations that cannot
+ * be applied by appending to the destination table write to a temporary table first, which is then copied or merged
+ * into the destination table, the same way as for the load based {@link BigQueryOutputFormat}.
+ */
+public class BigQueryStorageWriteOutputFormat extends OutputFormat<StructuredRecord, NullWritable> {
+  private static final Logger LOG = LoggerFactory.getLogger(BigQueryStorageWriteOutputFormat.class);
+  private static final String STREAMS_DIR = "_streams";
+  private static final String TEMPORARY_DIR = "_temporary";
+
+  @Override
+  public RecordWriter<StructuredRecord, NullWritable> getRecordWriter(TaskAttemptContext taskAttemptContext)
+    throws IOException {
+    Configuration configuration = taskAttemptContext.getConfiguration();
+    Schema schema = getOutputSchema(configuration);
+    Descriptors.Descriptor descriptor = getDescriptor(schema);
+    TableId table = getTargetTable(configuration);
+    BigQueryStorageWriteRecordWriter delegate =
+      new BigQueryStorageWriteRecordWriter(createWriteClient(configuration),
+                                           TableName.of(table.getProject(), table.getDataset(),
+                                                        table.getTable()).toString(),
+                                           ProtoSchemaConverter.convert(descriptor),
+                                           getAttemptMarkerPath(taskAttemptContext), configuration);
+    return new BigQueryRecordWriter(delegate, new BigQueryProtoConverter(schema, descriptor), schema);
+  }
+
+  @Override
+  public void checkOutputSpecs(JobContext jobContext) throws IOException {
+    BigQueryOutputConfiguration.validateConfiguration(jobContext.getConfiguration());
+    getOutputSchema(jobContext.getConfiguration());
+  }
+
+  @Override
+  public OutputCommitter getOutputCommitter(TaskAttemptContext taskAttemptContext) {
+    return new BigQueryStorageWriteOutputCommitter(this);
+  }
+
+  /**
+   * Creates the client used to create, finalize and commit write streams.
+   */
+  @VisibleForTesting
+  BigQueryWriteClient createWriteClient(Configuration configuration) throws IOException {
+    BigQueryWriteSettings.Builder settings = BigQueryWriteSettings.newBuilder();
+    Credentials credentials = BigQueryOutputFormat.getCredentials(configuration);
+    if (credentials != null) {
+      if (credentials instanceof ServiceAccountCredentials) {
+        credentials = ((ServiceAccountCredentials) credentials).createScoped(GCPUtils.BIGQUERY_SCOPES);
+      }
+      settings.setCredentialsProvider(FixedCredentialsProvider.create(credentials));
+    }
+    return BigQueryWriteClient.create(settings.build());
+  }
+
+  @VisibleForTesting
+  BigQuery createBigQuery(Configuration configuration) throws IOException {
+    return BigQueryOutputFormat.getBigQuery(configuration);
+  }
+
+  private static Schema getOutputSchema(Configuration configuration) throws IOException {
+    String schemaJson = configuration.get(BigQueryConstants.CDAP_BQ_SINK_OUTPUT_SCHEMA);
+    if (schemaJson == null) {
+      throw new IOException("An output schema is required to write with the BigQuery Storage Write API.");
+    }
+    return Schema.parseJson(schemaJson);
+  }
+
+  private static Descriptors.Descriptor getDescriptor(Schema schema) throws IOException {
+    try {
+      return BQTableSchemaToProtoDescriptor.convertBQTableSchemaToProtoDescriptor(
+        BQV2ToBQStorageConverter.ConvertTableSchema(BigQuerySinkUtils.convertCdapSchemaToBigQuerySchema(schema)));
+    } catch (Descriptors.DescriptorValidationException e) {
+      throw new IOException("Failed to create the write stream schema from the output schema.", e);
+    }
+  }
+
+  private static TableId getDestinationTable(Configuration configuration) throws IOException {
+    return TableId.of(BigQueryOutputConfiguration.getProjectId(configuration),
+                      ConfigurationUtil.getMandatoryConfig(configuration, BigQueryConfiguration.OUTPUT_DATASET_ID_KEY),
+                      ConfigurationUtil.getMandatoryConfig(configuration, BigQueryConfiguration.OUTPUT_TABLE_ID_KEY));
+  }
+
+  /**
+   * Returns the table the streams are written to. Only appends go directly to the destination table, every other
+   * operation writes to a temporary table that is named after the job, so that all tasks agree on it.
+   */
+  private static TableId getTargetTable(Configuration configuration) throws IOException {
+    TableId destination = getDestinationTable(configuration);
+    if (!requiresTemporaryTable(configuration)) {
+      return destination;
+    }
+    String jobId = ConfigurationUtil.getMandatoryConfig(configuration, BigQueryConstants.CONFIG_JOB_ID);
+    return TableId.of(destination.getProject(), destination.getDataset(),
+                      destination.getTable() + "_" + jobId.replaceAll("-", "_"));
+  }
+
+  private static boolean requiresTemporaryTable(Configuration configuration) {
+    Operation operation = getOperation(configuration);
+    boolean tableExists = configuration.getBoolean(BigQueryConstants.CONFIG_DESTINATION_TABLE_EXISTS, false);
+    if (operation == Operation.INSERT) {
+      // Truncating an existing table must happen atomically with the write, which is done with a copy job
+      return tableExists && isTruncate(configuration);
+    }
+    // If the table does not exist then an UPSERT operation becomes an INSERT operation
+    return operation == Operation.UPDATE || tableExists;
+  }
+
+  private static Operation getOperation(Configuration configuration) {
+    return Operation.valueOf(configuration.get(BigQueryConstants.CONFIG_OPERATION, Operation.INSERT.name()));
+  }
+
+  private static boolean isTruncate(Configuration configuration) {
+    return JobInfo.WriteDisposition.WRITE_TRUNCATE.name()
+      .equals(BigQueryOutputConfiguration.getWriteDisposition(configuration));
+  }
+
+  /**
+   * Returns the temporary path configured for the output. Only the stream markers are written there.
+   */
+  private static Path getOutputPath(Configuration configuration) throws IOException {
+    return new Path(ConfigurationUtil.getMandatoryConfig(configuration, FileOutputFormat.OUTDIR));
+  }
+
+  private static Path getStreamsPath(Configuration configuration) throws IOException {
+    return new Path(getOutputPath(configuration), STREAMS_DIR);
+  }
+
+  private static Path getAttemptMarkerPath(TaskAttemptContext context) throws IOException {
+    return new Path(new Path(getStreamsPath(context.getConfiguration()), TEMPORARY_DIR),
+                    context.getTaskAttemptID().toString());
+  }
+
+  private static Path getTaskMarkerPath(TaskAttemptContext context) throws IOException {
+    return new Path(getStreamsPath(context.getConfiguration()), context.getTaskAttemptID().getTaskID().toString());
+  }
+
+  /**
+   * Output committer that creates the target table, hands the finalized streams of the tasks over to the job and
+   * commits all of them when the job is committed.
+   */
+  public static class BigQueryStorageWriteOutputCommitter extends OutputCommitter {
+    private final BigQueryStorageWriteOutputFormat outputFormat;
+
+    BigQueryStorageWriteOutputCommitter(BigQueryStorageWriteOutputFormat outputFormat) {
+      this.outputFormat = outputFormat;
+    }
+
+    @Override
+    public void setupJob(JobContext jobContext) throws IOException {
+      Configuration conf = jobContext.getConfiguration();
+      BigQuery bigQuery = outputFormat.createBigQuery(conf);
+      com.google.cloud.bigquery.Schema schema =
+        BigQuerySinkUtils.convertCdapSchemaToBigQuerySchema(getOutputSchema(conf));
+      TableId destination = getDestinationTable(conf);
+      TableId target = getTargetTable(conf);
+      EncryptionConfiguration encryption = getEncryptionConfiguration(conf);
+
+      if (!target.equals(destination)) {
+        // The temporary table is removed by the committer, the expiration only guards against abandoned runs
+        TableInfo.Builder table = TableInfo.newBuilder(target, StandardTableDefinition.of(schema))
+          .setExpirationTime(System.currentTimeMillis() + TimeUnit.DAYS.toMillis(1));
+        if (encryption != null) {
+          table.setEncryptionConfiguration(encryption);
+        }
+        bigQuery.create(table.build());
+        LOG.debug("Created temporary table '{}'.", target);
+        return;
+      }
+
+      Table existing = bigQuery.getTable(destination);
+      if (existing == null) {
+        bigQuery.create(createDestinationTable(conf, destination, schema, encryption));
+        LOG.debug("Created destination table '{}'.", destination);
+      } else if (conf.getBoolean(BigQueryConstants.CONFIG_ALLOW_SCHEMA_RELAXATION, false)) {
+        BigQuerySinkUtils.relaxTableSchema(bigQuery, existing, schema.getFields(),
+                                           existing.getDefinition().getSchema().getFields());
+      }
+    }
+
+    @Override
+    public void setupTask(TaskAttemptContext taskAttemptContext) {
+      // no-op, the stream is created with the first record
+    }
+
+    @Override
+    public boolean needsTaskCommit(TaskAttemptContext taskAttemptContext) throws IOException {
+      Path attemptMarker = getAttemptMarkerPath(taskAttemptContext);
+      return attemptMarker.getFileSystem(taskAttemptContext.getConfiguration()).exists(attemptMarker);
+    }
+
+    @Override
+    public void commitTask(TaskAttemptContext taskAttemptContext) throws IOException {
+      Path attemptMarker = getAttemptMarkerPath(taskAttemptContext);
+      Path taskMarker = getTaskMarkerPath(taskAttemptContext);
+      FileSystem fs = attemptMarker.getFileSystem(taskAttemptContext.getConfiguration());
+      if (!fs.exists(attemptMarker)) {
+        return;
+      }
+      // A previous attempt of the same task may have been committed before the task was retried
+      fs.delete(taskMarker, false);
+      if (!fs.rename(attemptMarker, taskMarker)) {
+        throw new IOException(String.format("Failed to commit the write stream of task attempt '%s'.",
+                                            taskAttemptContext.getTaskAttemptID()));
+      }
+    }
+
+    @Override
+    public void abortTask(TaskAttemptContext taskAttemptContext) throws IOException {
+      // Streams that are never committed are discarded by BigQuery
+      Path attemptMarker = getAttemptMarkerPath(taskAttemptContext);
+      attemptMarker.getFileSystem(taskAttemptContext.getConfiguration()).delete(attemptMarker, false);
+    }
+
+    @Override
+    public void commitJob(JobContext jobContext) throws IOException {
+      Configuration conf = jobContext.getConfiguration();
+      TableId destination = getDestinationTable(conf);
+      TableId target = getTargetTable(conf);
+
+      List<String> streams = getCommittedStreams(conf);
+      if (!streams.isEmpty()) {
+        commitStreams(conf, target, streams);
+      }
+
+      try {
+        if (!target.equals(destination)) {
+          BigQuery bigQuery = outputFormat.createBigQuery(conf);
+          if (getOperation(conf) == Operation.INSERT) {
+            copyToDestination(bigQuery, conf, target, destination);
+          } else {
+            mergeIntoDestination(bigQuery, conf, target, destination);
+          }
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IOException("Interrupted while writing to BigQuery table " + destination, e);
+      } finally {
+        cleanup(conf);
+      }
+    }
+
+    @Override
+    public void abortJob(JobContext jobContext, JobStatus.State state) throws IOException {
+      cleanup(jobContext.getConfiguration());
+    }
+
+    private void commitStreams(Configuration conf, TableId table, List<String> streams) throws IOException {
+      String parent = TableName.of(table.getProject(), table.getDataset(), table.getTable()).toString();
+      BatchCommitWriteStreamsResponse response;
+      try (BigQueryWriteClient client = outputFormat.createWriteClient(conf)) {
+        response = client.batchCommitWriteStreams(BatchCommitWriteStreamsRequest.newBuilder()
+                                                    .setParent(parent)
+                                                    .addAllWriteStreams(streams)
+                                                    .build());
+      }
+      if (!response.hasCommitTime()) {
+        List<StorageError> errors = response.getStreamErrorsList();
+        throw new IOException(String.format(
+          "Failed to commit %d write streams to table '%s'. There are total %d error(s), first error: '%s'.",
+          streams.size(), parent, errors.size(), errors.isEmpty() ? "unknown" : errors.get(0).getErrorMessage()));
+      }
+      LOG.info("Committed {} write streams to table '{}'.", streams.size(), parent);
+    }
+
+    private void copyToDestination(BigQuery bigQuery, Configuration conf, TableId source, TableId destination)
+      throws IOException, InterruptedException {
+      // Descriptions are not carried over by the copy, so they are restored once the table was replaced
+      Map<String, String> fieldDescriptions = new HashMap<>();
+      Table existing = bigQuery.getTable(destination);
+      if (existing != null) {
+        for (Field field : existing.getDefinition().getSchema().getFields()) {
+          if (!Strings.isNullOrEmpty(field.getDescription())) {
+            fieldDescriptions.put(field.getName(), field.getDescription());
+          }
+        }
+      }
+
+      CopyJobConfiguration.Builder copyConfig = CopyJobConfiguration.newBuilder(destination, source)
+        .setWriteDisposition(JobInfo.WriteDisposition.WRITE_TRUNCATE);
+      EncryptionConfiguration encryption = getEncryptionConfiguration(conf);
+      if (encryption != null) {
+        copyConfig.setDestinationEncryptionConfiguration(encryption);
+      }
+      runJob(bigQuery, JobInfo.newBuilder(copyConfig.build()).setJobId(getJobId(conf)).build());
+
+      if (!fieldDescriptions.isEmpty()) {
+        Table table = bigQuery.getTable(destination);
+        List<Field> fields = table.getDefinition().getSchema().getFields().stream()
+          .map(field -> fieldDescriptions.containsKey(field.getName()) ?
+            field.toBuilder().setDescription(fieldDescriptions.get(field.getName())).build() : field)
+          .collect(Collectors.toList());
+        bigQuery.update(table.toBuilder().setDefinition(
+          table.getDefinition().toBuilder().setSchema(com.google.cloud.bigquery.Schema.of(fields)).build()).build());
+      }
+    }
+
+    private void mergeIntoDestination(BigQuery bigQuery, Configuration conf, TableId source, TableId destination)
+      throws IOException, InterruptedException {
+      Operation operation = getOperation(conf);
+      List<String> tableFieldsList = getList(conf, BigQueryConstants.CONFIG_TABLE_FIELDS);
+      Table destinationTable = bigQuery.getTable(destination);
+      if (conf.getBoolean(BigQueryConstants.CONFIG_ALLOW_SCHEMA_RELAXATION, false) && destinationTable != null) {
+        Table sourceTable = Objects.requireNonNull(bigQuery.getTable(source));
+        tableFieldsList = sourceTable.getDefinition().getSchema().getFields().stream()
+          .map(Field::getName).collect(Collectors.toList());
+        BigQuerySinkUtils.relaxTableSchema(bigQuery, sourceTable, destinationTable);
+      }
+      if (destinationTable == null && operation == Operation.UPDATE) {
+        // Same as for the load based output, updating a table that does not exist does not fail the pipeline
+        LOG.warn("BigQuery Table {} does not exist. The operation update will not write any records to the table.",
+                 destination);
+        return;
+      }
+
+      String query = BigQuerySinkUtils.generateUpdateUpsertQuery(operation, source, destination, tableFieldsList,
+                                                                 getList(conf, BigQueryConstants.CONFIG_TABLE_KEY),
+                                                                 getList(conf, BigQueryConstants.CONFIG_DEDUPE_BY),
+                                                                 conf.get(BigQueryConstants.CONFIG_PARTITION_FILTER));
+      LOG.info("Update/Upsert query: " + query);
+      QueryJobConfiguration.Builder queryConfig = QueryJobConfiguration.newBuilder(query).setUseLegacySql(false);
+      EncryptionConfiguration encryption = getEncryptionConfiguration(conf);
+      if (encryption != null) {
+        queryConfig.setDestinationEncryptionConfiguration(encryption);
+      }
+      runJob(bigQuery, JobInfo.newBuilder(queryConfig.build()).setJobId(getJobId(conf)).build());
+    }
+
+    private static void runJob(BigQuery bigQuery, JobInfo jobInfo) throws IOException, InterruptedException {
+      Job job;
+      try {
+        job = new BigQueryJobWaiter(bigQuery).await(bigQuery.create(jobInfo).getJobId(), null);
+      } catch (BigQueryException e) {
+        throw new IOException(String.format("Failed to run BigQuery job '%s': %s",
+                                            jobInfo.getJobId().getJob(), e.getMessage()), e);
+      }
+      if (job == null) {
+        throw new IOException(String.format("BigQuery job '%s' no longer exists.", jobInfo.getJobId().getJob()));
+      }
+      if (job.getStatus().getError() != null) {
+        throw new IOException(String.format("Error occurred while writing data to BigQuery '%s'. Please look at " +
+                                              "BigQuery job logs of job %s for more information.",
+                                            job.getStatus().getError().getMessage(), job.getJobId().getJob()));
+      }
+    }
+
+    /**
+     * Uses the job id of the plugin, if set, so that the sink can emit the number of affected rows.
+     */
+    private static JobId getJobId(Configuration conf) {
+      String savedJobId = conf.get(BigQueryConstants.CONFIG_JOB_ID);
+      return Strings.isNullOrEmpty(savedJobId) ? JobId.of() : JobId.of(savedJobId);
+    }
+
+    private List<String> getCommittedStreams(Configuration conf) throws IOException {
+      Path streamsPath = getStreamsPath(conf);
+      FileSystem fs = streamsPath.getFileSystem(conf);
+      if (!fs.exists(streamsPath)) {
+        return new ArrayList<>();
+      }
+      List<String> streams = new ArrayList<>();
+      for (FileStatus status : fs.listStatus(streamsPath)) {
+        if (status.isFile()) {
+          streams.add(readMarker(fs, status.getPath()));
+        }
+      }
+      return streams;
+    }
+
+    private static String readMarker(FileSystem fs, Path path) throws IOException {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      try (InputStream in = fs.open(path)) {
+        IOUtils.copyBytes(in, bytes, 4096, false);
+      }
+      return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private void cleanup(Configuration conf) throws IOException {
+      TableId destination = getDestinationTable(conf);
+      TableId target = getTargetTable(conf);
+      if (!target.equals(destination)) {
+        outputFormat.createBigQuery(conf).delete(target);
+      }
+      Path outputPath = getOutputPath(conf);
+      outputPath.getFileSystem(conf).delete(outputPath, true);
+    }
+
+    private static TableInfo createDestinationTable(Configuration conf, TableId tableId,
+                                                    com.google.cloud.bigquery.Schema schema,
+                                                    @Nullable EncryptionConfiguration encryption) {
+      StandardTableDefinition.Builder definition = StandardTableDefinition.newBuilder().setSchema(schema);
+      PartitionType partitionType = conf.getEnum(BigQueryConstants.CONFIG_PARTITION_TYPE, PartitionType.NONE);
+      String partitionByField = conf.get(BigQueryConstants.CONFIG_PARTITION_BY_FIELD, null);
+      boolean requirePartitionFilter = conf.getBoolean(BigQueryConstants.CONFIG_REQUIRE_PARTITION_FILTER, false);
+      switch (partitionType) {
+        case TIME:
+          TimePartitioning.Builder timePartitioning = TimePartitioning.newBuilder(TimePartitioning.Type.DAY);
+          if (partitionByField != null) {
+            timePartitioning.setField(partitionByField);
+          }
+          definition.setTimePartitioning(timePartitioning.build());
+          break;
+        case INTEGER:
+          definition.setRangePartitioning(
+            RangePartitioning.newBuilder()
+              .setField(partitionByField)
+              .setRange(RangePartitioning.Range.newBuilder()
+                          .setStart(conf.getLong(BigQueryConstants.CONFIG_PARTITION_INTEGER_RANGE_START, 0))
+                          .setEnd(conf.getLong(BigQueryConstants.CONFIG_PARTITION_INTEGER_RANGE_END, 0))
+                          .setInterval(conf.getLong(BigQueryConstants.CONFIG_PARTITION_INTEGER_RANGE_INTERVAL, 0))
+                          .build())
+              .build());
+          break;
+        case NONE:
+          break;
+      }
+      List<String> clusteringOrder = getList(conf, BigQueryConstants.CONFIG_CLUSTERING_ORDER);
+      if (partitionType != PartitionType.NONE && !clusteringOrder.isEmpty()) {
+        definition.setClustering(Clustering.newBuilder().setFields(clusteringOrder).build());
+      }
+
+      TableInfo.Builder table = TableInfo.newBuilder(tableId, definition.build());
+      if (partitionType != PartitionType.NONE) {
+        table.setRequirePartitionFilter(requirePartitionFilter);
+      }
+      if (encryption != null) {
+        table.setEncryptionConfiguration(encryption);
+      }
+      return table.build();
+    }
+
+    @Nullable
+    private static EncryptionConfiguration getEncryptionConfiguration(Configuration conf) throws IOException {
+      String kmsKeyName = BigQueryOutputConfiguration.getKmsKeyName(conf);
+      return Strings.isNullOrEmpty(kmsKeyName) ? null :
+        EncryptionConfiguration.newBuilder().setKmsKeyName(kmsKeyName).build();
+    }
+
+    private static List<String> getList(Configuration conf, String key) {
+      String value = conf.get(key, null);
+      return Arrays.stream(value != null ? value.split(",") : new String[0]).map(String::trim)
+        .collect(Collectors.toList());
+    }
+  }
+}
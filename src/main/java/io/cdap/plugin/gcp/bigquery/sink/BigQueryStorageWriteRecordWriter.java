@@ -0,0 +1,171 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.gcp.bigquery.sink;
+
+import com.google.api.core.ApiFuture;
+import com.google.cloud.bigquery.storage.v1beta2.AppendRowsResponse;
+import com.google.cloud.bigquery.storage.v1beta2.BigQueryWriteClient;
+import com.google.cloud.bigquery.storage.v1beta2.ProtoRows;
+import com.google.cloud.bigquery.storage.v1beta2.ProtoSchema;
+import com.google.cloud.bigquery.storage.v1beta2.StreamWriterV2;
+import com.google.cloud.bigquery.storage.v1beta2.WriteStream;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.DynamicMessage;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.mapreduce.RecordWriter;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Record writer that appends proto rows to a pending stream of the BigQuery Storage Write API.
+ *
+ * The stream is created with the first record and finalized when the writer is closed. The name of the finalized
+ * stream is written to the marker path, so that the output committer can commit all streams of the job at once.
+ */
+public class BigQueryStorageWriteRecordWriter extends RecordWriter<DynamicMessage, NullWritable> {
+  private static final Logger LOG = LoggerFactory.getLogger(BigQueryStorageWriteRecordWriter.class);
+  // Leave room for the request envelope and the writer schema sent with the first request.
+  private static final long MAX_REQUEST_BYTES = StreamWriterV2.getApiMaxRequestBytes() * 9 / 10;
+
+  private final BigQueryWriteClient client;
+  private final String tableName;
+  private final ProtoSchema protoSchema;
+  private final Path markerPath;
+  private final Configuration configuration;
+  private final Deque<ApiFuture<AppendRowsResponse>> inflightAppends;
+
+  private StreamWriterV2 streamWriter;
+  private String streamName;
+  private ProtoRows.Builder rows;
+  private long rowsBytes;
+  private long offset;
+
+  /**
+   * @param client write client, which is closed along with this writer
+   * @param tableName table to write to, in the form projects/{project}/datasets/{dataset}/tables/{table}
+   * @param protoSchema proto schema of the rows
+   * @param markerPath path of the file that receives the name of the finalized stream
+   * @param configuration Hadoop configuration used to access the marker path
+   */
+  public BigQueryStorageWriteRecordWriter(BigQueryWriteClient client, String tableName, ProtoSchema protoSchema,
+                                          Path markerPath, Configuration configuration) {
+    this.client = client;
+    this.tableName = tableName;
+    this.protoSchema = protoSchema;
+    this.markerPath = markerPath;
+    this.configuration = configuration;
+    this.inflightAppends = new ArrayDeque<>();
+    this.rows = ProtoRows.newBuilder();
+  }
+
+  @Override
+  public void write(DynamicMessage message, NullWritable nullWritable) throws IOException {
+    if (streamWriter == null) {
+      openStream();
+    }
+    ByteString row = message.toByteString();
+    if (rows.getSerializedRowsCount() > 0 && rowsBytes + row.size() > MAX_REQUEST_BYTES) {
+      append();
+    }
+    rows.addSerializedRows(row);
+    rowsBytes += row.size();
+  }
+
+  @Override
+  public void close(TaskAttemptContext taskAttemptContext) throws IOException {
+    try {
+      if (streamWriter == null) {
+        // Nothing was written by this task, so there is no stream to commit.
+        return;
+      }
+      if (rows.getSerializedRowsCount() > 0) {
+        append();
+      }
+      while (!inflightAppends.isEmpty()) {
+        checkResponse(inflightAppends.poll());
+      }
+      streamWriter.close();
+      streamWriter = null;
+      long rowCount = client.finalizeWriteStream(streamName).getRowCount();
+      LOG.debug("Finalized write stream '{}' with {} rows.", streamName, rowCount);
+      writeMarker();
+    } finally {
+      if (streamWriter != null) {
+        streamWriter.close();
+      }
+      client.close();
+    }
+  }
+
+  private void openStream() throws IOException {
+    WriteStream stream = client.createWriteStream(
+      tableName, WriteStream.newBuilder().setType(WriteStream.Type.PENDING).build());
+    streamName = stream.getName();
+    streamWriter = StreamWriterV2.newBuilder(streamName, client)
+      .setWriterSchema(protoSchema)
+      .build();
+    LOG.debug("Created pending write stream '{}' for table '{}'.", streamName, tableName);
+  }
+
+  private void append() throws IOException {
+    int rowCount = rows.getSerializedRowsCount();
+    // The stream writer blocks when too many requests are in flight, which bounds the memory used by this writer.
+    inflightAppends.add(streamWriter.append(rows.build(), offset));
+    offset += rowCount;
+    rows = ProtoRows.newBuilder();
+    rowsBytes = 0;
+    // Surface failures early instead of waiting for the writer to be closed.
+    while (!inflightAppends.isEmpty() && inflightAppends.peek().isDone()) {
+      checkResponse(inflightAppends.poll());
+    }
+  }
+
+  private void checkResponse(ApiFuture<AppendRowsResponse> future) throws IOException {
+    AppendRowsResponse response;
+    try {
+      response = future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException(String.format("Interrupted while writing to stream '%s'.", streamName), e);
+    } catch (ExecutionException e) {
+      throw new IOException(String.format("Failed to write rows to stream '%s': %s",
+                                          streamName, e.getCause().getMessage()), e.getCause());
+    }
+    if (response.hasError()) {
+      throw new IOException(String.format("Failed to write rows to stream '%s': %s",
+                                          streamName, response.getError().getMessage()));
+    }
+  }
+
+  private void writeMarker() throws IOException {
+    FileSystem fs = markerPath.getFileSystem(configuration);
+    try (FSDataOutputStream out = fs.create(markerPath, true)) {
+      out.write(streamName.getBytes(StandardCharsets.UTF_8));
+    }
+  }
+}
@@ -18,29 +18,61 @@ package io.cdap.plugin.gcp.bigquery.sink;
 
 import com.google.cloud.bigquery.DatasetId;
 import com.google.cloud.hadoop.io.bigquery.output.BigQueryTableFieldSchema;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.io.ByteStreams;
 import io.cdap.cdap.api.data.schema.Schema;
+import io.cdap.plugin.gcp.common.DelegateCommitOperations;
+import io.cdap.plugin.gcp.bigquery.util.BigQueryUtil;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.mapred.JobConf;
 import org.apache.hadoop.mapreduce.JobContext;
 import org.apache.hadoop.mapreduce.JobStatus;
 import org.apache.hadoop.mapreduce.OutputCommitter;
 import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.TaskAttemptID;
+import org.apache.hadoop.mapreduce.TaskID;
+import org.apache.hadoop.mapreduce.TaskType;
+import org.apache.hadoop.mapreduce.task.TaskAttemptContextImpl;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Semaphore;
 
 /**
  * Output Committer which creates and delegates operations to other Bigquery Output Committer instances.
  * <p>
  * Delegated instances are supplied along with a schema, which is used to configure the commit operation.
+ * <p>
+ * Tasks only commit their own output, and save the schema of every table they wrote to. The job commit then loads
+ * the output of all the tasks with a single load per table, the tables being committed concurrently. The load jobs
+ * of all the tables share the load job concurrency. The schemas that different tasks saved for a table are merged.
+ * Task commits and aborts also run on the tables concurrently. A job abort deletes the output staged by the tasks
+ * along with the schemas they saved.
  */
 public class DelegatingMultiSinkOutputCommitter extends OutputCommitter {
+  private static final String SCHEMA_PATH_FORMAT = BigQuerySinkUtils.GS_PATH_FORMAT + "/schemas";
+
   private final Map<String, OutputCommitter> committerMap;
   private final Map<String, Schema> schemaMap;
   private final String projectName;
   private final String datasetName;
   private final String bucketName;
   private final String bucketPathUniqueId;
+  // Guarded by this
+  private BigQueryMetadataCache metadataCache;
+  private Semaphore loadJobPermits;
 
   public DelegatingMultiSinkOutputCommitter(String projectName,
                                             String datasetName,
@@ -98,64 +130,219 @@ public class DelegatingMultiSinkOutputCommitter extends OutputCommitter {
 
   @Override
   public void commitTask(TaskAttemptContext taskAttemptContext) throws IOException {
-    for (String tableName : committerMap.keySet()) {
-      configureContext(taskAttemptContext, tableName);
+    DelegateCommitOperations.commit("commitTask", taskAttemptContext, committerMap, (tableName, committer) -> {
+      // Every table needs its own output configuration
+      TaskAttemptContext tableContext = new TaskAttemptContextImpl(
+        new JobConf(taskAttemptContext.getConfiguration()), taskAttemptContext.getTaskAttemptID());
+      configureContext(tableContext, tableName);
 
-      committerMap.get(tableName).commitTask(taskAttemptContext);
-    }
+      committer.commitTask(tableContext);
+      saveTableSchema(tableContext, tableName, schemaMap.get(tableName));
+    });
   }
 
   @Override
   public void commitJob(JobContext jobContext) throws IOException {
-    for (String tableName : committerMap.keySet()) {
-      configureContext(jobContext, tableName);
+    // The committer of the job didn't write any record, the tables are the ones saved by the tasks.
+    schemaMap.putAll(getSavedTableSchemas(jobContext));
+    if (schemaMap.isEmpty()) {
+      return;
+    }
 
-      committerMap.get(tableName).commitJob(jobContext);
+    // Table commits are BigQuery load jobs, which are limited by the load job concurrency rather than the committer
+    // threads
+    int concurrency = BigQueryUtil.getLoadJobConcurrency(jobContext.getConfiguration());
+    loadJobPermits = new Semaphore(concurrency);
+    DelegateCommitOperations.run("commitJob", jobContext, schemaMap, concurrency, true,
+                                 (tableName, schema) -> commitTable(jobContext, tableName));
+    deleteSavedTableSchemas(jobContext);
+  }
+
+  /**
+   * Loads the output of all the tasks for a table.
+   */
+  private void commitTable(JobContext jobContext, String tableName) throws IOException {
+    // Every table needs its own output configuration
+    TaskAttemptContext tableContext = new TaskAttemptContextImpl(
+      new Configuration(jobContext.getConfiguration()),
+      new TaskAttemptID(new TaskID(jobContext.getJobID(), TaskType.JOB_CLEANUP, 0), 0));
+    configureContext(tableContext, tableName);
+
+    OutputCommitter tableCommitter = createTableCommitter(tableName, tableContext);
+    if (tableCommitter instanceof BigQueryOutputFormat.BigQueryOutputCommitter) {
+      shareMetadataCache((BigQueryOutputFormat.BigQueryOutputCommitter) tableCommitter);
+      // Tables load their batches concurrently too, so the limit is shared rather than applied per table
+      ((BigQueryOutputFormat.BigQueryOutputCommitter) tableCommitter).setLoadJobPermits(loadJobPermits);
     }
+    tableCommitter.commitJob(tableContext);
   }
 
-  @Override
-  public void abortTask(TaskAttemptContext taskAttemptContext) throws IOException {
-    IOException ioe = null;
+  /**
+   * Makes the committers of all the tables use the same metadata cache, as the tables share their dataset.
+   */
+  private synchronized void shareMetadataCache(BigQueryOutputFormat.BigQueryOutputCommitter tableCommitter) {
+    if (metadataCache == null) {
+      metadataCache = tableCommitter.getMetadataCache();
+    } else {
+      tableCommitter.setMetadataCache(metadataCache);
+    }
+  }
 
-    for (OutputCommitter committer : committerMap.values()) {
-      try {
-        committer.abortTask(taskAttemptContext);
-      } catch (IOException e) {
-        if (ioe == null) {
-          ioe = e;
-        } else {
-          ioe.addSuppressed(e);
+  @VisibleForTesting
+  OutputCommitter createTableCommitter(String tableName, TaskAttemptContext tableContext) throws IOException {
+    return new BigQueryOutputFormat().getOutputCommitter(tableContext);
+  }
+
+  /**
+   * Saves the schema of a table the task wrote to, so that the job commit knows which tables to load.
+   */
+  @VisibleForTesting
+  void saveTableSchema(TaskAttemptContext taskAttemptContext, String tableName, Schema schema) throws IOException {
+    Configuration conf = taskAttemptContext.getConfiguration();
+    // One file per task, so that tasks don't write the same object concurrently
+    Path schemaPath = new Path(new Path(getSchemaDirectory(), tableName),
+                               taskAttemptContext.getTaskAttemptID().getTaskID().toString());
+    try (FSDataOutputStream out = schemaPath.getFileSystem(conf).create(schemaPath, true)) {
+      out.write(schema.toString().getBytes(StandardCharsets.UTF_8));
+    }
+  }
+
+  /**
+   * Returns the schemas saved by the tasks, by table. The schemas saved for a table by different tasks are merged,
+   * see {@link #mergeTableSchemas}.
+   */
+  @VisibleForTesting
+  Map<String, Schema> getSavedTableSchemas(JobContext jobContext) throws IOException {
+    Path schemaDirectory = getSchemaDirectory();
+    FileSystem fs = schemaDirectory.getFileSystem(jobContext.getConfiguration());
+    Map<String, Schema> tableSchemas = new HashMap<>();
+    for (String tableName : getSavedTableNames(jobContext)) {
+      // Schemas are merged in task order, so that the table schema doesn't depend on the listing order
+      FileStatus[] taskSchemas = fs.listStatus(new Path(schemaDirectory, tableName));
+      Arrays.sort(taskSchemas, Comparator.comparing(taskSchema -> taskSchema.getPath().getName()));
+      List<Schema> schemas = new ArrayList<>();
+      for (FileStatus taskSchema : taskSchemas) {
+        try (FSDataInputStream in = fs.open(taskSchema.getPath())) {
+          schemas.add(Schema.parseJson(new String(ByteStreams.toByteArray(in), StandardCharsets.UTF_8)));
         }
       }
+      if (!schemas.isEmpty()) {
+        tableSchemas.put(tableName, mergeTableSchemas(tableName, schemas));
+      }
     }
+    return tableSchemas;
+  }
 
-    if (ioe != null) {
-      throw ioe;
+  /**
+   * Returns the tables the tasks saved a schema for.
+   */
+  @VisibleForTesting
+  List<String> getSavedTableNames(JobContext jobContext) throws IOException {
+    Path schemaDirectory = getSchemaDirectory();
+    FileSystem fs = schemaDirectory.getFileSystem(jobContext.getConfiguration());
+    List<String> tableNames = new ArrayList<>();
+    if (!fs.exists(schemaDirectory)) {
+      return tableNames;
+    }
+    for (FileStatus tableDirectory : fs.listStatus(schemaDirectory)) {
+      tableNames.add(tableDirectory.getPath().getName());
     }
+    return tableNames;
   }
 
-  @Override
-  public void abortJob(JobContext jobContext, JobStatus.State state) throws IOException {
-    IOException ioe = null;
+  /**
+   * Merges the schemas that tasks saved for a table, given in task order.
+   * <p>
+   * The merged schema has the fields of all the schemas, in the order they first appear. A field is nullable if it
+   * is nullable in any of the schemas, or if any of the schemas doesn't have it, as the records of those tasks don't
+   * have a value for it. The record name is the one of the first schema.
+   *
+   * @throws IOException if a field has different types in different schemas
+   */
+  @VisibleForTesting
+  static Schema mergeTableSchemas(String tableName, List<Schema> schemas) throws IOException {
+    Schema first = schemas.get(0);
+    if (schemas.size() == 1) {
+      return first;
+    }
 
-    for (OutputCommitter committer : committerMap.values()) {
-      try {
-        committer.abortJob(jobContext, state);
-      } catch (IOException e) {
-        if (ioe == null) {
-          ioe = e;
+    Map<String, Schema> fieldTypes = new LinkedHashMap<>();
+    Map<String, Integer> fieldCounts = new HashMap<>();
+    for (Schema schema : schemas) {
+      for (Schema.Field field : schema.getFields()) {
+        Schema fieldType = field.getSchema().isNullable() ? field.getSchema().getNonNullable() : field.getSchema();
+        Schema existingType = fieldTypes.get(field.getName());
+        if (existingType == null) {
+          fieldTypes.put(field.getName(), field.getSchema());
         } else {
-          ioe.addSuppressed(e);
+          Schema existingNonNullable = existingType.isNullable() ? existingType.getNonNullable() : existingType;
+          if (!existingNonNullable.equals(fieldType)) {
+            throw new IOException(String.format("Field '%s' of table '%s' was written with different types '%s' " +
+                                                  "and '%s'.", field.getName(), tableName,
+                                                existingNonNullable.getDisplayName(), fieldType.getDisplayName()));
+          }
+          if (field.getSchema().isNullable() && !existingType.isNullable()) {
+            fieldTypes.put(field.getName(), field.getSchema());
+          }
         }
+        fieldCounts.merge(field.getName(), 1, Integer::sum);
       }
     }
 
-    if (ioe != null) {
-      throw ioe;
+    List<Schema.Field> fields = new ArrayList<>();
+    for (Map.Entry<String, Schema> fieldType : fieldTypes.entrySet()) {
+      Schema type = fieldType.getValue();
+      if (!type.isNullable() && fieldCounts.get(fieldType.getKey()) < schemas.size()) {
+        type = Schema.nullableOf(type);
+      }
+      fields.add(Schema.Field.of(fieldType.getKey(), type));
+    }
+    return Schema.recordOf(first.getRecordName(), fields);
+  }
+
+  @VisibleForTesting
+  void deleteSavedTableSchemas(JobContext jobContext) throws IOException {
+    Path schemaDirectory = getSchemaDirectory();
+    schemaDirectory.getFileSystem(jobContext.getConfiguration()).delete(schemaDirectory, true);
+  }
+
+  @VisibleForTesting
+  Path getSchemaDirectory() {
+    return new Path(String.format(SCHEMA_PATH_FORMAT, bucketName, bucketPathUniqueId));
+  }
+
+  @Override
+  public void abortTask(TaskAttemptContext taskAttemptContext) throws IOException {
+    DelegateCommitOperations.abort("abortTask", taskAttemptContext, committerMap,
+                                   (tableName, committer) -> committer.abortTask(taskAttemptContext));
+  }
+
+  @Override
+  public void abortJob(JobContext jobContext, JobStatus.State state) throws IOException {
+    try {
+      DelegateCommitOperations.abort("abortJob", jobContext, committerMap,
+                                     (tableName, committer) -> committer.abortJob(jobContext, state));
+    } finally {
+      // As for the job commit, the committer of the job didn't write any record, the tables are the ones saved by
+      // the tasks.
+      Map<String, Path> stagedPaths = new HashMap<>();
+      for (String tableName : getSavedTableNames(jobContext)) {
+        stagedPaths.put(tableName, getStagedPath(tableName));
+      }
+      DelegateCommitOperations.abort("abortJob", jobContext, stagedPaths, (tableName, stagedPath) ->
+        stagedPath.getFileSystem(jobContext.getConfiguration()).delete(stagedPath, true));
+      deleteSavedTableSchemas(jobContext);
     }
   }
 
+  /**
+   * Returns the path the tasks staged the output of a table in, before it is loaded by the job commit.
+   */
+  @VisibleForTesting
+  Path getStagedPath(String tableName) {
+    return new Path(BigQuerySinkUtils.getTemporaryGcsPath(bucketName, bucketPathUniqueId, tableName));
+  }
+
   public void configureContext(JobContext context, String tableName) throws IOException {
     Schema schema = schemaMap.get(tableName);
     List<BigQueryTableFieldSchema> fields = BigQuerySinkUtils.getBigQueryTableFieldsFromSchema(schema);
@@ -18,8 +18,11 @@ package io.cdap.plugin.gcp.bigquery.sink;
 
 import com.google.cloud.bigquery.DatasetId;
 import com.google.cloud.hadoop.io.bigquery.output.BigQueryTableFieldSchema;
+import com.google.common.annotations.VisibleForTesting;
 import io.cdap.cdap.api.data.format.StructuredRecord;
 import io.cdap.cdap.api.data.schema.Schema;
+import io.cdap.plugin.gcp.bigquery.util.BigQueryConstants;
+import io.cdap.plugin.gcp.gcs.sink.GCSBatchSink;
 import org.apache.hadoop.io.NullWritable;
 import org.apache.hadoop.mapreduce.OutputCommitter;
 import org.apache.hadoop.mapreduce.RecordWriter;
@@ -27,6 +30,8 @@ import org.apache.hadoop.mapreduce.TaskAttemptContext;
 
 import java.io.IOException;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -34,15 +39,23 @@ import java.util.Map;
  * Record Writer which delegates writes to other Record Writers based on the record's Table name.
  * <p>
  * This Record Writer will initialize record writes and Output Committers as needed.
+ * <p>
+ * As every open Record Writer buffers data for its upload to GCS, the number of open Record Writers is limited.
+ * When the limit is reached, the least recently used Record Writer is closed. If more records are written to its
+ * table, a new Record Writer is opened on a new part file, all the part files being loaded when the job is committed.
  */
 public class DelegatingMultiSinkRecordWriter extends RecordWriter<StructuredRecord, NullWritable> {
-
   private final TaskAttemptContext initialContext;
   private final String tableNameField;
   private final String bucketName;
   private final String bucketPathUniqueId;
   private final DatasetId datasetId;
+  private final int maxOpenWriters;
+  // Open Record Writers, in least recently used order
   private final Map<String, RecordWriter<StructuredRecord, NullWritable>> delegateMap;
+  // Schema and number of part files of all the tables written by this task, including the closed ones
+  private final Map<String, Schema> tableSchemas;
+  private final Map<String, Integer> tableParts;
   private final DelegatingMultiSinkOutputCommitter delegatingOutputCommitter;
 
   public DelegatingMultiSinkRecordWriter(TaskAttemptContext initialContext,
@@ -56,7 +69,11 @@ public class DelegatingMultiSinkRecordWriter extends RecordWriter<StructuredReco
     this.bucketName = bucketName;
     this.bucketPathUniqueId = bucketPathUniqueId;
     this.datasetId = datasetId;
-    this.delegateMap = new HashMap<>();
+    this.maxOpenWriters = initialContext.getConfiguration().getInt(
+      BigQueryConstants.CONFIG_MULTI_SINK_MAX_OPEN_WRITERS, BigQueryConstants.DEFAULT_MULTI_SINK_MAX_OPEN_WRITERS);
+    this.delegateMap = new LinkedHashMap<>(16, 0.75f, true);
+    this.tableSchemas = new HashMap<>();
+    this.tableParts = new HashMap<>();
     this.delegatingOutputCommitter = delegatingMultiSinkOutputCommitter;
   }
 
@@ -64,11 +81,10 @@ public class DelegatingMultiSinkRecordWriter extends RecordWriter<StructuredReco
   public void write(StructuredRecord key, NullWritable value) throws IOException, InterruptedException {
     String tableName = key.get(tableNameField);
 
-    RecordWriter<StructuredRecord, NullWritable> delegate;
+    // Getting the delegate marks it as the most recently used one
+    RecordWriter<StructuredRecord, NullWritable> delegate = delegateMap.get(tableName);
 
-    if (delegateMap.containsKey(tableName)) {
-      delegate = delegateMap.get(tableName);
-    } else {
+    if (delegate == null) {
       delegate = getRecordWriterDelegate(tableName, key.getSchema());
     }
 
@@ -82,17 +98,31 @@ public class DelegatingMultiSinkRecordWriter extends RecordWriter<StructuredReco
     }
 
     // The task attempt context at this stage doesn't have all of the configuration properties we need to properly
-    // execute the commit job step. For this reason, we use the original context instance that was used when
-    // creating this record writer.
+    // execute the commit task step. For this reason, we use the original context instance that was used when
+    // creating this record writer. Tables are loaded once for all the tasks when the job is committed.
     delegatingOutputCommitter.commitTask(initialContext);
-    delegatingOutputCommitter.commitJob(initialContext);
   }
 
   /**
    * Gets a new Record Writer Delegate instance for the specified table name and record schema.
+   * <p>
+   * If the table was already written to by this task, the new Record Writer writes to a new part file with the
+   * schema of the first record of the table.
    */
   public RecordWriter<StructuredRecord, NullWritable> getRecordWriterDelegate(String tableName, Schema schema)
     throws IOException, InterruptedException {
+    while (delegateMap.size() >= maxOpenWriters) {
+      closeLeastRecentlyUsedDelegate();
+    }
+
+    boolean newTable = !tableSchemas.containsKey(tableName);
+    if (newTable) {
+      tableSchemas.put(tableName, schema);
+    } else {
+      schema = tableSchemas.get(tableName);
+    }
+    int part = tableParts.merge(tableName, 1, Integer::sum) - 1;
+
     // Configure output.
     List<BigQueryTableFieldSchema> fields = BigQuerySinkUtils.getBigQueryTableFieldsFromSchema(schema);
 
@@ -103,12 +133,18 @@ public class DelegatingMultiSinkRecordWriter extends RecordWriter<StructuredReco
                                                tableName,
                                                gcsPath,
                                                fields);
+    // Every Record Writer of a table writes its own part file in the task output
+    String partName = String.format("part-%d", part);
+    initialContext.getConfiguration().set(GCSBatchSink.AVRO_NAMED_OUTPUT, partName);
+    initialContext.getConfiguration().set(GCSBatchSink.COMMON_NAMED_OUTPUT, partName);
 
-    BigQueryOutputFormat bqOutputFormat = new BigQueryOutputFormat();
+    BigQueryOutputFormat bqOutputFormat = createOutputFormat();
 
-    // Get output committer instance for the current table and add it to the delegating Output Committer.
-    OutputCommitter bqOutputCommitter = bqOutputFormat.getOutputCommitter(initialContext);
-    delegatingOutputCommitter.addCommitterAndSchema(bqOutputCommitter, tableName, schema, initialContext);
+    if (newTable) {
+      // Get output committer instance for the current table and add it to the delegating Output Committer.
+      OutputCommitter bqOutputCommitter = bqOutputFormat.getOutputCommitter(initialContext);
+      delegatingOutputCommitter.addCommitterAndSchema(bqOutputCommitter, tableName, schema, initialContext);
+    }
 
     // Get record writer instance and add it to the delegate map.
     RecordWriter<StructuredRecord, NullWritable> delegate = bqOutputFormat.getRecordWriter(initialContext, schema);
@@ -116,4 +152,17 @@ public class DelegatingMultiSinkRecordWriter extends RecordWriter<StructuredReco
 
     return delegate;
   }
+
+  @VisibleForTesting
+  BigQueryOutputFormat createOutputFormat() {
+    return new BigQueryOutputFormat();
+  }
+
+  private void closeLeastRecentlyUsedDelegate() throws IOException, InterruptedException {
+    Iterator<RecordWriter<StructuredRecord, NullWritable>> iterator = delegateMap.values().iterator();
+    RecordWriter<StructuredRecord, NullWritable> delegate = iterator.next();
+    iterator.remove();
+    // Closing the Record Writer completes its part file, which is committed along with the task
+    delegate.close(initialContext);
+  }
 }
@@ -75,12 +75,23 @@ public class BigQueryAvroToStructuredTransformer extends RecordConverter<Generic
       if (logicalType != null) {
         switch (logicalType) {
           case DATE:
+            // the Storage Read API encodes dates as days since epoch
+            if (field instanceof Integer) {
+              return field;
+            }
             // date will be in yyyy-mm-dd format
             return Math.toIntExact(LocalDate.parse(field.toString()).toEpochDay());
           case TIME_MILLIS:
+            // the Storage Read API encodes times as microseconds since midnight
+            if (field instanceof Long) {
+              return Math.toIntExact(TimeUnit.MICROSECONDS.toMillis((Long) field));
+            }
             // time will be in hh:mm:ss format
             return Math.toIntExact(TimeUnit.NANOSECONDS.toMillis(LocalTime.parse(field.toString()).toNanoOfDay()));
           case TIME_MICROS:
+            if (field instanceof Long) {
+              return field;
+            }
             // time will be in hh:mm:ss format
             return TimeUnit.NANOSECONDS.toMicros(LocalTime.parse(field.toString()).toNanoOfDay());
           case TIMESTAMP_MILLIS:
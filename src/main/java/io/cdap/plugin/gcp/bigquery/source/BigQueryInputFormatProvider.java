@@ -17,6 +17,7 @@
 package io.cdap.plugin.gcp.bigquery.source;
 
 import io.cdap.cdap.api.data.batch.InputFormatProvider;
+import io.cdap.plugin.gcp.bigquery.util.BigQueryConstants;
 import org.apache.hadoop.conf.Configuration;
 
 import java.util.HashMap;
@@ -46,6 +47,10 @@ public class BigQueryInputFormatProvider implements InputFormatProvider {
 
   @Override
   public String getInputFormatClassName() {
+    if (ReadMethod.STORAGE_READ_API.name().equals(
+      inputFormatConfiguration.get(BigQueryConstants.CONFIG_READ_METHOD))) {
+      return BigQueryStorageReadInputFormat.class.getName();
+    }
     return PartitionedBigQueryInputFormat.class.getName();
   }
 
@@ -25,7 +25,9 @@ import com.google.cloud.bigquery.FieldList;
 import com.google.cloud.bigquery.StandardTableDefinition;
 import com.google.cloud.bigquery.Table;
 import com.google.cloud.bigquery.TableDefinition.Type;
+import com.google.cloud.bigquery.TableId;
 import com.google.cloud.bigquery.TimePartitioning;
+import com.google.cloud.hadoop.io.bigquery.BigQueryConfiguration;
 import com.google.cloud.kms.v1.CryptoKeyName;
 import com.google.cloud.storage.Storage;
 import com.google.common.base.Strings;
@@ -59,6 +61,7 @@ import org.apache.hadoop.io.LongWritable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
 import java.time.DateTimeException;
 import java.time.LocalDate;
 import java.util.UUID;
@@ -83,6 +86,7 @@ public final class BigQuerySource extends BatchSource<LongWritable, GenericData.
   private final BigQueryAvroToStructuredTransformer transformer = new BigQueryAvroToStructuredTransformer();
   // UUID for the run. Will be used as bucket name if bucket is not provided.
   private String bucketPath;
+  private boolean useStorageReadApi;
 
   @Override
   public void configurePipeline(PipelineConfigurer configurer) {
@@ -130,8 +134,7 @@ public final class BigQuerySource extends BatchSource<LongWritable, GenericData.
     String serviceAccount = config.getServiceAccount();
     Credentials credentials = BigQuerySourceUtils.getCredentials(config.getConnection());
     BigQuery bigQuery = GCPUtils.getBigQuery(config.getProject(), credentials);
-    Dataset dataset = bigQuery.getDataset(DatasetId.of(config.getDatasetProject(), config.getDataset()));
-    Storage storage = GCPUtils.getStorage(config.getProject(), credentials);
+    Type sourceTableType = config.getSourceTableType();
 
     // Get Configuration for this run
     bucketPath = UUID.randomUUID().toString();
@@ -140,30 +143,43 @@ public final class BigQuerySource extends BatchSource<LongWritable, GenericData.
     configuration = BigQueryUtil.getBigQueryConfig(serviceAccount, config.getProject(), cmekKeyName,
                                                    config.getServiceAccountType());
 
-    // Configure GCS Bucket to use
-    String bucket = BigQuerySourceUtils.getOrCreateBucket(configuration,
-                                                          storage,
-                                                          config.getBucket(),
-                                                          dataset,
-                                                          bucketPath,
-                                                          cmekKeyName);
-
     // Configure Service account credentials
     BigQuerySourceUtils.configureServiceAccount(configuration, config.getConnection());
 
     // Configure BQ Source
     configureBigQuerySource();
 
-    // Configure BigQuery input format.
-    String temporaryGcsPath = BigQuerySourceUtils.getTemporaryGcsPath(bucket, bucketPath, bucketPath);
-    BigQuerySourceUtils.configureBigQueryInput(configuration,
-                                               DatasetId.of(config.getDatasetProject(), config.getDataset()),
-                                               config.getTable(),
-                                               temporaryGcsPath);
+    // Views have to be materialized by a query first, so they are always read through an export.
+    useStorageReadApi = config.getReadMethod() == ReadMethod.STORAGE_READ_API && sourceTableType == Type.TABLE;
+    if (config.getReadMethod() == ReadMethod.STORAGE_READ_API && !useStorageReadApi) {
+      LOG.info("Table '{}' is of type '{}', which is read with the export method.", config.getTable(),
+               sourceTableType);
+    }
+
+    if (useStorageReadApi) {
+      configureStorageReadApi(bigQuery, configuredSchema);
+    } else {
+      Dataset dataset = bigQuery.getDataset(DatasetId.of(config.getDatasetProject(), config.getDataset()));
+      Storage storage = GCPUtils.getStorage(config.getProject(), credentials);
+
+      // Configure GCS Bucket to use
+      String bucket = BigQuerySourceUtils.getOrCreateBucket(configuration,
+                                                            storage,
+                                                            config.getBucket(),
+                                                            dataset,
+                                                            bucketPath,
+                                                            cmekKeyName);
+
+      // Configure BigQuery input format.
+      String temporaryGcsPath = BigQuerySourceUtils.getTemporaryGcsPath(bucket, bucketPath, bucketPath);
+      BigQuerySourceUtils.configureBigQueryInput(configuration,
+                                                 DatasetId.of(config.getDatasetProject(), config.getDataset()),
+                                                 config.getTable(),
+                                                 temporaryGcsPath);
+    }
 
     // Both emitLineage and setOutputFormat internally try to create an external dataset if it does not already exists.
     // We call emitLineage before since it creates the dataset with schema.
-    Type sourceTableType = config.getSourceTableType();
     emitLineage(context, configuredSchema, sourceTableType, config.getTable());
     setInputFormat(context);
   }
@@ -191,6 +207,10 @@ public final class BigQuerySource extends BatchSource<LongWritable, GenericData.
 
   @Override
   public void onRunFinish(boolean succeeded, BatchSourceContext context) {
+    if (useStorageReadApi) {
+      // Nothing was staged in GCS or in temporary tables.
+      return;
+    }
     BigQuerySourceUtils.deleteGcsTemporaryDirectory(configuration, config.getBucket(), bucketPath);
     BigQuerySourceUtils.deleteBigQueryTemporaryTable(configuration, config);
   }
@@ -213,6 +233,23 @@ public final class BigQuerySource extends BatchSource<LongWritable, GenericData.
     }
   }
 
+  private void configureStorageReadApi(BigQuery bigQuery, Schema outputSchema) throws IOException {
+    BigQueryConfiguration.configureBigQueryInput(configuration, config.getDatasetProject(), config.getDataset(),
+                                                 config.getTable());
+    configuration.set(BigQueryConstants.CONFIG_READ_METHOD, ReadMethod.STORAGE_READ_API.name());
+    // Only read the columns of the output schema
+    configuration.setStrings(BigQueryConstants.CONFIG_SELECTED_FIELDS, outputSchema.getFields().stream()
+      .map(Schema.Field::getName)
+      .toArray(String[]::new));
+
+    Table table = bigQuery.getTable(TableId.of(config.getDatasetProject(), config.getDataset(), config.getTable()));
+    String rowRestriction = BigQuerySourceUtils.generateRowFilter(table.getDefinition(), config.getPartitionFrom(),
+                                                                  config.getPartitionTo(), config.getFilter());
+    if (rowRestriction != null) {
+      configuration.set(BigQueryConstants.CONFIG_ROW_RESTRICTION, rowRestriction);
+    }
+  }
+
   public Schema getSchema(FailureCollector collector) {
     com.google.cloud.bigquery.Schema bqSchema = getBQSchema(collector);
     return BigQueryUtil.getTableSchema(bqSchema, collector);
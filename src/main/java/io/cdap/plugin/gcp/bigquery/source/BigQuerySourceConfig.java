@@ -43,6 +43,7 @@ import io.cdap.plugin.gcp.common.GCPUtils;
 import io.cdap.plugin.gcp.gcs.GCSPath;
 
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Map;
 import java.util.Set;
@@ -66,6 +67,7 @@ public final class BigQuerySourceConfig extends BigQueryBaseConfig {
   public static final String NAME_ENABLE_QUERYING_VIEWS = "enableQueryingViews";
   public static final String NAME_VIEW_MATERIALIZATION_PROJECT = "viewMaterializationProject";
   public static final String NAME_VIEW_MATERIALIZATION_DATASET = "viewMaterializationDataset";
+  public static final String NAME_READ_METHOD = "readMethod";
 
   @Name(Constants.Reference.REFERENCE_NAME)
   @Description("This will be used to uniquely identify this source for lineage, annotating metadata, etc.")
@@ -127,6 +129,14 @@ public final class BigQuerySourceConfig extends BigQueryBaseConfig {
     + "Defaults to the same dataset in which the table is located.")
   private String viewMaterializationDataset;
 
+  @Name(NAME_READ_METHOD)
+  @Macro
+  @Nullable
+  @Description("Method used to read records from BigQuery. 'Export' exports the table to the temporary GCS " +
+    "bucket and reads the exported files. 'Storage Read API' streams the rows directly from the table, " +
+    "without a temporary bucket. Views are always read with the export method.")
+  private String readMethod;
+
   public String getTable() {
     return table;
   }
@@ -161,6 +171,13 @@ public final class BigQuerySourceConfig extends BigQueryBaseConfig {
     if (!containsMacro(NAME_CMEK_KEY)) {
       validateCmekKey(collector, arguments);
     }
+
+    if (!containsMacro(NAME_READ_METHOD) && !Strings.isNullOrEmpty(readMethod)
+      && Arrays.stream(ReadMethod.values()).noneMatch(method -> method.name().equalsIgnoreCase(readMethod))) {
+      collector.addFailure(String.format("Read method has incorrect value '%s'.", readMethod),
+                           "Set the read method to 'Export' or 'Storage Read API'.")
+        .withConfigProperty(NAME_READ_METHOD);
+    }
   }
 
   void validateCmekKey(FailureCollector collector, Map<String, String> arguments) {
@@ -277,6 +294,10 @@ public final class BigQuerySourceConfig extends BigQueryBaseConfig {
     return viewMaterializationDataset;
   }
 
+  public ReadMethod getReadMethod() {
+    return Strings.isNullOrEmpty(readMethod) ? ReadMethod.EXPORT : ReadMethod.valueOf(readMethod.toUpperCase());
+  }
+
   /**
    * Returns true if bigquery table can be connected and schema is not a macro.
    */
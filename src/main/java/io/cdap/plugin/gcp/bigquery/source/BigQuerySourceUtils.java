@@ -20,7 +20,10 @@ import com.google.auth.Credentials;
 import com.google.cloud.bigquery.BigQuery;
 import com.google.cloud.bigquery.Dataset;
 import com.google.cloud.bigquery.DatasetId;
+import com.google.cloud.bigquery.LegacySQLTypeName;
+import com.google.cloud.bigquery.StandardTableDefinition;
 import com.google.cloud.bigquery.TableId;
+import com.google.cloud.bigquery.TimePartitioning;
 import com.google.cloud.hadoop.io.bigquery.BigQueryConfiguration;
 import com.google.cloud.kms.v1.CryptoKeyName;
 import com.google.cloud.storage.Storage;
@@ -49,6 +52,7 @@ public class BigQuerySourceUtils {
   private static final String BQ_TEMP_BUCKET_NAME_PREFIX = "bq-source-bucket-";
   private static final String BQ_TEMP_BUCKET_NAME_TEMPLATE = BQ_TEMP_BUCKET_NAME_PREFIX + "%s";
   private static final String BQ_TEMP_BUCKET_PATH_TEMPLATE = "gs://" + BQ_TEMP_BUCKET_NAME_TEMPLATE;
+  private static final String DEFAULT_COLUMN_NAME = "_PARTITIONTIME";
 
   @Nullable
   public static Credentials getCredentials(BigQueryConnectorConfig config) throws IOException {
@@ -203,4 +207,64 @@ public class BigQuerySourceUtils {
       LOG.error("Failed to delete temporary directory '{}': {}", gcsPath, e.getMessage());
     }
   }
+
+  /**
+   * Builds the condition that selects the rows in the given partition range which match the filter.
+   *
+   * @param tableDefinition definition of the table to read.
+   * @param partitionFromDate inclusive partition start date, ignored if the table is not time partitioned.
+   * @param partitionToDate exclusive partition end date, ignored if the table is not time partitioned.
+   * @param filter condition the rows need to satisfy.
+   * @return the condition, or null if all rows of the table are read.
+   */
+  @Nullable
+  public static String generateRowFilter(StandardTableDefinition tableDefinition, @Nullable String partitionFromDate,
+                                         @Nullable String partitionToDate, @Nullable String filter) {
+    TimePartitioning timePartitioning = tableDefinition.getTimePartitioning();
+    StringBuilder condition = new StringBuilder();
+
+    if (timePartitioning != null) {
+      condition.append(generateTimePartitionCondition(tableDefinition, timePartitioning,
+                                                      partitionFromDate, partitionToDate));
+    }
+
+    if (filter != null) {
+      if (condition.length() == 0) {
+        condition.append(filter);
+      } else {
+        condition.append(" and (").append(filter).append(")");
+      }
+    }
+    return condition.length() == 0 ? null : condition.toString();
+  }
+
+  private static String generateTimePartitionCondition(StandardTableDefinition tableDefinition,
+                                                       TimePartitioning timePartitioning,
+                                                       @Nullable String partitionFromDate,
+                                                       @Nullable String partitionToDate) {
+    StringBuilder timePartitionCondition = new StringBuilder();
+    String columnName = timePartitioning.getField() != null ? timePartitioning.getField() : DEFAULT_COLUMN_NAME;
+
+    LegacySQLTypeName columnType = null;
+    if (!DEFAULT_COLUMN_NAME.equals(columnName)) {
+      columnType = tableDefinition.getSchema().getFields().get(columnName).getType();
+    }
+
+    String columnNameTS = columnName;
+    if (!LegacySQLTypeName.TIMESTAMP.equals(columnType)) {
+      columnNameTS = "TIMESTAMP(`" + columnNameTS + "`)";
+    }
+    if (partitionFromDate != null) {
+      timePartitionCondition.append(columnNameTS).append(" >= ").append("TIMESTAMP(\"")
+        .append(partitionFromDate).append("\")");
+    }
+    if (partitionFromDate != null && partitionToDate != null) {
+      timePartitionCondition.append(" and ");
+    }
+    if (partitionToDate != null) {
+      timePartitionCondition.append(columnNameTS).append(" < ").append("TIMESTAMP(\"")
+        .append(partitionToDate).append("\")");
+    }
+    return timePartitionCondition.toString();
+  }
 }
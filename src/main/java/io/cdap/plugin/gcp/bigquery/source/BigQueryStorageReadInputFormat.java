@@ -0,0 +1,191 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.gcp.bigquery.source;
+
+import com.google.api.gax.core.FixedCredentialsProvider;
+import com.google.auth.Credentials;
+import com.google.auth.oauth2.ServiceAccountCredentials;
+import com.google.cloud.bigquery.storage.v1.BigQueryReadClient;
+import com.google.cloud.bigquery.storage.v1.BigQueryReadSettings;
+import com.google.cloud.bigquery.storage.v1.CreateReadSessionRequest;
+import com.google.cloud.bigquery.storage.v1.DataFormat;
+import com.google.cloud.bigquery.storage.v1.ReadSession;
+import com.google.cloud.bigquery.storage.v1.ReadStream;
+import com.google.cloud.hadoop.io.bigquery.BigQueryConfiguration;
+import com.google.cloud.hadoop.util.ConfigurationUtil;
+import com.google.common.annotations.VisibleForTesting;
+import io.cdap.plugin.gcp.bigquery.util.BigQueryConstants;
+import io.cdap.plugin.gcp.common.GCPUtils;
+import org.apache.avro.generic.GenericData;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.mapreduce.InputFormat;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.JobContext;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.Nullable;
+
+/**
+ * Input format that reads a BigQuery table through the BigQuery Storage Read API.
+ *
+ * A single read session is created when the splits are computed, and every stream of the session becomes a split.
+ * Rows are read in the Avro format, so records have the same representation as the ones exported by
+ * {@link PartitionedBigQueryInputFormat}, without staging them in GCS.
+ */
+public class BigQueryStorageReadInputFormat extends InputFormat<LongWritable, GenericData.Record> {
+  private static final Logger LOG = LoggerFactory.getLogger(BigQueryStorageReadInputFormat.class);
+
+  @Override
+  public List<InputSplit> getSplits(JobContext context) throws IOException {
+    Configuration configuration = context.getConfiguration();
+    Map<String, String> mandatoryConfig = ConfigurationUtil.getMandatoryConfig(
+      configuration, BigQueryConfiguration.MANDATORY_CONFIG_PROPERTIES_INPUT);
+    String projectId = mandatoryConfig.get(BigQueryConfiguration.PROJECT_ID_KEY);
+    String table = String.format("projects/%s/datasets/%s/tables/%s",
+                                 mandatoryConfig.get(BigQueryConfiguration.INPUT_PROJECT_ID_KEY),
+                                 mandatoryConfig.get(BigQueryConfiguration.INPUT_DATASET_ID_KEY),
+                                 mandatoryConfig.get(BigQueryConfiguration.INPUT_TABLE_ID_KEY));
+
+    ReadSession.TableReadOptions.Builder readOptions = ReadSession.TableReadOptions.newBuilder();
+    String[] selectedFields = configuration.getStrings(BigQueryConstants.CONFIG_SELECTED_FIELDS);
+    if (selectedFields != null) {
+      readOptions.addAllSelectedFields(Arrays.asList(selectedFields));
+    }
+    String rowRestriction = configuration.get(BigQueryConstants.CONFIG_ROW_RESTRICTION);
+    if (rowRestriction != null) {
+      readOptions.setRowRestriction(rowRestriction);
+    }
+
+    ReadSession session;
+    try (BigQueryReadClient client = createReadClient(configuration)) {
+      session = client.createReadSession(
+        CreateReadSessionRequest.newBuilder()
+          .setParent(String.format("projects/%s", projectId))
+          .setReadSession(ReadSession.newBuilder()
+                            .setTable(table)
+                            .setDataFormat(DataFormat.AVRO)
+                            .setReadOptions(readOptions))
+          // Let the server decide on the number of streams based on the size of the table
+          .setMaxStreamCount(0)
+          .build());
+    }
+    LOG.debug("Created read session '{}' with {} streams for table '{}'.",
+              session.getName(), session.getStreamsCount(), table);
+
+    String avroSchema = session.getAvroSchema().getSchema();
+    List<InputSplit> splits = new ArrayList<>(session.getStreamsCount());
+    for (ReadStream stream : session.getStreamsList()) {
+      splits.add(new StorageReadSplit(stream.getName(), avroSchema));
+    }
+    return splits;
+  }
+
+  @Override
+  public RecordReader<LongWritable, GenericData.Record> createRecordReader(InputSplit inputSplit,
+                                                                           TaskAttemptContext context)
+    throws IOException {
+    return new BigQueryStorageReadRecordReader(createReadClient(context.getConfiguration()));
+  }
+
+  @VisibleForTesting
+  BigQueryReadClient createReadClient(Configuration configuration) throws IOException {
+    BigQueryReadSettings.Builder settings = BigQueryReadSettings.newBuilder();
+    Credentials credentials = getCredentials(configuration);
+    if (credentials != null) {
+      if (credentials instanceof ServiceAccountCredentials) {
+        credentials = ((ServiceAccountCredentials) credentials).createScoped(GCPUtils.BIGQUERY_SCOPES);
+      }
+      settings.setCredentialsProvider(FixedCredentialsProvider.create(credentials));
+    }
+    return BigQueryReadClient.create(settings.build());
+  }
+
+  @Nullable
+  private static Credentials getCredentials(Configuration configuration) throws IOException {
+    String serviceAccount = configuration.get(BigQueryConstants.CONFIG_SERVICE_ACCOUNT, null);
+    boolean isServiceAccountFilePath = configuration.getBoolean(BigQueryConstants.CONFIG_SERVICE_ACCOUNT_IS_FILE,
+                                                                true);
+    return serviceAccount == null ? null :
+      GCPUtils.loadServiceAccountCredentials(serviceAccount, isServiceAccountFilePath);
+  }
+
+  /**
+   * Split that reads a single stream of a read session.
+   */
+  public static class StorageReadSplit extends InputSplit implements Writable {
+    private String streamName;
+    private String avroSchema;
+
+    // Used by Hadoop to deserialize the split
+    public StorageReadSplit() {
+    }
+
+    public StorageReadSplit(String streamName, String avroSchema) {
+      this.streamName = streamName;
+      this.avroSchema = avroSchema;
+    }
+
+    public String getStreamName() {
+      return streamName;
+    }
+
+    public String getAvroSchema() {
+      return avroSchema;
+    }
+
+    @Override
+    public long getLength() {
+      // The size of a stream is not known until it is read
+      return 0;
+    }
+
+    @Override
+    public String[] getLocations() {
+      return new String[0];
+    }
+
+    @Override
+    public void write(DataOutput out) throws IOException {
+      Text.writeString(out, streamName);
+      Text.writeString(out, avroSchema);
+    }
+
+    @Override
+    public void readFields(DataInput in) throws IOException {
+      streamName = Text.readString(in);
+      avroSchema = Text.readString(in);
+    }
+
+    @Override
+    public String toString() {
+      return streamName;
+    }
+  }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.gcp.bigquery.source;
+
+import com.google.api.gax.rpc.ServerStream;
+import com.google.cloud.bigquery.storage.v1.BigQueryReadClient;
+import com.google.cloud.bigquery.storage.v1.ReadRowsRequest;
+import com.google.cloud.bigquery.storage.v1.ReadRowsResponse;
+import io.cdap.plugin.gcp.bigquery.source.BigQueryStorageReadInputFormat.StorageReadSplit;
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.io.BinaryDecoder;
+import org.apache.avro.io.DecoderFactory;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+
+import java.io.IOException;
+import java.util.Iterator;
+
+/**
+ * Record reader that reads the Avro rows of a single stream of a BigQuery Storage Read API session.
+ */
+public class BigQueryStorageReadRecordReader extends RecordReader<LongWritable, GenericData.Record> {
+
+  private final BigQueryReadClient client;
+  private final LongWritable key;
+
+  private String streamName;
+  private GenericDatumReader<GenericData.Record> datumReader;
+  private ServerStream<ReadRowsResponse> stream;
+  private Iterator<ReadRowsResponse> responses;
+  private BinaryDecoder decoder;
+  private GenericData.Record value;
+  private long rowsLeftInResponse;
+  private boolean exhausted;
+  private float progress;
+
+  /**
+   * @param client read client, which is closed along with this reader
+   */
+  public BigQueryStorageReadRecordReader(BigQueryReadClient client) {
+    this.client = client;
+    this.key = new LongWritable(-1L);
+  }
+
+  @Override
+  public void initialize(InputSplit inputSplit, TaskAttemptContext context) {
+    StorageReadSplit split = (StorageReadSplit) inputSplit;
+    streamName = split.getStreamName();
+    datumReader = new GenericDatumReader<>(new Schema.Parser().parse(split.getAvroSchema()));
+    stream = client.readRowsCallable().call(ReadRowsRequest.newBuilder().setReadStream(streamName).build());
+    responses = stream.iterator();
+  }
+
+  @Override
+  public boolean nextKeyValue() throws IOException {
+    // Responses may not contain any row, so skip them until one does
+    while (rowsLeftInResponse == 0) {
+      if (!nextResponse()) {
+        return false;
+      }
+    }
+    try {
+      value = datumReader.read(null, decoder);
+    } catch (IOException e) {
+      throw new IOException(String.format("Failed to decode a row of stream '%s'.", streamName), e);
+    }
+    rowsLeftInResponse--;
+    key.set(key.get() + 1);
+    return true;
+  }
+
+  private boolean nextResponse() throws IOException {
+    boolean hasNext;
+    try {
+      hasNext = responses.hasNext();
+    } catch (RuntimeException e) {
+      throw new IOException(String.format("Failed to read rows from stream '%s': %s", streamName, e.getMessage()), e);
+    }
+    if (!hasNext) {
+      exhausted = true;
+      progress = 1.0f;
+      return false;
+    }
+    ReadRowsResponse response = responses.next();
+    decoder = DecoderFactory.get().binaryDecoder(response.getAvroRows().getSerializedBinaryRows().toByteArray(),
+                                                 decoder);
+    rowsLeftInResponse = response.getRowCount();
+    if (response.hasStats()) {
+      progress = (float) response.getStats().getProgress().getAtResponseEnd();
+    }
+    return true;
+  }
+
+  @Override
+  public LongWritable getCurrentKey() {
+    return key;
+  }
+
+  @Override
+  public GenericData.Record getCurrentValue() {
+    return value;
+  }
+
+  @Override
+  public float getProgress() {
+    return progress;
+  }
+
+  @Override
+  public void close() {
+    try {
+      if (stream != null && !exhausted) {
+        // The stream was not fully consumed
+        stream.cancel();
+      }
+    } finally {
+      client.close();
+    }
+  }
+}
@@ -6,23 +6,24 @@ import com.google.api.services.bigquery.model.JobConfigurationQuery;
 import com.google.api.services.bigquery.model.JobReference;
 import com.google.api.services.bigquery.model.Table;
 import com.google.api.services.bigquery.model.TableReference;
-import com.google.cloud.bigquery.LegacySQLTypeName;
+import com.google.auth.Credentials;
+import com.google.cloud.bigquery.JobId;
 import com.google.cloud.bigquery.StandardTableDefinition;
 import com.google.cloud.bigquery.TableDefinition.Type;
-import com.google.cloud.bigquery.TimePartitioning;
 import com.google.cloud.hadoop.io.bigquery.AbstractBigQueryInputFormat;
 import com.google.cloud.hadoop.io.bigquery.AvroBigQueryInputFormat;
 import com.google.cloud.hadoop.io.bigquery.AvroRecordReader;
 import com.google.cloud.hadoop.io.bigquery.BigQueryConfiguration;
 import com.google.cloud.hadoop.io.bigquery.BigQueryHelper;
-import com.google.cloud.hadoop.io.bigquery.BigQueryUtils;
 import com.google.cloud.hadoop.io.bigquery.ExportFileFormat;
 import com.google.cloud.hadoop.util.ConfigurationUtil;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Strings;
 import io.cdap.plugin.gcp.bigquery.util.BigQueryConstants;
+import io.cdap.plugin.gcp.bigquery.util.BigQueryJobWaiter;
 import io.cdap.plugin.gcp.bigquery.util.BigQueryUtil;
+import io.cdap.plugin.gcp.common.GCPUtils;
 import org.apache.avro.generic.GenericData;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.io.LongWritable;
@@ -46,7 +47,6 @@ import javax.annotation.Nullable;
  * in order to create input splits.
  */
 public class PartitionedBigQueryInputFormat extends AbstractBigQueryInputFormat<LongWritable, GenericData.Record> {
-  private static final String DEFAULT_COLUMN_NAME = "_PARTITIONTIME";
 
   private InputFormat<LongWritable, GenericData.Record> delegateInputFormat =
     new AvroBigQueryInputFormat();
@@ -114,7 +114,13 @@ public class PartitionedBigQueryInputFormat extends AbstractBigQueryInputFormat<
       String temporaryTableName = configuration.get(BigQueryConstants.CONFIG_TEMPORARY_TABLE_NAME);
       TableReference exportTableReference = createExportTableReference(type, datasetProjectId, datasetId,
                                                                        temporaryTableName, configuration);
-      runQuery(configuration, bigQueryHelper, projectId, exportTableReference, query, location);
+      Credentials credentials = serviceAccount == null ?
+        null : GCPUtils.loadServiceAccountCredentials(serviceAccount, isServiceAccountFilePath);
+      BigQueryJobWaiter jobWaiter = new BigQueryJobWaiter(GCPUtils.getBigQuery(projectId, credentials));
+      // Splits are usually computed outside of a task, in which case there is no progress to report
+      Progressable progressable = context instanceof Progressable ? (Progressable) context : null;
+      runQuery(configuration, bigQueryHelper, jobWaiter, progressable, projectId, exportTableReference, query,
+               location);
 
       // Default values come from BigquerySource config, and can be overridden by config.
       configuration.set(BigQueryConfiguration.INPUT_PROJECT_ID_KEY,
@@ -137,28 +143,14 @@ public class PartitionedBigQueryInputFormat extends AbstractBigQueryInputFormat<
                                                                                 serviceAccount,
                                                                                 isServiceAccountFilePath);
     StandardTableDefinition tableDefinition = Objects.requireNonNull(sourceTable).getDefinition();
-    TimePartitioning timePartitioning = tableDefinition.getTimePartitioning();
-    if (timePartitioning == null && filter == null) {
+    String condition = BigQuerySourceUtils.generateRowFilter(tableDefinition, partitionFromDate, partitionToDate,
+                                                             filter);
+    if (condition == null) {
       return null;
     }
-    StringBuilder condition = new StringBuilder();
-
-    if (timePartitioning != null) {
-      String timePartitionCondition = generateTimePartitionCondition(tableDefinition, timePartitioning,
-                                                                     partitionFromDate, partitionToDate);
-      condition.append(timePartitionCondition);
-    }
-
-    if (filter != null) {
-      if (condition.length() == 0) {
-        condition.append(filter);
-      } else {
-        condition.append(" and (").append(filter).append(")");
-      }
-    }
 
     String tableName = datasetProject + "." + dataset + "." + table;
-    return String.format(queryTemplate, tableName, condition.toString());
+    return String.format(queryTemplate, tableName, condition);
   }
 
   @VisibleForTesting
@@ -201,6 +193,8 @@ public class PartitionedBigQueryInputFormat extends AbstractBigQueryInputFormat<
 
   private static void runQuery(Configuration configuration,
                                BigQueryHelper bigQueryHelper,
+                               BigQueryJobWaiter jobWaiter,
+                               @Nullable Progressable progressable,
                                String projectId,
                                TableReference tableRef,
                                String query,
@@ -233,17 +227,21 @@ public class PartitionedBigQueryInputFormat extends AbstractBigQueryInputFormat<
     // Run the job.
     Job response = bigQueryHelper.insertJobOrFetchDuplicate(projectId, job);
 
-    // Create anonymous Progressable object
-    Progressable progressable = new Progressable() {
-      @Override
-      public void progress() {
-        // TODO(user): ensure task doesn't time out
-      }
-    };
-
     // Poll until job is complete.
-    BigQueryUtils.waitForJobCompletion(
-      bigQueryHelper.getRawBigquery(), projectId, jobReference, progressable);
+    com.google.cloud.bigquery.Job completedJob = jobWaiter.await(
+      JobId.newBuilder()
+        .setProject(projectId)
+        .setJob(jobReference.getJobId())
+        .setLocation(jobReference.getLocation())
+        .build(),
+      progressable);
+    if (completedJob == null) {
+      throw new IOException(String.format("BigQuery job %s does not exist.", jobReference.getJobId()));
+    }
+    if (completedJob.getStatus().getError() != null) {
+      throw new IOException(String.format("Error occurred while running BigQuery job %s: %s",
+                                          jobReference.getJobId(), completedJob.getStatus().getError().getMessage()));
+    }
     if (bigQueryHelper.tableExists(tableRef)) {
       long expirationMillis = System.currentTimeMillis() + TimeUnit.DAYS.toMillis(1);
       Table table = bigQueryHelper.getTable(tableRef).setExpirationTime(expirationMillis);
@@ -273,33 +271,4 @@ public class PartitionedBigQueryInputFormat extends AbstractBigQueryInputFormat<
     }
     return new JobReference().setProjectId(projectId).setJobId(savedJobId).setLocation(location);
   }
-
-  private String generateTimePartitionCondition(StandardTableDefinition tableDefinition,
-                                                TimePartitioning timePartitioning, String partitionFromDate,
-                                                String partitionToDate) {
-    StringBuilder timePartitionCondition = new StringBuilder();
-    String columnName = timePartitioning.getField() != null ? timePartitioning.getField() : DEFAULT_COLUMN_NAME;
-
-    LegacySQLTypeName columnType = null;
-    if (!DEFAULT_COLUMN_NAME.equals(columnName)) {
-      columnType = tableDefinition.getSchema().getFields().get(columnName).getType();
-    }
-
-    String columnNameTS = columnName;
-    if (!LegacySQLTypeName.TIMESTAMP.equals(columnType)) {
-      columnNameTS = "TIMESTAMP(`" + columnNameTS + "`)";
-    }
-    if (partitionFromDate != null) {
-      timePartitionCondition.append(columnNameTS).append(" >= ").append("TIMESTAMP(\"")
-        .append(partitionFromDate).append("\")");
-    }
-    if (partitionFromDate != null && partitionToDate != null) {
-      timePartitionCondition.append(" and ");
-    }
-    if (partitionToDate != null) {
-      timePartitionCondition.append(columnNameTS).append(" < ").append("TIMESTAMP(\"")
-        .append(partitionToDate).append("\")");
-    }
-    return timePartitionCondition.toString();
-  }
 }
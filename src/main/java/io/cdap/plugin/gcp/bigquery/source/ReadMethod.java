@@ -0,0 +1,27 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.gcp.bigquery.source;
+
+/**
+ * The method used to get records out of BigQuery.
+ */
+public enum ReadMethod {
+  // Export the table to files in GCS and read the exported files.
+  EXPORT,
+  // Stream rows directly from the table through read sessions of the BigQuery Storage Read API.
+  STORAGE_READ_API
+}
@@ -34,9 +34,11 @@ import io.cdap.cdap.etl.api.join.JoinDefinition;
 import io.cdap.plugin.gcp.bigquery.sink.BigQuerySinkUtils;
 import io.cdap.plugin.gcp.bigquery.sqlengine.builder.BigQueryJoinSQLBuilder;
 import io.cdap.plugin.gcp.bigquery.sqlengine.util.BigQuerySQLEngineUtils;
+import io.cdap.plugin.gcp.bigquery.util.BigQueryJobWaiter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
 import java.util.Collections;
 import java.util.Map;
 import javax.annotation.Nullable;
@@ -52,6 +54,7 @@ public class BigQueryJoinDataset implements SQLDataset, BigQuerySQLDataset {
   private final JoinDefinition joinDefinition;
   private final BigQuerySQLEngineConfig sqlEngineConfig;
   private final BigQuery bigQuery;
+  private final BigQueryJobWaiter jobWaiter;
   private final String project;
   private final DatasetId bqDataset;
   private final String bqTable;
@@ -64,6 +67,7 @@ public class BigQueryJoinDataset implements SQLDataset, BigQuerySQLDataset {
                               BigQuerySQLEngineConfig sqlEngineConfig,
                               Map<String, String> stageToTableNameMap,
                               BigQuery bigQuery,
+                              BigQueryJobWaiter jobWaiter,
                               String project,
                               DatasetId bqDataset,
                               String bqTable,
@@ -72,6 +76,7 @@ public class BigQueryJoinDataset implements SQLDataset, BigQuerySQLDataset {
     this.joinDefinition = joinDefinition;
     this.sqlEngineConfig = sqlEngineConfig;
     this.bigQuery = bigQuery;
+    this.jobWaiter = jobWaiter;
     this.project = project;
     this.bqDataset = bqDataset;
     this.bqTable = bqTable;
@@ -83,6 +88,7 @@ public class BigQueryJoinDataset implements SQLDataset, BigQuerySQLDataset {
                                                 Map<String, String> bqTableNamesMap,
                                                 BigQuerySQLEngineConfig sqlEngineConfig,
                                                 BigQuery bigQuery,
+                                                BigQueryJobWaiter jobWaiter,
                                                 String project,
                                                 DatasetId dataset,
                                                 String runId) {
@@ -102,6 +108,7 @@ public class BigQueryJoinDataset implements SQLDataset, BigQuerySQLDataset {
                                                            sqlEngineConfig,
                                                            bqTableNamesMap,
                                                            bigQuery,
+                                                           jobWaiter,
                                                            project,
                                                            dataset,
                                                            table,
@@ -141,9 +148,11 @@ public class BigQueryJoinDataset implements SQLDataset, BigQuerySQLDataset {
 
     // Wait for the query to complete.
     try {
-      queryJob = queryJob.waitFor();
+      queryJob = jobWaiter.await(queryJob.getJobId(), null);
     } catch (InterruptedException ie) {
       throw new SQLEngineException("Interrupted exception when executing Join operation", ie);
+    } catch (IOException ioe) {
+      throw new SQLEngineException("Failed to wait for the BigQuery job of the Join operation", ioe);
     }
 
     // Check for errors
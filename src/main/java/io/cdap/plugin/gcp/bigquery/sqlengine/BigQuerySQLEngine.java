@@ -68,6 +68,7 @@ import io.cdap.plugin.gcp.bigquery.sink.BigQuerySinkUtils;
 import io.cdap.plugin.gcp.bigquery.source.BigQuerySourceUtils;
 import io.cdap.plugin.gcp.bigquery.sqlengine.builder.BigQueryJoinSQLBuilder;
 import io.cdap.plugin.gcp.bigquery.sqlengine.util.BigQuerySQLEngineUtils;
+import io.cdap.plugin.gcp.bigquery.util.BigQueryJobWaiter;
 import io.cdap.plugin.gcp.bigquery.util.BigQueryUtil;
 import io.cdap.plugin.gcp.common.CmekUtils;
 import io.cdap.plugin.gcp.common.GCPUtils;
@@ -108,6 +109,7 @@ public class BigQuerySQLEngine
 
   private final BigQuerySQLEngineConfig sqlEngineConfig;
   private BigQuery bigQuery;
+  private BigQueryJobWaiter jobWaiter;
   private Storage storage;
   private Configuration configuration;
   private String project;
@@ -152,6 +154,7 @@ public class BigQuerySQLEngine
 
     // Initialize BQ and GCS clients.
     bigQuery = GCPUtils.getBigQuery(project, credentials);
+    jobWaiter = new BigQueryJobWaiter(bigQuery);
     storage = GCPUtils.getStorage(project, credentials);
 
     String cmekKey = !Strings.isNullOrEmpty(sqlEngineConfig.cmekKey) ? sqlEngineConfig.cmekKey :
@@ -357,6 +360,7 @@ public class BigQuerySQLEngine
     BigQueryWrite bigQueryWrite = BigQueryWrite.getInstance(datasetName,
                                                             sqlEngineConfig,
                                                             bigQuery,
+                                                            jobWaiter,
                                                             writeRequest,
                                                             sourceTableId);
     return bigQueryWrite.write();
@@ -524,6 +528,7 @@ public class BigQuerySQLEngine
       outputSchema,
       sqlEngineConfig,
       bigQuery,
+      jobWaiter,
       project,
       DatasetId.of(datasetProject, dataset),
       table,
@@ -15,9 +15,11 @@ import io.cdap.cdap.etl.api.engine.sql.SQLEngineException;
 import io.cdap.cdap.etl.api.engine.sql.dataset.SQLDataset;
 import io.cdap.plugin.gcp.bigquery.sink.BigQuerySinkUtils;
 import io.cdap.plugin.gcp.bigquery.sqlengine.util.BigQuerySQLEngineUtils;
+import io.cdap.plugin.gcp.bigquery.util.BigQueryJobWaiter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
 import java.util.Collections;
 import javax.annotation.Nullable;
 
@@ -32,6 +34,7 @@ public class BigQuerySelectDataset implements SQLDataset, BigQuerySQLDataset {
   private final Schema outputSchema;
   private final BigQuerySQLEngineConfig sqlEngineConfig;
   private final BigQuery bigQuery;
+  private final BigQueryJobWaiter jobWaiter;
   private final String project;
   private final DatasetId bqDataset;
   private final String bqTable;
@@ -44,6 +47,7 @@ public class BigQuerySelectDataset implements SQLDataset, BigQuerySQLDataset {
                                                   Schema outputSchema,
                                                   BigQuerySQLEngineConfig sqlEngineConfig,
                                                   BigQuery bigQuery,
+                                                  BigQueryJobWaiter jobWaiter,
                                                   String project,
                                                   DatasetId bqDataset,
                                                   String bqTable,
@@ -55,6 +59,7 @@ public class BigQuerySelectDataset implements SQLDataset, BigQuerySQLDataset {
                                      outputSchema,
                                      sqlEngineConfig,
                                      bigQuery,
+                                     jobWaiter,
                                      project,
                                      bqDataset,
                                      bqTable,
@@ -67,6 +72,7 @@ public class BigQuerySelectDataset implements SQLDataset, BigQuerySQLDataset {
                                 Schema outputSchema,
                                 BigQuerySQLEngineConfig sqlEngineConfig,
                                 BigQuery bigQuery,
+                                BigQueryJobWaiter jobWaiter,
                                 String project,
                                 DatasetId bqDataset,
                                 String bqTable,
@@ -77,6 +83,7 @@ public class BigQuerySelectDataset implements SQLDataset, BigQuerySQLDataset {
     this.outputSchema = outputSchema;
     this.sqlEngineConfig = sqlEngineConfig;
     this.bigQuery = bigQuery;
+    this.jobWaiter = jobWaiter;
     this.project = project;
     this.bqDataset = bqDataset;
     this.bqTable = bqTable;
@@ -115,9 +122,11 @@ public class BigQuerySelectDataset implements SQLDataset, BigQuerySQLDataset {
 
     // Wait for the query to complete.
     try {
-      queryJob = queryJob.waitFor();
+      queryJob = jobWaiter.await(queryJob.getJobId(), null);
     } catch (InterruptedException ie) {
       throw new SQLEngineException("Interrupted exception when executing Join operation", ie);
+    } catch (IOException ioe) {
+      throw new SQLEngineException("Failed to wait for the BigQuery job of the Select operation", ioe);
     }
 
     // Check for errors
@@ -45,9 +45,11 @@ import io.cdap.plugin.gcp.bigquery.sink.BigQuerySinkUtils;
 import io.cdap.plugin.gcp.bigquery.sink.Operation;
 import io.cdap.plugin.gcp.bigquery.sink.PartitionType;
 import io.cdap.plugin.gcp.bigquery.sqlengine.util.BigQuerySQLEngineUtils;
+import io.cdap.plugin.gcp.bigquery.util.BigQueryJobWaiter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
 import java.lang.reflect.Type;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -73,6 +75,7 @@ public class BigQueryWrite {
 
   private final BigQuerySQLEngineConfig sqlEngineConfig;
   private final BigQuery bigQuery;
+  private final BigQueryJobWaiter jobWaiter;
   private final String datasetName;
   private final SQLWriteRequest writeRequest;
   private final TableId sourceTableId;
@@ -80,11 +83,13 @@ public class BigQueryWrite {
   private BigQueryWrite(String datasetName,
                         BigQuerySQLEngineConfig sqlEngineConfig,
                         BigQuery bigQuery,
+                        BigQueryJobWaiter jobWaiter,
                         SQLWriteRequest writeRequest,
                         TableId sourceTableId) {
     this.datasetName = datasetName;
     this.sqlEngineConfig = sqlEngineConfig;
     this.bigQuery = bigQuery;
+    this.jobWaiter = jobWaiter;
     this.writeRequest = writeRequest;
     this.sourceTableId = sourceTableId;
   }
@@ -92,11 +97,13 @@ public class BigQueryWrite {
   public static BigQueryWrite getInstance(String datasetName,
                                           BigQuerySQLEngineConfig sqlEngineConfig,
                                           BigQuery bigQuery,
+                                          BigQueryJobWaiter jobWaiter,
                                           SQLWriteRequest writeRequest,
                                           TableId sourceTableId) {
     return new BigQueryWrite(datasetName,
                              sqlEngineConfig,
                              bigQuery,
+                             jobWaiter,
                              writeRequest,
                              sourceTableId
     );
@@ -127,7 +134,7 @@ public class BigQueryWrite {
 
   private SQLWriteResult writeInternal(SQLWriteRequest writeRequest,
                                        AtomicReference<TableId> newDestinationTable)
-    throws BigQueryException, InterruptedException {
+    throws BigQueryException, IOException, InterruptedException {
     // Check if this output matches the expected engine.
     String datasetName = writeRequest.getDatasetName();
     if (!BigQuerySQLEngine.class.getName().equals(writeRequest.getOutput().getSqlEngineClassName())) {
@@ -223,7 +230,11 @@ public class BigQueryWrite {
     TableResult result = null;
 
     // Wait for the query to complete.
-    queryJob = queryJob.waitFor();
+    queryJob = jobWaiter.await(queryJob.getJobId(), null);
+    if (queryJob == null) {
+      LOG.error("BigQuery Job '{}' in Project '{}' not found.", jobId, sqlEngineConfig.getProject());
+      return SQLWriteResult.faiure(datasetName);
+    }
     JobStatistics.QueryStatistics queryJobStats = queryJob.getStatistics();
 
     // Check for errors
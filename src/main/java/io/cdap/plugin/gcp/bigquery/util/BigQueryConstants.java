@@ -45,4 +45,14 @@ public interface BigQueryConstants {
   String CONFIG_PARTITION_INTEGER_RANGE_INTERVAL = "cdap.bq.sink.partition.integer.range.interval";
   String CONFIG_TEMPORARY_TABLE_NAME = "cdap.bq.source.temporary.table.name";
   String CDAP_BQ_SINK_OUTPUT_SCHEMA = "cdap.bq.sink.output.schema";
+  String CONFIG_WRITE_METHOD = "cdap.bq.sink.write.method";
+  String CONFIG_LOAD_JOB_CONCURRENCY = "cdap.bq.sink.load.job.concurrency";
+  // Concurrent load jobs of a single table, low enough to stay far from the per-project load job quotas
+  int DEFAULT_LOAD_JOB_CONCURRENCY = 4;
+  String CONFIG_MULTI_SINK_MAX_OPEN_WRITERS = "cdap.bq.multi.sink.max.open.writers";
+  // Open writers of a multi sink task, about 400MB of upload buffers with the default GCS chunk size
+  int DEFAULT_MULTI_SINK_MAX_OPEN_WRITERS = 50;
+  String CONFIG_READ_METHOD = "cdap.bq.source.read.method";
+  String CONFIG_SELECTED_FIELDS = "cdap.bq.source.selected.fields";
+  String CONFIG_ROW_RESTRICTION = "cdap.bq.source.row.restriction";
 }
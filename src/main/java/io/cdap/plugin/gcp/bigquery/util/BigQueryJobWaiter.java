@@ -0,0 +1,289 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.gcp.bigquery.util;
+
+import com.google.cloud.bigquery.BigQuery;
+import com.google.cloud.bigquery.Job;
+import com.google.cloud.bigquery.JobId;
+import com.google.cloud.bigquery.JobStatus;
+import com.google.cloud.hadoop.io.bigquery.BigQueryUtils;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.hadoop.util.Progressable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+
+/**
+ * Waits for BigQuery jobs to complete.
+ *
+ * Instead of every caller sleeping between its own status requests, the jobs of a waiter are polled together in
+ * rounds on a small pool of threads shared by all the waiters. When more than one job of the client project is due in
+ * a round, the running jobs of the project are listed with a single request, and only the jobs that are no longer
+ * listed are fetched individually.
+ * <p>
+ * Like {@link Job#waitFor}, jobs are first polled after about a second, so that short jobs complete quickly, and the
+ * interval then grows up to {@link #MAX_INTERVAL_MILLIS}. The rounds of a waiter never run concurrently, while the
+ * rounds of different waiters run on different threads of the pool.
+ */
+public class BigQueryJobWaiter {
+  private static final Logger LOG = LoggerFactory.getLogger(BigQueryJobWaiter.class);
+  // Rounds mostly wait on status requests, a slow request of one waiter must not delay the rounds of the others
+  private static final int POLLER_THREADS = 4;
+  private static final ScheduledExecutorService POLLER = Executors.newScheduledThreadPool(
+    POLLER_THREADS, new ThreadFactoryBuilder().setNameFormat("bigquery-job-waiter-%d").setDaemon(true).build());
+  private static final long INITIAL_INTERVAL_MILLIS = TimeUnit.SECONDS.toMillis(1);
+  @VisibleForTesting
+  static final long MAX_INTERVAL_MILLIS = TimeUnit.SECONDS.toMillis(15);
+  private static final double INTERVAL_MULTIPLIER = 1.5d;
+  // Jobs created right before being waited on may be listed with a slightly earlier creation time
+  private static final long CREATION_TIME_MARGIN_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+  private final BigQuery bigQuery;
+  private final ScheduledExecutorService scheduler;
+  private final long initialIntervalMillis;
+  private final long maxIntervalMillis;
+  private final long maxElapsedMillis;
+  // Guarded by this
+  private final List<PendingJob> pendingJobs;
+  private ScheduledFuture<?> nextRound;
+  private long nextRoundMillis;
+  private boolean polling;
+
+  public BigQueryJobWaiter(BigQuery bigQuery) {
+    this(bigQuery, POLLER, INITIAL_INTERVAL_MILLIS, MAX_INTERVAL_MILLIS, BigQueryUtils.POLL_WAIT_MAX_ELAPSED_MILLIS);
+  }
+
+  @VisibleForTesting
+  BigQueryJobWaiter(BigQuery bigQuery, ScheduledExecutorService scheduler, long initialIntervalMillis,
+                    long maxIntervalMillis, long maxElapsedMillis) {
+    this.bigQuery = bigQuery;
+    this.scheduler = scheduler;
+    this.initialIntervalMillis = initialIntervalMillis;
+    this.maxIntervalMillis = maxIntervalMillis;
+    this.maxElapsedMillis = maxElapsedMillis;
+    this.pendingJobs = new ArrayList<>();
+  }
+
+  /**
+   * Waits for a job to complete.
+   *
+   * @param jobId id of the job to wait for
+   * @param progressable notified after every status check of the job, so that the calling task doesn't time out
+   * @return future of the completed job, or of {@code null} if the job does not exist. Like {@link Job#waitFor},
+   *   the future doesn't fail if the job failed, the status of the job has to be checked for errors.
+   */
+  public CompletableFuture<Job> waitFor(JobId jobId, @Nullable Progressable progressable) {
+    PendingJob pendingJob = new PendingJob(jobId, progressable, System.currentTimeMillis());
+    synchronized (this) {
+      pendingJobs.add(pendingJob);
+      schedule(pendingJob.nextPollMillis);
+    }
+    return pendingJob.future;
+  }
+
+  /**
+   * Waits for a job to complete, blocking the calling thread.
+   *
+   * @see #waitFor(JobId, Progressable)
+   */
+  @Nullable
+  public Job await(JobId jobId, @Nullable Progressable progressable) throws IOException, InterruptedException {
+    CompletableFuture<Job> future = waitFor(jobId, progressable);
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      future.cancel(true);
+      throw e;
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      }
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      throw new IOException(String.format("Failed to wait for job %s.", jobId.getJob()), cause);
+    }
+  }
+
+  /**
+   * Schedules a poll round at the given time, unless one is already scheduled before it, or a round is running.
+   * A running round schedules the next one once it is done.
+   */
+  private synchronized void schedule(long pollMillis) {
+    if (polling || (nextRound != null && !nextRound.isDone() && nextRoundMillis <= pollMillis)) {
+      return;
+    }
+    if (nextRound != null) {
+      nextRound.cancel(false);
+    }
+    nextRoundMillis = pollMillis;
+    nextRound = scheduler.schedule(this::poll, Math.max(0L, pollMillis - System.currentTimeMillis()),
+                                   TimeUnit.MILLISECONDS);
+  }
+
+  private void poll() {
+    long now = System.currentTimeMillis();
+    List<PendingJob> dueJobs = new ArrayList<>();
+    synchronized (this) {
+      if (polling) {
+        // A replaced round that started anyway, the running round schedules the next one
+        return;
+      }
+      nextRound = null;
+      polling = true;
+      for (Iterator<PendingJob> iterator = pendingJobs.iterator(); iterator.hasNext(); ) {
+        PendingJob pendingJob = iterator.next();
+        if (pendingJob.future.isDone()) {
+          // Cancelled by the caller
+          iterator.remove();
+        } else if (pendingJob.nextPollMillis <= now) {
+          dueJobs.add(pendingJob);
+        }
+      }
+    }
+
+    try {
+      pollJobs(dueJobs, now);
+    } catch (Throwable t) {
+      // Never leave a job without completion, the round will not be retried
+      for (PendingJob pendingJob : dueJobs) {
+        pendingJob.future.completeExceptionally(t);
+      }
+    } finally {
+      synchronized (this) {
+        polling = false;
+        pendingJobs.removeIf(pendingJob -> pendingJob.future.isDone());
+        pendingJobs.stream().mapToLong(pendingJob -> pendingJob.nextPollMillis).min().ifPresent(this::schedule);
+      }
+    }
+  }
+
+  private void pollJobs(List<PendingJob> dueJobs, long roundMillis) {
+    Set<String> runningJobs = dueJobs.size() > 1 ? listRunningJobs(dueJobs) : null;
+    for (PendingJob pendingJob : dueJobs) {
+      Job job = null;
+      boolean running = runningJobs != null && isInClientProject(pendingJob.jobId)
+        && runningJobs.contains(pendingJob.jobId.getJob());
+      if (!running) {
+        try {
+          job = bigQuery.getJob(pendingJob.jobId);
+        } catch (RuntimeException e) {
+          // The client already retried the request if the error was retryable
+          pendingJob.future.completeExceptionally(e);
+          continue;
+        }
+        running = job != null && job.getStatus().getState() != JobStatus.State.DONE;
+      }
+
+      long elapsedMillis = System.currentTimeMillis() - pendingJob.startMillis;
+      LOG.debug("Job status ({} ms) {}: {}", elapsedMillis, pendingJob.jobId.getJob(),
+                running ? "RUNNING" : JobStatus.State.DONE);
+      if (!running) {
+        pendingJob.future.complete(job);
+        continue;
+      }
+      if (elapsedMillis >= maxElapsedMillis) {
+        pendingJob.future.completeExceptionally(new IOException(
+          String.format("Job %s failed to complete after %s millis.", pendingJob.jobId.getJob(), elapsedMillis)));
+        continue;
+      }
+      if (pendingJob.progressable != null) {
+        // Call progress to ensure task doesn't time out.
+        pendingJob.progressable.progress();
+      }
+      // Jobs polled in the same round stay due in the same rounds while they have the same interval
+      pendingJob.nextPollMillis = roundMillis + pendingJob.intervalMillis;
+      pendingJob.intervalMillis = Math.min(maxIntervalMillis, (long) (pendingJob.intervalMillis * INTERVAL_MULTIPLIER));
+    }
+  }
+
+  /**
+   * Lists the pending and running jobs of the client project, if more than one of the given jobs belongs to it.
+   *
+   * @return the names of the listed jobs, or {@code null} if the jobs were not listed
+   */
+  @Nullable
+  private Set<String> listRunningJobs(List<PendingJob> dueJobs) {
+    long minStartMillis = Long.MAX_VALUE;
+    int projectJobs = 0;
+    for (PendingJob pendingJob : dueJobs) {
+      if (isInClientProject(pendingJob.jobId)) {
+        minStartMillis = Math.min(minStartMillis, pendingJob.startMillis);
+        projectJobs++;
+      }
+    }
+    if (projectJobs < 2) {
+      return null;
+    }
+
+    Set<String> runningJobs = new HashSet<>();
+    try {
+      for (Job job : bigQuery.listJobs(BigQuery.JobListOption.stateFilter(JobStatus.State.PENDING,
+                                                                          JobStatus.State.RUNNING),
+                                       BigQuery.JobListOption.minCreationTime(
+                                         minStartMillis - CREATION_TIME_MARGIN_MILLIS)).iterateAll()) {
+        runningJobs.add(job.getJobId().getJob());
+      }
+    } catch (RuntimeException e) {
+      // Jobs will be fetched one by one instead
+      LOG.debug("Failed to list the running jobs of project '{}'.", bigQuery.getOptions().getProjectId(), e);
+      return null;
+    }
+    return runningJobs;
+  }
+
+  private boolean isInClientProject(JobId jobId) {
+    // Jobs without a project are created in the project of the client
+    return jobId.getProject() == null || jobId.getProject().equals(bigQuery.getOptions().getProjectId());
+  }
+
+  /**
+   * A job that is being waited on.
+   */
+  private final class PendingJob {
+    private final JobId jobId;
+    private final Progressable progressable;
+    private final long startMillis;
+    private final CompletableFuture<Job> future;
+    private long nextPollMillis;
+    private long intervalMillis;
+
+    private PendingJob(JobId jobId, @Nullable Progressable progressable, long startMillis) {
+      this.jobId = jobId;
+      this.progressable = progressable;
+      this.startMillis = startMillis;
+      this.future = new CompletableFuture<>();
+      this.nextPollMillis = startMillis;
+      this.intervalMillis = initialIntervalMillis;
+    }
+  }
+}
@@ -715,4 +715,21 @@ public final class BigQueryUtil {
       LOG.debug("Deleted temporary directory '{}'", path);
     }
   }
+
+  /**
+   * Returns the maximum number of load jobs that run at the same time when loading a table in batches.
+   *
+   * @param configuration Hadoop Configuration.
+   * @throws IllegalArgumentException if the configured concurrency is less than 1
+   */
+  public static int getLoadJobConcurrency(Configuration configuration) {
+    int concurrency = configuration.getInt(BigQueryConstants.CONFIG_LOAD_JOB_CONCURRENCY,
+                                           BigQueryConstants.DEFAULT_LOAD_JOB_CONCURRENCY);
+    if (concurrency < 1) {
+      throw new IllegalArgumentException(
+        String.format("Invalid load job concurrency '%d' in '%s'. It must be at least 1.",
+                      concurrency, BigQueryConstants.CONFIG_LOAD_JOB_CONCURRENCY));
+    }
+    return concurrency;
+  }
 }
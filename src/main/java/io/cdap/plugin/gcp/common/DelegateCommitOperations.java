@@ -0,0 +1,225 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.gcp.common;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.mapreduce.Counter;
+import org.apache.hadoop.mapreduce.JobContext;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs a commit operation on all the delegates of a delegating Output Committer, concurrently on a bounded number
+ * of threads.
+ * <p>
+ * Commits stop starting new delegates after the first failure, while aborts run on every delegate so that they all
+ * get cleaned up. In both cases the operation waits for the delegates that already started, and throws the first
+ * failure with the other ones suppressed.
+ * <p>
+ * Delegates run on threads shared by all the operations of the process, which are stopped when idle. Every operation
+ * only submits new delegates as the previous ones complete, to keep its own concurrency bounded.
+ * <p>
+ * The time spent on every delegate is counted in the duration ranges of the {@link #COUNTER_GROUP} counters, along
+ * with the totals, when the context of the operation has counters. Job contexts without counters get the same
+ * figures logged instead.
+ */
+public final class DelegateCommitOperations {
+  private static final Logger LOG = LoggerFactory.getLogger(DelegateCommitOperations.class);
+
+  public static final String CONFIG_THREADS = "cdap.gcp.delegate.committer.threads";
+  // Delegate commits mostly wait on GCS renames and listings
+  public static final int DEFAULT_THREADS = 8;
+  public static final String COUNTER_GROUP = "Delegate Committers";
+  // Threads shared by the operations, which can run concurrently in the tasks of an executor
+  private static final int MAX_THREADS = 64;
+  private static final ThreadPoolExecutor EXECUTOR = createExecutor();
+  // Upper bounds of the ranges the delegate durations are counted in, the last range having no upper bound
+  private static final long[] DURATION_RANGES_SECONDS = {1L, 10L, 60L};
+
+  private DelegateCommitOperations() {
+  }
+
+  /**
+   * An operation on a delegate.
+   *
+   * @param <T> type of the delegates
+   */
+  public interface Operation<T> {
+    void run(String name, T delegate) throws IOException;
+  }
+
+  /**
+   * Runs a commit operation on all the delegates, with up to {@link #CONFIG_THREADS} threads.
+   *
+   * @param operationName name of the operation, used in logs and counters
+   * @param context context of the operation
+   * @param delegates delegates by name
+   * @param operation operation to run on every delegate
+   * @throws IOException the first failure of the delegates that ran
+   */
+  public static <T> void commit(String operationName, JobContext context, Map<String, T> delegates,
+                                Operation<T> operation) throws IOException {
+    run(operationName, context, delegates, getThreads(context.getConfiguration()), true, operation);
+  }
+
+  /**
+   * Runs an abort operation on all the delegates, with up to {@link #CONFIG_THREADS} threads.
+   *
+   * @param operationName name of the operation, used in logs and counters
+   * @param context context of the operation
+   * @param delegates delegates by name
+   * @param operation operation to run on every delegate
+   * @throws IOException the first failure of the delegates, all of them having run
+   */
+  public static <T> void abort(String operationName, JobContext context, Map<String, T> delegates,
+                               Operation<T> operation) throws IOException {
+    run(operationName, context, delegates, getThreads(context.getConfiguration()), false, operation);
+  }
+
+  /**
+   * Runs an operation on all the delegates.
+   *
+   * @param threads maximum number of delegates to run the operation on concurrently
+   * @param stopOnFailure whether to stop starting new delegates after the first failure
+   */
+  public static <T> void run(String operationName, JobContext context, Map<String, T> delegates, int threads,
+                             boolean stopOnFailure, Operation<T> operation) throws IOException {
+    if (delegates.isEmpty()) {
+      return;
+    }
+
+    long startTime = System.nanoTime();
+    int concurrency = Math.max(1, Math.min(threads, delegates.size()));
+    CompletionService<Long> completionService = new ExecutorCompletionService<>(EXECUTOR);
+    Map<Future<Long>, String> running = new HashMap<>();
+    Iterator<Map.Entry<String, T>> pending = delegates.entrySet().iterator();
+    Map<String, Long> delegateCounts = new LinkedHashMap<>();
+    IOException failure = null;
+    String slowestDelegate = null;
+    long slowestMillis = -1L;
+    long totalMillis = 0L;
+    try {
+      while (true) {
+        // after a failure, commits only wait for the delegates that already started
+        while (running.size() < concurrency && pending.hasNext() && (failure == null || !stopOnFailure)) {
+          Map.Entry<String, T> delegate = pending.next();
+          running.put(completionService.submit(() -> {
+            long delegateStartTime = System.nanoTime();
+            operation.run(delegate.getKey(), delegate.getValue());
+            return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - delegateStartTime);
+          }), delegate.getKey());
+        }
+        if (running.isEmpty()) {
+          break;
+        }
+
+        Future<Long> future = completionService.take();
+        String name = running.remove(future);
+        try {
+          long millis = future.get();
+          LOG.debug("Ran {} on '{}' in {} ms.", operationName, name, millis);
+          delegateCounts.merge(getDurationRange(operationName, millis), 1L, Long::sum);
+          totalMillis += millis;
+          if (millis > slowestMillis) {
+            slowestDelegate = name;
+            slowestMillis = millis;
+          }
+        } catch (ExecutionException e) {
+          IOException delegateFailure = e.getCause() instanceof IOException ? (IOException) e.getCause() :
+            new IOException(String.format("Failed to run %s on '%s'.", operationName, name), e.getCause());
+          if (failure == null) {
+            failure = delegateFailure;
+          } else {
+            failure.addSuppressed(delegateFailure);
+          }
+        }
+      }
+    } catch (InterruptedException e) {
+      running.keySet().forEach(delegateFuture -> delegateFuture.cancel(true));
+      Thread.currentThread().interrupt();
+      throw new IOException(String.format("Interrupted while running %s.", operationName), e);
+    }
+
+    long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+    delegateCounts.put(operationName + " delegates", (long) delegates.size());
+    delegateCounts.put(operationName + " delegate time (ms)", totalMillis);
+    delegateCounts.put(operationName + " time (ms)", elapsedMillis);
+    if (context instanceof TaskAttemptContext) {
+      TaskAttemptContext taskContext = (TaskAttemptContext) context;
+      delegateCounts.forEach((name, value) -> incrementCounter(taskContext, name, value));
+      LOG.debug("Ran {} on {} delegates with {} threads in {} ms, the slowest one being '{}' with {} ms.",
+                operationName, delegates.size(), concurrency, elapsedMillis, slowestDelegate, slowestMillis);
+    } else {
+      LOG.info("Ran {} on {} delegates with {} threads in {} ms, the slowest one being '{}' with {} ms: {}.",
+               operationName, delegates.size(), concurrency, elapsedMillis, slowestDelegate, slowestMillis,
+               delegateCounts);
+    }
+
+    if (failure != null) {
+      throw failure;
+    }
+  }
+
+  /**
+   * Get the name of the counter of the delegates that ran for the given time.
+   */
+  private static String getDurationRange(String operationName, long millis) {
+    long lowerBound = 0L;
+    for (long upperBound : DURATION_RANGES_SECONDS) {
+      if (millis < TimeUnit.SECONDS.toMillis(upperBound)) {
+        return String.format("%s delegates in %d-%d s", operationName, lowerBound, upperBound);
+      }
+      lowerBound = upperBound;
+    }
+    return String.format("%s delegates in over %d s", operationName, lowerBound);
+  }
+
+  private static void incrementCounter(TaskAttemptContext context, String name, long value) {
+    // Some status reporters don't have counters
+    Counter counter = context.getCounter(COUNTER_GROUP, name);
+    if (counter != null) {
+      counter.increment(value);
+    }
+  }
+
+  private static int getThreads(Configuration conf) {
+    return conf.getInt(CONFIG_THREADS, DEFAULT_THREADS);
+  }
+
+  private static ThreadPoolExecutor createExecutor() {
+    ThreadPoolExecutor executor = new ThreadPoolExecutor(
+      MAX_THREADS, MAX_THREADS, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+      new ThreadFactoryBuilder().setNameFormat("delegate-committer-%d").setDaemon(true).build());
+    executor.allowCoreThreadTimeOut(true);
+    return executor;
+  }
+}
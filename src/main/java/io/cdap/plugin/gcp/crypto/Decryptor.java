@@ -19,16 +19,34 @@ package io.cdap.plugin.gcp.crypto;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
 
+import java.io.Closeable;
 import java.io.IOException;
 import java.nio.channels.SeekableByteChannel;
 
 /**
  * This interface defines the contract for creating decryption stream
  */
-public interface Decryptor {
+public interface Decryptor extends Closeable {
 
   /**
    * Opens a decrypted {@link SeekableByteChannel} for the given {@link Path}.
    */
   SeekableByteChannel open(FileSystem fs, Path path, int bufferSize) throws IOException;
+
+  /**
+   * Returns an opener of decrypted {@link SeekableByteChannel} for the given {@link Path}, to open several channels
+   * over the same file. Implementations can read what decrypting the file takes once for all the channels.
+   */
+  default ReadAheadSeekableByteChannel.ChannelOpener getChannelOpener(FileSystem fs, Path path,
+                                                                      int bufferSize) throws IOException {
+    return () -> open(fs, path, bufferSize);
+  }
+
+  /**
+   * Called when the file system using this decryptor is closed.
+   */
+  @Override
+  default void close() throws IOException {
+    // no-op
+  }
 }
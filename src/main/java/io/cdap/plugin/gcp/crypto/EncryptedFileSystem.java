@@ -42,10 +42,20 @@ public class EncryptedFileSystem extends FilterFileSystem {
   private static final String FS_SCHEME = CONF_PREFIX + "scheme";
   private static final String FS_IMPL = CONF_PREFIX + "impl";
   private static final String DECRYPTOR_IMPL = CONF_PREFIX + "decryptor.impl";
+  // Files read sequentially are read ahead by that many threads, with no read ahead when set to 0, the default
+  public static final String READ_AHEAD_THREADS = CONF_PREFIX + "read.ahead.threads";
+  public static final String READ_AHEAD_CHUNK_SIZE = CONF_PREFIX + "read.ahead.chunk.size";
+  public static final String READ_AHEAD_WINDOW_CHUNKS = CONF_PREFIX + "read.ahead.window.chunks";
+  private static final int DEFAULT_READ_AHEAD_THREADS = 0;
+  private static final int DEFAULT_READ_AHEAD_CHUNK_SIZE = 1024 * 1024;
+  private static final int DEFAULT_READ_AHEAD_WINDOW_CHUNKS = 8;
 
   private static final Logger LOG = LoggerFactory.getLogger(EncryptedFileSystem.class);
 
   private Decryptor decryptor;
+  private int readAheadThreads;
+  private int readAheadChunkSize;
+  private int readAheadWindowChunks;
 
   public static Map<String, String> configure(String scheme, Class<? extends Decryptor> decryptorClass,
                                               Map<String, String> properties) {
@@ -85,6 +95,11 @@ public class EncryptedFileSystem extends FilterFileSystem {
     Configuration copyConf = new Configuration(conf);
     copyConf.setClass("fs." + scheme + ".impl", fsClass, FileSystem.class);
 
+    this.readAheadThreads = conf.getInt(READ_AHEAD_THREADS, DEFAULT_READ_AHEAD_THREADS);
+    this.readAheadChunkSize = conf.getInt(READ_AHEAD_CHUNK_SIZE, DEFAULT_READ_AHEAD_CHUNK_SIZE);
+    this.readAheadWindowChunks = Math.max(readAheadThreads,
+                                          conf.getInt(READ_AHEAD_WINDOW_CHUNKS, DEFAULT_READ_AHEAD_WINDOW_CHUNKS));
+
     this.fs = FileSystem.get(name, copyConf);
     this.statistics = FileSystem.getStatistics(fs.getScheme(), fs.getClass());
     try {
@@ -100,7 +115,27 @@ public class EncryptedFileSystem extends FilterFileSystem {
 
   @Override
   public FSDataInputStream open(Path path, int bufferSize) throws IOException {
-    return new FSDataInputStream(new SeekableByteChannelFSInputStream(decryptor.open(fs, path, bufferSize)));
+    SeekableByteChannel channel;
+    if (readAheadThreads > 0) {
+      // The channels reading ahead share the decryption information of the file
+      ReadAheadSeekableByteChannel.ChannelOpener opener = decryptor.getChannelOpener(fs, path, bufferSize);
+      channel = new ReadAheadSeekableByteChannel(opener.open(), opener, readAheadChunkSize, readAheadWindowChunks,
+                                                 readAheadThreads);
+    } else {
+      channel = decryptor.open(fs, path, bufferSize);
+    }
+    return new FSDataInputStream(new SeekableByteChannelFSInputStream(channel));
+  }
+
+  @Override
+  public void close() throws IOException {
+    try {
+      if (decryptor != null) {
+        decryptor.close();
+      }
+    } finally {
+      super.close();
+    }
   }
 
   /**
@@ -140,5 +175,10 @@ public class EncryptedFileSystem extends FilterFileSystem {
     public boolean seekToNewSource(long l) {
       return false;
     }
+
+    @Override
+    public void close() throws IOException {
+      seekableChannel.close();
+    }
   }
 }
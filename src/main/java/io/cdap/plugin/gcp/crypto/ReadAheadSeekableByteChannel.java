@@ -0,0 +1,331 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.gcp.crypto;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SeekableByteChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A read only {@link SeekableByteChannel} that reads ahead of its position once it is read sequentially, in chunks
+ * read concurrently from several channels over the same content.
+ * <p>
+ * A decrypting channel decrypts one segment at a time on the reader thread, with small reads on the underlying
+ * stream. Reading the chunks with one decrypting channel per thread decrypts several segments in parallel, and reads
+ * large contiguous ranges of the underlying stream. At most a window of chunks starting at the current position is
+ * kept in memory. Seeking within the window reuses the chunks already read.
+ * <p>
+ * Reads go directly to the given channel until a whole chunk was read sequentially, so that content read in small
+ * pieces at various positions, like the footer of a columnar file, starts no threads and opens no other channel.
+ * Seeking outside of the window discards it, and reads go directly to the given channel again.
+ */
+public final class ReadAheadSeekableByteChannel implements SeekableByteChannel {
+
+  private final SeekableByteChannel channel;
+  private final ChannelOpener opener;
+  private final int chunkSize;
+  private final int windowChunks;
+  private final int threads;
+  private ExecutorService executor;
+  // Channels opened for chunk reads and not used by any, at most one per thread being ever opened
+  private final Queue<SeekableByteChannel> idleChannels;
+  private final List<SeekableByteChannel> openedChannels;
+  // Chunks of the window by index, only accessed by the reader, empty when not reading ahead
+  private final TreeMap<Long, Future<ByteBuffer>> chunks;
+  private long position;
+  // Number of bytes read sequentially up to the position
+  private long sequentialBytes;
+  private long size;
+  private boolean open;
+
+  /**
+   * Opens channels over the content.
+   */
+  public interface ChannelOpener {
+    SeekableByteChannel open() throws IOException;
+  }
+
+  /**
+   * Creates a channel reading ahead of the given channel.
+   *
+   * @param channel a channel over the content positioned at its start, used until the content is read sequentially
+   * @param opener opener of the additional channels over the same content, used to read ahead
+   * @param chunkSize size of the chunks read
+   * @param windowChunks maximum number of chunks kept in memory
+   * @param threads maximum number of chunks read concurrently
+   */
+  public ReadAheadSeekableByteChannel(SeekableByteChannel channel, ChannelOpener opener, int chunkSize,
+                                      int windowChunks, int threads) {
+    if (chunkSize <= 0 || windowChunks <= 0 || threads <= 0) {
+      throw new IllegalArgumentException(
+        String.format("Chunk size %d, window chunks %d and threads %d must be positive.",
+                      chunkSize, windowChunks, threads));
+    }
+
+    this.channel = channel;
+    this.opener = opener;
+    this.chunkSize = chunkSize;
+    this.windowChunks = windowChunks;
+    this.threads = threads;
+    this.idleChannels = new ConcurrentLinkedQueue<>();
+    this.openedChannels = new ArrayList<>();
+    this.chunks = new TreeMap<>();
+    this.size = -1L;
+    this.open = true;
+  }
+
+  @Override
+  public int read(ByteBuffer dst) throws IOException {
+    if (!open) {
+      throw new ClosedChannelException();
+    }
+    if (!dst.hasRemaining()) {
+      return 0;
+    }
+
+    long index = position / chunkSize;
+    if (!chunks.isEmpty() && !chunks.containsKey(index) && sequentialBytes == 0) {
+      // Seeking outside of the window stops reading ahead
+      discardWindow();
+    }
+    int read = chunks.isEmpty() ? readDirectly(dst) : readAhead(index, dst);
+    if (read > 0) {
+      position += read;
+      sequentialBytes += read;
+    }
+    return read;
+  }
+
+  @Override
+  public int write(ByteBuffer src) {
+    throw new UnsupportedOperationException("write is not support");
+  }
+
+  @Override
+  public long position() {
+    return position;
+  }
+
+  @Override
+  public SeekableByteChannel position(long newPosition) {
+    if (newPosition < 0) {
+      throw new IllegalArgumentException("Position must not be negative: " + newPosition);
+    }
+    if (newPosition != position) {
+      sequentialBytes = 0L;
+    }
+    position = newPosition;
+    return this;
+  }
+
+  @Override
+  public long size() throws IOException {
+    return size >= 0 ? size : channel.size();
+  }
+
+  @Override
+  public SeekableByteChannel truncate(long size) {
+    throw new UnsupportedOperationException("truncate is not support");
+  }
+
+  @Override
+  public boolean isOpen() {
+    return open;
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (!open) {
+      return;
+    }
+    open = false;
+    chunks.values().forEach(chunk -> chunk.cancel(true));
+    chunks.clear();
+    if (executor != null) {
+      executor.shutdownNow();
+      try {
+        executor.awaitTermination(1, TimeUnit.MINUTES);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+
+    IOException failure = null;
+    List<SeekableByteChannel> channels = new ArrayList<>();
+    channels.add(channel);
+    synchronized (openedChannels) {
+      channels.addAll(openedChannels);
+    }
+    for (SeekableByteChannel openedChannel : channels) {
+      try {
+        openedChannel.close();
+      } catch (IOException e) {
+        if (failure == null) {
+          failure = e;
+        } else {
+          failure.addSuppressed(e);
+        }
+      }
+    }
+    if (failure != null) {
+      throw failure;
+    }
+  }
+
+  /**
+   * Reads from the given channel, and starts reading ahead once a whole chunk was read sequentially.
+   */
+  private int readDirectly(ByteBuffer dst) throws IOException {
+    if (channel.position() != position) {
+      channel.position(position);
+    }
+    int read = channel.read(dst);
+    if (read > 0 && sequentialBytes + read >= chunkSize) {
+      // Decrypting channels know their size once read
+      size = channel.size();
+      if (position + read < size) {
+        updateWindow((position + read) / chunkSize);
+      }
+    }
+    return read;
+  }
+
+  /**
+   * Reads from the chunk at the given index, which is in the window.
+   */
+  private int readAhead(long index, ByteBuffer dst) throws IOException {
+    if (position >= size) {
+      return -1;
+    }
+    updateWindow(index);
+    ByteBuffer chunk = getChunk(index);
+    int offset = (int) (position - index * chunkSize);
+    if (offset >= chunk.limit()) {
+      // The content is shorter than its size
+      return -1;
+    }
+
+    ByteBuffer bytes = chunk.duplicate();
+    bytes.position(offset);
+    bytes.limit(Math.min(chunk.limit(), offset + dst.remaining()));
+    int read = bytes.remaining();
+    dst.put(bytes);
+    return read;
+  }
+
+  /**
+   * Discards the chunks outside of the window starting at the given chunk, and starts reading the missing ones.
+   */
+  private void updateWindow(long firstIndex) {
+    long lastIndex = Math.min(firstIndex + windowChunks, (size + chunkSize - 1) / chunkSize) - 1;
+    Iterator<Map.Entry<Long, Future<ByteBuffer>>> iterator = chunks.entrySet().iterator();
+    while (iterator.hasNext()) {
+      Map.Entry<Long, Future<ByteBuffer>> chunk = iterator.next();
+      if (chunk.getKey() < firstIndex || chunk.getKey() > lastIndex) {
+        // A chunk being read completes, so that its channel can be reused
+        chunk.getValue().cancel(false);
+        iterator.remove();
+      }
+    }
+    for (long index = firstIndex; index <= lastIndex; index++) {
+      if (chunks.containsKey(index)) {
+        continue;
+      }
+      if (executor == null) {
+        executor = Executors.newFixedThreadPool(
+          threads, new ThreadFactoryBuilder().setNameFormat("read-ahead-%d").setDaemon(true).build());
+      }
+      long start = index * chunkSize;
+      int length = (int) Math.min(chunkSize, size - start);
+      chunks.put(index, executor.submit(() -> readChunk(start, length)));
+    }
+  }
+
+  private void discardWindow() {
+    // Chunks being read complete, so that their channels can be reused
+    chunks.values().forEach(chunk -> chunk.cancel(false));
+    chunks.clear();
+  }
+
+  private ByteBuffer getChunk(long index) throws IOException {
+    try {
+      return chunks.get(index).get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while reading ahead");
+    } catch (ExecutionException e) {
+      // The chunk is read again by the next read
+      chunks.remove(index);
+      if (e.getCause() instanceof IOException) {
+        throw (IOException) e.getCause();
+      }
+      throw new IOException("Failed to read ahead", e.getCause());
+    }
+  }
+
+  private ByteBuffer readChunk(long start, int length) throws IOException {
+    SeekableByteChannel chunkChannel = idleChannels.poll();
+    if (chunkChannel == null) {
+      chunkChannel = opener.open();
+      synchronized (openedChannels) {
+        openedChannels.add(chunkChannel);
+      }
+    }
+
+    ByteBuffer chunk = ByteBuffer.allocate(length);
+    try {
+      chunkChannel.position(start);
+      readFully(chunkChannel, chunk);
+    } catch (IOException | RuntimeException e) {
+      // The position of a failed channel is unknown, so it is not reused
+      synchronized (openedChannels) {
+        openedChannels.remove(chunkChannel);
+      }
+      try {
+        chunkChannel.close();
+      } catch (IOException closeFailure) {
+        e.addSuppressed(closeFailure);
+      }
+      throw e;
+    }
+    idleChannels.add(chunkChannel);
+    chunk.flip();
+    return chunk;
+  }
+
+  private static void readFully(SeekableByteChannel channel, ByteBuffer buffer) throws IOException {
+    while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+      // keep reading until the buffer is full or the content ends
+    }
+  }
+}
@@ -27,6 +27,8 @@ import com.google.cloud.storage.Storage;
 import com.google.cloud.storage.StorageException;
 import com.google.cloud.storage.StorageOptions;
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Throwables;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import io.cdap.plugin.gcp.common.GCPConnectorConfig;
 import io.cdap.plugin.gcp.common.GCPUtils;
 import org.slf4j.Logger;
@@ -34,10 +36,18 @@ import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
 import javax.annotation.Nullable;
 
 /**
@@ -45,10 +55,21 @@ import javax.annotation.Nullable;
  */
 public class StorageClient {
   private static final Logger LOG = LoggerFactory.getLogger(StorageClient.class);
+  // number of objects copied or moved concurrently
+  private static final int TRANSFER_THREADS = 16;
+  // maximum number of requests in a batch request of the JSON API
+  private static final int MAX_DELETE_BATCH_SIZE = 100;
   private final Storage storage;
+  private final int transferThreads;
 
   private StorageClient(Storage storage) {
+    this(storage, TRANSFER_THREADS);
+  }
+
+  @VisibleForTesting
+  StorageClient(Storage storage, int transferThreads) {
     this.storage = storage;
+    this.transferThreads = transferThreads;
   }
 
   /**
@@ -107,6 +128,42 @@ public class StorageClient {
     }
   }
 
+  /**
+   * Lists the blobs that have the path prefix and are not ending with '/'.
+   */
+  public List<Blob> listBlobs(String path) {
+    GCSPath gcsPath = GCSPath.from(path);
+    List<Blob> blobs = new ArrayList<>();
+    for (Blob blob : storage.list(gcsPath.getBucket(), Storage.BlobListOption.prefix(gcsPath.getName()))
+      .iterateAll()) {
+      if (!blob.getName().endsWith("/")) {
+        blobs.add(blob);
+      }
+    }
+    return blobs;
+  }
+
+  /**
+   * Creates a blob with the given content and metadata, replacing the existing one if any.
+   */
+  public void createBlob(String path, byte[] content, Map<String, String> metaData) {
+    GCSPath gcsPath = GCSPath.from(path);
+    storage.create(BlobInfo.newBuilder(gcsPath.getBucket(), gcsPath.getName()).setMetadata(metaData).build(),
+                   content);
+  }
+
+  /**
+   * Reads the content of a blob.
+   *
+   * @return the content of the blob, or null if it does not exist
+   */
+  @Nullable
+  public byte[] readBlob(String path) {
+    GCSPath gcsPath = GCSPath.from(path);
+    Blob blob = storage.get(BlobId.of(gcsPath.getBucket(), gcsPath.getName()));
+    return blob == null ? null : blob.getContent();
+  }
+
   /**
    * Creates the given bucket if it does not exists.
    *
@@ -140,7 +197,7 @@ public class StorageClient {
    * @throws IllegalArgumentException if overwrite is false and copying would overwrite an existing object
    */
   public void copy(GCSPath sourcePath, GCSPath destPath, boolean recursive, boolean overwrite) {
-    pairTraverse(sourcePath, destPath, recursive, overwrite, BlobPair::copy);
+    pairTraverse(sourcePath, destPath, recursive, overwrite, false);
   }
 
   /**
@@ -155,15 +212,17 @@ public class StorageClient {
    * @throws IllegalArgumentException if overwrite is false and moving would overwrite an existing object
    */
   public void move(GCSPath sourcePath, GCSPath destPath, boolean recursive, boolean overwrite) {
-    pairTraverse(sourcePath, destPath, recursive, overwrite, BlobPair::move);
+    pairTraverse(sourcePath, destPath, recursive, overwrite, true);
   }
 
   /**
-   * Gets source and destination pairs by traversing the source path. Consumes each pair after the directory structure
-   * is completely traversed.
+   * Gets source and destination pairs by traversing the source path, and copies or moves the source of each pair.
+   * If objects can be overwritten, pairs are transferred while the source path is traversed, unless the destinations
+   * could be listed by the traversal. Otherwise, they are transferred only once the whole source path was traversed
+   * and no destination object would be overwritten.
    */
   private void pairTraverse(GCSPath sourcePath, GCSPath destPath, boolean recursive, boolean overwrite,
-                            Consumer<BlobPair> consumer) {
+                            boolean deleteSource) {
 
     Bucket sourceBucket = null;
     try {
@@ -205,27 +264,78 @@ public class StorageClient {
       destinationBaseExists = storage.get(BlobId.of(destPath.getBucket(), modifiedName)) != null;
     }
 
-    List<BlobPair> copyList = new ArrayList<>();
-    traverse(BlobId.of(sourcePath.getBucket(), sourcePath.getName()), recursive, sourceBlob -> {
+    // all the destinations start with the destination of the base object
+    BlobId baseDestination = resolve(sourcePath.getName(), sourcePath.getName(), destPath, destinationBaseExists);
+    Predicate<BlobId> exists = overwrite ? blobId -> false : getExistingObjects(destPath, baseDestination, recursive);
+    Function<Blob, BlobPair> toPair = sourceBlob -> {
       BlobId destBlobID = resolve(sourcePath.getName(), sourceBlob.getBlobId().getName(),
                                   destPath, destinationBaseExists);
-      if (!overwrite) {
-        Blob destBlob = storage.get(destBlobID);
-        // we can't just use Blob's isDirectory() because the cloud console will create a 'directory' by creating
-        // a 0 size placeholder blob that ends with '/'. This placeholder blob's isDirectory() method returns false,
-        // but we don't want the overwrite check to fail on it. So we explicitly ignore the check for these 0 size
-        // placeholder blobs.
-        if (destBlob != null && !destBlob.getName().endsWith("/") && destBlob.getSize() != 0) {
-          throw new IllegalArgumentException(String.format("%s already exists.", toPath(destBlobID)));
-        }
+      if (exists.test(destBlobID)) {
+        throw new IllegalArgumentException(String.format("%s already exists.", toPath(destBlobID)));
+      }
+      return new BlobPair(sourceBlob, destBlobID);
+    };
+
+    // objects copied while the source is traversed would be listed again if the destinations overlap the source
+    boolean overlapping = sourcePath.getBucket().equals(destPath.getBucket())
+      && (baseDestination.getName().startsWith(sourcePath.getName())
+      || sourcePath.getName().startsWith(baseDestination.getName()));
+    BlobId sourceBlobId = BlobId.of(sourcePath.getBucket(), sourcePath.getName());
+    try (BlobTransfer transfer = new BlobTransfer(deleteSource)) {
+      if (overwrite && !overlapping) {
+        traverse(sourceBlobId, recursive, sourceBlob -> transfer.submit(toPair.apply(sourceBlob)));
+      } else {
+        List<BlobPair> copyList = new ArrayList<>();
+        traverse(sourceBlobId, recursive, sourceBlob -> copyList.add(toPair.apply(sourceBlob)));
+        LOG.debug("Found {} objects.", copyList.size());
+        copyList.forEach(transfer::submit);
       }
-      copyList.add(new BlobPair(sourceBlob, destBlobID));
-    });
+      transfer.await();
+    }
+  }
+
+  /**
+   * Returns a predicate of whether an object exists at a destination and can't be overwritten.
+   * The objects that exist at the destinations are listed at once instead of looking up every destination.
+   *
+   * @param destPath the destination path
+   * @param baseDestination the destination of the base object, which all the destinations start with
+   * @param recursive whether the objects of the subdirectories are copied
+   */
+  private Predicate<BlobId> getExistingObjects(GCSPath destPath, BlobId baseDestination, boolean recursive) {
+    // when copying into a bucket, the destinations are the names of the sources, which start with the base name.
+    // otherwise, the destinations are the base destination itself or the objects in it.
+    String prefix = destPath.isBucket() ? baseDestination.getName() : append(baseDestination.getName(), "/");
+    if (prefix.isEmpty()) {
+      // the whole bucket would be listed, the destinations are looked up one by one instead
+      return blobId -> isExistingObject(storage.get(blobId));
+    }
 
-    LOG.debug("Found {} objects.", copyList.size());
-    for (BlobPair blobPair : copyList) {
-      consumer.accept(blobPair);
+    Set<String> existingObjects = new HashSet<>();
+    // a non-recursive copy only writes the objects directly under the prefix, the subdirectories are not listed
+    Page<Blob> blobList = recursive ?
+      storage.list(baseDestination.getBucket(), Storage.BlobListOption.prefix(prefix)) :
+      storage.list(baseDestination.getBucket(), Storage.BlobListOption.currentDirectory(),
+                   Storage.BlobListOption.prefix(prefix));
+    for (Blob blob : blobList.iterateAll()) {
+      if (isExistingObject(blob)) {
+        existingObjects.add(blob.getName());
+      }
     }
+    // the destination path itself was already looked up, and doesn't exist if it is the base destination
+    if (!destPath.isBucket() && !baseDestination.getName().equals(destPath.getName())
+      && isExistingObject(storage.get(baseDestination))) {
+      existingObjects.add(baseDestination.getName());
+    }
+    return blobId -> existingObjects.contains(blobId.getName());
+  }
+
+  private static boolean isExistingObject(@Nullable Blob blob) {
+    // we can't just use Blob's isDirectory() because the cloud console will create a 'directory' by creating
+    // a 0 size placeholder blob that ends with '/'. This placeholder blob's isDirectory() method returns false,
+    // but we don't want the overwrite check to fail on it. So we explicitly ignore the check for these 0 size
+    // placeholder blobs.
+    return blob != null && !blob.getName().endsWith("/") && blob.getSize() != 0;
   }
 
   /**
@@ -294,19 +404,21 @@ public class StorageClient {
    * is added to the collection. If it represents a directory, all objects within that directory are added.
    * If recursive is true, all subdirectories will also be searched.
    * If the blob does not exist and does not represent a directory, nothing happens.
+   * Objects are consumed page by page, while they are listed.
    *
    * @param blobId the blob id to traverse
    * @param recursive whether to recursively traverse subdirectories
    * @param consumer the blob consumer
    */
   private void traverse(BlobId blobId, boolean recursive, Consumer<Blob> consumer) {
-    Page<Blob> blobList = storage.list(blobId.getBucket(), Storage.BlobListOption.currentDirectory(),
-                                       Storage.BlobListOption.prefix(blobId.getName()));
+    // a listing without delimiter returns the objects of all the subdirectories, without listing each of them
+    Page<Blob> blobList = recursive ?
+      storage.list(blobId.getBucket(), Storage.BlobListOption.prefix(blobId.getName())) :
+      storage.list(blobId.getBucket(), Storage.BlobListOption.currentDirectory(),
+                   Storage.BlobListOption.prefix(blobId.getName()));
     for (Blob blob : blobList.iterateAll()) {
       if (!blob.isDirectory()) {
         consumer.accept(blob);
-      } else if (recursive) {
-        traverse(blob.getBlobId(), true, consumer);
       }
     }
   }
@@ -341,20 +453,126 @@ public class StorageClient {
       this.destination = destination;
     }
 
-    private Blob copy() {
+    private void copy(Storage storage) {
       LOG.debug("Copying {} to {}.", toPath(sourceBlob.getBlobId()), toPath(destination));
-      CopyWriter copyWriter = sourceBlob.copyTo(destination);
-      Blob copied = copyWriter.getResult();
+      CopyWriter copyWriter = storage.copy(Storage.CopyRequest.of(sourceBlob.getBlobId(), destination));
+      // large objects are rewritten with several requests, each one continuing from the token of the previous one
+      while (!copyWriter.isDone()) {
+        copyWriter.copyChunk();
+      }
       LOG.debug("Successfully copied {} to {}.", toPath(sourceBlob.getBlobId()), toPath(destination));
-      return copied;
+    }
+  }
+
+  /**
+   * Copies or moves blobs with a bounded number of concurrent requests. The sources of moved blobs are deleted in
+   * batches, once they were copied.
+   */
+  private final class BlobTransfer implements AutoCloseable {
+    private final boolean deleteSource;
+    private final ExecutorService executor;
+    // bounds the blobs submitted and not transferred yet, so that the listing doesn't run ahead of the transfers
+    private final Semaphore permits;
+    private final int maxPending;
+    private final AtomicReference<Throwable> failure;
+    // guarded by this
+    private List<BlobId> pendingDeletes;
+
+    private BlobTransfer(boolean deleteSource) {
+      this.deleteSource = deleteSource;
+      this.executor = Executors.newFixedThreadPool(
+        transferThreads, new ThreadFactoryBuilder().setNameFormat("gcs-transfer-%d").setDaemon(true).build());
+      this.maxPending = transferThreads * 2;
+      this.permits = new Semaphore(maxPending);
+      this.failure = new AtomicReference<>();
+      this.pendingDeletes = new ArrayList<>();
+    }
+
+    /**
+     * Submits a blob to transfer, blocking while too many blobs are pending.
+     */
+    private void submit(BlobPair blobPair) {
+      throwIfFailed();
+      acquire(1);
+      executor.execute(() -> {
+        try {
+          transfer(blobPair);
+        } catch (Throwable t) {
+          failure.compareAndSet(null, t);
+        } finally {
+          permits.release();
+        }
+      });
+    }
+
+    /**
+     * Waits for all the submitted blobs to be transferred.
+     */
+    private void await() {
+      acquire(maxPending);
+      permits.release(maxPending);
+      throwIfFailed();
+      List<BlobId> deletes;
+      synchronized (this) {
+        deletes = pendingDeletes;
+        pendingDeletes = new ArrayList<>();
+      }
+      if (!deletes.isEmpty()) {
+        delete(deletes);
+      }
     }
 
-    private Blob move() {
-      Blob moved = copy();
-      LOG.debug("Deleting {}.", toPath(sourceBlob.getBlobId()));
-      sourceBlob.delete();
-      LOG.debug("Successfully deleted {}.", toPath(sourceBlob.getBlobId()));
-      return moved;
+    @Override
+    public void close() {
+      executor.shutdownNow();
+    }
+
+    private void transfer(BlobPair blobPair) {
+      blobPair.copy(storage);
+      if (!deleteSource) {
+        return;
+      }
+      List<BlobId> deletes = null;
+      synchronized (this) {
+        pendingDeletes.add(blobPair.sourceBlob.getBlobId());
+        if (pendingDeletes.size() >= MAX_DELETE_BATCH_SIZE) {
+          deletes = pendingDeletes;
+          pendingDeletes = new ArrayList<>();
+        }
+      }
+      if (deletes != null) {
+        delete(deletes);
+      }
+    }
+
+    private void delete(List<BlobId> blobIds) {
+      LOG.debug("Deleting {} objects.", blobIds.size());
+      List<Boolean> deleted = storage.delete(blobIds);
+      for (int i = 0; i < blobIds.size(); i++) {
+        // a batch reports any failure as not deleted, the blob is deleted alone to fail with the actual error.
+        // blobs that don't exist anymore are ignored.
+        if (!deleted.get(i)) {
+          storage.delete(blobIds.get(i));
+        }
+      }
+      LOG.debug("Successfully deleted {} objects.", blobIds.size());
+    }
+
+    private void acquire(int count) {
+      try {
+        permits.acquire(count);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new RuntimeException("Interrupted while transferring objects.", e);
+      }
+    }
+
+    private void throwIfFailed() {
+      Throwable t = failure.get();
+      if (t != null) {
+        Throwables.throwIfUnchecked(t);
+        throw new RuntimeException(t);
+      }
     }
   }
 }
@@ -16,6 +16,7 @@
 
 package io.cdap.plugin.gcp.gcs.sink;
 
+import io.cdap.plugin.gcp.common.DelegateCommitOperations;
 import org.apache.hadoop.mapreduce.JobContext;
 import org.apache.hadoop.mapreduce.JobStatus;
 import org.apache.hadoop.mapreduce.OutputCommitter;
@@ -30,7 +31,8 @@ import java.util.Map;
 /**
  * Output Committer which creates and delegates operations to other GCS Output Committer instances.
  *
- * Delegated instances are created based on a supplied Output Format and Destination Table Names.
+ * Delegated instances are created based on a supplied Output Format and Destination Table Names. Commit and abort
+ * operations run on the delegates concurrently.
  */
 public class DelegatingGCSOutputCommitter extends OutputCommitter {
   private final Map<String, OutputCommitter> committerMap;
@@ -42,7 +44,9 @@ public class DelegatingGCSOutputCommitter extends OutputCommitter {
   /**
    * Add a new GCSOutputCommitter based on a supplied Output Format and Table Name.
    *
-   * This GCS Output Committer gets initialized when created.
+   * This GCS Output Committer gets initialized when created. If the table already has a GCS Output Committer, only
+   * the output directory is set: all the files written for the table by the task are in the same task output,
+   * which is committed once.
    */
   @SuppressWarnings("rawtypes")
   public void addGCSOutputCommitterFromOutputFormat(OutputFormat outputFormat,
@@ -51,6 +55,9 @@ public class DelegatingGCSOutputCommitter extends OutputCommitter {
     //Set output directory
     context.getConfiguration().set(FileOutputFormat.OUTDIR,
                                    DelegatingGCSOutputUtils.buildOutputPath(context.getConfiguration(), tableName));
+    if (committerMap.containsKey(tableName)) {
+      return;
+    }
 
     //Wrap output committer into the GCS Output Committer.
     GCSOutputCommitter gcsOutputCommitter = new GCSOutputCommitter(outputFormat.getOutputCommitter(context));
@@ -88,57 +95,25 @@ public class DelegatingGCSOutputCommitter extends OutputCommitter {
 
   @Override
   public void commitTask(TaskAttemptContext taskAttemptContext) throws IOException {
-    for (OutputCommitter committer : committerMap.values()) {
-      committer.commitTask(taskAttemptContext);
-    }
+    DelegateCommitOperations.commit("commitTask", taskAttemptContext, committerMap,
+                                    (tableName, committer) -> committer.commitTask(taskAttemptContext));
   }
 
   @Override
   public void commitJob(JobContext jobContext) throws IOException {
-    for (OutputCommitter committer : committerMap.values()) {
-      committer.commitJob(jobContext);
-    }
+    DelegateCommitOperations.commit("commitJob", jobContext, committerMap,
+                                    (tableName, committer) -> committer.commitJob(jobContext));
   }
 
   @Override
   public void abortTask(TaskAttemptContext taskAttemptContext) throws IOException {
-    IOException ioe = null;
-
-    for (OutputCommitter committer : committerMap.values()) {
-      try {
-        committer.abortTask(taskAttemptContext);
-      } catch (IOException e) {
-        if (ioe == null) {
-          ioe = e;
-        } else {
-          ioe.addSuppressed(e);
-        }
-      }
-    }
-
-    if (ioe != null) {
-      throw ioe;
-    }
+    DelegateCommitOperations.abort("abortTask", taskAttemptContext, committerMap,
+                                   (tableName, committer) -> committer.abortTask(taskAttemptContext));
   }
 
   @Override
   public void abortJob(JobContext jobContext, JobStatus.State state) throws IOException {
-    IOException ioe = null;
-
-    for (OutputCommitter committer : committerMap.values()) {
-      try {
-        committer.abortJob(jobContext, state);
-      } catch (IOException e) {
-        if (ioe == null) {
-          ioe = e;
-        } else {
-          ioe.addSuppressed(e);
-        }
-      }
-    }
-
-    if (ioe != null) {
-      throw ioe;
-    }
+    DelegateCommitOperations.abort("abortJob", jobContext, committerMap,
+                                   (tableName, committer) -> committer.abortJob(jobContext, state));
   }
 }
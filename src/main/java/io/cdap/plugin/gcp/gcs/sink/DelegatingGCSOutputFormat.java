@@ -39,6 +39,9 @@ public class DelegatingGCSOutputFormat extends OutputFormat<NullWritable, Struct
   public static final String DELEGATE_CLASS = "delegating_output_format.delegate";
   public static final String OUTPUT_PATH_BASE_DIR = "delegating_output_format.output.path.base";
   public static final String OUTPUT_PATH_SUFFIX = "delegating_output_format.output.path.suffix";
+  public static final String MAX_OPEN_WRITERS = "delegating_output_format.max.open.writers";
+  // Open writers of a task, each one holding a format encoder and a GCS upload buffer
+  public static final int DEFAULT_MAX_OPEN_WRITERS = 50;
   private final DelegatingGCSOutputCommitter outputCommitter;
 
   public DelegatingGCSOutputFormat() {
@@ -51,12 +54,14 @@ public class DelegatingGCSOutputFormat extends OutputFormat<NullWritable, Struct
   public static Map<String, String> configure(String delegateClassName,
                                               String filterField,
                                               String outputBaseDir,
-                                              String outputSuffix) {
+                                              String outputSuffix,
+                                              int maxOpenWriters) {
     Map<String, String> config = new HashMap<>();
     config.put(DELEGATE_CLASS, delegateClassName);
     config.put(PARTITION_FIELD, filterField);
     config.put(OUTPUT_PATH_BASE_DIR, outputBaseDir);
     config.put(OUTPUT_PATH_SUFFIX, outputSuffix);
+    config.put(MAX_OPEN_WRITERS, String.valueOf(maxOpenWriters));
     return config;
   }
 
@@ -65,7 +70,9 @@ public class DelegatingGCSOutputFormat extends OutputFormat<NullWritable, Struct
     Configuration hConf = context.getConfiguration();
     String partitionField = hConf.get(PARTITION_FIELD);
 
-    return new DelegatingGCSRecordWriter(context, partitionField, outputCommitter);
+    int maxOpenWriters = hConf.getInt(MAX_OPEN_WRITERS, DEFAULT_MAX_OPEN_WRITERS);
+
+    return new DelegatingGCSRecordWriter(context, partitionField, maxOpenWriters, outputCommitter);
   }
 
   @Override
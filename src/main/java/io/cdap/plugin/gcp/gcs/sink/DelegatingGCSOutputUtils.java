@@ -27,6 +27,7 @@ import java.io.IOException;
  * Utility class for the Delegating GCS Output classes.
  */
 public class DelegatingGCSOutputUtils {
+  private static final String DEFAULT_OUTPUT_NAME = "part";
 
   @SuppressWarnings("unchecked")
   public static OutputFormat<NullWritable, StructuredRecord> getDelegateFormat(Configuration hConf) throws IOException {
@@ -40,6 +41,22 @@ public class DelegatingGCSOutputUtils {
     }
   }
 
+  /**
+   * Sets the name of the files written with the given configuration, so that every Record Writer opened by a task
+   * for the same output directory writes its own file. The first Record Writer keeps the default file name.
+   *
+   * @param file the number of the Record Writer in the output directory, starting at 0
+   */
+  public static void setOutputFileName(Configuration hConf, int file) {
+    if (file == 0) {
+      return;
+    }
+    hConf.set(GCSBatchSink.AVRO_NAMED_OUTPUT,
+              String.format("%s-%d", hConf.get(GCSBatchSink.AVRO_NAMED_OUTPUT, DEFAULT_OUTPUT_NAME), file));
+    hConf.set(GCSBatchSink.COMMON_NAMED_OUTPUT,
+              String.format("%s-%d", hConf.get(GCSBatchSink.COMMON_NAMED_OUTPUT, DEFAULT_OUTPUT_NAME), file));
+  }
+
   public static String buildOutputPath(Configuration hConf, String context) {
     return String.format("%s/%s/%s",
                          hConf.get(DelegatingGCSOutputFormat.OUTPUT_PATH_BASE_DIR),
@@ -18,34 +18,50 @@ package io.cdap.plugin.gcp.gcs.sink;
 
 import io.cdap.cdap.api.data.format.StructuredRecord;
 import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.mapred.JobConf;
 import org.apache.hadoop.mapreduce.OutputFormat;
 import org.apache.hadoop.mapreduce.RecordWriter;
 import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.task.TaskAttemptContextImpl;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 /**
  * Record Writer which delegates writes to other Record Writers based on the record's Table name.
  * <p>
  * This Record Writer will initialize record writes and Output Committers as needed.
+ * <p>
+ * As every open Record Writer holds a format encoder and an upload buffer, the number of open Record Writers is
+ * limited. When the limit is reached, the least recently used Record Writer is closed. If more records are written
+ * to its partition, a new Record Writer is opened on a new file, all the files of the partition being committed
+ * together. Input clustered by partition opens every Record Writer once.
  */
 public class DelegatingGCSRecordWriter extends RecordWriter<NullWritable, StructuredRecord> {
   private static final Logger LOG = LoggerFactory.getLogger(DelegatingGCSRecordWriter.class);
   private final TaskAttemptContext context;
   private final String partitionField;
+  private final int maxOpenWriters;
+  // Open Record Writers, in least recently used order
   private final Map<String, RecordWriter<NullWritable, StructuredRecord>> delegateMap;
+  // Number of files of all the partitions written by this task, including the closed ones
+  private final Map<String, Integer> partitionFiles;
   private final DelegatingGCSOutputCommitter delegatingGCSOutputCommitter;
 
   DelegatingGCSRecordWriter(TaskAttemptContext context,
                             String partitionField,
+                            int maxOpenWriters,
                             DelegatingGCSOutputCommitter delegatingGCSOutputCommitter) {
     this.context = context;
     this.partitionField = partitionField;
-    this.delegateMap = new HashMap<>();
+    this.maxOpenWriters = maxOpenWriters;
+    this.delegateMap = new LinkedHashMap<>(16, 0.75f, true);
+    this.partitionFiles = new HashMap<>();
     this.delegatingGCSOutputCommitter = delegatingGCSOutputCommitter;
   }
 
@@ -53,21 +69,11 @@ public class DelegatingGCSRecordWriter extends RecordWriter<NullWritable, Struct
   public void write(NullWritable key, StructuredRecord record) throws IOException, InterruptedException {
     String tableName = record.get(partitionField);
 
-    RecordWriter<NullWritable, StructuredRecord> delegate;
-
-    if (delegateMap.containsKey(tableName)) {
-      delegate = delegateMap.get(tableName);
-    } else {
-      //Get output format from configuration.
-      OutputFormat<NullWritable, StructuredRecord> format =
-        DelegatingGCSOutputUtils.getDelegateFormat(context.getConfiguration());
-
-      //Initialize GCS Output Committer for this format.
-      delegatingGCSOutputCommitter.addGCSOutputCommitterFromOutputFormat(format, context, tableName);
+    // Getting the delegate marks it as the most recently used one
+    RecordWriter<NullWritable, StructuredRecord> delegate = delegateMap.get(tableName);
 
-      //Add record writer to delegate map.
-      delegate = format.getRecordWriter(context);
-      delegateMap.put(tableName, delegate);
+    if (delegate == null) {
+      delegate = getRecordWriterDelegate(tableName);
     }
 
     delegate.write(key, record);
@@ -87,4 +93,38 @@ public class DelegatingGCSRecordWriter extends RecordWriter<NullWritable, Struct
     delegatingGCSOutputCommitter.commitJob(context);
   }
 
+  private RecordWriter<NullWritable, StructuredRecord> getRecordWriterDelegate(String tableName)
+    throws IOException, InterruptedException {
+    while (delegateMap.size() >= maxOpenWriters) {
+      closeLeastRecentlyUsedDelegate();
+    }
+
+    // Every partition has its own output directory and file names, which are set in a copy of the configuration.
+    // The copy is a JobConf, so that the task attempt context uses it instead of copying it again.
+    JobConf hConf = new JobConf(context.getConfiguration());
+    int file = partitionFiles.merge(tableName, 1, Integer::sum) - 1;
+    DelegatingGCSOutputUtils.setOutputFileName(hConf, file);
+    TaskAttemptContext partitionContext = new TaskAttemptContextImpl(hConf, context.getTaskAttemptID());
+
+    //Get output format from configuration.
+    OutputFormat<NullWritable, StructuredRecord> format = DelegatingGCSOutputUtils.getDelegateFormat(hConf);
+
+    //Initialize GCS Output Committer for this format.
+    delegatingGCSOutputCommitter.addGCSOutputCommitterFromOutputFormat(format, partitionContext, tableName);
+
+    //Add record writer to delegate map.
+    RecordWriter<NullWritable, StructuredRecord> delegate = format.getRecordWriter(partitionContext);
+    delegateMap.put(tableName, delegate);
+    return delegate;
+  }
+
+  private void closeLeastRecentlyUsedDelegate() throws IOException, InterruptedException {
+    Iterator<Map.Entry<String, RecordWriter<NullWritable, StructuredRecord>>> iterator =
+      delegateMap.entrySet().iterator();
+    Map.Entry<String, RecordWriter<NullWritable, StructuredRecord>> entry = iterator.next();
+    iterator.remove();
+    LOG.debug("Closing the writer of partition '{}' to stay within {} open writers.", entry.getKey(), maxOpenWriters);
+    // Closing the Record Writer completes its file, which is committed along with the task
+    entry.getValue().close(context);
+  }
 }
@@ -65,6 +65,7 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.UUID;
 import javax.annotation.Nullable;
 
 /**
@@ -86,6 +87,7 @@ public class GCSBatchSink extends AbstractFileSink<GCSBatchSink.GCSBatchSinkConf
 
   private final GCSBatchSinkConfig config;
   private String outputPath;
+  private String manifestName;
 
 
   public GCSBatchSink(GCSBatchSinkConfig config) {
@@ -145,6 +147,9 @@ public class GCSBatchSink extends AbstractFileSink<GCSBatchSink.GCSBatchSinkConf
     Map<String, String> properties = GCPUtils.getFileSystemProperties(config.connection, config.getPath(),
                                                                       new HashMap<>());
     properties.put(GCSBatchSink.CONTENT_TYPE, config.getContentType());
+    // Every run has its own manifest, as runs can write to the same directory
+    manifestName = String.format("_manifest-%s.json", UUID.randomUUID());
+    properties.put(GCSOutputManifest.NAME, manifestName);
     properties.putAll(config.getFileSystemProperties());
     String outputFileBaseName = config.getOutputFileNameBase();
     if (outputFileBaseName == null || outputFileBaseName.isEmpty()) {
@@ -180,7 +185,15 @@ public class GCSBatchSink extends AbstractFileSink<GCSBatchSink.GCSBatchSinkConf
 
     try {
       StorageClient storageClient = StorageClient.create(config.connection);
-      storageClient.mapMetaDataForAllBlobs(getPrefixPath(), new MetricsEmitter(context.getMetrics())::emitMetrics);
+      MetricsEmitter metricsEmitter = new MetricsEmitter(context.getMetrics());
+      GCSOutputManifest manifest = manifestName == null || outputPath == null ? null :
+        GCSOutputManifest.read(storageClient, GCSOutputManifest.getPath(outputPath, manifestName));
+      if (manifest != null) {
+        metricsEmitter.emitMetrics(manifest.getRecords());
+        return;
+      }
+      // Without a manifest, which older versions did not write, the record counts are in the metadata of the files
+      storageClient.mapMetaDataForAllBlobs(getPrefixPath(), metricsEmitter::emitMetrics);
     } catch (Exception e) {
       LOG.warn("Metrics for the number of affected rows in GCS Sink maybe incorrect.", e);
     }
@@ -225,7 +238,10 @@ public class GCSBatchSink extends AbstractFileSink<GCSBatchSink.GCSBatchSinkConf
     }
 
     public void emitMetrics(Map<String, String> metaData) {
-      long totalRows = extractRecordCount(metaData);
+      emitMetrics(extractRecordCount(metaData));
+    }
+
+    public void emitMetrics(long totalRows) {
       if (totalRows == 0) {
         return;
       }
@@ -42,19 +42,21 @@ import io.cdap.cdap.etl.api.batch.BatchSink;
 import io.cdap.cdap.etl.api.batch.BatchSinkContext;
 import io.cdap.cdap.etl.api.connector.Connector;
 import io.cdap.cdap.etl.api.validation.ValidatingOutputFormat;
+import io.cdap.plugin.common.LineageRecorder;
 import io.cdap.plugin.common.batch.sink.SinkOutputFormatProvider;
 import io.cdap.plugin.format.FileFormat;
 import io.cdap.plugin.gcp.common.CmekUtils;
 import io.cdap.plugin.gcp.common.GCPUtils;
 import io.cdap.plugin.gcp.gcs.connector.GCSConnector;
 import org.apache.hadoop.io.NullWritable;
-import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
 import javax.annotation.Nullable;
@@ -176,6 +178,9 @@ public class GCSMultiBatchSink extends BatchSink<StructuredRecord, NullWritable,
                                             Map<String, String> argumentCopy)
     throws IOException, InstantiationException {
 
+    Map<String, String> outputProperties = new HashMap<>(baseProperties);
+    List<String> destinations = new ArrayList<>();
+    String outputFormatClassName = null;
     for (Map.Entry<String, String> argument : argumentCopy.entrySet()) {
       String key = argument.getKey();
       if (!key.startsWith(TABLE_PREFIX)) {
@@ -188,16 +193,35 @@ public class GCSMultiBatchSink extends BatchSink<StructuredRecord, NullWritable,
       context.getArguments().set(SCHEMA_MACRO, schema.toString());
       ValidatingOutputFormat validatingOutputFormat = context.newPluginInstance(FORMAT_PLUGIN_ID);
 
-      Map<String, String> outputProperties = new HashMap<>(baseProperties);
-      outputProperties.putAll(validatingOutputFormat.getOutputFormatConfiguration());
-      outputProperties.putAll(RecordFilterOutputFormat.configure(validatingOutputFormat.getOutputFormatClassName(),
-                                                                 config.splitField, name, schema));
-      outputProperties.put(FileOutputFormat.OUTDIR, config.getOutputDir(context.getLogicalStartTime(), name));
-      outputProperties.put(GCSBatchSink.CONTENT_TYPE, config.getContentType());
-      context.addOutput(Output.of(
-        config.getReferenceName() + "_" + name,
-        new SinkOutputFormatProvider(RecordFilterOutputFormat.class.getName(), outputProperties)));
+      // Every destination keeps its own dataset for lineage, as when it had its own output
+      LineageRecorder lineageRecorder = new LineageRecorder(context, config.getReferenceName() + "_" + name);
+      lineageRecorder.createExternalDataset(schema);
+      List<String> fieldNames = schema.getFields() == null ? new ArrayList<>() :
+        schema.getFields().stream().map(Schema.Field::getName).collect(Collectors.toList());
+      if (!fieldNames.isEmpty()) {
+        lineageRecorder.recordWrite("Write", "Wrote to Google Cloud Storage.", fieldNames);
+      }
+
+      outputFormatClassName = validatingOutputFormat.getOutputFormatClassName();
+      outputProperties.putAll(RecordRouterOutputFormat.configureDestination(
+        name, schema, validatingOutputFormat.getOutputFormatConfiguration()));
+      destinations.add(name);
+    }
+    if (destinations.isEmpty()) {
+      return;
     }
+
+    // Records are routed to their destination by a single output, instead of being filtered by an output for each
+    // destination
+    outputProperties.putAll(RecordRouterOutputFormat.configure(outputFormatClassName, config.splitField,
+                                                               config.getOutputBaseDir(),
+                                                               config.getOutputSuffix(context.getLogicalStartTime()),
+                                                               destinations));
+    outputProperties.put(RecordRouterOutputFormat.MAX_OPEN_WRITERS, String.valueOf(config.getMaxOpenWriters()));
+    outputProperties.put(GCSBatchSink.CONTENT_TYPE, config.getContentType());
+    context.addOutput(Output.of(
+      config.getReferenceName(),
+      new SinkOutputFormatProvider(RecordRouterOutputFormat.class.getName(), outputProperties)));
   }
 
   private void configureSchemalessMultiSink(BatchSinkContext context,
@@ -210,7 +234,8 @@ public class GCSMultiBatchSink extends BatchSink<StructuredRecord, NullWritable,
     outputProperties.putAll(DelegatingGCSOutputFormat.configure(validatingOutputFormat.getOutputFormatClassName(),
                                                                 config.splitField,
                                                                 config.getOutputBaseDir(),
-                                                                config.getOutputSuffix(context.getLogicalStartTime())));
+                                                                config.getOutputSuffix(context.getLogicalStartTime()),
+                                                                config.getMaxOpenWriters()));
     outputProperties.put(GCSBatchSink.CONTENT_TYPE, config.getContentType());
     context.addOutput(Output.of(
       config.getReferenceName(),
@@ -222,6 +247,7 @@ public class GCSMultiBatchSink extends BatchSink<StructuredRecord, NullWritable,
    */
   public static class GCSMultiBatchSinkConfig extends GCSBatchSink.GCSBatchSinkConfig {
     private static final String NAME_ALLOW_FLEXIBLE_SCHEMA = "allowFlexibleSchema";
+    private static final String NAME_MAX_OPEN_WRITERS = "maxOpenWriters";
 
     @Description("The codec to use when writing data. " +
       "The 'avro' format supports 'snappy' and 'deflate'. The parquet format supports 'snappy' and 'gzip'. " +
@@ -239,6 +265,14 @@ public class GCSMultiBatchSink extends BatchSink<StructuredRecord, NullWritable,
       "arguments will be processed. If enabled, all records will be written as-is.")
     private Boolean allowFlexibleSchema;
 
+    @Name(NAME_MAX_OPEN_WRITERS)
+    @Macro
+    @Nullable
+    @Description("Maximum number of directories a task writes to at the same time. Each open directory holds a " +
+      "format encoder and an upload buffer in memory. When the limit is reached, the least recently written " +
+      "directory is flushed to GCS, and written to a new file if more records arrive for it. Defaults to 50.")
+    private Integer maxOpenWriters;
+
     protected String getOutputDir(long logicalStartTime, String context) {
       return String.format("%s/%s/%s", getOutputBaseDir(), context, getOutputSuffix(logicalStartTime));
     }
@@ -255,5 +289,20 @@ public class GCSMultiBatchSink extends BatchSink<StructuredRecord, NullWritable,
     public Boolean getAllowFlexibleSchema() {
       return allowFlexibleSchema != null ? allowFlexibleSchema : false;
     }
+
+    public int getMaxOpenWriters() {
+      return maxOpenWriters == null ? DelegatingGCSOutputFormat.DEFAULT_MAX_OPEN_WRITERS : maxOpenWriters;
+    }
+
+    @Override
+    public void validate(FailureCollector collector, Map<String, String> arguments) {
+      super.validate(collector, arguments);
+
+      if (!containsMacro(NAME_MAX_OPEN_WRITERS) && maxOpenWriters != null && maxOpenWriters < 1) {
+        collector.addFailure(String.format("Invalid maximum number of open writers '%d'.", maxOpenWriters),
+                             "Set the maximum number of open writers to a positive value.")
+          .withConfigProperty(NAME_MAX_OPEN_WRITERS);
+      }
+    }
   }
 }
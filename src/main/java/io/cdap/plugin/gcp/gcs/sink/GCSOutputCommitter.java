@@ -19,6 +19,7 @@ package io.cdap.plugin.gcp.gcs.sink;
 import com.google.cloud.storage.Blob;
 import com.google.common.annotations.VisibleForTesting;
 import io.cdap.plugin.gcp.common.GCPUtils;
+import io.cdap.plugin.gcp.gcs.GCSPath;
 import io.cdap.plugin.gcp.gcs.StorageClient;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.Path;
@@ -27,11 +28,14 @@ import org.apache.hadoop.mapreduce.JobStatus;
 import org.apache.hadoop.mapreduce.OutputCommitter;
 import org.apache.hadoop.mapreduce.TaskAttemptContext;
 import org.apache.hadoop.mapreduce.lib.output.FileOutputCommitter;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -60,7 +64,33 @@ public class GCSOutputCommitter extends OutputCommitter {
 
   @Override
   public void commitJob(JobContext jobContext) throws IOException {
+    // The manifest entries of the tasks are in the temporary directory, which is deleted by the job commit
+    Configuration configuration = jobContext.getConfiguration();
+    String manifestName = configuration == null ? null : configuration.get(GCSOutputManifest.NAME);
+    Path outputPath = manifestName == null ? null : FileOutputFormat.getOutputPath(jobContext);
+    StorageClient storageClient = null;
+    List<GCSOutputManifest.TaskEntry> taskEntries = null;
+    if (outputPath != null && delegate instanceof FileOutputCommitter) {
+      try {
+        storageClient = getStorageClient(configuration);
+        taskEntries = GCSOutputManifest.getTaskEntries(storageClient, outputPath.toString());
+      } catch (Exception exception) {
+        LOG.warn("Unable to read the manifest entries of the tasks. Metric emitted for the number of affected rows " +
+                   "may be slower to compute.", exception);
+      }
+    }
+
     delegate.commitJob(jobContext);
+
+    if (taskEntries != null) {
+      try {
+        GCSOutputManifest.write(storageClient, GCSOutputManifest.getPath(outputPath.toString(), manifestName),
+                                taskEntries);
+      } catch (Exception exception) {
+        LOG.warn("Unable to write the manifest of the output. Metric emitted for the number of affected rows may be " +
+                   "slower to compute.", exception);
+      }
+    }
   }
 
   @Override
@@ -110,17 +140,35 @@ public class GCSOutputCommitter extends OutputCommitter {
 
     //read the count from configuration
     String keyInConfig = String.format(RECORD_COUNT_FORMAT, taskAttemptContext.getTaskAttemptID());
+    long recordCount = configuration.getLong(keyInConfig, 0L);
     Map<String, String> metaData = new HashMap<>();
-    metaData.put(GCSBatchSink.RECORD_COUNT, String.valueOf(configuration.getLong(keyInConfig, 0L)));
+    metaData.put(GCSBatchSink.RECORD_COUNT, String.valueOf(recordCount));
     StorageClient storageClient = getStorageClient(configuration);
     //update metadata on the output file present in the directory for this task
-    Blob blob = storageClient.pickABlob(taskAttemptPath.toString());
-    if (blob == null) {
+    String taskAttemptDir = taskAttemptPath.toString() + "/";
+    List<Blob> blobs = storageClient.listBlobs(taskAttemptDir);
+    if (blobs.isEmpty()) {
       LOG.info("Could not find a file in path {} to apply count metadata.", taskAttemptPath.toString());
       return;
     }
-    blob.toBuilder().setContentType(configuration.get(GCSBatchSink.CONTENT_TYPE)).setMetadata(metaData).build()
-      .update();
+    blobs.get(0).toBuilder().setContentType(configuration.get(GCSBatchSink.CONTENT_TYPE)).setMetadata(metaData)
+      .build().update();
+
+    //save the files and count of this task for the manifest of the job
+    String manifestName = configuration.get(GCSOutputManifest.NAME);
+    Path outputPath = FileOutputFormat.getOutputPath(taskAttemptContext);
+    if (manifestName == null || outputPath == null) {
+      return;
+    }
+    String taskAttemptPrefix = GCSPath.from(taskAttemptDir).getName();
+    List<GCSOutputManifest.FileEntry> files = new ArrayList<>();
+    for (Blob blob : blobs) {
+      // files are moved to the output directory with their path relative to the task attempt directory
+      files.add(new GCSOutputManifest.FileEntry(blob.getName().substring(taskAttemptPrefix.length()), blob.getSize()));
+    }
+    GCSOutputManifest.saveTaskEntry(storageClient, outputPath.toString(),
+                                    taskAttemptContext.getTaskAttemptID().getTaskID().toString(),
+                                    new GCSOutputManifest.TaskEntry(recordCount, files));
   }
 
   @VisibleForTesting
@@ -0,0 +1,167 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.gcp.gcs.sink;
+
+import com.google.gson.Gson;
+import io.cdap.plugin.gcp.gcs.StorageClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import javax.annotation.Nullable;
+
+/**
+ * Manifest of the files written by a GCS Sink job, with their size and the number of records written by every task.
+ * <p>
+ * Every task saves its entry when it commits, as the metadata of an empty object in the temporary directory of the
+ * output. The job commit gets all the entries with a single listing of that directory, and writes them to a single
+ * manifest object in the output directory. The record count of the job is then read from the manifest, instead of
+ * listing all the files of the output directory.
+ */
+public final class GCSOutputManifest {
+  private static final Logger LOG = LoggerFactory.getLogger(GCSOutputManifest.class);
+  // Name of the manifest object of the job, which is only written when set
+  public static final String NAME = "io.cdap.gcs.batch.sink.manifest.name";
+  // The temporary directory of the output is deleted by the job commit and abort
+  private static final String ENTRIES_DIRECTORY = "_temporary/_manifest";
+  private static final String ENTRY_METADATA = "manifest.entry";
+  // GCS limits the custom metadata of an object to 8KiB
+  private static final int MAX_ENTRY_LENGTH = 7 * 1024;
+  private static final Gson GSON = new Gson();
+
+  private final long records;
+  private final List<TaskEntry> tasks;
+
+  private GCSOutputManifest(List<TaskEntry> tasks) {
+    this.records = tasks.stream().mapToLong(TaskEntry::getRecords).sum();
+    this.tasks = tasks;
+  }
+
+  public long getRecords() {
+    return records;
+  }
+
+  public List<TaskEntry> getTasks() {
+    return tasks;
+  }
+
+  public static String getPath(String outputDir, String name) {
+    return String.format("%s/%s", trimSeparator(outputDir), name);
+  }
+
+  /**
+   * Saves the entry of a task, to be added to the manifest by the job commit.
+   */
+  static void saveTaskEntry(StorageClient storageClient, String outputDir, String taskId, TaskEntry entry) {
+    String json = GSON.toJson(entry);
+    if (json.length() > MAX_ENTRY_LENGTH) {
+      // The record count is kept, only the file list is incomplete
+      LOG.warn("Task {} wrote too many files to list them all in the manifest.", taskId);
+      List<FileEntry> files = new ArrayList<>(entry.files);
+      while (json.length() > MAX_ENTRY_LENGTH && !files.isEmpty()) {
+        files.remove(files.size() - 1);
+        json = GSON.toJson(new TaskEntry(entry.records, files));
+      }
+    }
+    storageClient.createBlob(String.format("%s/%s/%s", trimSeparator(outputDir), ENTRIES_DIRECTORY, taskId),
+                             new byte[0], Collections.singletonMap(ENTRY_METADATA, json));
+  }
+
+  /**
+   * Gets the entries saved by the tasks. They must be read before the job commit deletes them.
+   */
+  static List<TaskEntry> getTaskEntries(StorageClient storageClient, String outputDir) {
+    List<TaskEntry> entries = new ArrayList<>();
+    storageClient.mapMetaDataForAllBlobs(
+      String.format("%s/%s/", trimSeparator(outputDir), ENTRIES_DIRECTORY), metaData -> {
+        String json = metaData.get(ENTRY_METADATA);
+        if (json != null) {
+          entries.add(GSON.fromJson(json, TaskEntry.class));
+        }
+      });
+    return entries;
+  }
+
+  /**
+   * Writes the manifest of the given task entries.
+   */
+  static void write(StorageClient storageClient, String path, List<TaskEntry> entries) {
+    storageClient.createBlob(path, GSON.toJson(new GCSOutputManifest(entries)).getBytes(StandardCharsets.UTF_8),
+                             Collections.emptyMap());
+  }
+
+  /**
+   * Reads a manifest.
+   *
+   * @return the manifest, or null if it does not exist
+   */
+  @Nullable
+  public static GCSOutputManifest read(StorageClient storageClient, String path) {
+    byte[] content = storageClient.readBlob(path);
+    return content == null ? null :
+      GSON.fromJson(new String(content, StandardCharsets.UTF_8), GCSOutputManifest.class);
+  }
+
+  private static String trimSeparator(String path) {
+    return path.endsWith("/") ? path.substring(0, path.length() - 1) : path;
+  }
+
+  /**
+   * The files written by a task, and the number of records they contain.
+   */
+  public static final class TaskEntry {
+    private final long records;
+    private final List<FileEntry> files;
+
+    public TaskEntry(long records, List<FileEntry> files) {
+      this.records = records;
+      this.files = files;
+    }
+
+    public long getRecords() {
+      return records;
+    }
+
+    public List<FileEntry> getFiles() {
+      return files;
+    }
+  }
+
+  /**
+   * A file, with its name relative to the output directory.
+   */
+  public static final class FileEntry {
+    private final String name;
+    private final long size;
+
+    public FileEntry(String name, long size) {
+      this.name = name;
+      this.size = size;
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    public long getSize() {
+      return size;
+    }
+  }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.gcp.gcs.sink;
+
+import io.cdap.plugin.gcp.common.DelegateCommitOperations;
+import org.apache.hadoop.mapred.JobConf;
+import org.apache.hadoop.mapreduce.JobContext;
+import org.apache.hadoop.mapreduce.JobStatus;
+import org.apache.hadoop.mapreduce.OutputCommitter;
+import org.apache.hadoop.mapreduce.OutputFormat;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.task.JobContextImpl;
+import org.apache.hadoop.mapreduce.task.TaskAttemptContextImpl;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Output Committer of the {@link RecordRouterOutputFormat}, which delegates operations to a GCS Output Committer for
+ * every destination.
+ *
+ * Unlike the {@link DelegatingGCSOutputCommitter}, the destinations are known before any record is written. Tasks only
+ * commit their own output, and the job is set up and committed once, for every destination. Destinations that
+ * received no records are committed as well, so that they all get a success marker.
+ */
+public class RecordRouterOutputCommitter extends OutputCommitter {
+  private final Map<String, OutputCommitter> committerMap;
+
+  RecordRouterOutputCommitter(Map<String, OutputCommitter> committerMap) {
+    this.committerMap = committerMap;
+  }
+
+  /**
+   * Create the Output Committer of the destinations configured in the given context.
+   */
+  @SuppressWarnings("rawtypes")
+  static RecordRouterOutputCommitter create(TaskAttemptContext context) throws IOException, InterruptedException {
+    Map<String, OutputCommitter> committerMap = new HashMap<>();
+    for (String destination : RecordRouterOutputFormat.getDestinations(context.getConfiguration())) {
+      TaskAttemptContext destinationContext = getDestinationContext(context, destination);
+      OutputFormat outputFormat = DelegatingGCSOutputUtils.getDelegateFormat(destinationContext.getConfiguration());
+      committerMap.put(destination, new GCSOutputCommitter(outputFormat.getOutputCommitter(destinationContext)));
+    }
+    return new RecordRouterOutputCommitter(committerMap);
+  }
+
+  @Override
+  public void setupJob(JobContext jobContext) throws IOException {
+    DelegateCommitOperations.commit("setupJob", jobContext, committerMap,
+                                    (destination, committer) ->
+                                      committer.setupJob(getDestinationContext(jobContext, destination)));
+  }
+
+  @Override
+  public void setupTask(TaskAttemptContext taskAttemptContext) throws IOException {
+    //no-op, task outputs are created by the Record Writers of the destinations
+  }
+
+  @Override
+  public boolean needsTaskCommit(TaskAttemptContext taskAttemptContext) throws IOException {
+    // Destinations without output are skipped by the task commit
+    return !committerMap.isEmpty();
+  }
+
+  @Override
+  public void commitTask(TaskAttemptContext taskAttemptContext) throws IOException {
+    DelegateCommitOperations.commit("commitTask", taskAttemptContext, committerMap, (destination, committer) -> {
+      TaskAttemptContext destinationContext = getDestinationContext(taskAttemptContext, destination);
+      if (committer.needsTaskCommit(destinationContext)) {
+        committer.commitTask(destinationContext);
+      }
+    });
+  }
+
+  @Override
+  public void commitJob(JobContext jobContext) throws IOException {
+    DelegateCommitOperations.commit("commitJob", jobContext, committerMap,
+                                    (destination, committer) ->
+                                      committer.commitJob(getDestinationContext(jobContext, destination)));
+  }
+
+  @Override
+  public void abortTask(TaskAttemptContext taskAttemptContext) throws IOException {
+    DelegateCommitOperations.abort("abortTask", taskAttemptContext, committerMap,
+                                   (destination, committer) ->
+                                     committer.abortTask(getDestinationContext(taskAttemptContext, destination)));
+  }
+
+  @Override
+  public void abortJob(JobContext jobContext, JobStatus.State state) throws IOException {
+    DelegateCommitOperations.abort("abortJob", jobContext, committerMap,
+                                   (destination, committer) ->
+                                     committer.abortJob(getDestinationContext(jobContext, destination), state));
+  }
+
+  private static JobContext getDestinationContext(JobContext context, String destination) {
+    JobConf hConf = RecordRouterOutputFormat.getDestinationConfiguration(context.getConfiguration(), destination);
+    return new JobContextImpl(hConf, context.getJobID());
+  }
+
+  private static TaskAttemptContext getDestinationContext(TaskAttemptContext context, String destination) {
+    JobConf hConf = RecordRouterOutputFormat.getDestinationConfiguration(context.getConfiguration(), destination);
+    return new TaskAttemptContextImpl(hConf, context.getTaskAttemptID());
+  }
+}
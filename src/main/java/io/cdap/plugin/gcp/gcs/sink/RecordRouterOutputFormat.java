@@ -0,0 +1,144 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.gcp.gcs.sink;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.cdap.api.data.schema.Schema;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.mapred.JobConf;
+import org.apache.hadoop.mapreduce.JobContext;
+import org.apache.hadoop.mapreduce.OutputCommitter;
+import org.apache.hadoop.mapreduce.OutputFormat;
+import org.apache.hadoop.mapreduce.RecordWriter;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Output Format that routes records to a fixed set of destinations, each one with its own schema.
+ * <p>
+ * Unlike a filtering output per destination, which makes every destination go through every record, records are read
+ * once: the destination is looked up by the value of the split field, and the record is written to it without the
+ * split field. As the destinations are known upfront, they are all committed by a
+ * {@link RecordRouterOutputCommitter}, including the ones that received no records.
+ */
+public class RecordRouterOutputFormat extends OutputFormat<NullWritable, StructuredRecord> {
+  public static final String SPLIT_FIELD = "record.router.split.field";
+  public static final String DESTINATIONS = "record.router.destinations";
+  public static final String MAX_OPEN_WRITERS = "record.router.max.open.writers";
+  private static final String DESTINATION_SCHEMA = "record.router.destination.%s.schema";
+  private static final String DESTINATION_CONFIGURATION = "record.router.destination.%s.configuration";
+  private static final Gson GSON = new Gson();
+  private static final Type LIST_TYPE = new TypeToken<List<String>>() { }.getType();
+  private static final Type MAP_TYPE = new TypeToken<Map<String, String>>() { }.getType();
+
+  private RecordRouterOutputCommitter outputCommitter = null;
+
+  /**
+   * Get the configuration required to route records to the given destinations. Each destination must also be
+   * configured with {@link #configureDestination(String, Schema, Map)}.
+   *
+   * @param delegateClassName the class name of the delegate output format responsible for doing the actual write
+   * @param splitField the record field that contains the name of the destination
+   * @param outputBaseDir the directory that contains the directories of the destinations
+   * @param outputSuffix the suffix of the directories of the destinations
+   * @param destinations the names of the destinations
+   */
+  public static Map<String, String> configure(String delegateClassName, String splitField, String outputBaseDir,
+                                              String outputSuffix, Collection<String> destinations) {
+    Map<String, String> config = new HashMap<>();
+    config.put(DelegatingGCSOutputFormat.DELEGATE_CLASS, delegateClassName);
+    config.put(DelegatingGCSOutputFormat.OUTPUT_PATH_BASE_DIR, outputBaseDir);
+    config.put(DelegatingGCSOutputFormat.OUTPUT_PATH_SUFFIX, outputSuffix);
+    config.put(SPLIT_FIELD, splitField);
+    config.put(DESTINATIONS, GSON.toJson(new ArrayList<>(destinations)));
+    return config;
+  }
+
+  /**
+   * Get the configuration of a destination.
+   *
+   * @param destination the name of the destination
+   * @param schema schema of the data to write to the destination
+   * @param outputFormatConfiguration configuration of the delegate output format for the destination
+   */
+  public static Map<String, String> configureDestination(String destination, Schema schema,
+                                                         Map<String, String> outputFormatConfiguration) {
+    Map<String, String> config = new HashMap<>();
+    config.put(String.format(DESTINATION_SCHEMA, destination), schema.toString());
+    config.put(String.format(DESTINATION_CONFIGURATION, destination), GSON.toJson(outputFormatConfiguration));
+    return config;
+  }
+
+  /**
+   * Get the names of the destinations.
+   */
+  static List<String> getDestinations(Configuration hConf) {
+    return GSON.fromJson(hConf.get(DESTINATIONS), LIST_TYPE);
+  }
+
+  /**
+   * Get the configuration of a destination, which is a copy of the given configuration with the output format
+   * configuration and the output directory of the destination. The copy is a JobConf, so that contexts created with
+   * it use it instead of copying it again.
+   */
+  static JobConf getDestinationConfiguration(Configuration hConf, String destination) {
+    JobConf destinationConf = new JobConf(hConf);
+    Map<String, String> outputFormatConfiguration =
+      GSON.fromJson(hConf.get(String.format(DESTINATION_CONFIGURATION, destination)), MAP_TYPE);
+    outputFormatConfiguration.forEach(destinationConf::set);
+    destinationConf.set(FileOutputFormat.OUTDIR, DelegatingGCSOutputUtils.buildOutputPath(hConf, destination));
+    return destinationConf;
+  }
+
+  @Override
+  public RecordWriter<NullWritable, StructuredRecord> getRecordWriter(TaskAttemptContext context)
+    throws IOException, InterruptedException {
+    Configuration hConf = context.getConfiguration();
+    List<RecordRouterRecordWriter.Destination> destinations = new ArrayList<>();
+    for (String name : getDestinations(hConf)) {
+      Schema schema = Schema.parseJson(hConf.get(String.format(DESTINATION_SCHEMA, name)));
+      destinations.add(new RecordRouterRecordWriter.Destination(name, schema));
+    }
+
+    int maxOpenWriters = hConf.getInt(MAX_OPEN_WRITERS, DelegatingGCSOutputFormat.DEFAULT_MAX_OPEN_WRITERS);
+    return new RecordRouterRecordWriter(context, hConf.get(SPLIT_FIELD), destinations, maxOpenWriters);
+  }
+
+  @Override
+  public void checkOutputSpecs(JobContext context) throws IOException, InterruptedException {
+    //no-op
+  }
+
+  @Override
+  public OutputCommitter getOutputCommitter(TaskAttemptContext context) throws IOException, InterruptedException {
+    if (outputCommitter == null) {
+      outputCommitter = RecordRouterOutputCommitter.create(context);
+    }
+    return outputCommitter;
+  }
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.gcp.gcs.sink;
+
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.cdap.api.data.schema.Schema;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.mapred.JobConf;
+import org.apache.hadoop.mapreduce.OutputFormat;
+import org.apache.hadoop.mapreduce.RecordWriter;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.task.TaskAttemptContextImpl;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Record Writer which routes records to the Record Writers of their destination, based on the record's split field.
+ * Records of unknown destinations are dropped. Destinations are matched ignoring case.
+ * <p>
+ * As every open Record Writer buffers data, the number of open Record Writers is limited. When the limit is reached,
+ * the least recently used Record Writer is closed. If more records are written to its destination, a new Record
+ * Writer is opened on a new file.
+ */
+public class RecordRouterRecordWriter extends RecordWriter<NullWritable, StructuredRecord> {
+  private final TaskAttemptContext context;
+  private final String splitField;
+  // Destinations by lower case name
+  private final Map<String, List<Destination>> destinations;
+  private final int maxOpenWriters;
+  // Open Record Writers, in least recently used order
+  private final Map<String, RecordWriter<NullWritable, StructuredRecord>> delegateMap;
+  // Number of files of all the destinations written by this task, including the closed ones
+  private final Map<String, Integer> destinationFiles;
+  // Fields of the last record schema, without the split field
+  private Schema recordSchema;
+  private String[] recordFields;
+
+  RecordRouterRecordWriter(TaskAttemptContext context, String splitField, Collection<Destination> destinations,
+                           int maxOpenWriters) {
+    this.context = context;
+    this.splitField = splitField;
+    this.destinations = new HashMap<>();
+    for (Destination destination : destinations) {
+      this.destinations.computeIfAbsent(destination.name.toLowerCase(Locale.ROOT), name -> new ArrayList<>(1))
+        .add(destination);
+    }
+    this.maxOpenWriters = maxOpenWriters;
+    this.delegateMap = new LinkedHashMap<>(16, 0.75f, true);
+    this.destinationFiles = new HashMap<>();
+  }
+
+  @Override
+  public void write(NullWritable key, StructuredRecord record) throws IOException, InterruptedException {
+    String destinationName = record.get(splitField);
+    if (destinationName == null) {
+      return;
+    }
+    List<Destination> recordDestinations = destinations.get(destinationName.toLowerCase(Locale.ROOT));
+    if (recordDestinations == null) {
+      return;
+    }
+
+    String[] fields = getRecordFields(record.getSchema());
+    for (Destination destination : recordDestinations) {
+      StructuredRecord.Builder recordBuilder = StructuredRecord.builder(destination.schema);
+      for (String field : fields) {
+        recordBuilder.set(field, record.get(field));
+      }
+      // Getting the delegate marks it as the most recently used one
+      RecordWriter<NullWritable, StructuredRecord> delegate = delegateMap.get(destination.name);
+      if (delegate == null) {
+        delegate = getRecordWriterDelegate(destination);
+      }
+      delegate.write(key, recordBuilder.build());
+    }
+  }
+
+  @Override
+  public void close(TaskAttemptContext context) throws IOException, InterruptedException {
+    //Close all delegates, their files are committed by the RecordRouterOutputCommitter
+    for (RecordWriter<NullWritable, StructuredRecord> delegate : delegateMap.values()) {
+      delegate.close(context);
+    }
+    delegateMap.clear();
+  }
+
+  /**
+   * Gets the fields of the record schema that are written to the destinations. They are computed once per schema,
+   * as all the records usually have the same schema.
+   */
+  private String[] getRecordFields(Schema schema) {
+    if (schema != recordSchema) {
+      recordFields = schema.getFields().stream()
+        .map(Schema.Field::getName)
+        .filter(name -> !splitField.equals(name))
+        .toArray(String[]::new);
+      recordSchema = schema;
+    }
+    return recordFields;
+  }
+
+  private RecordWriter<NullWritable, StructuredRecord> getRecordWriterDelegate(Destination destination)
+    throws IOException, InterruptedException {
+    while (delegateMap.size() >= maxOpenWriters) {
+      closeLeastRecentlyUsedDelegate();
+    }
+
+    // Destinations have their own output format configuration and output directory
+    JobConf hConf = RecordRouterOutputFormat.getDestinationConfiguration(context.getConfiguration(), destination.name);
+    int file = destinationFiles.merge(destination.name, 1, Integer::sum) - 1;
+    // Every Record Writer of a destination writes its own file in the task output
+    DelegatingGCSOutputUtils.setOutputFileName(hConf, file);
+    TaskAttemptContext destinationContext = new TaskAttemptContextImpl(hConf, context.getTaskAttemptID());
+
+    //Add record writer to delegate map.
+    OutputFormat<NullWritable, StructuredRecord> format = DelegatingGCSOutputUtils.getDelegateFormat(hConf);
+    RecordWriter<NullWritable, StructuredRecord> delegate = format.getRecordWriter(destinationContext);
+    delegateMap.put(destination.name, delegate);
+    return delegate;
+  }
+
+  private void closeLeastRecentlyUsedDelegate() throws IOException, InterruptedException {
+    Iterator<RecordWriter<NullWritable, StructuredRecord>> iterator = delegateMap.values().iterator();
+    RecordWriter<NullWritable, StructuredRecord> delegate = iterator.next();
+    iterator.remove();
+    // Closing the Record Writer completes its file, which is committed along with the task
+    delegate.close(context);
+  }
+
+  /**
+   * A destination of the records.
+   */
+  static final class Destination {
+    private final String name;
+    private final Schema schema;
+
+    Destination(String name, Schema schema) {
+      this.name = name;
+      this.schema = schema;
+    }
+  }
+}
@@ -16,6 +16,10 @@
 
 package io.cdap.plugin.gcp.gcs.source;
 
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
 import com.google.common.io.ByteStreams;
 import com.google.crypto.tink.Aead;
 import com.google.crypto.tink.JsonKeysetReader;
@@ -26,11 +30,14 @@ import com.google.crypto.tink.config.TinkConfig;
 import com.google.crypto.tink.integration.gcpkms.GcpKmsClient;
 import io.cdap.plugin.gcp.crypto.Decryptor;
 import io.cdap.plugin.gcp.crypto.FSInputSeekableByteChannel;
+import io.cdap.plugin.gcp.crypto.ReadAheadSeekableByteChannel;
 import org.apache.hadoop.conf.Configurable;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
 import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.io.InputStream;
@@ -38,19 +45,44 @@ import java.nio.channels.SeekableByteChannel;
 import java.nio.charset.StandardCharsets;
 import java.security.GeneralSecurityException;
 import java.util.Base64;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import javax.annotation.Nullable;
 
 /**
  * A {@link Decryptor} implementation for decrypting files encrypted using the Tink {@link StreamingAead} interface.
+ * <p>
+ * Unwrapping a keyset takes a KMS call. Files encrypted with the same keyset share the same metadata keyset, so the
+ * unwrapped {@link StreamingAead} primitives are cached per JVM, keyed by the wrapped keyset and the KMS key URI.
+ * Entries expire so that key revocations are eventually honored. The cache statistics are logged when the file
+ * system using the decryptor is closed.
  */
 public class TinkDecryptor implements Decryptor, Configurable {
 
+  private static final Logger LOG = LoggerFactory.getLogger(TinkDecryptor.class);
+
   private static final String METADATA_SUFFIX = "io.cdap.crypto.metadata.suffix";
   private static final String KMS = "kms";
   private static final String KEYSET = "keyset";
   private static final String AAD = "aad";
+  private static final int MAX_CACHED_KEYSETS = 1000;
+  private static final long CACHED_KEYSET_TTL_MINUTES = 10L;
+
+  private static final Cache<KeysetKey, StreamingAead> STREAMING_AEADS = CacheBuilder.newBuilder()
+    .maximumSize(MAX_CACHED_KEYSETS)
+    .expireAfterWrite(CACHED_KEYSET_TTL_MINUTES, TimeUnit.MINUTES)
+    .recordStats()
+    .build();
+  // KmsClients keeps every client added, so the client of a KMS key is only added once
+  private static final Set<String> REGISTERED_KMS_URIS = new HashSet<>();
 
+  private final AtomicLong keysetLookups = new AtomicLong();
+  private final AtomicLong keysetUnwraps = new AtomicLong();
   private Configuration configuration;
   private String metadataSuffix;
 
@@ -65,15 +97,23 @@ public class TinkDecryptor implements Decryptor, Configurable {
 
   @Override
   public SeekableByteChannel open(FileSystem fs, Path path, int bufferSize) throws IOException {
-    DecryptInfo decryptInfo = getDecryptInfo(fs, path);
-    if (decryptInfo == null) {
-      throw new IllegalArgumentException("Missing encryption metadata for file '" + path
-                                           + "'. Expected metadata path is '"
-                                           + new Path(path.getParent(), path.getName() + metadataSuffix) + "'");
-    }
+    return open(fs, path, bufferSize, getRequiredDecryptInfo(fs, path));
+  }
 
+  /**
+   * Returns an opener of decrypted channels over the given file, which reads the metadata of the file once.
+   */
+  @Override
+  public ReadAheadSeekableByteChannel.ChannelOpener getChannelOpener(FileSystem fs, Path path,
+                                                                     int bufferSize) throws IOException {
+    DecryptInfo decryptInfo = getRequiredDecryptInfo(fs, path);
+    return () -> open(fs, path, bufferSize, decryptInfo);
+  }
+
+  private static SeekableByteChannel open(FileSystem fs, Path path, int bufferSize,
+                                          DecryptInfo decryptInfo) throws IOException {
     try {
-      StreamingAead streamingAead = decryptInfo.getKeysetHandle().getPrimitive(StreamingAead.class);
+      StreamingAead streamingAead = decryptInfo.getStreamingAead();
       return streamingAead.newSeekableDecryptingChannel(new FSInputSeekableByteChannel(fs, path, bufferSize),
                                                         decryptInfo.getAad());
     } catch (IOException e) {
@@ -83,6 +123,16 @@ public class TinkDecryptor implements Decryptor, Configurable {
     }
   }
 
+  private DecryptInfo getRequiredDecryptInfo(FileSystem fs, Path path) throws IOException {
+    DecryptInfo decryptInfo = getDecryptInfo(fs, path);
+    if (decryptInfo == null) {
+      throw new IllegalArgumentException("Missing encryption metadata for file '" + path
+                                           + "'. Expected metadata path is '"
+                                           + new Path(path.getParent(), path.getName() + metadataSuffix) + "'");
+    }
+    return decryptInfo;
+  }
+
   @Override
   public void setConf(Configuration configuration) {
     this.configuration = configuration;
@@ -114,33 +164,122 @@ public class TinkDecryptor implements Decryptor, Configurable {
     // Create the DecryptInfo
     try {
       String kmsURI = metadata.getString(KMS);
-      KmsClients.add(new GcpKmsClient(kmsURI).withDefaultCredentials());
-      Aead aead = KmsClients.get(kmsURI).getAead(kmsURI);
-      KeysetHandle handle = KeysetHandle.read(JsonKeysetReader.withJsonObject(metadata.getJSONObject(KEYSET)), aead);
+      JSONObject keyset = metadata.getJSONObject(KEYSET);
+      keysetLookups.incrementAndGet();
+      StreamingAead streamingAead = STREAMING_AEADS.get(new KeysetKey(kmsURI, keyset.toString()), () -> {
+        keysetUnwraps.incrementAndGet();
+        return unwrapKeyset(kmsURI, keyset);
+      });
       byte[] aad = Base64.getDecoder().decode(metadata.getString(AAD));
 
-      return new DecryptInfo(handle, aad);
-    } catch (IOException e) {
-      throw e;
+      return new DecryptInfo(streamingAead, aad);
+    } catch (ExecutionException e) {
+      throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
     } catch (Exception e) {
       throw new IOException(e);
     }
   }
 
+  private static StreamingAead unwrapKeyset(String kmsURI, JSONObject keyset)
+    throws GeneralSecurityException, IOException {
+    registerKmsClient(kmsURI);
+    Aead aead = KmsClients.get(kmsURI).getAead(kmsURI);
+    LOG.debug("Unwrapping keyset with KMS key '{}'.", kmsURI);
+    return KeysetHandle.read(JsonKeysetReader.withJsonObject(keyset), aead).getPrimitive(StreamingAead.class);
+  }
+
+  @Override
+  public void close() {
+    long lookups = keysetLookups.get();
+    if (lookups == 0) {
+      return;
+    }
+    CacheStats stats = STREAMING_AEADS.stats();
+    LOG.info("Decrypted files with {} keyset lookups, {} of which unwrapped a keyset with KMS. Keyset cache of the " +
+               "JVM: {} hits, {} misses, {} evictions.",
+             lookups, keysetUnwraps.get(), stats.hitCount(), stats.missCount(), stats.evictionCount());
+  }
+
+  @VisibleForTesting
+  long getKeysetLookups() {
+    return keysetLookups.get();
+  }
+
+  @VisibleForTesting
+  long getKeysetUnwraps() {
+    return keysetUnwraps.get();
+  }
+
+  private static synchronized void registerKmsClient(String kmsURI) throws GeneralSecurityException {
+    if (REGISTERED_KMS_URIS.contains(kmsURI)) {
+      return;
+    }
+    try {
+      // A client may already support the key, such as one added by the application
+      KmsClients.get(kmsURI);
+    } catch (GeneralSecurityException e) {
+      KmsClients.add(new GcpKmsClient(kmsURI).withDefaultCredentials());
+    }
+    REGISTERED_KMS_URIS.add(kmsURI);
+  }
+
+  /**
+   * Returns the hit and miss statistics of the unwrapped keyset cache of this JVM.
+   */
+  @VisibleForTesting
+  static CacheStats getKeysetCacheStats() {
+    return STREAMING_AEADS.stats();
+  }
+
+  @VisibleForTesting
+  static void invalidateKeysetCache() {
+    STREAMING_AEADS.invalidateAll();
+  }
+
+  /**
+   * Key of an unwrapped keyset, made of the wrapped keyset and the URI of the KMS key that wrapped it.
+   */
+  private static final class KeysetKey {
+    private final String kmsURI;
+    private final String keyset;
+
+    private KeysetKey(String kmsURI, String keyset) {
+      this.kmsURI = kmsURI;
+      this.keyset = keyset;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      KeysetKey that = (KeysetKey) o;
+      return kmsURI.equals(that.kmsURI) && keyset.equals(that.keyset);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(kmsURI, keyset);
+    }
+  }
+
   /**
-   * A class that hold the {@link KeysetHandle} and the ADD for decryption.
+   * A class that hold the {@link StreamingAead} and the ADD for decryption.
    */
   private static final class DecryptInfo {
-    private final KeysetHandle keysetHandle;
+    private final StreamingAead streamingAead;
     private final byte[] aad;
 
-    private DecryptInfo(KeysetHandle keysetHandle, byte[] aad) {
-      this.keysetHandle = keysetHandle;
+    private DecryptInfo(StreamingAead streamingAead, byte[] aad) {
+      this.streamingAead = streamingAead;
       this.aad = aad;
     }
 
-    KeysetHandle getKeysetHandle() {
-      return keysetHandle;
+    StreamingAead getStreamingAead() {
+      return streamingAead;
     }
 
     byte[] getAad() {
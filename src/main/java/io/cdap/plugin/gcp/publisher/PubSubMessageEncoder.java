@@ -0,0 +1,150 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.gcp.publisher;
+
+import com.google.protobuf.ByteString;
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.cdap.api.data.schema.Schema;
+import io.cdap.cdap.format.StructuredRecordStringConverter;
+import io.cdap.plugin.format.avro.StructuredToAvroTransformer;
+import org.apache.avro.generic.GenericDatumWriter;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.io.BinaryEncoder;
+import org.apache.avro.io.DatumWriter;
+import org.apache.avro.io.EncoderFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import javax.annotation.Nullable;
+
+/**
+ * Encodes records into the data of Pub/Sub messages, in the format of the {@link GooglePublisher}.
+ * <p>
+ * The encoder of a format is created once per writer. Avro records are encoded with a transformer and a datum writer
+ * created once per record schema, and a binary encoder and a buffer reused for all the records, whose content is
+ * copied once to the message data. An encoder is not thread safe.
+ */
+abstract class PubSubMessageEncoder {
+
+  /**
+   * Creates the encoder of a format.
+   */
+  static PubSubMessageEncoder create(String format, @Nullable String delimiter) {
+    switch (format) {
+      case PubSubConstants.AVRO:
+      case PubSubConstants.PARQUET:
+        return new AvroEncoder();
+      case PubSubConstants.TEXT:
+      case PubSubConstants.BLOB:
+      case PubSubConstants.JSON:
+        return new JsonRecordEncoder();
+      case PubSubConstants.CSV:
+        return new DelimitedEncoder(",");
+      case PubSubConstants.DELIMITED:
+        return new DelimitedEncoder(delimiter);
+      case PubSubConstants.TSV:
+        return new DelimitedEncoder("\t");
+      default:
+        throw new IllegalArgumentException(String.format("Unsupported format '%s'.", format));
+    }
+  }
+
+  /**
+   * Encodes a record.
+   */
+  abstract ByteString encode(StructuredRecord record) throws IOException;
+
+  /**
+   * Encodes records to Avro binary.
+   */
+  private static final class AvroEncoder extends PubSubMessageEncoder {
+    private final Map<Schema, AvroSchemaEncoder> schemaEncoders = new HashMap<>();
+    private final MessageBuffer buffer = new MessageBuffer();
+    private AvroSchemaEncoder lastSchemaEncoder;
+    private BinaryEncoder binaryEncoder;
+
+    @Override
+    ByteString encode(StructuredRecord record) throws IOException {
+      // The records written by a writer usually share the same schema instance
+      AvroSchemaEncoder schemaEncoder = lastSchemaEncoder;
+      if (schemaEncoder == null || schemaEncoder.schema != record.getSchema()) {
+        schemaEncoder = schemaEncoders.computeIfAbsent(record.getSchema(), AvroSchemaEncoder::new);
+        lastSchemaEncoder = schemaEncoder;
+      }
+
+      buffer.reset();
+      binaryEncoder = EncoderFactory.get().binaryEncoder(buffer, binaryEncoder);
+      schemaEncoder.datumWriter.write(schemaEncoder.transformer.transform(record), binaryEncoder);
+      binaryEncoder.flush();
+      return buffer.toByteString();
+    }
+  }
+
+  /**
+   * Transformer and datum writer of a record schema.
+   */
+  private static final class AvroSchemaEncoder {
+    private final Schema schema;
+    private final StructuredToAvroTransformer transformer;
+    private final DatumWriter<GenericRecord> datumWriter;
+
+    AvroSchemaEncoder(Schema schema) {
+      this.schema = schema;
+      this.transformer = new StructuredToAvroTransformer(schema);
+      this.datumWriter = new GenericDatumWriter<>(new org.apache.avro.Schema.Parser().parse(schema.toString()));
+    }
+  }
+
+  /**
+   * Encodes records to JSON.
+   */
+  private static final class JsonRecordEncoder extends PubSubMessageEncoder {
+
+    @Override
+    ByteString encode(StructuredRecord record) throws IOException {
+      return ByteString.copyFromUtf8(StructuredRecordStringConverter.toJsonString(record));
+    }
+  }
+
+  /**
+   * Encodes records to delimited text.
+   */
+  private static final class DelimitedEncoder extends PubSubMessageEncoder {
+    private final String delimiter;
+
+    DelimitedEncoder(String delimiter) {
+      this.delimiter = delimiter;
+    }
+
+    @Override
+    ByteString encode(StructuredRecord record) {
+      return ByteString.copyFromUtf8(StructuredRecordStringConverter.toDelimitedString(record, delimiter));
+    }
+  }
+
+  /**
+   * Buffer of the encoded records, that copies its content once to the message data.
+   */
+  private static final class MessageBuffer extends ByteArrayOutputStream {
+
+    ByteString toByteString() {
+      return ByteString.copyFrom(buf, 0, count);
+    }
+  }
+}
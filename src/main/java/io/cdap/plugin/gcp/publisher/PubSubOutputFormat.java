@@ -22,21 +22,13 @@ import com.google.api.core.ApiFutures;
 import com.google.api.gax.batching.BatchingSettings;
 import com.google.api.gax.retrying.RetrySettings;
 import com.google.cloud.pubsub.v1.Publisher;
-import com.google.protobuf.ByteString;
 import com.google.pubsub.v1.ProjectTopicName;
 import com.google.pubsub.v1.PubsubMessage;
 import io.cdap.cdap.api.data.format.StructuredRecord;
-import io.cdap.cdap.format.StructuredRecordStringConverter;
 import io.cdap.cdap.format.io.StructuredRecordDatumWriter;
-import io.cdap.plugin.format.avro.StructuredToAvroTransformer;
 import io.cdap.plugin.gcp.bigtable.sink.BigtableSinkConfig;
 import io.cdap.plugin.gcp.common.GCPUtils;
 import io.cdap.plugin.gcp.gcs.actions.GCSBucketCreate;
-import org.apache.avro.generic.GenericDatumWriter;
-import org.apache.avro.generic.GenericRecord;
-import org.apache.avro.io.BinaryEncoder;
-import org.apache.avro.io.DatumWriter;
-import org.apache.avro.io.EncoderFactory;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.io.NullWritable;
 import org.apache.hadoop.io.Text;
@@ -49,7 +41,6 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.threeten.bp.Duration;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
@@ -158,6 +149,7 @@ public class PubSubOutputFormat extends OutputFormat<NullWritable, StructuredRec
     private final Set<ApiFuture> futures;
     private final String format;
     private final String delimiter;
+    private final PubSubMessageEncoder encoder;
 
     public PubSubRecordWriter(Publisher publisher, String format, String delimiter, long errorThreshold) {
       this.publisher = publisher;
@@ -167,6 +159,7 @@ public class PubSubOutputFormat extends OutputFormat<NullWritable, StructuredRec
       this.futures = ConcurrentHashMap.newKeySet();
       this.format = format;
       this.delimiter = delimiter;
+      this.encoder = PubSubMessageEncoder.create(format, delimiter);
     }
 
     @Override
@@ -191,61 +184,7 @@ public class PubSubOutputFormat extends OutputFormat<NullWritable, StructuredRec
     }
 
     private PubsubMessage getPubSubMessage(StructuredRecord value) throws IOException {
-      String payload;
-      ByteString data;
-      PubsubMessage message = null;
-
-      switch (format) {
-        case PubSubConstants.AVRO:
-        case PubSubConstants.PARQUET: {
-
-          final StructuredToAvroTransformer structuredToAvroTransformer =
-            new StructuredToAvroTransformer(value.getSchema());
-          final GenericRecord transform = structuredToAvroTransformer.transform(value);
-
-          final org.apache.avro.Schema avroSchema = new org.apache.avro.Schema.Parser().
-            parse(String.valueOf(value.getSchema()));
-
-          final byte[] serializedBytes;
-          DatumWriter<GenericRecord> datumWriter = new GenericDatumWriter<>(avroSchema);
-          ByteArrayOutputStream out = new ByteArrayOutputStream();
-          BinaryEncoder encoder = EncoderFactory.get().binaryEncoder(out, null);
-          datumWriter.write(transform, encoder);
-          encoder.flush();
-          out.close();
-          serializedBytes = out.toByteArray();
-          data = ByteString.copyFrom(serializedBytes);
-          message = PubsubMessage.newBuilder().setData(data).build();
-          break;
-        }
-        case PubSubConstants.TEXT:
-        case PubSubConstants.BLOB:
-        case PubSubConstants.JSON: {
-          payload = StructuredRecordStringConverter.toJsonString(value);
-          data = ByteString.copyFromUtf8(payload);
-          message = PubsubMessage.newBuilder().setData(data).build();
-          break;
-        }
-        case PubSubConstants.CSV: {
-          payload = StructuredRecordStringConverter.toDelimitedString(value, ",");
-          data = ByteString.copyFromUtf8(payload);
-          message = PubsubMessage.newBuilder().setData(data).build();
-          break;
-        }
-        case PubSubConstants.DELIMITED: {
-          payload = StructuredRecordStringConverter.toDelimitedString(value, delimiter);
-          data = ByteString.copyFromUtf8(payload);
-          message = PubsubMessage.newBuilder().setData(data).build();
-          break;
-        }
-        case PubSubConstants.TSV: {
-          payload = StructuredRecordStringConverter.toDelimitedString(value, "\t");
-          data = ByteString.copyFromUtf8(payload);
-          message = PubsubMessage.newBuilder().setData(data).build();
-          break;
-        }
-      }
-      return message;
+      return PubsubMessage.newBuilder().setData(encoder.encode(value)).build();
     }
 
     private void handleErrorIfAny() throws IOException {
@@ -0,0 +1,28 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.gcp.publisher.source;
+
+/**
+ * How the receivers using the {@link PullMethod#PULL} method acknowledge the messages they stored.
+ */
+public enum AckMode {
+  // Acknowledge the messages of every pull request once they are stored.
+  IMMEDIATE,
+  // Acknowledge the stored messages of several pull requests together, and extend the ack deadline of the pulled
+  // messages that are not acknowledged yet.
+  BATCHED
+}
@@ -26,26 +26,13 @@ import io.cdap.cdap.etl.api.FailureCollector;
 import io.cdap.cdap.etl.api.PipelineConfigurer;
 import io.cdap.cdap.etl.api.streaming.StreamingSource;
 import io.cdap.cdap.etl.api.streaming.StreamingSourceContext;
-import io.cdap.cdap.format.StructuredRecordStringConverter;
 import io.cdap.plugin.common.LineageRecorder;
-import io.cdap.plugin.format.avro.AvroToStructuredTransformer;
 import io.cdap.plugin.gcp.common.MappingException;
 import io.cdap.plugin.gcp.publisher.PubSubConstants;
-import org.apache.avro.generic.GenericDatumReader;
-import org.apache.avro.generic.GenericRecord;
-import org.apache.avro.io.BinaryDecoder;
-import org.apache.avro.io.DatumReader;
-import org.apache.avro.io.DecoderFactory;
 
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.Serializable;
-import java.time.Instant;
-import java.time.ZoneId;
-import java.time.ZoneOffset;
-import java.time.ZonedDateTime;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.Objects;
 import java.util.stream.Collectors;
 import javax.annotation.Nullable;
@@ -68,6 +55,7 @@ public class GoogleSubscriber extends PubSubSubscriber<StructuredRecord> {
     );
 
   private GoogleSubscriberConfig config;
+  private transient PubSubMessageDecoder decoder;
 
   public GoogleSubscriber(GoogleSubscriberConfig config) {
     super(config);
@@ -106,87 +94,22 @@ public class GoogleSubscriber extends PubSubSubscriber<StructuredRecord> {
    */
   private final SerializableFunction<PubSubMessage, StructuredRecord> pubSubMessageToStructuredRecordMappingFunction =
     (SerializableFunction<PubSubMessage, StructuredRecord>) (pubSubMessage) -> {
-
-      Schema customMessageSchema = getCustomMessageSchema();
-      final Schema outputSchema = config.getSchema();
-      final String format = config.getFormat();
-
-      // Convert to a HashMap because com.google.api.client.util.ArrayMap is not serializable.
-      HashMap<String, String> hashMap = new HashMap<>();
-      if (pubSubMessage.getAttributes() != null) {
-        hashMap.putAll(pubSubMessage.getAttributes());
-      }
-
       try {
-        StructuredRecord payload = getStructuredRecord(config, customMessageSchema, format, pubSubMessage);
-
-        return StructuredRecord.builder(outputSchema)
-          .set("message", (format.equalsIgnoreCase(PubSubConstants.TEXT) ||
-            format.equalsIgnoreCase(PubSubConstants.BLOB)) ?
-            pubSubMessage.getData() : payload)
-          .set("id", pubSubMessage.getMessageId())
-          .setTimestamp("timestamp", getTimestamp(pubSubMessage.getPublishTime()))
-          .set("attributes", hashMap)
-          .build();
+        return getDecoder().decode(pubSubMessage);
       } catch (IOException ioe) {
         throw new MappingException(ioe);
       }
     };
 
-  private static ZonedDateTime getTimestamp(Instant instant) {
-    return ZonedDateTime.ofInstant(instant, ZoneId.ofOffset("UTC", ZoneOffset.UTC));
-  }
-
-  private static StructuredRecord getStructuredRecord(GoogleSubscriberConfig config, Schema customMessageSchema,
-                                                      String format, PubSubMessage pubSubMessage) throws IOException {
-    StructuredRecord payload = null;
-    final String data = pubSubMessage.getData() != null ? new String(pubSubMessage.getData()) : "";
-
-    switch (format) {
-      case PubSubConstants.AVRO:
-      case PubSubConstants.PARQUET: {
-        final byte[] payloadData = pubSubMessage.getData();
-        final org.apache.avro.Schema avroSchema = new org.apache.avro.Schema.Parser().
-          parse(String.valueOf(customMessageSchema));
-        DatumReader<GenericRecord> datumReader = new GenericDatumReader<>(avroSchema);
-        ByteArrayInputStream in = new ByteArrayInputStream(payloadData);
-        BinaryDecoder decoder = DecoderFactory.get().binaryDecoder(in, null);
-        GenericRecord record = datumReader.read(null, decoder);
-        payload = new AvroToStructuredTransformer().transform(record);
-        break;
-      }
-      case PubSubConstants.CSV: {
-        payload = StructuredRecordStringConverter.fromDelimitedString(data, ",", customMessageSchema);
-        break;
-      }
-      case PubSubConstants.DELIMITED: {
-        payload = StructuredRecordStringConverter.fromDelimitedString(data, config.getDelimiter(),
-                                                                      customMessageSchema);
-        break;
-      }
-      case PubSubConstants.JSON: {
-        payload = StructuredRecordStringConverter.fromJsonString(data, customMessageSchema);
-        break;
-      }
-      case PubSubConstants.TSV: {
-        payload = StructuredRecordStringConverter.fromDelimitedString(data, "\t", customMessageSchema);
-        break;
-      }
-    }
-    return payload;
-  }
-
-  private Schema.Field getMessageField() {
-    Schema schema = config.getSchema();
-    return schema.getField("message");
-  }
-
-  private Schema getCustomMessageSchema() {
-    Schema.Field messageField = getMessageField();
-    if (messageField == null) {
-      return null;
+  /**
+   * Gets the decoder of the messages. The plugin is deserialized for every partition, so that every partition
+   * creates its own decoder once.
+   */
+  private PubSubMessageDecoder getDecoder() {
+    if (decoder == null) {
+      decoder = new PubSubMessageDecoder(config.getSchema(), config.getFormat(), config.getDelimiter());
     }
-    return messageField.getSchema();
+    return decoder;
   }
 
   /**
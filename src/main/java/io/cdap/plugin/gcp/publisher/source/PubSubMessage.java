@@ -59,12 +59,10 @@ public class PubSubMessage implements Externalizable {
   }
 
   public PubSubMessage(@Nullable ReceivedMessage message) {
-    if (message == null) {
-      return;
-    }
-
-    PubsubMessage psMessage = message.getMessage();
+    this(message == null ? null : message.getMessage(), message == null ? null : message.getAckId());
+  }
 
+  public PubSubMessage(@Nullable PubsubMessage psMessage, @Nullable String ackId) {
     if (psMessage != null) {
       this.messageId = psMessage.getMessageId();
       this.orderingKey = psMessage.getOrderingKey();
@@ -83,7 +81,7 @@ public class PubSubMessage implements Externalizable {
       }
     }
 
-    this.ackId = message.getAckId();
+    this.ackId = ackId;
   }
 
   @Nullable
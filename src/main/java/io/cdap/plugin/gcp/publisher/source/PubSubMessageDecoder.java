@@ -0,0 +1,131 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.gcp.publisher.source;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.cdap.api.data.schema.Schema;
+import io.cdap.cdap.format.StructuredRecordStringConverter;
+import io.cdap.plugin.format.avro.AvroToStructuredTransformer;
+import io.cdap.plugin.gcp.publisher.PubSubConstants;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.io.BinaryDecoder;
+import org.apache.avro.io.DatumReader;
+import org.apache.avro.io.DecoderFactory;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import javax.annotation.Nullable;
+
+/**
+ * Decodes Pub/Sub messages into records of the output schema of the {@link GoogleSubscriber}.
+ * <p>
+ * The schemas are parsed once per decoder, and the Avro schemas once per message schema for all the decoders of the
+ * JVM. The datum reader, the binary decoder and the Avro transformer, which caches its converted schemas, are reused
+ * for all the messages. The payload is only converted to a string for the text based formats. A decoder is not thread
+ * safe, and is meant to be used for the messages of a single partition.
+ */
+final class PubSubMessageDecoder {
+  private static final LoadingCache<Schema, org.apache.avro.Schema> AVRO_SCHEMAS = CacheBuilder.newBuilder()
+    .maximumSize(100)
+    .build(new CacheLoader<Schema, org.apache.avro.Schema>() {
+      @Override
+      public org.apache.avro.Schema load(Schema schema) {
+        return new org.apache.avro.Schema.Parser().parse(schema.toString());
+      }
+    });
+  private static final ZoneId UTC = ZoneId.ofOffset("UTC", ZoneOffset.UTC);
+
+  private final Schema outputSchema;
+  private final Schema messageSchema;
+  private final String format;
+  private final String delimiter;
+  // The text and blob formats output the payload as is
+  private final boolean rawPayload;
+  private DatumReader<GenericRecord> datumReader;
+  private BinaryDecoder binaryDecoder;
+  private AvroToStructuredTransformer avroTransformer;
+
+  PubSubMessageDecoder(Schema outputSchema, String format, @Nullable String delimiter) {
+    Schema.Field messageField = outputSchema.getField("message");
+    this.outputSchema = outputSchema;
+    this.messageSchema = messageField == null ? null : messageField.getSchema();
+    this.format = format;
+    this.delimiter = delimiter;
+    this.rawPayload = format.equalsIgnoreCase(PubSubConstants.TEXT) || format.equalsIgnoreCase(PubSubConstants.BLOB);
+  }
+
+  StructuredRecord decode(PubSubMessage pubSubMessage) throws IOException {
+    return StructuredRecord.builder(outputSchema)
+      .set("message", rawPayload ? pubSubMessage.getData() : decodePayload(pubSubMessage.getData()))
+      .set("id", pubSubMessage.getMessageId())
+      .setTimestamp("timestamp", getTimestamp(pubSubMessage.getPublishTime()))
+      .set("attributes", getAttributes(pubSubMessage))
+      .build();
+  }
+
+  @Nullable
+  private StructuredRecord decodePayload(@Nullable byte[] data) throws IOException {
+    switch (format) {
+      case PubSubConstants.AVRO:
+      case PubSubConstants.PARQUET: {
+        if (datumReader == null) {
+          datumReader = new GenericDatumReader<>(AVRO_SCHEMAS.getUnchecked(messageSchema));
+          avroTransformer = new AvroToStructuredTransformer();
+        }
+        binaryDecoder = DecoderFactory.get().binaryDecoder(data, binaryDecoder);
+        return avroTransformer.transform(datumReader.read(null, binaryDecoder));
+      }
+      case PubSubConstants.CSV:
+        return StructuredRecordStringConverter.fromDelimitedString(toString(data), ",", messageSchema);
+      case PubSubConstants.DELIMITED:
+        return StructuredRecordStringConverter.fromDelimitedString(toString(data), delimiter, messageSchema);
+      case PubSubConstants.JSON:
+        return StructuredRecordStringConverter.fromJsonString(toString(data), messageSchema);
+      case PubSubConstants.TSV:
+        return StructuredRecordStringConverter.fromDelimitedString(toString(data), "\t", messageSchema);
+      default:
+        return null;
+    }
+  }
+
+  private static String toString(@Nullable byte[] data) {
+    return data != null ? new String(data) : "";
+  }
+
+  private static Map<String, String> getAttributes(PubSubMessage pubSubMessage) {
+    // The attributes of received messages are already copied to a HashMap, since
+    // com.google.api.client.util.ArrayMap is not serializable.
+    Map<String, String> attributes = pubSubMessage.getAttributes();
+    if (attributes instanceof HashMap) {
+      return attributes;
+    }
+    return attributes == null ? new HashMap<>() : new HashMap<>(attributes);
+  }
+
+  private static ZonedDateTime getTimestamp(Instant instant) {
+    return ZonedDateTime.ofInstant(instant, UTC);
+  }
+}
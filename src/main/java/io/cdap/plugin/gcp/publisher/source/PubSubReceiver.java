@@ -15,18 +15,26 @@
  */
 package io.cdap.plugin.gcp.publisher.source;
 
+import com.google.api.core.ApiService;
+import com.google.api.gax.batching.FlowControlSettings;
 import com.google.api.gax.core.FixedCredentialsProvider;
 import com.google.api.gax.rpc.ApiException;
 import com.google.api.gax.rpc.StatusCode;
 import com.google.auth.Credentials;
+import com.google.cloud.pubsub.v1.AckReplyConsumer;
+import com.google.cloud.pubsub.v1.MessageReceiver;
+import com.google.cloud.pubsub.v1.Subscriber;
 import com.google.cloud.pubsub.v1.SubscriptionAdminClient;
 import com.google.cloud.pubsub.v1.SubscriptionAdminSettings;
 import com.google.cloud.pubsub.v1.stub.GrpcSubscriberStub;
 import com.google.cloud.pubsub.v1.stub.SubscriberStub;
 import com.google.cloud.pubsub.v1.stub.SubscriberStubSettings;
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.MoreExecutors;
 import com.google.pubsub.v1.AcknowledgeRequest;
+import com.google.pubsub.v1.ModifyAckDeadlineRequest;
 import com.google.pubsub.v1.ProjectSubscriptionName;
+import com.google.pubsub.v1.PubsubMessage;
 import com.google.pubsub.v1.PullRequest;
 import com.google.pubsub.v1.PullResponse;
 import com.google.pubsub.v1.PushConfig;
@@ -37,17 +45,23 @@ import org.apache.spark.storage.StorageLevel;
 import org.apache.spark.streaming.receiver.Receiver;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.threeten.bp.Duration;
 
 import java.io.IOException;
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.RejectedExecutionHandler;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 import javax.annotation.Nullable;
@@ -56,6 +70,16 @@ import javax.annotation.Nullable;
  * Spark Receiver for Pub/Sub Messages.
  * <p>
  * If backpressure is enabled, the message ingestion rate for this receiver will be managed by Spark.
+ * <p>
+ * With the {@link PullMethod#PULL} method, messages are pulled periodically with synchronous pull requests. With the
+ * {@link PullMethod#STREAMING_PULL} method, messages are received from streaming pull streams as soon as they are
+ * available. The number and size of the messages received but not stored yet is then bounded by flow control, and
+ * the ack deadline of those messages is extended until they are stored. Without auto acknowledgement, the stored
+ * messages are not replied to: their lease lapses, and Pub/Sub redelivers them once their ack deadline expires, as
+ * it does for the messages of synchronous pulls.
+ * <p>
+ * With the {@link AckMode#BATCHED} acknowledgement mode, the pull method acknowledges the messages of several pull
+ * requests with a single request, and extends the ack deadline of the pulled messages until they are acknowledged.
  */
 public class PubSubReceiver extends Receiver<PubSubMessage> {
 
@@ -74,6 +98,10 @@ public class PubSubReceiver extends Receiver<PubSubMessage> {
     "Failed to fetch new messages using subscription '%s' for project '%s'.";
   private static final String INTERRUPTED_EXCEPTION_MSG =
     "Interrupted Exception when sleeping during backoff.";
+  private static final String ACK_ERROR_MSG =
+    "Failed to acknowledge %d messages using subscription '%s' for project '%s'. They will be redelivered.";
+  private static final String STORE_ERROR_MSG =
+    "Failed to store messages received using subscription '%s' for project '%s'.";
 
   // Retryable status codes. These need to be handled in case Pub/Sub throws a StatusRuntimeException.
   private static final int RESOURCE_EXHAUSTED = StatusCode.Code.RESOURCE_EXHAUSTED.getHttpStatusCode();
@@ -81,6 +109,12 @@ public class PubSubReceiver extends Receiver<PubSubMessage> {
   private static final int INTERNAL = StatusCode.Code.INTERNAL.getHttpStatusCode();
   private static final int UNAVAILABLE = StatusCode.Code.UNAVAILABLE.getHttpStatusCode();
   private static final int DEADLINE_EXCEEDED = StatusCode.Code.DEADLINE_EXCEEDED.getHttpStatusCode();
+  // Batched acknowledgements are sent every ACK_INTERVAL_MS, with at most MAX_ACK_IDS_PER_REQUEST ack ids per request
+  private static final long ACK_INTERVAL_MS = 500L;
+  private static final int MAX_ACK_IDS_PER_REQUEST = 2500;
+  // Ack deadlines are extended before the shortest ack deadline of a subscription expires
+  private static final long ACK_DEADLINE_EXTENSION_INTERVAL_SECONDS = 5L;
+  private static final int ACK_DEADLINE_EXTENSION_SECONDS = 60;
   private static final Set<Integer> RETRYABLE_STATUS_CODES = Collections.unmodifiableSet(new HashSet<Integer>() {{
     add(RESOURCE_EXHAUSTED);
     add(CANCELLED);
@@ -92,6 +126,10 @@ public class PubSubReceiver extends Receiver<PubSubMessage> {
   private final PubSubSubscriberConfig config;
   private final boolean autoAcknowledge;
   private final BackoffConfig backoffConfig;
+  private final PullMethod pullMethod;
+  private final AckMode ackMode;
+  private final long maxOutstandingMessages;
+  private final long maxOutstandingBytes;
   private int previousFetchRate = -1;
 
   //Transient properties used by the receiver in the worker node.
@@ -102,6 +140,13 @@ public class PubSubReceiver extends Receiver<PubSubMessage> {
   private transient ScheduledThreadPoolExecutor executor;
   private transient SubscriberStub subscriber;
   private transient AtomicInteger bucket;
+  // Ack ids of the pulled messages that are not acknowledged yet, with the batched acknowledgement mode
+  private transient Set<String> unacknowledgedAckIds;
+  // Ack ids of the stored messages, waiting to be acknowledged by the next batch
+  private transient BlockingQueue<String> pendingAckIds;
+  private transient Subscriber streamingSubscriber;
+  // Messages received by the streaming subscriber, waiting to be stored
+  private transient BlockingQueue<ReceivedStreamingMessage> streamingMessages;
 
   public PubSubReceiver(PubSubSubscriberConfig config, boolean autoAcknowledge, StorageLevel storageLevel) {
     this(config, autoAcknowledge, storageLevel, BackoffConfig.defaultInstance());
@@ -114,12 +159,25 @@ public class PubSubReceiver extends Receiver<PubSubMessage> {
     this.config = config;
     this.autoAcknowledge = autoAcknowledge;
     this.backoffConfig = backoffConfig;
+    this.pullMethod = config.getPullMethod();
+    this.ackMode = config.getAckMode();
+    this.maxOutstandingMessages = config.getMaxOutstandingMessages();
+    this.maxOutstandingBytes = config.getMaxOutstandingBytes();
   }
 
   @VisibleForTesting
   public PubSubReceiver(String project, String topic, String subscription, Credentials credentials,
                         boolean autoAcknowledge, StorageLevel storageLevel, BackoffConfig backoffConfig,
                         ScheduledThreadPoolExecutor executor, SubscriberStub subscriber, AtomicInteger bucket) {
+    this(project, topic, subscription, credentials, autoAcknowledge, storageLevel, backoffConfig, executor,
+         subscriber, bucket, AckMode.IMMEDIATE);
+  }
+
+  @VisibleForTesting
+  PubSubReceiver(String project, String topic, String subscription, Credentials credentials,
+                 boolean autoAcknowledge, StorageLevel storageLevel, BackoffConfig backoffConfig,
+                 ScheduledThreadPoolExecutor executor, SubscriberStub subscriber, AtomicInteger bucket,
+                 AckMode ackMode) {
     super(storageLevel);
     this.backoffConfig = backoffConfig;
     this.project = project;
@@ -131,6 +189,31 @@ public class PubSubReceiver extends Receiver<PubSubMessage> {
     this.subscriber = subscriber;
     this.bucket = bucket;
     this.config = null;
+    this.pullMethod = PullMethod.PULL;
+    this.ackMode = ackMode;
+    this.maxOutstandingMessages = 0L;
+    this.maxOutstandingBytes = 0L;
+    this.unacknowledgedAckIds = ConcurrentHashMap.newKeySet();
+    this.pendingAckIds = new LinkedBlockingQueue<>();
+  }
+
+  @VisibleForTesting
+  PubSubReceiver(String project, String subscription, Credentials credentials, boolean autoAcknowledge,
+                 StorageLevel storageLevel, ScheduledThreadPoolExecutor executor, AtomicInteger bucket,
+                 long maxOutstandingMessages, long maxOutstandingBytes) {
+    super(storageLevel);
+    this.backoffConfig = BackoffConfig.defaultInstance();
+    this.project = project;
+    this.subscription = subscription;
+    this.autoAcknowledge = autoAcknowledge;
+    this.credentials = credentials;
+    this.executor = executor;
+    this.bucket = bucket;
+    this.config = null;
+    this.pullMethod = PullMethod.STREAMING_PULL;
+    this.ackMode = AckMode.BATCHED;
+    this.maxOutstandingMessages = maxOutstandingMessages;
+    this.maxOutstandingBytes = maxOutstandingBytes;
   }
 
   @Override
@@ -144,6 +227,10 @@ public class PubSubReceiver extends Receiver<PubSubMessage> {
     //Create counter used to restrict the number of messages we fetch every second.
     this.bucket = new AtomicInteger();
 
+    //Create the queues of messages to acknowledge.
+    this.unacknowledgedAckIds = ConcurrentHashMap.newKeySet();
+    this.pendingAckIds = new LinkedBlockingQueue<>();
+
     //Configure properties
     this.project = config.getProject();
     this.subscription = ProjectSubscriptionName.format(config.getProject(), config.getSubscription());
@@ -157,17 +244,26 @@ public class PubSubReceiver extends Receiver<PubSubMessage> {
       createSubscription();
     }
 
-    // Try to create the subscriber client.
-    this.subscriber = createSubscriberClient();
+    if (pullMethod == PullMethod.STREAMING_PULL) {
+      startStreamingPull();
+    } else {
+      // Try to create the subscriber client.
+      this.subscriber = createSubscriberClient();
 
-    //Schedule tasks to set the message rate and start the receiver worker.
-    scheduleTasks();
+      //Schedule tasks to set the message rate and start the receiver worker.
+      scheduleTasks();
+    }
 
     LOG.info("Receiver started execution");
   }
 
   @Override
   public void onStop() {
+    //Stop receiving streaming messages, the ones not stored yet being redelivered.
+    if (streamingSubscriber != null) {
+      stopStreamingPull();
+    }
+
     //Shutdown thread pool executor
     if (executor != null && !executor.isShutdown()) {
       executor.shutdown();
@@ -178,6 +274,11 @@ public class PubSubReceiver extends Receiver<PubSubMessage> {
       }
     }
 
+    //Acknowledge the stored messages that are still waiting for a batch.
+    if (subscriber != null && !subscriber.isShutdown() && ackMode == AckMode.BATCHED) {
+      acknowledgePendingMessages();
+    }
+
     //Clean up subscriber stub used by the Google Cloud client.
     if (subscriber != null && !subscriber.isShutdown()) {
       subscriber.shutdown();
@@ -305,6 +406,125 @@ public class PubSubReceiver extends Receiver<PubSubMessage> {
     if (!this.isStopped()) {
       executor.scheduleAtFixedRate(this::updateMessageRateAndFillBucket, 0, 1, TimeUnit.SECONDS);
       executor.scheduleWithFixedDelay(this::receiveMessages, 100, 100, TimeUnit.MILLISECONDS);
+      if (ackMode == AckMode.BATCHED) {
+        executor.scheduleWithFixedDelay(this::acknowledgePendingMessages, ACK_INTERVAL_MS, ACK_INTERVAL_MS,
+                                        TimeUnit.MILLISECONDS);
+        executor.scheduleWithFixedDelay(this::extendAckDeadlines, ACK_DEADLINE_EXTENSION_INTERVAL_SECONDS,
+                                        ACK_DEADLINE_EXTENSION_INTERVAL_SECONDS, TimeUnit.SECONDS);
+      }
+    }
+  }
+
+  /**
+   * Start receiving messages with a streaming subscriber, and schedule the tasks that set the message rate and store
+   * the received messages.
+   * <p>
+   * This method restarts the receiver if the streaming subscriber fails.
+   */
+  public void startStreamingPull() {
+    if (isStopped()) {
+      return;
+    }
+
+    this.streamingMessages = new LinkedBlockingQueue<>();
+    this.streamingSubscriber = buildStreamingSubscriber(this::receiveStreamingMessage).build();
+    streamingSubscriber.addListener(new ApiService.Listener() {
+      @Override
+      public void failed(ApiService.State from, Throwable failure) {
+        if (!isStopped()) {
+          restart(String.format(FETCH_ERROR_MSG, subscription, project), failure);
+        }
+      }
+    }, MoreExecutors.directExecutor());
+    streamingSubscriber.startAsync();
+
+    executor.scheduleAtFixedRate(this::updateMessageRateAndFillBucket, 0, 1, TimeUnit.SECONDS);
+    executor.execute(this::storeStreamingMessages);
+  }
+
+  /**
+   * Stop the streaming subscriber. Messages that were received but not stored are nacked, so that they are
+   * redelivered.
+   */
+  protected void stopStreamingPull() {
+    ReceivedStreamingMessage message;
+    while ((message = streamingMessages.poll()) != null) {
+      message.consumer.nack();
+    }
+
+    try {
+      streamingSubscriber.stopAsync().awaitTerminated(30, TimeUnit.SECONDS);
+    } catch (TimeoutException | IllegalStateException e) {
+      LOG.warn("Streaming subscriber using subscription '{}' did not stop cleanly.", subscription, e);
+    }
+  }
+
+  /**
+   * Handle a message received by the streaming subscriber. The message is acknowledged once stored, and its ack
+   * deadline is extended by the subscriber until then.
+   */
+  protected void receiveStreamingMessage(PubsubMessage message, AckReplyConsumer consumer) {
+    if (isStopped()) {
+      consumer.nack();
+      return;
+    }
+    streamingMessages.add(new ReceivedStreamingMessage(new PubSubMessage(message, null), consumer));
+  }
+
+  /**
+   * Store the messages received by the streaming subscriber in Spark's memory, as blocks of all the messages
+   * received since the previous block, and acknowledge them. The number of messages stored every second is limited
+   * by the bucket.
+   */
+  protected void storeStreamingMessages() {
+    List<ReceivedStreamingMessage> received = new ArrayList<>();
+    while (!isStopped()) {
+      try {
+        int maxMessages = bucket.get();
+        if (maxMessages <= 0) {
+          // Wait for the bucket to be filled again
+          TimeUnit.MILLISECONDS.sleep(10);
+          continue;
+        }
+        ReceivedStreamingMessage first = streamingMessages.poll(100, TimeUnit.MILLISECONDS);
+        if (first == null) {
+          continue;
+        }
+        received.add(first);
+        streamingMessages.drainTo(received, maxMessages - 1);
+        bucket.updateAndGet(x -> x - received.size());
+
+        storeAndAck(received);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        received.forEach(message -> message.consumer.nack());
+        return;
+      } catch (RuntimeException e) {
+        // Spark failed to store the block, so the messages are redelivered
+        received.forEach(message -> message.consumer.nack());
+        if (!isStopped()) {
+          restart(String.format(STORE_ERROR_MSG, subscription, project), e);
+        }
+        return;
+      } finally {
+        received.clear();
+      }
+    }
+  }
+
+  private void storeAndAck(List<ReceivedStreamingMessage> received) {
+    List<PubSubMessage> messages = new ArrayList<>(received.size());
+    for (ReceivedStreamingMessage message : received) {
+      messages.add(message.message);
+    }
+
+    // Blocks until the messages are stored
+    store(messages.iterator());
+
+    // Without auto acknowledgement, stored messages are left to be redelivered once their lease lapses. Nacking them
+    // would have Pub/Sub redeliver them right away, over and over.
+    if (autoAcknowledge) {
+      received.forEach(message -> message.consumer.ack());
     }
   }
 
@@ -377,12 +597,30 @@ public class PubSubReceiver extends Receiver<PubSubMessage> {
     }
 
     List<PubSubMessage> messages = receivedMessages.stream().map(PubSubMessage::new).collect(Collectors.toList());
+    List<String> ackIds =
+      messages.stream().map(PubSubMessage::getAckId).collect(Collectors.toList());
+    boolean batchAcknowledgements = autoAcknowledge && ackMode == AckMode.BATCHED;
 
-    store(messages.iterator());
+    if (batchAcknowledgements) {
+      // The ack deadline is extended while the messages are stored
+      unacknowledgedAckIds.addAll(ackIds);
+    }
 
-    if (autoAcknowledge) {
-      List<String> ackIds =
-        messages.stream().map(PubSubMessage::getAckId).collect(Collectors.toList());
+    // Blocks until the messages are stored
+    boolean stored = false;
+    try {
+      store(messages.iterator());
+      stored = true;
+    } finally {
+      if (batchAcknowledgements && !stored) {
+        // The messages are no longer extended, so that their lease lapses and they are redelivered
+        unacknowledgedAckIds.removeAll(ackIds);
+      }
+    }
+
+    if (batchAcknowledgements) {
+      pendingAckIds.addAll(ackIds);
+    } else if (autoAcknowledge) {
 
       // Acknowledge received messages.
       AcknowledgeRequest acknowledgeRequest =
@@ -394,6 +632,53 @@ public class PubSubReceiver extends Receiver<PubSubMessage> {
     }
   }
 
+  /**
+   * Acknowledge the stored messages waiting for a batch, with as few requests as possible.
+   * <p>
+   * Messages that cannot be acknowledged because of a retryable exception are acknowledged by the next batch, while
+   * the other ones are redelivered by Pub/Sub.
+   */
+  protected void acknowledgePendingMessages() {
+    List<String> ackIds = new ArrayList<>();
+    while (pendingAckIds.drainTo(ackIds, MAX_ACK_IDS_PER_REQUEST) > 0) {
+      try {
+        subscriber.acknowledgeCallable().call(AcknowledgeRequest.newBuilder()
+                                                .setSubscription(subscription)
+                                                .addAllAckIds(ackIds)
+                                                .build());
+      } catch (ApiException ae) {
+        if (isApiExceptionRetryable(ae)) {
+          pendingAckIds.addAll(ackIds);
+          return;
+        }
+        LOG.warn(String.format(ACK_ERROR_MSG, ackIds.size(), subscription, project), ae);
+      }
+      unacknowledgedAckIds.removeAll(ackIds);
+      ackIds.clear();
+    }
+  }
+
+  /**
+   * Extend the ack deadline of the pulled messages that are not acknowledged yet, so that they are not redelivered
+   * while they are stored or waiting for a batch.
+   */
+  protected void extendAckDeadlines() {
+    List<String> ackIds = new ArrayList<>(unacknowledgedAckIds);
+    for (int i = 0; i < ackIds.size(); i += MAX_ACK_IDS_PER_REQUEST) {
+      try {
+        subscriber.modifyAckDeadlineCallable().call(
+          ModifyAckDeadlineRequest.newBuilder()
+            .setSubscription(subscription)
+            .addAllAckIds(ackIds.subList(i, Math.min(ackIds.size(), i + MAX_ACK_IDS_PER_REQUEST)))
+            .setAckDeadlineSeconds(ACK_DEADLINE_EXTENSION_SECONDS)
+            .build());
+      } catch (ApiException ae) {
+        // The deadline is extended again by the next run, before the messages get redelivered
+        LOG.debug("Failed to extend the ack deadline of messages using subscription '{}'.", subscription, ae);
+      }
+    }
+  }
+
   /**
    * Get Subscriber admin settings instance.
    *
@@ -426,6 +711,33 @@ public class PubSubReceiver extends Receiver<PubSubMessage> {
     return builder.build();
   }
 
+  /**
+   * Get a streaming Subscriber builder, with the flow control settings of the receiver.
+   * <p>
+   * Without auto acknowledgement, the ack deadline of the received messages is not extended. The subscriber then
+   * releases them from its flow control when their initial ack deadline is about to expire, instead of holding them
+   * until they are replied to.
+   *
+   * @param messageReceiver the receiver of the messages
+   * @return the Subscriber builder
+   */
+  protected Subscriber.Builder buildStreamingSubscriber(MessageReceiver messageReceiver) {
+    Subscriber.Builder builder = Subscriber.newBuilder(subscription, messageReceiver)
+      .setFlowControlSettings(FlowControlSettings.newBuilder()
+                                .setMaxOutstandingElementCount(maxOutstandingMessages)
+                                .setMaxOutstandingRequestBytes(maxOutstandingBytes)
+                                .build());
+    if (!autoAcknowledge) {
+      builder.setMaxAckExtensionPeriod(Duration.ZERO);
+    }
+
+    if (credentials != null) {
+      builder.setCredentialsProvider(FixedCredentialsProvider.create(credentials));
+    }
+
+    return builder;
+  }
+
   /**
    * Get Subscription Admin Client instance
    *
@@ -482,7 +794,7 @@ public class PubSubReceiver extends Receiver<PubSubMessage> {
    * The default rate is Integer.MAX_VALUE if the receiver has not been able to calculate a rate.
    */
   protected void updateMessageRateAndFillBucket() {
-    int messageRate = (int) Math.min(supervisor().getCurrentRateLimit(), Integer.MAX_VALUE);
+    int messageRate = (int) Math.min(getCurrentRateLimit(), Integer.MAX_VALUE);
 
     if (messageRate != previousFetchRate) {
       previousFetchRate = messageRate;
@@ -492,6 +804,13 @@ public class PubSubReceiver extends Receiver<PubSubMessage> {
     bucket.set(messageRate);
   }
 
+  /**
+   * Get the current rate limit of this receiver in messages per second, as set by Spark.
+   */
+  protected long getCurrentRateLimit() {
+    return supervisor().getCurrentRateLimit();
+  }
+
   /**
    * Method to determine if an API Exception is retryable. This uses the built-in method in API Exception as well
    * as checking the status code.
@@ -588,6 +907,19 @@ public class PubSubReceiver extends Receiver<PubSubMessage> {
     }
   }
 
+  /**
+   * A message received by the streaming subscriber, with the consumer used to acknowledge it.
+   */
+  private static final class ReceivedStreamingMessage {
+    private final PubSubMessage message;
+    private final AckReplyConsumer consumer;
+
+    private ReceivedStreamingMessage(PubSubMessage message, AckReplyConsumer consumer) {
+      this.message = message;
+      this.consumer = consumer;
+    }
+  }
+
   /**
    * Rejected execution handler which logs a message when a task is rejected.
    */
@@ -16,12 +16,15 @@
 
 package io.cdap.plugin.gcp.publisher.source;
 
+import com.google.common.base.Strings;
 import io.cdap.cdap.api.annotation.Description;
 import io.cdap.cdap.api.annotation.Macro;
+import io.cdap.cdap.api.annotation.Name;
 import io.cdap.cdap.etl.api.FailureCollector;
 import io.cdap.plugin.gcp.common.GCPReferenceSourceConfig;
 
 import java.io.Serializable;
+import java.util.Arrays;
 import javax.annotation.Nullable;
 
 /**
@@ -30,6 +33,12 @@ import javax.annotation.Nullable;
 public class PubSubSubscriberConfig extends GCPReferenceSourceConfig implements Serializable {
 
   public static final String NAME_SUBSCRIPTION = "subscription";
+  public static final String NAME_PULL_METHOD = "pullMethod";
+  public static final String NAME_ACK_MODE = "ackMode";
+  public static final String NAME_MAX_OUTSTANDING_MESSAGES = "maxOutstandingMessages";
+  public static final String NAME_MAX_OUTSTANDING_BYTES = "maxOutstandingBytes";
+  private static final long DEFAULT_MAX_OUTSTANDING_MESSAGES = 1000L;
+  private static final long DEFAULT_MAX_OUTSTANDING_BYTES = 100L * 1024 * 1024;
 
   @Description("Cloud Pub/Sub subscription to read from. If a subscription with the specified name does not " +
     "exist, it will be automatically created if a topic is specified. Messages published before the subscription " +
@@ -50,6 +59,37 @@ public class PubSubSubscriberConfig extends GCPReferenceSourceConfig implements
   @Nullable
   protected Integer numberOfReaders;
 
+  @Name(NAME_PULL_METHOD)
+  @Description("Method used by the readers to get messages. 'Pull' periodically pulls messages with synchronous " +
+    "requests. 'Streaming Pull' receives messages as soon as they are available on long-lived streams, with flow " +
+    "control, and extends the ack deadline of the messages that are not yet stored. Defaults to 'Pull'.")
+  @Macro
+  @Nullable
+  protected String pullMethod;
+
+  @Name(NAME_ACK_MODE)
+  @Description("How messages are acknowledged when using the pull method. Messages are always acknowledged once " +
+    "stored. 'Immediate' acknowledges the messages of every pull request on their own. 'Batched' acknowledges " +
+    "the messages of several pull requests together, and extends the ack deadline of the pulled messages until " +
+    "they are acknowledged. The streaming pull method always batches acknowledgements. Defaults to 'Immediate'.")
+  @Macro
+  @Nullable
+  protected String ackMode;
+
+  @Name(NAME_MAX_OUTSTANDING_MESSAGES)
+  @Description("Maximum number of messages that every reader receives without having stored them yet, when " +
+    "using the streaming pull method. Defaults to 1000.")
+  @Macro
+  @Nullable
+  protected Long maxOutstandingMessages;
+
+  @Name(NAME_MAX_OUTSTANDING_BYTES)
+  @Description("Maximum size in bytes of the messages that every reader receives without having stored them yet, " +
+    "when using the streaming pull method. Defaults to 100 MB.")
+  @Macro
+  @Nullable
+  protected Long maxOutstandingBytes;
+
   public void validate(FailureCollector collector) {
     super.validate(collector);
 
@@ -80,6 +120,27 @@ public class PubSubSubscriberConfig extends GCPReferenceSourceConfig implements
                              "Check Plugin documentation for naming convention.")
         .withConfigProperty(subscription);
     }
+    if (!containsMacro(NAME_PULL_METHOD) && !Strings.isNullOrEmpty(pullMethod)
+      && Arrays.stream(PullMethod.values()).noneMatch(method -> method.name().equalsIgnoreCase(pullMethod))) {
+      collector.addFailure(String.format("Pull method has incorrect value '%s'.", pullMethod),
+                           "Set the pull method to 'Pull' or 'Streaming Pull'.")
+        .withConfigProperty(NAME_PULL_METHOD);
+    }
+    if (!containsMacro(NAME_ACK_MODE) && !Strings.isNullOrEmpty(ackMode)
+      && Arrays.stream(AckMode.values()).noneMatch(mode -> mode.name().equalsIgnoreCase(ackMode))) {
+      collector.addFailure(String.format("Acknowledgement mode has incorrect value '%s'.", ackMode),
+                           "Set the acknowledgement mode to 'Immediate' or 'Batched'.")
+        .withConfigProperty(NAME_ACK_MODE);
+    }
+    if (!containsMacro(NAME_MAX_OUTSTANDING_MESSAGES) && maxOutstandingMessages != null
+      && maxOutstandingMessages <= 0) {
+      collector.addFailure("Maximum outstanding messages must be positive.", null)
+        .withConfigProperty(NAME_MAX_OUTSTANDING_MESSAGES);
+    }
+    if (!containsMacro(NAME_MAX_OUTSTANDING_BYTES) && maxOutstandingBytes != null && maxOutstandingBytes <= 0) {
+      collector.addFailure("Maximum outstanding bytes must be positive.", null)
+        .withConfigProperty(NAME_MAX_OUTSTANDING_BYTES);
+    }
     collector.getOrThrowException();
   }
 
@@ -94,4 +155,20 @@ public class PubSubSubscriberConfig extends GCPReferenceSourceConfig implements
   public Integer getNumberOfReaders() {
     return numberOfReaders != null ? numberOfReaders : 1;
   }
+
+  public PullMethod getPullMethod() {
+    return Strings.isNullOrEmpty(pullMethod) ? PullMethod.PULL : PullMethod.valueOf(pullMethod.toUpperCase());
+  }
+
+  public AckMode getAckMode() {
+    return Strings.isNullOrEmpty(ackMode) ? AckMode.IMMEDIATE : AckMode.valueOf(ackMode.toUpperCase());
+  }
+
+  public long getMaxOutstandingMessages() {
+    return maxOutstandingMessages != null ? maxOutstandingMessages : DEFAULT_MAX_OUTSTANDING_MESSAGES;
+  }
+
+  public long getMaxOutstandingBytes() {
+    return maxOutstandingBytes != null ? maxOutstandingBytes : DEFAULT_MAX_OUTSTANDING_BYTES;
+  }
 }
@@ -0,0 +1,27 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.gcp.publisher.source;
+
+/**
+ * The method used by the receivers to get messages from a Pub/Sub subscription.
+ */
+public enum PullMethod {
+  // Periodically pull messages with synchronous pull requests.
+  PULL,
+  // Receive messages from streaming pull streams, with flow control and lease extension.
+  STREAMING_PULL
+}
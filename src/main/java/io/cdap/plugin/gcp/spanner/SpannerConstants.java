@@ -27,10 +27,16 @@ public final class SpannerConstants {
   public static final String SERVICE_ACCOUNT_TYPE_FILE_PATH = "serviceFilePath";
   public static final String SERVICE_ACCOUNT_TYPE_JSON = "serviceJson";
   public static final String SERVICE_ACCOUNT = "service.account.path";
-  public static final String PARTITIONS_LIST = "partitions.list";
+  public static final String MAX_PARTITIONS = "spanner.max.partitions";
   public static final String QUERY = "query";
   public static final String SPANNER_BATCH_TRANSACTION_ID = "spanner.batch.transaction.id";
+  public static final String PARTITION_SIZE_BYTES = "spanner.partition.size.bytes";
+  public static final String SPANNER_READ_PREFETCH_ROWS = "spanner.read.prefetch.rows";
+  public static final String SPANNER_READ_PRIORITY = "spanner.read.priority";
   public static final String TABLE_NAME = "table";
   public static final String SPANNER_WRITE_BATCH_SIZE = "spanner.write.batch.size";
+  public static final String SPANNER_WRITE_MAX_IN_FLIGHT_COMMITS = "spanner.write.max.in.flight.commits";
+  public static final String SPANNER_MIN_SESSIONS = "spanner.session.pool.min.sessions";
+  public static final String SPANNER_MAX_SESSIONS = "spanner.session.pool.max.sessions";
   public static final String SCHEMA = "schema";
 }
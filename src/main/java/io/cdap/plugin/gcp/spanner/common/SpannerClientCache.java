@@ -0,0 +1,232 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.gcp.spanner.common;
+
+import com.google.cloud.spanner.BatchClient;
+import com.google.cloud.spanner.DatabaseClient;
+import com.google.cloud.spanner.DatabaseId;
+import com.google.cloud.spanner.SessionPoolOptions;
+import com.google.cloud.spanner.Spanner;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.annotation.Nullable;
+
+/**
+ * Cache of the {@link Spanner} services of the JVM, shared by the tasks that read from or write to Spanner with the
+ * same project, credentials and session pool options.
+ * <p>
+ * Creating a service and the session pools of its database clients can take longer than short tasks. A task leases a
+ * service for its duration, and a service is closed once it has not been leased for the idle timeout. A service
+ * creates its database clients, and their session pools, once per database. The bytes read and written by a task are
+ * counted by the interceptors of the service into the counters of the {@link io.grpc.Context} of the calls of the
+ * task, see {@link SpannerUtil#getSharedSpannerService}.
+ */
+public final class SpannerClientCache {
+  private static final Logger LOG = LoggerFactory.getLogger(SpannerClientCache.class);
+  private static final long IDLE_TIMEOUT_SECONDS = 60;
+  private static final SpannerClientCache INSTANCE =
+    new SpannerClientCache(key -> SpannerUtil.getSharedSpannerService(key.serviceAccount,
+                                                                      key.isServiceAccountFilePath,
+                                                                      key.projectId,
+                                                                      key.sessionPoolOptions),
+                           TimeUnit.SECONDS.toMillis(IDLE_TIMEOUT_SECONDS));
+
+  private final ServiceFactory factory;
+  private final long idleTimeoutMillis;
+  private final Map<Key, Entry> entries;
+  private final ScheduledExecutorService evictor;
+
+  @VisibleForTesting
+  SpannerClientCache(ServiceFactory factory, long idleTimeoutMillis) {
+    this.factory = factory;
+    this.idleTimeoutMillis = idleTimeoutMillis;
+    this.entries = new HashMap<>();
+    this.evictor = Executors.newSingleThreadScheduledExecutor(
+      new ThreadFactoryBuilder().setNameFormat("spanner-client-cache-evictor").setDaemon(true).build());
+  }
+
+  /**
+   * Returns the cache of the JVM.
+   */
+  public static SpannerClientCache getInstance() {
+    return INSTANCE;
+  }
+
+  /**
+   * Leases the service of a project, credentials and session pool options, and creates it if it is not cached.
+   * The lease must be closed once the service is not used anymore.
+   *
+   * @param serviceAccount service account, or null to use the default credentials
+   * @param isServiceAccountFilePath whether the service account is the path of a file
+   * @param projectId the project of the service
+   * @param sessionPoolOptions options of the session pools of the database clients, or null to use the defaults
+   */
+  public Lease lease(@Nullable String serviceAccount, boolean isServiceAccountFilePath, String projectId,
+                     @Nullable SessionPoolOptions sessionPoolOptions) throws IOException {
+    Key key = new Key(serviceAccount, isServiceAccountFilePath, projectId, sessionPoolOptions);
+    synchronized (this) {
+      Entry entry = entries.get(key);
+      if (entry == null) {
+        LOG.debug("Creating a shared Spanner service for project {}", projectId);
+        entry = new Entry(factory.create(key));
+        entries.put(key, entry);
+      }
+      entry.references++;
+      entry.generation++;
+      return new Lease(key, entry);
+    }
+  }
+
+  private synchronized void release(Key key, Entry entry) {
+    entry.references--;
+    if (entry.references == 0) {
+      long generation = ++entry.generation;
+      evictor.schedule(() -> evictIfIdle(key, entry, generation), idleTimeoutMillis, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  private void evictIfIdle(Key key, Entry entry, long generation) {
+    synchronized (this) {
+      // The service was leased again since it was released
+      if (entry.generation != generation || entries.get(key) != entry) {
+        return;
+      }
+      entries.remove(key);
+    }
+    LOG.debug("Closing the idle shared Spanner service for project {}", key.projectId);
+    try {
+      entry.spanner.close();
+    } catch (RuntimeException e) {
+      LOG.warn("Failed to close the idle shared Spanner service for project {}", key.projectId, e);
+    }
+  }
+
+  @VisibleForTesting
+  synchronized int size() {
+    return entries.size();
+  }
+
+  /**
+   * Creates the service of a key.
+   */
+  @VisibleForTesting
+  interface ServiceFactory {
+    Spanner create(Key key) throws IOException;
+  }
+
+  /**
+   * Lease of a shared service, which releases the service when closed.
+   */
+  public final class Lease implements Closeable {
+    private final Key key;
+    private final Entry entry;
+    private final AtomicBoolean released;
+
+    private Lease(Key key, Entry entry) {
+      this.key = key;
+      this.entry = entry;
+      this.released = new AtomicBoolean();
+    }
+
+    public Spanner getSpanner() {
+      return entry.spanner;
+    }
+
+    /**
+     * Returns the database client of a database, which is created by the service once per database.
+     */
+    public DatabaseClient getDatabaseClient(DatabaseId databaseId) {
+      return entry.spanner.getDatabaseClient(databaseId);
+    }
+
+    public BatchClient getBatchClient(DatabaseId databaseId) {
+      return entry.spanner.getBatchClient(databaseId);
+    }
+
+    @Override
+    public void close() {
+      if (released.compareAndSet(false, true)) {
+        release(key, entry);
+      }
+    }
+  }
+
+  /**
+   * Service of a key and the number of its leases.
+   */
+  private static final class Entry {
+    private final Spanner spanner;
+    private int references;
+    // Changes whenever the service is leased or released, to skip the eviction of services that were leased again
+    private long generation;
+
+    private Entry(Spanner spanner) {
+      this.spanner = spanner;
+    }
+  }
+
+  /**
+   * Project, credentials and session pool options of a service.
+   */
+  @VisibleForTesting
+  static final class Key {
+    private final String serviceAccount;
+    private final boolean isServiceAccountFilePath;
+    private final String projectId;
+    private final SessionPoolOptions sessionPoolOptions;
+
+    private Key(@Nullable String serviceAccount, boolean isServiceAccountFilePath, String projectId,
+                @Nullable SessionPoolOptions sessionPoolOptions) {
+      this.serviceAccount = serviceAccount;
+      this.isServiceAccountFilePath = isServiceAccountFilePath;
+      this.projectId = projectId;
+      this.sessionPoolOptions = sessionPoolOptions;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      Key that = (Key) o;
+      return isServiceAccountFilePath == that.isServiceAccountFilePath &&
+        Objects.equals(serviceAccount, that.serviceAccount) &&
+        Objects.equals(projectId, that.projectId) &&
+        Objects.equals(sessionPoolOptions, that.sessionPoolOptions);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(serviceAccount, isServiceAccountFilePath, projectId, sessionPoolOptions);
+    }
+  }
+}
@@ -18,6 +18,7 @@ package io.cdap.plugin.gcp.spanner.common;
 
 import com.google.cloud.spanner.DatabaseClient;
 import com.google.cloud.spanner.DatabaseId;
+import com.google.cloud.spanner.SessionPoolOptions;
 import com.google.cloud.spanner.Spanner;
 import com.google.cloud.spanner.SpannerOptions;
 import com.google.cloud.spanner.Statement;
@@ -38,6 +39,7 @@ import io.grpc.CallOptions;
 import io.grpc.Channel;
 import io.grpc.ClientCall;
 import io.grpc.ClientInterceptor;
+import io.grpc.Context;
 import io.grpc.ForwardingClientCall;
 import io.grpc.ForwardingClientCallListener;
 import io.grpc.Metadata;
@@ -49,6 +51,7 @@ import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import javax.annotation.Nullable;
 
@@ -56,6 +59,14 @@ import javax.annotation.Nullable;
  * Spanner utility class to get spanner service
  */
 public class SpannerUtil {
+  /**
+   * Counter of the bytes read by the calls to a shared Spanner service.
+   */
+  public static final Context.Key<BytesCounter> READ_BYTES_COUNTER = Context.key("spanner-read-bytes-counter");
+  /**
+   * Counter of the bytes written by the calls to a shared Spanner service.
+   */
+  public static final Context.Key<BytesCounter> WRITE_BYTES_COUNTER = Context.key("spanner-write-bytes-counter");
   private static final Set<Schema.LogicalType> SUPPORTED_LOGICAL_TYPES =
     ImmutableSet.of(Schema.LogicalType.DATE, Schema.LogicalType.TIMESTAMP_MICROS, Schema.LogicalType.DATETIME);
   private static final String TABLE_NAME = "TableName";
@@ -82,48 +93,13 @@ public class SpannerUtil {
    * Construct and return the {@link Spanner} service with an interceptor that increments the provided counter by the
    * number of bytes read from Spanner.
    */
-    public static Spanner getSpannerServiceWithReadInterceptor(String serviceAccount,
-                                                               boolean isServiceAccountFilePath,
-                                                               String projectId,
-                                                               BytesCounter counter) throws IOException {
-      class InterceptedClientCall<ReqT, RespT> extends ForwardingClientCall.SimpleForwardingClientCall<ReqT, RespT> {
-        InterceptedClientCall(ClientCall<ReqT, RespT> call) {
-          super(call);
-        }
-
-        @Override
-        public void start(Listener<RespT> responseListener, Metadata headers) {
-          super.start(new ForwardingClientCallListener.
-            SimpleForwardingClientCallListener<RespT>(responseListener) {
-            @Override
-            public void onMessage(RespT message) {
-              if (message instanceof PartialResultSet) {
-                PartialResultSet partialResultSet = (PartialResultSet) message;
-                counter.increment(partialResultSet.getSerializedSize());
-              } else if (message instanceof ResultSet) {
-                ResultSet resultSet = (ResultSet) message;
-                counter.increment(resultSet.getSerializedSize());
-              }
-              super.onMessage(message);
-            }
-          }, headers);
-        }
-      }
-
-      SpannerOptions.Builder optionsBuilder = buildSpannerOptions(serviceAccount, isServiceAccountFilePath, projectId);
-      optionsBuilder.setInterceptorProvider(
-      SpannerInterceptorProvider.createDefault()
-      .with(
-        new ClientInterceptor() {
-          @Override
-          public <ReqT, RespT> ClientCall<ReqT, RespT> interceptCall(
-            MethodDescriptor<ReqT, RespT> method, CallOptions callOptions, Channel next) {
-            ClientCall<ReqT, RespT> call = next.newCall(method, callOptions);
-            return new InterceptedClientCall<>(call);
-          }
-        }
-      ));
-
+  public static Spanner getSpannerServiceWithReadInterceptor(String serviceAccount,
+                                                             boolean isServiceAccountFilePath,
+                                                             String projectId,
+                                                             BytesCounter counter) throws IOException {
+    SpannerOptions.Builder optionsBuilder = buildSpannerOptions(serviceAccount, isServiceAccountFilePath, projectId);
+    optionsBuilder.setInterceptorProvider(
+      SpannerInterceptorProvider.createDefault().with(createReadInterceptor(() -> counter)));
     return optionsBuilder.build().getService();
   }
 
@@ -135,10 +111,86 @@ public class SpannerUtil {
                                                               boolean isServiceAccountFilePath,
                                                               String projectId,
                                                               BytesCounter counter) throws IOException {
+    SpannerOptions.Builder optionsBuilder = buildSpannerOptions(serviceAccount, isServiceAccountFilePath, projectId);
+    optionsBuilder.setInterceptorProvider(
+      SpannerInterceptorProvider.createDefault().with(createWriteInterceptor(() -> counter)));
+    return optionsBuilder.build().getService();
+  }
+
+  /**
+   * Construct and return the {@link Spanner} service to share between tasks. The bytes read from and written to
+   * Spanner are counted by interceptors into the {@link #READ_BYTES_COUNTER} and the {@link #WRITE_BYTES_COUNTER}
+   * of the {@link Context} in which the calls are started.
+   */
+  public static Spanner getSharedSpannerService(String serviceAccount,
+                                                boolean isServiceAccountFilePath,
+                                                String projectId,
+                                                @Nullable SessionPoolOptions sessionPoolOptions) throws IOException {
+    SpannerOptions.Builder optionsBuilder = buildSpannerOptions(serviceAccount, isServiceAccountFilePath, projectId);
+    if (sessionPoolOptions != null) {
+      optionsBuilder.setSessionPoolOption(sessionPoolOptions);
+    }
+    optionsBuilder.setInterceptorProvider(
+      SpannerInterceptorProvider.createDefault()
+        .with(createReadInterceptor(READ_BYTES_COUNTER::get))
+        .with(createWriteInterceptor(WRITE_BYTES_COUNTER::get)));
+    return optionsBuilder.build().getService();
+  }
+
+  /**
+   * Creates an interceptor that increments the counter of a call, if any, by the size of the results read.
+   */
+  private static ClientInterceptor createReadInterceptor(Supplier<BytesCounter> counterSupplier) {
     class InterceptedClientCall<ReqT, RespT> extends ForwardingClientCall.SimpleForwardingClientCall<ReqT, RespT> {
-      InterceptedClientCall(ClientCall<ReqT, RespT> call) {
+      private final BytesCounter counter;
+
+      InterceptedClientCall(ClientCall<ReqT, RespT> call, BytesCounter counter) {
         super(call);
+        this.counter = counter;
+      }
+
+      @Override
+      public void start(Listener<RespT> responseListener, Metadata headers) {
+        super.start(new ForwardingClientCallListener.
+          SimpleForwardingClientCallListener<RespT>(responseListener) {
+          @Override
+          public void onMessage(RespT message) {
+            if (message instanceof PartialResultSet) {
+              PartialResultSet partialResultSet = (PartialResultSet) message;
+              counter.increment(partialResultSet.getSerializedSize());
+            } else if (message instanceof ResultSet) {
+              ResultSet resultSet = (ResultSet) message;
+              counter.increment(resultSet.getSerializedSize());
+            }
+            super.onMessage(message);
+          }
+        }, headers);
       }
+    }
+
+    return new ClientInterceptor() {
+      @Override
+      public <ReqT, RespT> ClientCall<ReqT, RespT> interceptCall(
+        MethodDescriptor<ReqT, RespT> method, CallOptions callOptions, Channel next) {
+        ClientCall<ReqT, RespT> call = next.newCall(method, callOptions);
+        BytesCounter counter = counterSupplier.get();
+        return counter == null ? call : new InterceptedClientCall<>(call, counter);
+      }
+    };
+  }
+
+  /**
+   * Creates an interceptor that increments the counter of a call, if any, by the size of the mutations committed.
+   */
+  private static ClientInterceptor createWriteInterceptor(Supplier<BytesCounter> counterSupplier) {
+    class InterceptedClientCall<ReqT, RespT> extends ForwardingClientCall.SimpleForwardingClientCall<ReqT, RespT> {
+      private final BytesCounter counter;
+
+      InterceptedClientCall(ClientCall<ReqT, RespT> call, BytesCounter counter) {
+        super(call);
+        this.counter = counter;
+      }
+
       @Override
       public void sendMessage(ReqT message) {
         if (message instanceof CommitRequest) {
@@ -157,21 +209,15 @@ public class SpannerUtil {
       }
     }
 
-    SpannerOptions.Builder optionsBuilder = buildSpannerOptions(serviceAccount, isServiceAccountFilePath, projectId);
-    optionsBuilder.setInterceptorProvider(
-      SpannerInterceptorProvider.createDefault()
-        .with(
-          new ClientInterceptor() {
-            @Override
-            public <ReqT, RespT> ClientCall<ReqT, RespT> interceptCall(
-              MethodDescriptor<ReqT, RespT> method, CallOptions callOptions, Channel next) {
-              ClientCall<ReqT, RespT> call = next.newCall(method, callOptions);
-              return new InterceptedClientCall<>(call);
-            }
-          }
-        ));
-
-    return optionsBuilder.build().getService();
+    return new ClientInterceptor() {
+      @Override
+      public <ReqT, RespT> ClientCall<ReqT, RespT> interceptCall(
+        MethodDescriptor<ReqT, RespT> method, CallOptions callOptions, Channel next) {
+        ClientCall<ReqT, RespT> call = next.newCall(method, callOptions);
+        BytesCounter counter = counterSupplier.get();
+        return counter == null ? call : new InterceptedClientCall<>(call, counter);
+      }
+    };
   }
 
     /**
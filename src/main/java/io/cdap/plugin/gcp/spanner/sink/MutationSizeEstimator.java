@@ -0,0 +1,115 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.gcp.spanner.sink;
+
+import com.google.cloud.ByteArray;
+import com.google.cloud.spanner.Mutation;
+import com.google.cloud.spanner.Value;
+
+/**
+ * Estimates the number of cells and the size of the data of mutations, which Spanner limits per commit.
+ */
+final class MutationSizeEstimator {
+  // Size of the fixed length values, and of the keys of deletions
+  private static final int FIXED_VALUE_SIZE = 8;
+
+  private MutationSizeEstimator() {
+  }
+
+  /**
+   * Returns the number of cells of a mutation. A deletion counts as a single cell, although Spanner also counts the
+   * cells of the deleted rows in secondary indexes.
+   */
+  static int cells(Mutation mutation) {
+    if (mutation.getOperation() == Mutation.Op.DELETE) {
+      return 1;
+    }
+    int cells = 0;
+    for (String ignored : mutation.getColumns()) {
+      cells++;
+    }
+    return cells;
+  }
+
+  /**
+   * Returns the estimated size in bytes of the data of a mutation.
+   */
+  static long bytes(Mutation mutation) {
+    if (mutation.getOperation() == Mutation.Op.DELETE) {
+      return FIXED_VALUE_SIZE;
+    }
+    long bytes = 0;
+    for (Value value : mutation.getValues()) {
+      bytes += bytes(value);
+    }
+    return bytes;
+  }
+
+  private static long bytes(Value value) {
+    if (value.isNull()) {
+      return 0;
+    }
+    switch (value.getType().getCode()) {
+      case STRING:
+        return value.getString().length();
+      case BYTES:
+        return value.getBytes().length();
+      case ARRAY:
+        return arrayBytes(value);
+      default:
+        return FIXED_VALUE_SIZE;
+    }
+  }
+
+  private static long arrayBytes(Value value) {
+    long bytes = 0;
+    switch (value.getType().getArrayElementType().getCode()) {
+      case STRING:
+        for (String element : value.getStringArray()) {
+          bytes += element == null ? 0 : element.length();
+        }
+        return bytes;
+      case BYTES:
+        for (ByteArray element : value.getBytesArray()) {
+          bytes += element == null ? 0 : element.length();
+        }
+        return bytes;
+      default:
+        return (long) getArraySize(value) * FIXED_VALUE_SIZE;
+    }
+  }
+
+  private static int getArraySize(Value value) {
+    switch (value.getType().getArrayElementType().getCode()) {
+      case BOOL:
+        return value.getBoolArray().size();
+      case INT64:
+        return value.getInt64Array().size();
+      case FLOAT64:
+        return value.getFloat64Array().size();
+      case NUMERIC:
+        return value.getNumericArray().size();
+      case TIMESTAMP:
+        return value.getTimestampArray().size();
+      case DATE:
+        return value.getDateArray().size();
+      default:
+        // Other element types cannot be written by the sink
+        return 1;
+    }
+  }
+}
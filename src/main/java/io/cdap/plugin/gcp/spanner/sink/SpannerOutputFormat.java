@@ -16,14 +16,21 @@
 
 package io.cdap.plugin.gcp.spanner.sink;
 
+import com.google.api.core.ApiFuture;
+import com.google.api.core.ApiFutureCallback;
+import com.google.api.core.ApiFutures;
 import com.google.cloud.spanner.DatabaseClient;
 import com.google.cloud.spanner.DatabaseId;
 import com.google.cloud.spanner.Mutation;
-import com.google.cloud.spanner.Spanner;
+import com.google.cloud.spanner.SessionPoolOptions;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import io.cdap.cdap.api.data.schema.Schema;
 import io.cdap.plugin.gcp.spanner.SpannerConstants;
 import io.cdap.plugin.gcp.spanner.common.BytesCounter;
+import io.cdap.plugin.gcp.spanner.common.SpannerClientCache;
 import io.cdap.plugin.gcp.spanner.common.SpannerUtil;
+import io.grpc.Context;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.io.NullWritable;
 import org.apache.hadoop.mapreduce.JobContext;
@@ -33,9 +40,17 @@ import org.apache.hadoop.mapreduce.RecordWriter;
 import org.apache.hadoop.mapreduce.TaskAttemptContext;
 import org.apache.hadoop.mapreduce.lib.output.FileOutputFormatCounter;
 
+import java.io.Closeable;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import javax.annotation.Nullable;
 
 /**
  * Spanner output format
@@ -63,6 +78,13 @@ public class SpannerOutputFormat extends OutputFormat<NullWritable, Mutation> {
     configuration.set(SpannerConstants.DATABASE, config.getDatabase());
     configuration.set(SpannerConstants.TABLE_NAME, config.getTable());
     configuration.set(SpannerConstants.SPANNER_WRITE_BATCH_SIZE, String.valueOf(config.getBatchSize()));
+    configuration.setInt(SpannerConstants.SPANNER_WRITE_MAX_IN_FLIGHT_COMMITS, config.getMaxInFlightCommits());
+    if (config.getMinSessions() != null) {
+      configuration.setInt(SpannerConstants.SPANNER_MIN_SESSIONS, config.getMinSessions());
+    }
+    if (config.getMaxSessions() != null) {
+      configuration.setInt(SpannerConstants.SPANNER_MAX_SESSIONS, config.getMaxSessions());
+    }
     configuration.set(SpannerConstants.SCHEMA, schema.toString());
   }
 
@@ -77,54 +99,153 @@ public class SpannerOutputFormat extends OutputFormat<NullWritable, Mutation> {
     String serviceAccount = configuration.get(SpannerConstants.SERVICE_ACCOUNT);
     BytesCounter counter = new BytesCounter();
 
-    Spanner spanner = SpannerUtil.getSpannerServiceWithWriteInterceptor(
+    SpannerClientCache.Lease lease = SpannerClientCache.getInstance().lease(
       serviceAccount,
       SpannerConstants.SERVICE_ACCOUNT_TYPE_FILE_PATH.equals(serviceAccountType),
       projectId,
-      counter);
+      getSessionPoolOptions(configuration));
     int batchSize = Integer.parseInt(configuration.get(SpannerConstants.SPANNER_WRITE_BATCH_SIZE));
+    int maxInFlightCommits = configuration.getInt(SpannerConstants.SPANNER_WRITE_MAX_IN_FLIGHT_COMMITS,
+                                                  SpannerSinkConfig.DEFAULT_MAX_IN_FLIGHT_COMMITS);
     DatabaseId db = DatabaseId.of(projectId, instanceId, database);
-    DatabaseClient client = spanner.getDatabaseClient(db);
-    return new SpannerRecordWriter(spanner, client, batchSize, counter);
+    DatabaseClient client = lease.getDatabaseClient(db);
+    return new SpannerRecordWriter(lease, client, batchSize, maxInFlightCommits, counter);
+  }
+
+  @Nullable
+  private static SessionPoolOptions getSessionPoolOptions(Configuration configuration) {
+    String minSessions = configuration.get(SpannerConstants.SPANNER_MIN_SESSIONS);
+    String maxSessions = configuration.get(SpannerConstants.SPANNER_MAX_SESSIONS);
+    if (minSessions == null && maxSessions == null) {
+      return null;
+    }
+    SessionPoolOptions defaults = SessionPoolOptions.newBuilder().build();
+    int max = maxSessions == null ? defaults.getMaxSessions() : Integer.parseInt(maxSessions);
+    int min = minSessions == null ? Math.min(defaults.getMinSessions(), max) : Integer.parseInt(minSessions);
+    return SessionPoolOptions.newBuilder().setMinSessions(min).setMaxSessions(max).build();
   }
 
   /**
-   * Spanner record writer that buffers mutations and writes to spanner
+   * Spanner record writer that buffers mutations and writes to spanner.
+   * <p>
+   * Batches are committed asynchronously by the threads of the writer, so that the next batch is buffered while earlier
+   * ones are being committed. Writing blocks once the maximum number of commits are in progress. A batch is committed
+   * when it has more mutations than the batch size, or before it exceeds the number of cells or the size of data that
+   * Spanner accepts per commit.
    */
   protected static class SpannerRecordWriter extends RecordWriter<NullWritable, Mutation> {
-    private final Spanner spanner;
+    // Stays within the mutated cells that Spanner accepts per commit, leaving room for the cells of secondary indexes
+    static final int MAX_COMMIT_CELLS = 10000;
+    // Spanner accepts at most 100MB per commit, while smaller commits keep the memory of in-flight commits bounded
+    static final long MAX_COMMIT_BYTES = 4L * 1024 * 1024;
+
+    private static final AtomicInteger WRITER_COUNT = new AtomicInteger();
+
+    private final Closeable spannerLease;
     private final DatabaseClient databaseClient;
-    private final List<Mutation> mutations;
     private final int batchSize;
     private final BytesCounter counter;
+    // Permits of the commits that can be started
+    private final Semaphore commitPermits;
+    private final int maxInFlightCommits;
+    private final AtomicReference<Throwable> failure;
+    private final ExecutorService commitExecutor;
+    // Runs the commits in the context that counts the bytes written by the task
+    private final Executor countingCommitExecutor;
+    private List<Mutation> mutations;
+    private int cells;
+    private long bytes;
 
-    public SpannerRecordWriter(Spanner spanner, DatabaseClient client, int batchSize, BytesCounter counter) {
-      this.spanner = spanner;
+    public SpannerRecordWriter(Closeable spannerLease, DatabaseClient client, int batchSize, int maxInFlightCommits,
+                               BytesCounter counter) {
+      this.spannerLease = spannerLease;
       this.databaseClient = client;
       this.mutations = new ArrayList<>();
       this.batchSize = batchSize;
       this.counter = counter;
+      this.commitPermits = new Semaphore(maxInFlightCommits);
+      this.maxInFlightCommits = maxInFlightCommits;
+      this.failure = new AtomicReference<>();
+      this.commitExecutor = Executors.newFixedThreadPool(
+        maxInFlightCommits, new ThreadFactoryBuilder()
+          .setNameFormat("spanner-commit-" + WRITER_COUNT.incrementAndGet() + "-%d").setDaemon(true).build());
+      this.countingCommitExecutor = Context.current().withValue(SpannerUtil.WRITE_BYTES_COUNTER, counter)
+        .fixedContextExecutor(commitExecutor);
     }
 
     @Override
-    public void write(NullWritable nullWritable, Mutation mutation) {
+    public void write(NullWritable nullWritable, Mutation mutation) throws IOException, InterruptedException {
+      int mutationCells = MutationSizeEstimator.cells(mutation);
+      long mutationBytes = MutationSizeEstimator.bytes(mutation);
+      if (!mutations.isEmpty() &&
+        (cells + mutationCells > MAX_COMMIT_CELLS || bytes + mutationBytes > MAX_COMMIT_BYTES)) {
+        commit();
+      }
+
       mutations.add(mutation);
+      cells += mutationCells;
+      bytes += mutationBytes;
       if (mutations.size() > batchSize) {
-        databaseClient.write(mutations);
-        mutations.clear();
+        commit();
       }
     }
 
     @Override
-    public void close(TaskAttemptContext taskAttemptContext) {
+    public void close(TaskAttemptContext taskAttemptContext) throws IOException, InterruptedException {
       try {
         if (mutations.size() > 0) {
-          databaseClient.write(mutations);
-          taskAttemptContext.getCounter(FileOutputFormatCounter.BYTES_WRITTEN).increment(counter.getValue());
-          mutations.clear();
+          commit();
         }
+        // Wait for all the commits to complete
+        commitPermits.acquire(maxInFlightCommits);
+        throwIfFailed();
+        taskAttemptContext.getCounter(FileOutputFormatCounter.BYTES_WRITTEN).increment(counter.getValue());
       } finally {
-        spanner.close();
+        commitExecutor.shutdownNow();
+        spannerLease.close();
+      }
+    }
+
+    /**
+     * Starts the commit of the buffered mutations, once a previous commit has completed if too many are in progress.
+     */
+    private void commit() throws IOException, InterruptedException {
+      throwIfFailed();
+      commitPermits.acquire();
+      // Aborted transactions run the work again, so the batch is not modified anymore
+      List<Mutation> batch = mutations;
+      mutations = new ArrayList<>();
+      cells = 0;
+      bytes = 0;
+
+      ApiFuture<Void> commit;
+      try {
+        commit = databaseClient.runAsync().runAsync(transaction -> {
+          transaction.buffer(batch);
+          return ApiFutures.immediateFuture(null);
+        }, countingCommitExecutor);
+      } catch (RuntimeException e) {
+        commitPermits.release();
+        throw e;
+      }
+      ApiFutures.addCallback(commit, new ApiFutureCallback<Void>() {
+        @Override
+        public void onFailure(Throwable t) {
+          failure.compareAndSet(null, t);
+          commitPermits.release();
+        }
+
+        @Override
+        public void onSuccess(Void result) {
+          commitPermits.release();
+        }
+      }, MoreExecutors.directExecutor());
+    }
+
+    private void throwIfFailed() throws IOException {
+      Throwable t = failure.get();
+      if (t != null) {
+        throw new IOException("Failed to write mutations to Spanner.", t);
       }
     }
   }
@@ -43,12 +43,17 @@ import javax.annotation.Nullable;
  */
 public class SpannerSinkConfig extends PluginConfig {
   private static final int DEFAULT_SPANNER_WRITE_BATCH_SIZE = 100;
+  // Batches committed concurrently can be applied out of order, which matters when they write the same keys
+  public static final int DEFAULT_MAX_IN_FLIGHT_COMMITS = 1;
   private static final Set<Schema.Type> SUPPORTED_TYPES =
     ImmutableSet.of(Schema.Type.BOOLEAN, Schema.Type.STRING, Schema.Type.INT, Schema.Type.LONG,
                     Schema.Type.FLOAT, Schema.Type.DOUBLE, Schema.Type.BYTES, Schema.Type.ARRAY);
 
   public static final String NAME_TABLE = "table";
   public static final String NAME_BATCH_SIZE = "batchSize";
+  public static final String NAME_MAX_IN_FLIGHT_COMMITS = "maxInFlightCommits";
+  public static final String NAME_MIN_SESSIONS = "minSessions";
+  public static final String NAME_MAX_SESSIONS = "maxSessions";
   public static final String NAME_INSTANCE = "instance";
   public static final String NAME_DATABASE = "database";
   public static final String NAME_KEYS = "keys";
@@ -68,6 +73,30 @@ public class SpannerSinkConfig extends PluginConfig {
   @Nullable
   private Integer batchSize;
 
+  @Name(NAME_MAX_IN_FLIGHT_COMMITS)
+  @Description("Maximum number of batched writes that every task commits to the Spanner table at the same time. " +
+    "Records are buffered while earlier batches are being committed. Batches committed at the same time can be " +
+    "applied in any order, so a later write of a key can be overwritten by an earlier one. Only set it above 1 " +
+    "when records with the same key are never written by the same task. Default value is 1")
+  @Macro
+  @Nullable
+  private Integer maxInFlightCommits;
+
+  @Name(NAME_MIN_SESSIONS)
+  @Description("Minimum number of sessions of the session pool of the Spanner client. The client and its sessions " +
+    "are shared by the tasks that run in the same executor. Defaults to the Spanner client default of 100, or to " +
+    "the maximum number of sessions if it is lower.")
+  @Macro
+  @Nullable
+  private Integer minSessions;
+
+  @Name(NAME_MAX_SESSIONS)
+  @Description("Maximum number of sessions of the session pool of the Spanner client. Defaults to the Spanner " +
+    "client default of 400.")
+  @Macro
+  @Nullable
+  private Integer maxSessions;
+
   @Name(NAME_INSTANCE)
   @Description("Cloud Spanner instance id. " +
     "Uniquely identifies Cloud Spanner instance within your Google Cloud Platform project.")
@@ -163,6 +192,24 @@ public class SpannerSinkConfig extends PluginConfig {
       collector.addFailure("Invalid spanner batch size for writes.", "Ensure the value is a positive number.")
         .withConfigProperty(NAME_BATCH_SIZE);
     }
+    if (!containsMacro(NAME_MAX_IN_FLIGHT_COMMITS) && maxInFlightCommits != null && maxInFlightCommits < 1) {
+      collector.addFailure("Invalid maximum number of in-flight commits.", "Ensure the value is a positive number.")
+        .withConfigProperty(NAME_MAX_IN_FLIGHT_COMMITS);
+    }
+    if (!containsMacro(NAME_MIN_SESSIONS) && minSessions != null && minSessions < 0) {
+      collector.addFailure("Invalid minimum number of sessions.", "Ensure the value is not negative.")
+        .withConfigProperty(NAME_MIN_SESSIONS);
+    }
+    if (!containsMacro(NAME_MAX_SESSIONS) && maxSessions != null && maxSessions < 1) {
+      collector.addFailure("Invalid maximum number of sessions.", "Ensure the value is a positive number.")
+        .withConfigProperty(NAME_MAX_SESSIONS);
+    }
+    if (!containsMacro(NAME_MIN_SESSIONS) && !containsMacro(NAME_MAX_SESSIONS) && minSessions != null &&
+      maxSessions != null && minSessions > maxSessions) {
+      collector.addFailure("Minimum number of sessions is greater than the maximum number of sessions.",
+                           "Ensure the minimum is not greater than the maximum.")
+        .withConfigProperty(NAME_MIN_SESSIONS).withConfigProperty(NAME_MAX_SESSIONS);
+    }
     if (!containsMacro(NAME_KEYS) && keys != null && !containsMacro(NAME_SCHEMA) && schema != null) {
       String[] splitted = keys.split(",");
 
@@ -198,4 +245,18 @@ public class SpannerSinkConfig extends PluginConfig {
   public int getBatchSize() {
     return batchSize == null ? DEFAULT_SPANNER_WRITE_BATCH_SIZE : batchSize;
   }
+
+  public int getMaxInFlightCommits() {
+    return maxInFlightCommits == null ? DEFAULT_MAX_IN_FLIGHT_COMMITS : maxInFlightCommits;
+  }
+
+  @Nullable
+  public Integer getMinSessions() {
+    return minSessions;
+  }
+
+  @Nullable
+  public Integer getMaxSessions() {
+    return maxSessions;
+  }
 }
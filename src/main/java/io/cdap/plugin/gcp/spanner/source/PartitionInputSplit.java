@@ -45,7 +45,7 @@ public class PartitionInputSplit extends InputSplit implements Writable {
 
   }
 
-  public PartitionInputSplit(Partition partition) throws Exception {
+  public PartitionInputSplit(Partition partition) {
     this.partition = partition;
   }
 
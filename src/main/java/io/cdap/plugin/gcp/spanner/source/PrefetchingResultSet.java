@@ -0,0 +1,175 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.gcp.spanner.source;
+
+import com.google.cloud.spanner.ForwardingStructReader;
+import com.google.cloud.spanner.ResultSet;
+import com.google.cloud.spanner.SpannerExceptionFactory;
+import com.google.cloud.spanner.Struct;
+import com.google.cloud.spanner.StructReader;
+import com.google.cloud.spanner.Type;
+import com.google.common.base.Supplier;
+import com.google.spanner.v1.ResultSetStats;
+import io.grpc.Context;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Result set that reads the rows of another result set ahead on a background thread, into a bounded buffer.
+ * <p>
+ * Streaming and decoding the rows from Spanner overlaps with the processing of the rows already read. The rows are
+ * read until the end of the result set, until the buffer is full, or until the result set is closed.
+ */
+final class PrefetchingResultSet extends ForwardingStructReader implements ResultSet {
+  private static final Logger LOG = LoggerFactory.getLogger(PrefetchingResultSet.class);
+  private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+  // Marks the end of the rows in the buffer
+  private static final Struct END = Struct.newBuilder().build();
+  private static final long CLOSE_TIMEOUT_SECONDS = 30L;
+
+  private final ResultSet delegate;
+  private final CurrentRow currentRow;
+  private final BlockingQueue<Struct> rows;
+  private final Thread fetcher;
+  private volatile Type type;
+  private volatile Throwable failure;
+  private volatile boolean closed;
+  private boolean done;
+
+  PrefetchingResultSet(ResultSet delegate, int bufferSize) {
+    this(delegate, bufferSize, new CurrentRow());
+  }
+
+  private PrefetchingResultSet(ResultSet delegate, int bufferSize, CurrentRow currentRow) {
+    super(currentRow);
+    this.delegate = delegate;
+    this.currentRow = currentRow;
+    this.rows = new ArrayBlockingQueue<>(bufferSize);
+    // Rows are read in the context of the caller, which counts the bytes read
+    this.fetcher = new Thread(Context.current().wrap(this::fetch),
+                              "spanner-prefetch-" + THREAD_COUNT.incrementAndGet());
+    this.fetcher.setDaemon(true);
+    this.fetcher.start();
+  }
+
+  private void fetch() {
+    try {
+      while (!closed && delegate.next()) {
+        if (type == null) {
+          type = delegate.getType();
+        }
+        rows.put(delegate.getCurrentRowAsStruct());
+      }
+    } catch (InterruptedException e) {
+      // the result set was closed
+      return;
+    } catch (Throwable t) {
+      failure = t;
+    }
+
+    try {
+      rows.put(END);
+    } catch (InterruptedException e) {
+      // the result set was closed
+    }
+  }
+
+  @Override
+  public boolean next() {
+    if (done) {
+      return false;
+    }
+
+    Struct row;
+    try {
+      row = rows.take();
+    } catch (InterruptedException e) {
+      throw SpannerExceptionFactory.propagateInterrupt(e);
+    }
+    if (row == END) {
+      done = true;
+      currentRow.row = null;
+      if (failure != null) {
+        throw SpannerExceptionFactory.asSpannerException(failure);
+      }
+      return false;
+    }
+    currentRow.row = row;
+    return true;
+  }
+
+  @Override
+  protected void checkValidState() {
+    if (currentRow.row == null) {
+      throw new IllegalStateException("No current row, next() must return true before reading a row");
+    }
+  }
+
+  @Override
+  public Type getType() {
+    // The rows of a result set share its type
+    checkValidState();
+    return type;
+  }
+
+  @Override
+  public Struct getCurrentRowAsStruct() {
+    checkValidState();
+    return currentRow.row;
+  }
+
+  @Override
+  public void close() {
+    closed = true;
+    fetcher.interrupt();
+    // Reading rows from Spanner ignores interrupts, while closing the result set cancels its stream
+    delegate.close();
+    try {
+      fetcher.join(TimeUnit.SECONDS.toMillis(CLOSE_TIMEOUT_SECONDS));
+    } catch (InterruptedException e) {
+      LOG.debug("Interrupted while waiting for the prefetching of rows to stop.");
+      Thread.currentThread().interrupt();
+    }
+    if (fetcher.isAlive()) {
+      LOG.warn("Prefetching of rows by thread '{}' did not stop within {} seconds of closing the result set.",
+               fetcher.getName(), CLOSE_TIMEOUT_SECONDS);
+    }
+    rows.clear();
+  }
+
+  @Override
+  public ResultSetStats getStats() {
+    return delegate.getStats();
+  }
+
+  /**
+   * Row that the reads of the result set are forwarded to.
+   */
+  private static final class CurrentRow implements Supplier<StructReader> {
+    private Struct row;
+
+    @Override
+    public StructReader get() {
+      return row;
+    }
+  }
+}
@@ -32,122 +32,196 @@ import java.time.ZoneId;
 import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeParseException;
-import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
-import java.util.stream.Collectors;
 
 /**
  * Transforms Google Spanner {@link com.google.cloud.spanner.ResultSet} to CDAP {@link StructuredRecord}.
+ * <p>
+ * The output schema is compiled into a plan for the columns of the result set: the index of the column of every
+ * field and the accessor of its type are resolved once, and then used for every row. The plan is compiled again if
+ * a result set with different columns is transformed.
  */
 public class ResultSetToRecordTransformer {
+  private static final ZoneId UTC = ZoneId.ofOffset("UTC", ZoneOffset.UTC);
+  private static final Object[] EMPTY_ARRAY = new Object[0];
+
   private final Schema schema;
+  // Columns of the result sets that the plan was compiled for
+  private Type planType;
+  private FieldReader[] plan;
 
   public ResultSetToRecordTransformer(Schema schema) {
     this.schema = schema;
   }
 
   public StructuredRecord transform(ResultSet resultSet) {
-    StructuredRecord.Builder builder = StructuredRecord.builder(schema);
-    List<Schema.Field> fields = schema.getFields();
-    for (Schema.Field field : fields) {
-      String fieldName = field.getName();
-      Type columnType = resultSet.getColumnType(fieldName);
-      Type.Code code = columnType.getCode();
-      if (columnType == null || (resultSet.isNull(fieldName) && code != Type.Code.ARRAY)) {
-        continue;
-      }
-      switch (columnType.getCode()) {
-        case BOOL:
-          builder.set(fieldName, resultSet.getBoolean(fieldName));
-          break;
-        case INT64:
-          builder.set(fieldName, resultSet.getLong(fieldName));
-          break;
-        case FLOAT64:
-          builder.set(fieldName, resultSet.getDouble(fieldName));
-          break;
-        case STRING:
-          String value = resultSet.getString(fieldName);
-          validateDateTime(field.getSchema().isNullable() ? field.getSchema().getNonNullable() : field.getSchema(),
-                           fieldName, value);
-          builder.set(fieldName, value);
-          break;
-        case BYTES:
-          ByteArray byteArray = resultSet.getBytes(fieldName);
-          builder.set(fieldName, byteArray.toByteArray());
-          break;
-        case DATE:
-          // spanner DATE is a date without time zone. so create LocalDate from spanner DATE
-          Date spannerDate = resultSet.getDate(fieldName);
-          builder.setDate(fieldName, LocalDate.of(spannerDate.getYear(), spannerDate.getMonth(),
-                                                  spannerDate.getDayOfMonth()));
-          break;
-        case TIMESTAMP:
-          Timestamp spannerTs = resultSet.getTimestamp(fieldName);
-          // Spanner TIMESTAMP supports nano second level precision, however, cdap schema only supports
-          // microsecond level precision.
-          Instant instant = Instant.ofEpochSecond(spannerTs.getSeconds()).plusNanos(spannerTs.getNanos());
-          builder.setTimestamp(fieldName, ZonedDateTime.ofInstant(instant, ZoneId.ofOffset("UTC", ZoneOffset.UTC)));
-          break;
-        case ARRAY:
-          builder.set(fieldName, transformArrayToList(resultSet, fieldName, field.getSchema(),
-                                                      columnType.getArrayElementType()).toArray());
-          break;
-      }
+    Type type = resultSet.getType();
+    if (plan == null || (type != planType && !type.equals(planType))) {
+      plan = compile(type);
+      planType = type;
     }
 
+    StructuredRecord.Builder builder = StructuredRecord.builder(schema);
+    for (FieldReader reader : plan) {
+      reader.read(resultSet, builder);
+    }
     return builder.build();
   }
 
-  private void validateDateTime(Schema schema, String fieldName, String value) {
-    if (schema.getLogicalType() == Schema.LogicalType.DATETIME) {
-      try {
-        LocalDateTime.parse(value);
-      } catch (DateTimeParseException exception) {
-        throw new UnexpectedFormatException(
-          String
-            .format("Datetime field '%s' with value '%s' is not in ISO-8601 format.", fieldName, value.toString()),
-          exception);
-      }
-    }
+  /**
+   * Reads the value of a field from the current row of a result set.
+   */
+  private interface FieldReader {
+    void read(ResultSet resultSet, StructuredRecord.Builder builder);
   }
 
-  private List<?> transformArrayToList(ResultSet resultSet, String fieldName, Schema fieldSchema,
-                                       Type arrayElementType) {
-    if (resultSet.isNull(fieldName)) {
-      return Collections.emptyList();
+  private FieldReader[] compile(Type type) {
+    List<Schema.Field> fields = schema.getFields();
+    FieldReader[] readers = new FieldReader[fields.size()];
+    for (int i = 0; i < readers.length; i++) {
+      readers[i] = compile(fields.get(i), type);
     }
+    return readers;
+  }
 
-    switch (arrayElementType.getCode()) {
+  private FieldReader compile(Schema.Field field, Type type) {
+    String fieldName = field.getName();
+    int index = type.getFieldIndex(fieldName);
+    Type columnType = type.getStructFields().get(index).getType();
+    Schema fieldSchema = field.getSchema().isNullable() ? field.getSchema().getNonNullable() : field.getSchema();
+
+    switch (columnType.getCode()) {
       case BOOL:
-        return resultSet.getBooleanList(fieldName);
+        return (resultSet, builder) -> {
+          if (!resultSet.isNull(index)) {
+            builder.set(fieldName, resultSet.getBoolean(index));
+          }
+        };
       case INT64:
-        return resultSet.getLongList(fieldName);
+        return (resultSet, builder) -> {
+          if (!resultSet.isNull(index)) {
+            builder.set(fieldName, resultSet.getLong(index));
+          }
+        };
       case FLOAT64:
-        return resultSet.getDoubleList(fieldName);
+        return (resultSet, builder) -> {
+          if (!resultSet.isNull(index)) {
+            builder.set(fieldName, resultSet.getDouble(index));
+          }
+        };
       case STRING:
-        return resultSet.getStringList(fieldName);
+        boolean datetime = fieldSchema.getLogicalType() == Schema.LogicalType.DATETIME;
+        return (resultSet, builder) -> {
+          if (!resultSet.isNull(index)) {
+            String value = resultSet.getString(index);
+            if (datetime) {
+              validateDateTime(fieldName, value);
+            }
+            builder.set(fieldName, value);
+          }
+        };
       case BYTES:
-        return resultSet.getBytesList(fieldName)
-          .stream()
-          .map(byteArray -> byteArray == null ? null : byteArray.toByteArray())
-          .collect(Collectors.toList());
+        return (resultSet, builder) -> {
+          if (!resultSet.isNull(index)) {
+            builder.set(fieldName, resultSet.getBytes(index).toByteArray());
+          }
+        };
       case DATE:
         // spanner DATE is a date without time zone. so create LocalDate from spanner DATE
-        return resultSet.getDateList(fieldName)
-          .stream()
-          .map(this::convertDateToLong)
-          .collect(Collectors.toList());
+        return (resultSet, builder) -> {
+          if (!resultSet.isNull(index)) {
+            Date spannerDate = resultSet.getDate(index);
+            builder.setDate(fieldName, LocalDate.of(spannerDate.getYear(), spannerDate.getMonth(),
+                                                    spannerDate.getDayOfMonth()));
+          }
+        };
       case TIMESTAMP:
+        return compileTimestamp(fieldName, index, fieldSchema.getLogicalType());
+      case ARRAY:
+        Schema componentSchema = fieldSchema.getComponentSchema();
+        Schema.LogicalType logicalType = componentSchema == null ? null :
+          (componentSchema.isNullable() ? componentSchema.getNonNullable() : componentSchema).getLogicalType();
+        Type.Code elementCode = columnType.getArrayElementType().getCode();
+        return (resultSet, builder) -> builder.set(fieldName, resultSet.isNull(index) ? EMPTY_ARRAY :
+          transformArray(resultSet, index, fieldName, elementCode, logicalType));
+      default:
+        return (resultSet, builder) -> { };
+    }
+  }
+
+  private FieldReader compileTimestamp(String fieldName, int index, Schema.LogicalType logicalType) {
+    if (logicalType != Schema.LogicalType.TIMESTAMP_MICROS && logicalType != Schema.LogicalType.TIMESTAMP_MILLIS) {
+      // Fails with the error of a field that is not a timestamp
+      return (resultSet, builder) -> {
+        if (!resultSet.isNull(index)) {
+          Timestamp spannerTs = resultSet.getTimestamp(index);
+          Instant instant = Instant.ofEpochSecond(spannerTs.getSeconds()).plusNanos(spannerTs.getNanos());
+          builder.setTimestamp(fieldName, ZonedDateTime.ofInstant(instant, UTC));
+        }
+      };
+    }
+    // Spanner TIMESTAMP supports nano second level precision, however, cdap schema only supports
+    // microsecond level precision.
+    return (resultSet, builder) -> {
+      if (!resultSet.isNull(index)) {
+        builder.set(fieldName, convertTimestampToLong(fieldName, resultSet.getTimestamp(index), logicalType));
+      }
+    };
+  }
+
+  private void validateDateTime(String fieldName, String value) {
+    try {
+      LocalDateTime.parse(value);
+    } catch (DateTimeParseException exception) {
+      throw new UnexpectedFormatException(
+        String
+          .format("Datetime field '%s' with value '%s' is not in ISO-8601 format.", fieldName, value.toString()),
+        exception);
+    }
+  }
+
+  private Object[] transformArray(ResultSet resultSet, int index, String fieldName, Type.Code elementCode,
+                                  Schema.LogicalType logicalType) {
+    switch (elementCode) {
+      case BOOL:
+        return resultSet.getBooleanList(index).toArray();
+      case INT64:
+        return resultSet.getLongList(index).toArray();
+      case FLOAT64:
+        return resultSet.getDoubleList(index).toArray();
+      case STRING:
+        return resultSet.getStringList(index).toArray();
+      case BYTES: {
+        List<ByteArray> values = resultSet.getBytesList(index);
+        Object[] array = new Object[values.size()];
+        for (int i = 0; i < array.length; i++) {
+          ByteArray value = values.get(i);
+          array[i] = value == null ? null : value.toByteArray();
+        }
+        return array;
+      }
+      case DATE: {
+        // spanner DATE is a date without time zone. so create LocalDate from spanner DATE
+        List<Date> values = resultSet.getDateList(index);
+        Object[] array = new Object[values.size()];
+        for (int i = 0; i < array.length; i++) {
+          array[i] = convertDateToLong(values.get(i));
+        }
+        return array;
+      }
+      case TIMESTAMP: {
         // Spanner TIMESTAMP supports nano second level precision, however, cdap schema only supports
         // microsecond level precision.
-        return resultSet.getTimestampList(fieldName)
-          .stream()
-          .map(timestamp -> convertTimestampToLong(fieldName, timestamp, fieldSchema.getLogicalType()))
-          .collect(Collectors.toList());
+        List<Timestamp> values = resultSet.getTimestampList(index);
+        Object[] array = new Object[values.size()];
+        for (int i = 0; i < array.length; i++) {
+          array[i] = convertTimestampToLong(fieldName, values.get(i), logicalType);
+        }
+        return array;
+      }
       default:
-        return Collections.emptyList();
+        return EMPTY_ARRAY;
     }
   }
 
@@ -164,22 +238,18 @@ public class ResultSetToRecordTransformer {
       return null;
     }
 
-    Instant instant = Instant.ofEpochSecond(timestamp.getSeconds())
-      .plusNanos(timestamp.getNanos())
-      .atZone(ZoneId.ofOffset("UTC", ZoneOffset.UTC))
-      .toInstant();
-
     try {
       if (logicalType == Schema.LogicalType.TIMESTAMP_MILLIS) {
-        long millis = TimeUnit.SECONDS.toMillis(instant.getEpochSecond());
-        return Math.addExact(millis, TimeUnit.NANOSECONDS.toMillis(instant.getNano()));
+        long millis = TimeUnit.SECONDS.toMillis(timestamp.getSeconds());
+        return Math.addExact(millis, TimeUnit.NANOSECONDS.toMillis(timestamp.getNanos()));
       }
 
-      long micros = TimeUnit.SECONDS.toMicros(instant.getEpochSecond());
-      return Math.addExact(micros, TimeUnit.NANOSECONDS.toMicros(instant.getNano()));
+      long micros = TimeUnit.SECONDS.toMicros(timestamp.getSeconds());
+      return Math.addExact(micros, TimeUnit.NANOSECONDS.toMicros(timestamp.getNanos()));
     } catch (ArithmeticException e) {
       throw new UnexpectedFormatException(String.format("Field %s was set to a %s that is too large.", fieldName,
-                                                        logicalType.getToken()));
+                                                        logicalType == null ? Schema.LogicalType.TIMESTAMP_MICROS
+                                                          .getToken() : logicalType.getToken()));
     }
   }
 }
@@ -16,10 +16,19 @@
 
 package io.cdap.plugin.gcp.spanner.source;
 
+import com.google.cloud.spanner.BatchClient;
+import com.google.cloud.spanner.BatchReadOnlyTransaction;
 import com.google.cloud.spanner.BatchTransactionId;
+import com.google.cloud.spanner.DatabaseId;
+import com.google.cloud.spanner.Options;
 import com.google.cloud.spanner.Partition;
+import com.google.cloud.spanner.PartitionOptions;
 import com.google.cloud.spanner.ResultSet;
+import com.google.cloud.spanner.Spanner;
+import com.google.cloud.spanner.Statement;
+import com.google.common.annotations.VisibleForTesting;
 import io.cdap.plugin.gcp.spanner.SpannerConstants;
+import io.cdap.plugin.gcp.spanner.common.SpannerUtil;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.io.NullWritable;
 import org.apache.hadoop.mapreduce.InputFormat;
@@ -38,25 +47,35 @@ import java.util.Base64;
 import java.util.List;
 
 /**
- * Spanner input format, deserializes and gets the partitions list from configuration to create input splits.
+ * Spanner input format, partitions the query of the batch transaction from the configuration to create input splits.
+ * <p>
+ * The configuration only carries the shared batch transaction id, while every split carries its own partition, so
+ * that a task deserializes only the partition that it reads.
  */
 public class SpannerInputFormat extends InputFormat<NullWritable, ResultSet> {
   private static final Logger LOG = LoggerFactory.getLogger(SpannerInputFormat.class);
 
   /**
-   * Deserialize partitions list from configuration and create {@link PartitionInputSplit PartitionInputSplits}
-   * using them.
+   * Partition the query in the batch transaction from configuration and create
+   * {@link PartitionInputSplit PartitionInputSplits} of the partitions.
    */
   @Override
   public List<InputSplit> getSplits(JobContext jobContext) throws IOException, InterruptedException {
     Configuration configuration = jobContext.getConfiguration();
-    List<InputSplit> partitionSplits = new ArrayList<>();
-    try {
-      ArrayList<Partition> partitions = deserializeObject(configuration, SpannerConstants.PARTITIONS_LIST);
-      for (Partition partition : partitions) {
-        PartitionInputSplit split = new PartitionInputSplit(partition);
-        partitionSplits.add(split);
-      }
+    BatchTransactionId batchTransactionId =
+      deserializeObject(configuration, SpannerConstants.SPANNER_BATCH_TRANSACTION_ID);
+    boolean isServiceAccountFilePath = SpannerConstants.SERVICE_ACCOUNT_TYPE_FILE_PATH
+      .equals(configuration.get(SpannerConstants.SERVICE_ACCOUNT_TYPE));
+    String projectId = configuration.get(SpannerConstants.PROJECT_ID);
+    List<InputSplit> partitionSplits;
+    try (Spanner spanner = SpannerUtil.getSpannerService(configuration.get(SpannerConstants.SERVICE_ACCOUNT),
+                                                         isServiceAccountFilePath, projectId)) {
+      BatchClient batchClient = spanner.getBatchClient(
+        DatabaseId.of(projectId, configuration.get(SpannerConstants.INSTANCE_ID),
+                      configuration.get(SpannerConstants.DATABASE)));
+      partitionSplits = getSplits(batchClient.batchReadOnlyTransaction(batchTransactionId), configuration);
+    } catch (IOException e) {
+      throw e;
     } catch (Exception e) {
       throw new IOException("Exception while trying to initialize spanner and create partition splits", e);
     }
@@ -64,6 +83,32 @@ public class SpannerInputFormat extends InputFormat<NullWritable, ResultSet> {
     return partitionSplits;
   }
 
+  @VisibleForTesting
+  static List<InputSplit> getSplits(BatchReadOnlyTransaction transaction, Configuration configuration) {
+    PartitionOptions.Builder partitionOptions = PartitionOptions.newBuilder();
+    String partitionSizeBytes = configuration.get(SpannerConstants.PARTITION_SIZE_BYTES);
+    if (partitionSizeBytes != null) {
+      partitionOptions.setPartitionSizeBytes(Long.parseLong(partitionSizeBytes));
+    }
+    String maxPartitions = configuration.get(SpannerConstants.MAX_PARTITIONS);
+    if (maxPartitions != null) {
+      partitionOptions.setMaxPartitions(Long.parseLong(maxPartitions));
+    }
+    Options.RpcPriority priority =
+      Options.RpcPriority.valueOf(configuration.get(SpannerConstants.SPANNER_READ_PRIORITY,
+                                                    Options.RpcPriority.HIGH.name()));
+
+    List<Partition> partitions =
+      transaction.partitionQuery(partitionOptions.build(),
+                                 Statement.of(configuration.get(SpannerConstants.QUERY)),
+                                 Options.priority(priority));
+    List<InputSplit> partitionSplits = new ArrayList<>(partitions.size());
+    for (Partition partition : partitions) {
+      partitionSplits.add(new PartitionInputSplit(partition));
+    }
+    return partitionSplits;
+  }
+
   private <T> T deserializeObject(Configuration configuration, String property) throws IOException {
     String propertyValue = configuration.get(property);
     if (propertyValue == null) {
@@ -21,10 +21,11 @@ import com.google.cloud.spanner.BatchReadOnlyTransaction;
 import com.google.cloud.spanner.BatchTransactionId;
 import com.google.cloud.spanner.DatabaseId;
 import com.google.cloud.spanner.ResultSet;
-import com.google.cloud.spanner.Spanner;
 import io.cdap.plugin.gcp.spanner.SpannerConstants;
 import io.cdap.plugin.gcp.spanner.common.BytesCounter;
+import io.cdap.plugin.gcp.spanner.common.SpannerClientCache;
 import io.cdap.plugin.gcp.spanner.common.SpannerUtil;
+import io.grpc.Context;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.io.NullWritable;
 import org.apache.hadoop.mapreduce.Counter;
@@ -38,14 +39,27 @@ import org.slf4j.LoggerFactory;
 import java.io.IOException;
 
 /**
- * Spanner record reader - updates result set during iteration
+ * Spanner record reader - updates result set during iteration.
+ * <p>
+ * Rows are read ahead into a buffer by a background thread, unless the number of rows to prefetch is 0. The progress
+ * is estimated from the bytes read from Spanner, relative to the partition size hint of the partitions. The Spanner
+ * service is shared with the other tasks of the executor, and rows are read in the context that counts the bytes read
+ * by this task.
  */
 public class SpannerRecordReader extends RecordReader<NullWritable, ResultSet> {
   private static final Logger LOG = LoggerFactory.getLogger(SpannerRecordReader.class);
+  // Partition size that Spanner aims for, when no partition size hint is given
+  private static final long DEFAULT_PARTITION_SIZE_BYTES = 1024L * 1024 * 1024;
+  // Progress reported until the end of the partition is reached, as partition sizes are estimates
+  private static final float MAX_ESTIMATED_PROGRESS = 0.99f;
   private final BatchTransactionId batchTransactionId;
   private ResultSet resultSet;
   private Counter bytesRead;
-  private Spanner spanner;
+  private SpannerClientCache.Lease spannerLease;
+  // Context of the calls that read the rows
+  private Context readContext;
+  private long partitionSizeBytes;
+  private boolean finished;
   BytesCounter counter;
 
   public SpannerRecordReader(BatchTransactionId batchTransactionId) {
@@ -62,16 +76,27 @@ public class SpannerRecordReader extends RecordReader<NullWritable, ResultSet> {
         .equals(configuration.get(SpannerConstants.SERVICE_ACCOUNT_TYPE));
       bytesRead = context.getCounter(FileInputFormatCounter.BYTES_READ);
       counter = new BytesCounter();
-      spanner = SpannerUtil.getSpannerServiceWithReadInterceptor(
+      spannerLease = SpannerClientCache.getInstance().lease(
         configuration.get(SpannerConstants.SERVICE_ACCOUNT),
         isServiceAccountFilePath,
         configuration.get(SpannerConstants.PROJECT_ID),
-        counter);
-      BatchClient batchClient = spanner.getBatchClient(
+        null);
+      BatchClient batchClient = spannerLease.getBatchClient(
         DatabaseId.of(configuration.get(SpannerConstants.PROJECT_ID),
                       configuration.get(SpannerConstants.INSTANCE_ID), configuration.get(SpannerConstants.DATABASE)));
-      BatchReadOnlyTransaction transaction = batchClient.batchReadOnlyTransaction(batchTransactionId);
-      resultSet = transaction.execute(partitionInputSplit.getPartition());
+      readContext = Context.current().withValue(SpannerUtil.READ_BYTES_COUNTER, counter);
+      Context previous = readContext.attach();
+      try {
+        BatchReadOnlyTransaction transaction = batchClient.batchReadOnlyTransaction(batchTransactionId);
+        resultSet = transaction.execute(partitionInputSplit.getPartition());
+        int prefetchRows = configuration.getInt(SpannerConstants.SPANNER_READ_PREFETCH_ROWS, 0);
+        if (prefetchRows > 0) {
+          resultSet = new PrefetchingResultSet(resultSet, prefetchRows);
+        }
+      } finally {
+        readContext.detach(previous);
+      }
+      partitionSizeBytes = configuration.getLong(SpannerConstants.PARTITION_SIZE_BYTES, DEFAULT_PARTITION_SIZE_BYTES);
     } catch (Exception e) {
       throw new IOException("Exception while trying to execute query to get result set ", e);
     }
@@ -79,7 +104,17 @@ public class SpannerRecordReader extends RecordReader<NullWritable, ResultSet> {
 
   @Override
   public boolean nextKeyValue() throws IOException, InterruptedException {
-    return resultSet != null && resultSet.next();
+    if (resultSet == null || finished) {
+      return false;
+    }
+    // The streaming calls of the result set are started, and resumed, when reading the next row
+    Context previous = readContext.attach();
+    try {
+      finished = !resultSet.next();
+    } finally {
+      readContext.detach(previous);
+    }
+    return !finished;
   }
 
   @Override
@@ -94,16 +129,27 @@ public class SpannerRecordReader extends RecordReader<NullWritable, ResultSet> {
 
   @Override
   public float getProgress() throws IOException, InterruptedException {
-    return 0.0f;
+    if (finished) {
+      return 1.0f;
+    }
+    if (counter == null) {
+      return 0.0f;
+    }
+    return Math.min((float) counter.getValue() / partitionSizeBytes, MAX_ESTIMATED_PROGRESS);
   }
 
   @Override
   public void close() throws IOException {
     LOG.trace("Closing Record reader");
     bytesRead.increment(counter.getValue());
-    resultSet.close();
-    if (spanner != null) {
-      spanner.close();
+    try {
+      if (resultSet != null) {
+        resultSet.close();
+      }
+    } finally {
+      if (spannerLease != null) {
+        spannerLease.close();
+      }
     }
   }
 }
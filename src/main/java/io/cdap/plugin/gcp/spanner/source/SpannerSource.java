@@ -22,8 +22,6 @@ import com.google.cloud.spanner.BatchReadOnlyTransaction;
 import com.google.cloud.spanner.BatchTransactionId;
 import com.google.cloud.spanner.DatabaseClient;
 import com.google.cloud.spanner.DatabaseId;
-import com.google.cloud.spanner.Partition;
-import com.google.cloud.spanner.PartitionOptions;
 import com.google.cloud.spanner.ResultSet;
 import com.google.cloud.spanner.Spanner;
 import com.google.cloud.spanner.SpannerException;
@@ -160,18 +158,8 @@ public class SpannerSource extends BatchSource<NullWritable, ResultSet, Structur
         batchClient.batchReadOnlyTransaction(TimestampBound.ofReadTimestamp(logicalStartTimeMicros));
       BatchTransactionId batchTransactionId = batchReadOnlyTransaction.getBatchTransactionId();
 
-      // partitionQuery returns ImmutableList which doesn't implement java Serializable interface,
-      // we add to array list, which implements java Serializable
-      String importQuery = Strings.isNullOrEmpty(config.importQuery) ?
-        String.format("Select * from %s;", config.table) : config.importQuery;
-      List<Partition> partitions =
-        new ArrayList<>(
-          batchReadOnlyTransaction.partitionQuery(getPartitionOptions(),
-                                                  Statement.of(importQuery)));
-
-      // serialize batch transaction-id and partitions
+      // serialize batch transaction-id, the partitions of the query are created by the input format
       configuration.set(SpannerConstants.SPANNER_BATCH_TRANSACTION_ID, getSerializedObjectString(batchTransactionId));
-      configuration.set(SpannerConstants.PARTITIONS_LIST, getSerializedObjectString(partitions));
     }
 
     LineageRecorder lineageRecorder = new LineageRecorder(batchSourceContext, config.referenceName);
@@ -213,6 +201,14 @@ public class SpannerSource extends BatchSource<NullWritable, ResultSet, Structur
     setIfValueNotNull(configuration, SpannerConstants.DATABASE, config.database);
     setIfValueNotNull(configuration, SpannerConstants.QUERY, Strings.isNullOrEmpty(config.importQuery) ?
       String.format("Select * from %s;", config.table) : config.importQuery);
+    configuration.setInt(SpannerConstants.SPANNER_READ_PREFETCH_ROWS, config.getPrefetchRows());
+    configuration.set(SpannerConstants.SPANNER_READ_PRIORITY, config.getReadPriority().name());
+    if (config.partitionSizeMB != null) {
+      configuration.setLong(SpannerConstants.PARTITION_SIZE_BYTES, config.partitionSizeMB * 1024 * 1024);
+    }
+    if (config.maxPartitions != null) {
+      configuration.setLong(SpannerConstants.MAX_PARTITIONS, config.maxPartitions);
+    }
   }
 
   private void setIfValueNotNull(Configuration configuration, String key, String value) {
@@ -235,17 +231,6 @@ public class SpannerSource extends BatchSource<NullWritable, ResultSet, Structur
     }
   }
 
-  private PartitionOptions getPartitionOptions() {
-    PartitionOptions.Builder builder = PartitionOptions.newBuilder();
-    if (config.partitionSizeMB != null) {
-      builder.setPartitionSizeBytes(config.partitionSizeMB * 1024 * 1024);
-    }
-    if (config.maxPartitions != null) {
-      builder.setMaxPartitions(config.maxPartitions);
-    }
-    return builder.build();
-  }
-
   private Schema getSchema(FailureCollector collector) {
     String projectId = config.getProject();
 
@@ -17,6 +17,7 @@
 package io.cdap.plugin.gcp.spanner.source;
 
 import com.google.auth.oauth2.ServiceAccountCredentials;
+import com.google.cloud.spanner.Options;
 import com.google.common.base.Strings;
 import com.google.common.collect.ImmutableSet;
 import io.cdap.cdap.api.annotation.Description;
@@ -50,6 +51,9 @@ public class SpannerSourceConfig extends PluginConfig {
   public static final String NAME_TABLE = "table";
   public static final String NAME_IMPORT_QUERY = "importQuery";
   public static final String NAME_SCHEMA = "schema";
+  public static final String NAME_READ_PRIORITY = "readPriority";
+  public static final String NAME_PREFETCH_ROWS = "prefetchRows";
+  public static final int DEFAULT_PREFETCH_ROWS = 100;
 
   @Name(Constants.Reference.REFERENCE_NAME)
   @Description("This will be used to uniquely identify this source for lineage, annotating metadata, etc.")
@@ -88,6 +92,21 @@ public class SpannerSourceConfig extends PluginConfig {
   @Nullable
   public String schema;
 
+  @Name(NAME_READ_PRIORITY)
+  @Description("Priority of the partitioned queries that read the data. Reading with low priority reduces the " +
+    "impact on other workloads of the instance. Supported values are 'high', 'medium' and 'low'. " +
+    "Defaults to 'high'.")
+  @Macro
+  @Nullable
+  private String readPriority;
+
+  @Name(NAME_PREFETCH_ROWS)
+  @Description("Maximum number of rows that are read ahead of their processing by a background thread, " +
+    "for every partition. Set to 0 to read the rows on the processing thread. Defaults to 100.")
+  @Macro
+  @Nullable
+  private Integer prefetchRows;
+
   @Name(ConfigUtil.NAME_USE_CONNECTION)
   @Nullable
   @Description("Whether to use an existing connection.")
@@ -127,6 +146,15 @@ public class SpannerSourceConfig extends PluginConfig {
     return connection == null ? null : connection.getServiceAccountType();
   }
 
+  public Options.RpcPriority getReadPriority() {
+    return Strings.isNullOrEmpty(readPriority) ?
+      Options.RpcPriority.HIGH : Options.RpcPriority.valueOf(readPriority.toUpperCase());
+  }
+
+  public int getPrefetchRows() {
+    return prefetchRows == null ? DEFAULT_PREFETCH_ROWS : prefetchRows;
+  }
+
   @Nullable
   public GCPConnectorConfig getConnection() {
     return connection;
@@ -166,6 +194,19 @@ public class SpannerSourceConfig extends PluginConfig {
       collector.addFailure("Invalid partition size in mega bytes.", "Ensure the value is a positive number.")
         .withConfigProperty(NAME_PARTITION_SIZE_MB);
     }
+    if (!containsMacro(NAME_READ_PRIORITY)) {
+      try {
+        getReadPriority();
+      } catch (IllegalArgumentException e) {
+        collector.addFailure(String.format("Invalid read priority '%s'.", readPriority),
+                             "Supported values are 'high', 'medium' and 'low'.")
+          .withConfigProperty(NAME_READ_PRIORITY);
+      }
+    }
+    if (!containsMacro(NAME_PREFETCH_ROWS) && prefetchRows != null && prefetchRows < 0) {
+      collector.addFailure("Invalid number of rows to prefetch.", "Ensure the value is not negative.")
+        .withConfigProperty(NAME_PREFETCH_ROWS);
+    }
   }
 
   @Nullable
@@ -0,0 +1,165 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.gcp.bigquery.sink;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.cdap.api.data.schema.Schema;
+import io.cdap.plugin.format.avro.StructuredToAvroTransformer;
+import org.apache.avro.AvroRuntimeException;
+import org.apache.avro.generic.GenericRecord;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+
+/**
+ * Tests for {@link BigQueryAvroConverter}.
+ */
+public class BigQueryAvroConverterTest {
+
+  private static final Schema ADDRESS_SCHEMA = Schema.recordOf(
+    "address",
+    Schema.Field.of("city", Schema.nullableOf(Schema.of(Schema.Type.STRING))),
+    Schema.Field.of("zip", Schema.of(Schema.Type.INT)));
+
+  private static final Schema SCHEMA = Schema.recordOf(
+    "record",
+    Schema.Field.of("int", Schema.of(Schema.Type.INT)),
+    Schema.Field.of("long", Schema.nullableOf(Schema.of(Schema.Type.LONG))),
+    Schema.Field.of("float", Schema.of(Schema.Type.FLOAT)),
+    Schema.Field.of("double", Schema.of(Schema.Type.DOUBLE)),
+    Schema.Field.of("boolean", Schema.of(Schema.Type.BOOLEAN)),
+    Schema.Field.of("string", Schema.nullableOf(Schema.of(Schema.Type.STRING))),
+    Schema.Field.of("bytes", Schema.of(Schema.Type.BYTES)),
+    Schema.Field.of("date", Schema.nullableOf(Schema.of(Schema.LogicalType.DATE))),
+    Schema.Field.of("time", Schema.of(Schema.LogicalType.TIME_MICROS)),
+    Schema.Field.of("timestamp", Schema.of(Schema.LogicalType.TIMESTAMP_MICROS)),
+    Schema.Field.of("datetime", Schema.of(Schema.LogicalType.DATETIME)),
+    Schema.Field.of("decimal", Schema.nullableOf(Schema.decimalOf(38, 9))),
+    Schema.Field.of("array", Schema.arrayOf(Schema.of(Schema.Type.LONG))),
+    Schema.Field.of("map", Schema.mapOf(Schema.of(Schema.Type.STRING), Schema.of(Schema.Type.INT))),
+    Schema.Field.of("addresses", Schema.arrayOf(ADDRESS_SCHEMA)),
+    Schema.Field.of("address", Schema.nullableOf(ADDRESS_SCHEMA)));
+
+  @Test
+  public void testSameOutputAsGenericTransformer() throws IOException {
+    StructuredRecord address = StructuredRecord.builder(ADDRESS_SCHEMA).set("city", "Paris").set("zip", 75001).build();
+    StructuredRecord first = StructuredRecord.builder(SCHEMA)
+      .set("int", -12)
+      .set("long", Long.MIN_VALUE)
+      .set("float", 1.5f)
+      .set("double", 1.1d)
+      .set("boolean", true)
+      .set("string", "string")
+      .set("bytes", "bytes".getBytes(StandardCharsets.UTF_8))
+      .setDate("date", LocalDate.of(2022, 3, 14))
+      .setTime("time", LocalTime.of(15, 9, 26))
+      .set("timestamp", 1_647_270_566_123_456L)
+      .setDateTime("datetime", LocalDateTime.of(2022, 3, 14, 15, 9, 26))
+      .setDecimal("decimal", new BigDecimal("-0.000000005"))
+      .set("array", new long[] {1L, -2L, 3L})
+      .set("map", ImmutableMap.of("a", 1, "b", 2))
+      .set("addresses", ImmutableList.of(address, address))
+      .set("address", address)
+      .build();
+    StructuredRecord second = StructuredRecord.builder(SCHEMA)
+      .set("int", 0)
+      .set("float", -0.0f)
+      .set("double", 1e300d)
+      .set("boolean", false)
+      .set("bytes", ByteBuffer.wrap(new byte[0]))
+      .setTime("time", LocalTime.MIDNIGHT)
+      .set("timestamp", 0L)
+      .setDateTime("datetime", LocalDateTime.of(1970, 1, 1, 0, 0))
+      .set("array", ImmutableList.of())
+      .set("map", ImmutableMap.of())
+      .set("addresses", ImmutableList.of())
+      .build();
+
+    BigQueryAvroConverter converter = new BigQueryAvroConverter();
+    StructuredToAvroTransformer transformer = new StructuredToAvroTransformer(null);
+    for (StructuredRecord record : ImmutableList.of(first, second, first)) {
+      Assert.assertEquals(transformer.transform(record, SCHEMA), converter.transform(record, SCHEMA).datum());
+      Assert.assertEquals(transformer.transform(record, SCHEMA), converter.transform(record, null).datum());
+    }
+  }
+
+  @Test
+  public void testSchemaInstanceReused() throws IOException {
+    StructuredRecord record = StructuredRecord.builder(ADDRESS_SCHEMA).set("city", "Paris").set("zip", 75001).build();
+    BigQueryAvroConverter converter = new BigQueryAvroConverter();
+
+    GenericRecord first = converter.transform(record, ADDRESS_SCHEMA).datum();
+    GenericRecord second = converter.transform(record, ADDRESS_SCHEMA).datum();
+    // An equal schema instance is matched by fingerprint
+    GenericRecord third = converter.transform(record, Schema.parseJson(ADDRESS_SCHEMA.toString())).datum();
+    Assert.assertSame(first.getSchema(), second.getSchema());
+    Assert.assertSame(first.getSchema(), third.getSchema());
+  }
+
+  @Test
+  public void testOutputSchemaSubsetOfRecordSchema() throws IOException {
+    Schema outputSchema = Schema.recordOf("output", Schema.Field.of("zip", Schema.of(Schema.Type.INT)));
+    StructuredRecord record = StructuredRecord.builder(ADDRESS_SCHEMA).set("city", "Paris").set("zip", 75001).build();
+
+    GenericRecord avroRecord = new BigQueryAvroConverter().transform(record, outputSchema).datum();
+    Assert.assertEquals(1, avroRecord.getSchema().getFields().size());
+    Assert.assertEquals(75001, avroRecord.get("zip"));
+  }
+
+  @Test
+  public void testMissingField() throws IOException {
+    Schema outputSchema = Schema.recordOf("output", Schema.Field.of("country", Schema.of(Schema.Type.STRING)));
+    StructuredRecord record = StructuredRecord.builder(ADDRESS_SCHEMA).set("city", "Paris").set("zip", 75001).build();
+    try {
+      new BigQueryAvroConverter().transform(record, outputSchema);
+      Assert.fail("Conversion should fail");
+    } catch (IllegalArgumentException e) {
+      Assert.assertEquals("Input record does not contain the country field.", e.getMessage());
+    }
+  }
+
+  @Test
+  public void testNullValueOfNonNullableField() throws IOException {
+    Schema outputSchema = Schema.recordOf("output", Schema.Field.of("city", Schema.of(Schema.Type.STRING)));
+    StructuredRecord record = StructuredRecord.builder(ADDRESS_SCHEMA).set("zip", 75001).build();
+    try {
+      new BigQueryAvroConverter().transform(record, outputSchema);
+      Assert.fail("Conversion should fail");
+    } catch (AvroRuntimeException e) {
+      Assert.assertTrue(e.getMessage().endsWith("does not accept null values"));
+    }
+
+    Schema schema = Schema.recordOf("record", Schema.Field.of("array", Schema.arrayOf(Schema.of(Schema.Type.INT))));
+    record = StructuredRecord.builder(schema).set("array", new Integer[] {1, null}).build();
+    try {
+      new BigQueryAvroConverter().transform(record, schema);
+      Assert.fail("Conversion should fail");
+    } catch (IllegalArgumentException e) {
+      Assert.assertEquals("Error converting field 'array': Found a null value for a non-nullable field.",
+                          e.getMessage());
+    }
+  }
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.gcp.bigquery.sink;
+
+import com.google.common.collect.ImmutableList;
+import com.google.gson.internal.bind.JsonTreeWriter;
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.cdap.api.data.schema.Schema;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.Objects;
+
+/**
+ * Tests for {@link BigQueryJsonConverter}.
+ */
+public class BigQueryJsonConverterTest {
+
+  private static final Schema ADDRESS_SCHEMA = Schema.recordOf(
+    "address",
+    Schema.Field.of("city", Schema.nullableOf(Schema.of(Schema.Type.STRING))),
+    Schema.Field.of("zip", Schema.of(Schema.Type.INT)));
+
+  private static final Schema SCHEMA = Schema.recordOf(
+    "record",
+    Schema.Field.of("int", Schema.of(Schema.Type.INT)),
+    Schema.Field.of("long", Schema.nullableOf(Schema.of(Schema.Type.LONG))),
+    Schema.Field.of("float", Schema.of(Schema.Type.FLOAT)),
+    Schema.Field.of("double", Schema.of(Schema.Type.DOUBLE)),
+    Schema.Field.of("boolean", Schema.of(Schema.Type.BOOLEAN)),
+    Schema.Field.of("string", Schema.nullableOf(Schema.of(Schema.Type.STRING))),
+    Schema.Field.of("bytes", Schema.of(Schema.Type.BYTES)),
+    Schema.Field.of("date", Schema.nullableOf(Schema.of(Schema.LogicalType.DATE))),
+    Schema.Field.of("timeMillis", Schema.of(Schema.LogicalType.TIME_MILLIS)),
+    Schema.Field.of("timeMicros", Schema.of(Schema.LogicalType.TIME_MICROS)),
+    Schema.Field.of("tsMillis", Schema.of(Schema.LogicalType.TIMESTAMP_MILLIS)),
+    Schema.Field.of("tsMicros", Schema.nullableOf(Schema.of(Schema.LogicalType.TIMESTAMP_MICROS))),
+    Schema.Field.of("datetime", Schema.of(Schema.LogicalType.DATETIME)),
+    Schema.Field.of("decimal", Schema.nullableOf(Schema.decimalOf(38, 9))),
+    Schema.Field.of("wideDecimal", Schema.decimalOf(76, 2)),
+    Schema.Field.of("array", Schema.arrayOf(Schema.of(Schema.Type.LONG))),
+    Schema.Field.of("addresses", Schema.arrayOf(ADDRESS_SCHEMA)),
+    Schema.Field.of("address", Schema.nullableOf(ADDRESS_SCHEMA)));
+
+  @Test
+  public void testSameOutputAsJsonTree() throws IOException {
+    StructuredRecord address = StructuredRecord.builder(ADDRESS_SCHEMA).set("city", "Paris").set("zip", 75001).build();
+    StructuredRecord first = StructuredRecord.builder(SCHEMA)
+      .set("int", -12)
+      .set("long", Long.MIN_VALUE)
+      .set("float", 1.5f)
+      .set("double", 1.1d)
+      .set("boolean", true)
+      .set("string", "quote \" slash \\ tab \t line \u2028 control \u0001 accent \u00e9 emoji \ud83d\ude00")
+      .set("bytes", ByteBuffer.wrap("bytes".getBytes(StandardCharsets.UTF_8)))
+      .setDate("date", LocalDate.of(1, 1, 1))
+      .setTime("timeMillis", LocalTime.of(23, 59, 59, 999_000_000))
+      .setTime("timeMicros", LocalTime.of(0, 0, 0, 1_000))
+      .set("tsMillis", -1L)
+      .set("tsMicros", 1_647_270_566_123_456L)
+      .setDateTime("datetime", LocalDateTime.of(2022, 3, 14, 15, 9, 26))
+      .setDecimal("decimal", new BigDecimal("-0.000000005"))
+      .setDecimal("wideDecimal", new BigDecimal("123456789012345678901234567890.12"))
+      .set("array", ImmutableList.of(1L, -2L, 3L))
+      .set("addresses", ImmutableList.of(address, address))
+      .set("address", address)
+      .build();
+    StructuredRecord second = StructuredRecord.builder(SCHEMA)
+      .set("int", 0)
+      .set("float", -0.0f)
+      .set("double", 1e300d)
+      .set("boolean", false)
+      .set("bytes", new byte[0])
+      .setDate("date", LocalDate.of(9999, 12, 31))
+      .setTime("timeMillis", LocalTime.MIDNIGHT)
+      .setTime("timeMicros", LocalTime.NOON)
+      // Outside of the four digit years, which is left to the formatter
+      .set("tsMillis", Long.MAX_VALUE)
+      .setDateTime("datetime", LocalDateTime.of(1970, 1, 1, 0, 0))
+      .setDecimal("wideDecimal", new BigDecimal("12.00"))
+      .set("array", ImmutableList.of())
+      .set("addresses", ImmutableList.of())
+      .build();
+
+    BigQueryJsonConverter converter = new BigQueryJsonConverter();
+    for (StructuredRecord record : ImmutableList.of(first, second, first)) {
+      Assert.assertEquals(toJsonTree(record, SCHEMA), converter.transform(record, SCHEMA).toString());
+    }
+  }
+
+  @Test
+  public void testFieldsNotInOutputSchemaSkipped() throws IOException {
+    Schema outputSchema = Schema.recordOf("output", Schema.Field.of("zip", Schema.of(Schema.Type.INT)));
+    StructuredRecord record = StructuredRecord.builder(ADDRESS_SCHEMA).set("city", "Paris").set("zip", 75001).build();
+
+    BigQueryJsonConverter converter = new BigQueryJsonConverter();
+    Assert.assertEquals("{\"zip\":75001}", converter.transform(record, outputSchema).toString());
+    Assert.assertEquals("{\"city\":\"Paris\",\"zip\":75001}", converter.transform(record, null).toString());
+  }
+
+  @Test(expected = RuntimeException.class)
+  public void testNullArray() throws IOException {
+    Schema schema = Schema.recordOf("record", Schema.Field.of("array", Schema.nullableOf(
+      Schema.arrayOf(Schema.of(Schema.Type.STRING)))));
+    new BigQueryJsonConverter().transform(StructuredRecord.builder(schema).build(), schema);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNullArrayItem() throws IOException {
+    Schema schema = Schema.recordOf("record", Schema.Field.of("array", Schema.arrayOf(
+      Schema.nullableOf(Schema.of(Schema.Type.STRING)))));
+    StructuredRecord record = StructuredRecord.builder(schema).set("array", new String[] {"a", null}).build();
+    new BigQueryJsonConverter().transform(record, schema);
+  }
+
+  private static String toJsonTree(StructuredRecord record, Schema schema) throws IOException {
+    try (JsonTreeWriter writer = new JsonTreeWriter()) {
+      writer.beginObject();
+      for (Schema.Field recordField : Objects.requireNonNull(record.getSchema().getFields())) {
+        if (schema.getField(recordField.getName()) != null) {
+          BigQueryRecordToJson.write(writer, recordField.getName(), record.get(recordField.getName()),
+                                     recordField.getSchema());
+        }
+      }
+      writer.endObject();
+      return writer.get().toString();
+    }
+  }
+}
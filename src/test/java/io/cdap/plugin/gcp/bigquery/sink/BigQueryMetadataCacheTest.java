@@ -0,0 +1,139 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.gcp.bigquery.sink;
+
+import com.google.api.client.googleapis.json.GoogleJsonResponseException;
+import com.google.api.client.http.HttpHeaders;
+import com.google.api.client.http.HttpResponseException;
+import com.google.api.services.bigquery.Bigquery;
+import com.google.api.services.bigquery.model.Dataset;
+import com.google.api.services.bigquery.model.Table;
+import com.google.api.services.bigquery.model.TableReference;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.io.IOException;
+import java.math.BigInteger;
+
+/**
+ * Tests for {@link BigQueryMetadataCache}.
+ */
+public class BigQueryMetadataCacheTest {
+
+  private static final TableReference TABLE_REF =
+    new TableReference().setProjectId("project").setDatasetId("dataset").setTableId("table");
+
+  private Bigquery bigquery;
+  private Bigquery.Tables tables;
+  private Bigquery.Tables.Get get;
+  private BigQueryMetadataCache cache;
+
+  @Before
+  public void setUp() throws IOException {
+    bigquery = Mockito.mock(Bigquery.class);
+    tables = Mockito.mock(Bigquery.Tables.class);
+    get = Mockito.mock(Bigquery.Tables.Get.class);
+    Mockito.when(bigquery.tables()).thenReturn(tables);
+    Mockito.when(tables.get("project", "dataset", "table")).thenReturn(get);
+    cache = new BigQueryMetadataCache(bigquery);
+  }
+
+  @Test
+  public void testTableFetchedOnceUntilInvalidated() throws IOException {
+    Table first = new Table().setTableReference(TABLE_REF).setNumRows(BigInteger.ONE);
+    Table second = new Table().setTableReference(TABLE_REF).setNumRows(BigInteger.TEN);
+    Mockito.when(get.execute()).thenReturn(first, second);
+
+    Assert.assertSame(first, cache.getTable(TABLE_REF));
+    Assert.assertTrue(cache.tableExists(TABLE_REF));
+    Assert.assertSame(first, cache.getTable(TABLE_REF.clone()));
+    Mockito.verify(get, Mockito.times(1)).execute();
+
+    cache.invalidate(TABLE_REF);
+    Assert.assertSame(second, cache.getTable(TABLE_REF));
+    Mockito.verify(get, Mockito.times(2)).execute();
+  }
+
+  @Test
+  public void testMissingTableCached() throws IOException {
+    Mockito.when(get.execute()).thenThrow(
+      new GoogleJsonResponseException(new HttpResponseException.Builder(404, "Not Found", new HttpHeaders()), null));
+
+    Assert.assertNull(cache.getTable(TABLE_REF));
+    Assert.assertFalse(cache.tableExists(TABLE_REF));
+    Mockito.verify(get, Mockito.times(1)).execute();
+  }
+
+  @Test(expected = IOException.class)
+  public void testTableFetchFailure() throws IOException {
+    Mockito.when(get.execute()).thenThrow(
+      new GoogleJsonResponseException(new HttpResponseException.Builder(403, "Forbidden", new HttpHeaders()), null));
+    cache.getTable(TABLE_REF);
+  }
+
+  @Test
+  public void testPatchedTableCached() throws IOException {
+    Table patch = new Table().setExpirationTime(1000L);
+    Table patched = new Table().setTableReference(TABLE_REF).setExpirationTime(1000L);
+    Bigquery.Tables.Patch patchRequest = Mockito.mock(Bigquery.Tables.Patch.class);
+    Mockito.when(tables.patch("project", "dataset", "table", patch)).thenReturn(patchRequest);
+    Mockito.when(patchRequest.execute()).thenReturn(patched);
+
+    cache.patchTable(TABLE_REF, patch);
+
+    Assert.assertSame(patched, cache.getTable(TABLE_REF));
+    Mockito.verify(tables, Mockito.never()).get(Mockito.anyString(), Mockito.anyString(), Mockito.anyString());
+  }
+
+  @Test
+  public void testFailedPatchInvalidatesTable() throws IOException {
+    Table table = new Table().setTableReference(TABLE_REF).setNumRows(BigInteger.ONE);
+    Mockito.when(get.execute()).thenReturn(table);
+    Assert.assertSame(table, cache.getTable(TABLE_REF));
+
+    Table patch = new Table().setExpirationTime(1000L);
+    Bigquery.Tables.Patch patchRequest = Mockito.mock(Bigquery.Tables.Patch.class);
+    Mockito.when(tables.patch("project", "dataset", "table", patch)).thenReturn(patchRequest);
+    Mockito.when(patchRequest.execute()).thenThrow(new IOException("patch failed"));
+    try {
+      cache.patchTable(TABLE_REF, patch);
+      Assert.fail("Patch should fail");
+    } catch (IOException e) {
+      Assert.assertEquals("patch failed", e.getMessage());
+    }
+
+    // the table is fetched again, as it may or may not have been patched
+    Assert.assertSame(table, cache.getTable(TABLE_REF));
+    Mockito.verify(get, Mockito.times(2)).execute();
+  }
+
+  @Test
+  public void testDatasetFetchedOnce() throws IOException {
+    Bigquery.Datasets datasets = Mockito.mock(Bigquery.Datasets.class);
+    Bigquery.Datasets.Get datasetGet = Mockito.mock(Bigquery.Datasets.Get.class);
+    Dataset dataset = new Dataset().setLocation("US");
+    Mockito.when(bigquery.datasets()).thenReturn(datasets);
+    Mockito.when(datasets.get("project", "dataset")).thenReturn(datasetGet);
+    Mockito.when(datasetGet.execute()).thenReturn(dataset);
+
+    Assert.assertSame(dataset, cache.getDataset("project", "dataset"));
+    Assert.assertSame(dataset, cache.getDataset("project", "dataset"));
+    Mockito.verify(datasetGet, Mockito.times(1)).execute();
+  }
+}
@@ -15,9 +15,14 @@
  */
 package io.cdap.plugin.gcp.bigquery.sink;
 
+import com.google.api.services.bigquery.Bigquery;
 import com.google.api.services.bigquery.model.Dataset;
 import com.google.api.services.bigquery.model.JobConfiguration;
+import com.google.api.services.bigquery.model.JobReference;
+import com.google.api.services.bigquery.model.Table;
+import com.google.api.services.bigquery.model.TableFieldSchema;
 import com.google.api.services.bigquery.model.TableReference;
+import com.google.api.services.bigquery.model.TableSchema;
 import com.google.cloud.bigquery.JobId;
 import com.google.cloud.hadoop.io.bigquery.BigQueryConfiguration;
 import com.google.cloud.hadoop.io.bigquery.BigQueryFileFormat;
@@ -26,6 +31,7 @@ import com.google.cloud.hadoop.io.bigquery.output.ForwardingBigQueryFileOutputCo
 import io.cdap.plugin.gcp.bigquery.util.BigQueryConstants;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.mapreduce.JobContext;
+import org.junit.Assert;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.ArgumentMatchers;
@@ -35,9 +41,20 @@ import org.powermock.api.mockito.PowerMockito;
 import org.powermock.api.support.membermodification.MemberMatcher;
 import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
+import org.powermock.reflect.Whitebox;
 
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.mockito.Mockito.times;
 import static org.powermock.api.support.membermodification.MemberModifier.suppress;
@@ -94,6 +111,8 @@ public class BigQueryOutputFormatTest {
 
     FieldSetter.setField(spy, bigQueryOutputCommitter.getClass().getDeclaredField("bigQueryHelper"),
                          bigQueryHelperMock);
+    FieldSetter.setField(spy, bigQueryOutputCommitter.getClass().getDeclaredField("metadataCache"),
+                         new BigQueryMetadataCache(bigQueryHelperMock.getRawBigquery()));
 
     return spy;
   }
@@ -151,4 +170,118 @@ public class BigQueryOutputFormatTest {
               ArgumentMatchers.any(Configuration.class));
   }
 
+  @Test
+  public void commitJobTestTempTableBatchesLoadedConcurrently() throws Exception {
+
+    generateList(30001);
+    BigQueryOutputFormat.BigQueryOutputCommitter bqQueryOutputCommitterSpy = initMocks("UPDATE");
+    jobContextMock.getConfiguration().setInt(BigQueryConstants.CONFIG_LOAD_JOB_CONCURRENCY, 2);
+    Map<String, List<String>> loadedUris = new ConcurrentHashMap<>();
+    PowerMockito.doAnswer(invocation -> {
+      JobConfiguration config = invocation.getArgument(3);
+      loadedUris.put(invocation.getArgument(1), config.getLoad().getSourceUris());
+      return null;
+    }).when(bqQueryOutputCommitterSpy, "triggerBigqueryJob", ArgumentMatchers.eq("test_project"),
+            ArgumentMatchers.anyString(),
+            ArgumentMatchers.any(Dataset.class),
+            ArgumentMatchers.any(JobConfiguration.class));
+    bqQueryOutputCommitterSpy.commitJob(jobContextMock);
+
+    // 4 batches in temp table, each with its own job id and its own part of the paths
+    Assert.assertEquals(4, loadedUris.size());
+    Set<String> allUris = new HashSet<>();
+    loadedUris.values().forEach(allUris::addAll);
+    Assert.assertEquals(new HashSet<>(listOfStrings), allUris);
+    Assert.assertEquals(1, loadedUris.values().stream().filter(uris -> uris.size() == 1).count());
+  }
+
+  @Test
+  public void commitJobTestSharedLoadJobPermits() throws Exception {
+
+    generateList(40001);
+    BigQueryOutputFormat.BigQueryOutputCommitter bqQueryOutputCommitterSpy = initMocks("UPDATE");
+    jobContextMock.getConfiguration().setInt(BigQueryConstants.CONFIG_LOAD_JOB_CONCURRENCY, 4);
+    // the permits are shared with the committer of another table, which uses all of them but one
+    bqQueryOutputCommitterSpy.setLoadJobPermits(new Semaphore(1));
+    AtomicInteger runningJobs = new AtomicInteger();
+    AtomicInteger maxRunningJobs = new AtomicInteger();
+    PowerMockito.doCallRealMethod().when(bqQueryOutputCommitterSpy, "triggerBigqueryJob",
+                                         ArgumentMatchers.eq("test_project"),
+                                         ArgumentMatchers.anyString(),
+                                         ArgumentMatchers.any(Dataset.class),
+                                         ArgumentMatchers.any(JobConfiguration.class));
+    PowerMockito.doAnswer(invocation -> {
+      maxRunningJobs.accumulateAndGet(runningJobs.incrementAndGet(), Math::max);
+      TimeUnit.MILLISECONDS.sleep(50);
+      runningJobs.decrementAndGet();
+      return null;
+    }).when(bqQueryOutputCommitterSpy, "waitForJobCompletion", ArgumentMatchers.eq("test_project"),
+            ArgumentMatchers.any(JobReference.class));
+    bqQueryOutputCommitterSpy.commitJob(jobContextMock);
+
+    // 5 batches in temp table, loaded one at a time
+    PowerMockito.verifyPrivate(bqQueryOutputCommitterSpy, times(5))
+      .invoke("waitForJobCompletion", ArgumentMatchers.eq("test_project"),
+              ArgumentMatchers.any(JobReference.class));
+    Assert.assertEquals(1, maxRunningJobs.get());
+  }
+
+  @Test
+  public void commitJobTestInvalidLoadJobConcurrency() throws Exception {
+
+    generateList(20001);
+    BigQueryOutputFormat.BigQueryOutputCommitter bqQueryOutputCommitterSpy = initMocks("INSERT");
+    jobContextMock.getConfiguration().setInt(BigQueryConstants.CONFIG_LOAD_JOB_CONCURRENCY, 0);
+    try {
+      bqQueryOutputCommitterSpy.commitJob(jobContextMock);
+      Assert.fail("Commit should fail with a load job concurrency of 0");
+    } catch (IllegalArgumentException e) {
+      Assert.assertTrue(e.getMessage().contains(BigQueryConstants.CONFIG_LOAD_JOB_CONCURRENCY));
+    }
+
+    // no load job started
+    PowerMockito.verifyPrivate(bqQueryOutputCommitterSpy, times(0))
+      .invoke("triggerBigqueryJob", ArgumentMatchers.eq("test_project"),
+              ArgumentMatchers.anyString(),
+              ArgumentMatchers.any(Dataset.class),
+              ArgumentMatchers.any(JobConfiguration.class));
+  }
+
+  @Test
+  public void updateFieldDescriptionsTestFailedPatch() throws Exception {
+
+    generateList(1);
+    BigQueryOutputFormat.BigQueryOutputCommitter bqQueryOutputCommitterSpy = initMocks("INSERT");
+    TableReference tableRef = new TableReference().setProjectId("test_project").setDatasetId("test_dataset")
+      .setTableId("test_table");
+    List<TableFieldSchema> fields = new ArrayList<>();
+    fields.add(new TableFieldSchema().setName("id").setType("INT64"));
+    Table table = new Table().setTableReference(tableRef).setSchema(new TableSchema().setFields(fields));
+
+    Bigquery bigquery = Mockito.mock(Bigquery.class);
+    Bigquery.Tables tables = Mockito.mock(Bigquery.Tables.class);
+    Bigquery.Tables.Get get = Mockito.mock(Bigquery.Tables.Get.class);
+    Bigquery.Tables.Patch patch = Mockito.mock(Bigquery.Tables.Patch.class);
+    Mockito.when(bigquery.tables()).thenReturn(tables);
+    Mockito.when(tables.get("test_project", "test_dataset", "test_table")).thenReturn(get);
+    Mockito.when(get.execute()).thenReturn(table);
+    Mockito.when(tables.patch(ArgumentMatchers.eq("test_project"), ArgumentMatchers.eq("test_dataset"),
+                              ArgumentMatchers.eq("test_table"), ArgumentMatchers.any(Table.class))).thenReturn(patch);
+    Mockito.when(patch.execute()).thenThrow(new IOException("patch failed"));
+    BigQueryMetadataCache metadataCache = new BigQueryMetadataCache(bigquery);
+    FieldSetter.setField(bqQueryOutputCommitterSpy,
+                         BigQueryOutputFormat.BigQueryOutputCommitter.class.getDeclaredField("metadataCache"),
+                         metadataCache);
+
+    try {
+      Whitebox.invokeMethod(bqQueryOutputCommitterSpy, "updateFieldDescriptions", "WRITE_TRUNCATE", tableRef,
+                            Collections.singletonMap("id", "identifier"));
+      Assert.fail("Field descriptions update should fail");
+    } catch (IOException e) {
+      Assert.assertEquals("patch failed", e.getMessage());
+    }
+
+    // the fetched table was not modified by the failed update
+    Assert.assertNull(table.getSchema().getFields().get(0).getDescription());
+  }
 }
@@ -0,0 +1,371 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.gcp.bigquery.sink;
+
+import com.google.api.gax.core.NoCredentialsProvider;
+import com.google.api.gax.grpc.GrpcTransportChannel;
+import com.google.api.gax.rpc.FixedTransportChannelProvider;
+import com.google.cloud.bigquery.BigQuery;
+import com.google.cloud.bigquery.Job;
+import com.google.cloud.bigquery.JobId;
+import com.google.cloud.bigquery.JobInfo;
+import com.google.cloud.bigquery.JobStatus;
+import com.google.cloud.bigquery.QueryJobConfiguration;
+import com.google.cloud.bigquery.Table;
+import com.google.cloud.bigquery.TableId;
+import com.google.cloud.bigquery.TableInfo;
+import com.google.cloud.bigquery.storage.v1beta2.AppendRowsRequest;
+import com.google.cloud.bigquery.storage.v1beta2.AppendRowsResponse;
+import com.google.cloud.bigquery.storage.v1beta2.BQTableSchemaToProtoDescriptor;
+import com.google.cloud.bigquery.storage.v1beta2.BQV2ToBQStorageConverter;
+import com.google.cloud.bigquery.storage.v1beta2.BatchCommitWriteStreamsRequest;
+import com.google.cloud.bigquery.storage.v1beta2.BatchCommitWriteStreamsResponse;
+import com.google.cloud.bigquery.storage.v1beta2.BigDecimalByteStringEncoder;
+import com.google.cloud.bigquery.storage.v1beta2.BigQueryWriteClient;
+import com.google.cloud.bigquery.storage.v1beta2.BigQueryWriteGrpc;
+import com.google.cloud.bigquery.storage.v1beta2.BigQueryWriteSettings;
+import com.google.cloud.bigquery.storage.v1beta2.CreateWriteStreamRequest;
+import com.google.cloud.bigquery.storage.v1beta2.FinalizeWriteStreamRequest;
+import com.google.cloud.bigquery.storage.v1beta2.FinalizeWriteStreamResponse;
+import com.google.cloud.bigquery.storage.v1beta2.WriteStream;
+import com.google.cloud.hadoop.io.bigquery.BigQueryConfiguration;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.Descriptors;
+import com.google.protobuf.DynamicMessage;
+import com.google.protobuf.Int64Value;
+import com.google.protobuf.Timestamp;
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.cdap.api.data.schema.Schema;
+import io.cdap.plugin.gcp.bigquery.util.BigQueryConstants;
+import io.grpc.ManagedChannel;
+import io.grpc.Server;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.stub.StreamObserver;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.mapreduce.JobContext;
+import org.apache.hadoop.mapreduce.JobID;
+import org.apache.hadoop.mapreduce.RecordWriter;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.TaskAttemptID;
+import org.apache.hadoop.mapreduce.TaskType;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+import org.apache.hadoop.mapreduce.task.JobContextImpl;
+import org.apache.hadoop.mapreduce.task.TaskAttemptContextImpl;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.ArgumentCaptor;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests for {@link BigQueryStorageWriteOutputFormat}, against an in-process fake of the BigQuery write service.
+ */
+public class BigQueryStorageWriteOutputFormatTest {
+
+  private static final Schema NESTED_SCHEMA =
+    Schema.recordOf("nested", Schema.Field.of("code", Schema.of(Schema.Type.INT)));
+  private static final Schema SCHEMA = Schema.recordOf(
+    "record",
+    Schema.Field.of("id", Schema.of(Schema.Type.LONG)),
+    Schema.Field.of("Name", Schema.nullableOf(Schema.of(Schema.Type.STRING))),
+    Schema.Field.of("price", Schema.nullableOf(Schema.decimalOf(10, 2))),
+    Schema.Field.of("ts", Schema.nullableOf(Schema.of(Schema.LogicalType.TIMESTAMP_MILLIS))),
+    Schema.Field.of("day", Schema.nullableOf(Schema.of(Schema.LogicalType.DATE))),
+    Schema.Field.of("tags", Schema.arrayOf(Schema.of(Schema.Type.STRING))),
+    Schema.Field.of("nested", Schema.nullableOf(NESTED_SCHEMA)));
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private FakeBigQueryWrite fakeService;
+  private Server server;
+  private ManagedChannel channel;
+  private BigQuery bigQuery;
+  private BigQueryStorageWriteOutputFormat outputFormat;
+  private Configuration conf;
+
+  @Before
+  public void setUp() throws Exception {
+    String serverName = InProcessServerBuilder.generateName();
+    fakeService = new FakeBigQueryWrite();
+    server = InProcessServerBuilder.forName(serverName).directExecutor().addService(fakeService).build().start();
+    channel = InProcessChannelBuilder.forName(serverName).directExecutor().build();
+    bigQuery = Mockito.mock(BigQuery.class, Mockito.RETURNS_DEEP_STUBS);
+    outputFormat = new BigQueryStorageWriteOutputFormat() {
+      @Override
+      BigQueryWriteClient createWriteClient(Configuration configuration) throws IOException {
+        return BigQueryWriteClient.create(
+          BigQueryWriteSettings.newBuilder()
+            .setTransportChannelProvider(FixedTransportChannelProvider.create(GrpcTransportChannel.create(channel)))
+            .setCredentialsProvider(NoCredentialsProvider.create())
+            .build());
+      }
+
+      @Override
+      BigQuery createBigQuery(Configuration configuration) {
+        return bigQuery;
+      }
+    };
+
+    conf = new Configuration();
+    conf.set(BigQueryConfiguration.OUTPUT_PROJECT_ID_KEY, "test_project");
+    conf.set(BigQueryConfiguration.OUTPUT_DATASET_ID_KEY, "test_dataset");
+    conf.set(BigQueryConfiguration.OUTPUT_TABLE_ID_KEY, "test_table");
+    conf.set(FileOutputFormat.OUTDIR, temporaryFolder.newFolder().toURI().toString());
+    conf.set(BigQueryConstants.CDAP_BQ_SINK_OUTPUT_SCHEMA, SCHEMA.toString());
+    conf.set(BigQueryConstants.CONFIG_JOB_ID, "1b2c-3d4e");
+    conf.set(BigQueryConstants.CONFIG_OPERATION, Operation.INSERT.name());
+    conf.setBoolean(BigQueryConstants.CONFIG_DESTINATION_TABLE_EXISTS, true);
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    channel.shutdownNow();
+    server.shutdownNow().awaitTermination(10, TimeUnit.SECONDS);
+  }
+
+  @Test
+  public void testInsertCommitsAllTaskStreamsAtJobCommit() throws Exception {
+    JobContext jobContext = new JobContextImpl(conf, new JobID("test", 1));
+    BigQueryStorageWriteOutputFormat.BigQueryStorageWriteOutputCommitter committer =
+      (BigQueryStorageWriteOutputFormat.BigQueryStorageWriteOutputCommitter)
+        outputFormat.getOutputCommitter(createTaskContext(0, 0));
+    Mockito.when(bigQuery.getTable(ArgumentMatchers.any(TableId.class))).thenReturn(Mockito.mock(Table.class));
+    committer.setupJob(jobContext);
+
+    writeAndCommitTask(committer, createTaskContext(0, 0), 0, 3);
+    writeAndCommitTask(committer, createTaskContext(1, 0), 3, 2);
+    // tasks that write nothing do not create streams
+    writeAndCommitTask(committer, createTaskContext(2, 0), 5, 0);
+    Assert.assertEquals(2, fakeService.streams.size());
+    Assert.assertTrue(fakeService.committed.isEmpty());
+
+    committer.commitJob(jobContext);
+
+    Assert.assertEquals(1, fakeService.commitRequests.size());
+    BatchCommitWriteStreamsRequest commitRequest = fakeService.commitRequests.get(0);
+    Assert.assertEquals("projects/test_project/datasets/test_dataset/tables/test_table", commitRequest.getParent());
+    Assert.assertEquals(fakeService.streams.keySet(), fakeService.finalized.keySet());
+    Assert.assertEquals(fakeService.streams.keySet().size(), commitRequest.getWriteStreamsCount());
+    Assert.assertTrue(fakeService.committed.containsAll(fakeService.streams.keySet()));
+    Assert.assertEquals(5, fakeService.getAllRows().size());
+    // appends go directly to the destination table, so no BigQuery job is needed
+    Mockito.verify(bigQuery, Mockito.never()).create(ArgumentMatchers.any(JobInfo.class));
+  }
+
+  @Test
+  public void testRecordsAreConverted() throws Exception {
+    JobContext jobContext = new JobContextImpl(conf, new JobID("test", 1));
+    BigQueryStorageWriteOutputFormat.BigQueryStorageWriteOutputCommitter committer =
+      (BigQueryStorageWriteOutputFormat.BigQueryStorageWriteOutputCommitter)
+        outputFormat.getOutputCommitter(createTaskContext(0, 0));
+    writeAndCommitTask(committer, createTaskContext(0, 0), 7, 1);
+    committer.commitJob(jobContext);
+
+    Descriptors.Descriptor descriptor = BQTableSchemaToProtoDescriptor.convertBQTableSchemaToProtoDescriptor(
+      BQV2ToBQStorageConverter.ConvertTableSchema(BigQuerySinkUtils.convertCdapSchemaToBigQuerySchema(SCHEMA)));
+    DynamicMessage row = DynamicMessage.parseFrom(descriptor, fakeService.getAllRows().get(0));
+    Assert.assertEquals(7L, row.getField(descriptor.findFieldByName("id")));
+    Assert.assertEquals("name7", row.getField(descriptor.findFieldByName("name")));
+    Assert.assertEquals(new BigDecimal("7.25").setScale(9),
+                        BigDecimalByteStringEncoder.decodeNumericByteString(
+                          (ByteString) row.getField(descriptor.findFieldByName("price"))));
+    Assert.assertEquals(1600000000123000L, row.getField(descriptor.findFieldByName("ts")));
+    Assert.assertEquals(18000, row.getField(descriptor.findFieldByName("day")));
+    Assert.assertEquals(Arrays.asList("a", "b"), row.getField(descriptor.findFieldByName("tags")));
+    DynamicMessage nested = (DynamicMessage) row.getField(descriptor.findFieldByName("nested"));
+    Assert.assertEquals(7L, nested.getField(nested.getDescriptorForType().findFieldByName("code")));
+  }
+
+  @Test
+  public void testAbortedTaskStreamIsNotCommitted() throws Exception {
+    JobContext jobContext = new JobContextImpl(conf, new JobID("test", 1));
+    BigQueryStorageWriteOutputFormat.BigQueryStorageWriteOutputCommitter committer =
+      (BigQueryStorageWriteOutputFormat.BigQueryStorageWriteOutputCommitter)
+        outputFormat.getOutputCommitter(createTaskContext(0, 0));
+
+    TaskAttemptContext failedAttempt = createTaskContext(0, 0);
+    writeRecords(failedAttempt, 0, 2);
+    committer.abortTask(failedAttempt);
+    TaskAttemptContext retriedAttempt = createTaskContext(0, 1);
+    writeAndCommitTask(committer, retriedAttempt, 0, 2);
+    committer.commitJob(jobContext);
+
+    Assert.assertEquals(2, fakeService.streams.size());
+    Assert.assertEquals(1, fakeService.committed.size());
+  }
+
+  @Test
+  public void testUpsertWritesToTemporaryTableAndMerges() throws Exception {
+    conf.set(BigQueryConstants.CONFIG_OPERATION, Operation.UPSERT.name());
+    conf.set(BigQueryConstants.CONFIG_TABLE_KEY, "id");
+    conf.set(BigQueryConstants.CONFIG_TABLE_FIELDS, "id,Name");
+    JobContext jobContext = new JobContextImpl(conf, new JobID("test", 1));
+    Job job = Mockito.mock(Job.class, Mockito.RETURNS_DEEP_STUBS);
+    JobStatus jobStatus = Mockito.mock(JobStatus.class);
+    Mockito.when(jobStatus.getState()).thenReturn(JobStatus.State.DONE);
+    Mockito.when(job.getStatus()).thenReturn(jobStatus);
+    Mockito.when(bigQuery.create(ArgumentMatchers.any(JobInfo.class))).thenReturn(job);
+    Mockito.when(bigQuery.getJob(ArgumentMatchers.any(JobId.class))).thenReturn(job);
+    Mockito.when(bigQuery.getTable(ArgumentMatchers.any(TableId.class))).thenReturn(Mockito.mock(Table.class));
+
+    BigQueryStorageWriteOutputFormat.BigQueryStorageWriteOutputCommitter committer =
+      (BigQueryStorageWriteOutputFormat.BigQueryStorageWriteOutputCommitter)
+        outputFormat.getOutputCommitter(createTaskContext(0, 0));
+    committer.setupJob(jobContext);
+    writeAndCommitTask(committer, createTaskContext(0, 0), 0, 2);
+    committer.commitJob(jobContext);
+
+    TableId temporaryTable = TableId.of("test_project", "test_dataset", "test_table_1b2c_3d4e");
+    ArgumentCaptor<TableInfo> tableCaptor = ArgumentCaptor.forClass(TableInfo.class);
+    Mockito.verify(bigQuery).create(tableCaptor.capture());
+    Assert.assertEquals(temporaryTable, tableCaptor.getValue().getTableId());
+    Assert.assertEquals("projects/test_project/datasets/test_dataset/tables/test_table_1b2c_3d4e",
+                        fakeService.commitRequests.get(0).getParent());
+
+    ArgumentCaptor<JobInfo> jobCaptor = ArgumentCaptor.forClass(JobInfo.class);
+    Mockito.verify(bigQuery).create(jobCaptor.capture());
+    Assert.assertEquals("1b2c-3d4e", jobCaptor.getValue().getJobId().getJob());
+    QueryJobConfiguration queryConfig = jobCaptor.getValue().getConfiguration();
+    Assert.assertTrue(queryConfig.getQuery().startsWith("MERGE"));
+    Mockito.verify(bigQuery).delete(temporaryTable);
+  }
+
+  private TaskAttemptContext createTaskContext(int task, int attempt) {
+    return new TaskAttemptContextImpl(conf, new TaskAttemptID("test", 1, TaskType.REDUCE, task, attempt));
+  }
+
+  private void writeAndCommitTask(BigQueryStorageWriteOutputFormat.BigQueryStorageWriteOutputCommitter committer,
+                                  TaskAttemptContext context, int start, int count) throws Exception {
+    writeRecords(context, start, count);
+    Assert.assertEquals(count > 0, committer.needsTaskCommit(context));
+    if (committer.needsTaskCommit(context)) {
+      committer.commitTask(context);
+    }
+  }
+
+  private void writeRecords(TaskAttemptContext context, int start, int count) throws Exception {
+    RecordWriter<StructuredRecord, NullWritable> writer = outputFormat.getRecordWriter(context);
+    for (int i = start; i < start + count; i++) {
+      writer.write(StructuredRecord.builder(SCHEMA)
+                     .set("id", (long) i)
+                     .set("Name", "name" + i)
+                     .setDecimal("price", new BigDecimal(i + ".25"))
+                     .set("ts", 1600000000123L)
+                     .set("day", 18000)
+                     .set("tags", Arrays.asList("a", "b"))
+                     .set("nested", StructuredRecord.builder(NESTED_SCHEMA).set("code", i).build())
+                     .build(), NullWritable.get());
+    }
+    writer.close(context);
+  }
+
+  /**
+   * Fake write service that keeps the rows appended to pending streams in memory.
+   */
+  private static class FakeBigQueryWrite extends BigQueryWriteGrpc.BigQueryWriteImplBase {
+    private final Map<String, List<ByteString>> streams = new ConcurrentHashMap<>();
+    private final Map<String, Long> finalized = new ConcurrentHashMap<>();
+    private final List<String> committed = new CopyOnWriteArrayList<>();
+    private final List<BatchCommitWriteStreamsRequest> commitRequests = new CopyOnWriteArrayList<>();
+
+    @Override
+    public void createWriteStream(CreateWriteStreamRequest request, StreamObserver<WriteStream> responseObserver) {
+      String name = request.getParent() + "/streams/" + UUID.randomUUID();
+      streams.put(name, new CopyOnWriteArrayList<>());
+      responseObserver.onNext(request.getWriteStream().toBuilder().setName(name).build());
+      responseObserver.onCompleted();
+    }
+
+    @Override
+    public StreamObserver<AppendRowsRequest> appendRows(StreamObserver<AppendRowsResponse> responseObserver) {
+      return new StreamObserver<AppendRowsRequest>() {
+        private String stream;
+
+        @Override
+        public void onNext(AppendRowsRequest request) {
+          if (!request.getWriteStream().isEmpty()) {
+            stream = request.getWriteStream();
+          }
+          List<ByteString> rows = streams.get(stream);
+          long offset = request.getOffset().getValue();
+          Assert.assertEquals(rows.size(), offset);
+          rows.addAll(request.getProtoRows().getRows().getSerializedRowsList());
+          responseObserver.onNext(AppendRowsResponse.newBuilder()
+                                    .setAppendResult(AppendRowsResponse.AppendResult.newBuilder()
+                                                       .setOffset(Int64Value.of(offset)))
+                                    .build());
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+          // no-op
+        }
+
+        @Override
+        public void onCompleted() {
+          responseObserver.onCompleted();
+        }
+      };
+    }
+
+    @Override
+    public void finalizeWriteStream(FinalizeWriteStreamRequest request,
+                                    StreamObserver<FinalizeWriteStreamResponse> responseObserver) {
+      long rowCount = streams.get(request.getName()).size();
+      finalized.put(request.getName(), rowCount);
+      responseObserver.onNext(FinalizeWriteStreamResponse.newBuilder().setRowCount(rowCount).build());
+      responseObserver.onCompleted();
+    }
+
+    @Override
+    public void batchCommitWriteStreams(BatchCommitWriteStreamsRequest request,
+                                        StreamObserver<BatchCommitWriteStreamsResponse> responseObserver) {
+      commitRequests.add(request);
+      committed.addAll(request.getWriteStreamsList());
+      responseObserver.onNext(BatchCommitWriteStreamsResponse.newBuilder()
+                                .setCommitTime(Timestamp.newBuilder().setSeconds(1)).build());
+      responseObserver.onCompleted();
+    }
+
+    private List<ByteString> getAllRows() {
+      List<ByteString> rows = new ArrayList<>();
+      for (String stream : committed) {
+        rows.addAll(streams.getOrDefault(stream, Collections.emptyList()));
+      }
+      return rows;
+    }
+  }
+}
@@ -16,23 +16,37 @@
 
 package io.cdap.plugin.gcp.bigquery.sink;
 
+import com.google.common.collect.ImmutableMap;
 import io.cdap.cdap.api.data.schema.Schema;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.mapreduce.JobID;
 import org.apache.hadoop.mapreduce.JobStatus;
 import org.apache.hadoop.mapreduce.OutputCommitter;
 import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.TaskAttemptID;
+import org.apache.hadoop.mapreduce.TaskType;
 import org.junit.Assert;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
 
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.powermock.api.mockito.PowerMockito.doNothing;
+import static org.powermock.api.mockito.PowerMockito.doReturn;
 import static org.powermock.api.mockito.PowerMockito.doThrow;
 import static org.powermock.api.mockito.PowerMockito.mock;
 import static org.powermock.api.mockito.PowerMockito.spy;
@@ -40,6 +54,9 @@ import static org.powermock.api.mockito.PowerMockito.when;
 
 public class DelegatingMultiSinkOutputCommitterTest {
 
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
   DelegatingMultiSinkOutputCommitter committer;
   TaskAttemptContext ctx;
   OutputCommitter c1;
@@ -54,7 +71,13 @@ public class DelegatingMultiSinkOutputCommitterTest {
   public void setUp() throws IOException, InterruptedException {
     committer = spy(new DelegatingMultiSinkOutputCommitter("project", "ds", "bucket", "path"));
     doNothing().when(committer).configureContext(any(), anyString());
+    doNothing().when(committer).saveTableSchema(any(), anyString(), any());
+    doNothing().when(committer).deleteSavedTableSchemas(any());
+    doReturn(Collections.emptyList()).when(committer).getSavedTableNames(any());
     ctx = mock(TaskAttemptContext.class);
+    when(ctx.getConfiguration()).thenReturn(new Configuration());
+    when(ctx.getJobID()).thenReturn(new JobID());
+    when(ctx.getTaskAttemptID()).thenReturn(new TaskAttemptID());
     c1 = mock(OutputCommitter.class);
     c2 = mock(OutputCommitter.class);
     c3 = mock(OutputCommitter.class);
@@ -104,22 +127,58 @@ public class DelegatingMultiSinkOutputCommitterTest {
 
     committer.commitTask(ctx);
 
-    verify(c1, times(1)).commitTask(ctx);
-    verify(c2, times(1)).commitTask(ctx);
-    verify(c3, times(1)).commitTask(ctx);
+    // Tables are committed concurrently, each one with its own context
+    verify(c1, times(1)).commitTask(any());
+    verify(c2, times(1)).commitTask(any());
+    verify(c3, times(1)).commitTask(any());
+    verify(committer, times(1)).configureContext(any(), eq("table1"));
+    verify(committer, times(1)).saveTableSchema(any(), eq("table1"), eq(s1));
+    verify(committer, times(1)).saveTableSchema(any(), eq("table2"), eq(s2));
+    verify(committer, times(1)).saveTableSchema(any(), eq("table3"), eq(s3));
+    // Tables are only loaded by the job commit
+    verify(c1, never()).commitJob(any());
   }
 
   @Test
   public void testCommitJob() throws IOException, InterruptedException {
-    committer.addCommitterAndSchema(c1, "table1", s1, ctx);
-    committer.addCommitterAndSchema(c2, "table2", s2, ctx);
-    committer.addCommitterAndSchema(c3, "table3", s3, ctx);
+    Schema schema = Schema.recordOf("record", Schema.Field.of("id", Schema.of(Schema.Type.LONG)));
+    doReturn(ImmutableMap.of("table1", schema, "table2", schema, "table3", schema))
+      .when(committer).getSavedTableSchemas(ctx);
+    doReturn(c1).when(committer).createTableCommitter(eq("table1"), any());
+    doReturn(c2).when(committer).createTableCommitter(eq("table2"), any());
+    doReturn(c3).when(committer).createTableCommitter(eq("table3"), any());
+
+    committer.commitJob(ctx);
+
+    // Every table is loaded once, for the output of all the tasks
+    verify(c1, times(1)).commitJob(any());
+    verify(c2, times(1)).commitJob(any());
+    verify(c3, times(1)).commitJob(any());
+    verify(committer, times(1)).deleteSavedTableSchemas(ctx);
+  }
+
+  @Test
+  public void testCommitJobFailure() throws IOException, InterruptedException {
+    Schema schema = Schema.recordOf("record", Schema.Field.of("id", Schema.of(Schema.Type.LONG)));
+    doReturn(ImmutableMap.of("table1", schema)).when(committer).getSavedTableSchemas(ctx);
+    doReturn(c1).when(committer).createTableCommitter(eq("table1"), any());
+    doThrow(new IOException("load failed")).when(c1).commitJob(any());
+
+    try {
+      committer.commitJob(ctx);
+      Assert.fail("Job commit should fail");
+    } catch (IOException e) {
+      Assert.assertEquals("load failed", e.getMessage());
+    }
+  }
+
+  @Test
+  public void testCommitJobWithoutOutput() throws IOException, InterruptedException {
+    doReturn(ImmutableMap.of()).when(committer).getSavedTableSchemas(ctx);
 
     committer.commitJob(ctx);
 
-    verify(c1, times(1)).commitJob(ctx);
-    verify(c2, times(1)).commitJob(ctx);
-    verify(c3, times(1)).commitJob(ctx);
+    verify(committer, never()).createTableCommitter(anyString(), any());
   }
 
   @Test
@@ -189,6 +248,30 @@ public class DelegatingMultiSinkOutputCommitterTest {
     verify(c3, times(1)).abortJob(ctx, JobStatus.State.FAILED);
   }
 
+  @Test
+  public void testAbortJobDeletesStagedOutput() throws IOException {
+    DelegatingMultiSinkOutputCommitter jobCommitter =
+      spy(new DelegatingMultiSinkOutputCommitter("project", "ds", "bucket", "path"));
+    Path schemaDirectory = new Path(temporaryFolder.newFolder().toURI());
+    Path stagingDirectory = new Path(temporaryFolder.newFolder().toURI());
+    doReturn(schemaDirectory).when(jobCommitter).getSchemaDirectory();
+    doReturn(new Path(stagingDirectory, "table1")).when(jobCommitter).getStagedPath("table1");
+    doReturn(new Path(stagingDirectory, "table2")).when(jobCommitter).getStagedPath("table2");
+    Schema schema = Schema.recordOf("record", Schema.Field.of("id", Schema.of(Schema.Type.LONG)));
+    FileSystem fs = stagingDirectory.getFileSystem(ctx.getConfiguration());
+    for (String tableName : Arrays.asList("table1", "table2")) {
+      jobCommitter.saveTableSchema(createTaskContext(0), tableName, schema);
+      fs.create(new Path(new Path(stagingDirectory, tableName), "part-r-00000.avro")).close();
+    }
+
+    // the committer of the job has no table committer, the tables are the ones saved by the tasks
+    jobCommitter.abortJob(ctx, JobStatus.State.FAILED);
+
+    Assert.assertFalse(fs.exists(new Path(stagingDirectory, "table1")));
+    Assert.assertFalse(fs.exists(new Path(stagingDirectory, "table2")));
+    Assert.assertFalse(fs.exists(schemaDirectory));
+  }
+
   @Test
   public void testAbortJobCollectsExceptions() throws IOException, InterruptedException {
     committer.addCommitterAndSchema(c1, "table1", s1, ctx);
@@ -229,4 +312,48 @@ public class DelegatingMultiSinkOutputCommitterTest {
     Assert.assertTrue(exceptionMessages.contains(message));
     exceptionMessages.remove(message);
   }
+
+  @Test
+  public void testSavedTableSchemasMerged() throws IOException {
+    Schema firstTaskSchema = Schema.recordOf("record",
+                                             Schema.Field.of("id", Schema.of(Schema.Type.LONG)),
+                                             Schema.Field.of("name", Schema.of(Schema.Type.STRING)));
+    Schema secondTaskSchema = Schema.recordOf("other",
+                                              Schema.Field.of("id", Schema.nullableOf(Schema.of(Schema.Type.LONG))),
+                                              Schema.Field.of("score", Schema.of(Schema.Type.DOUBLE)));
+    DelegatingMultiSinkOutputCommitter schemaCommitter =
+      spy(new DelegatingMultiSinkOutputCommitter("project", "ds", "bucket", "path"));
+    doReturn(new Path(temporaryFolder.newFolder().toURI())).when(schemaCommitter).getSchemaDirectory();
+
+    // saved by the second task first, the merged schema doesn't depend on the order of the saves
+    schemaCommitter.saveTableSchema(createTaskContext(1), "table1", secondTaskSchema);
+    schemaCommitter.saveTableSchema(createTaskContext(0), "table1", firstTaskSchema);
+    schemaCommitter.saveTableSchema(createTaskContext(1), "table2", secondTaskSchema);
+
+    Schema expected = Schema.recordOf("record",
+                                      Schema.Field.of("id", Schema.nullableOf(Schema.of(Schema.Type.LONG))),
+                                      Schema.Field.of("name", Schema.nullableOf(Schema.of(Schema.Type.STRING))),
+                                      Schema.Field.of("score", Schema.nullableOf(Schema.of(Schema.Type.DOUBLE))));
+    Assert.assertEquals(ImmutableMap.of("table1", expected, "table2", secondTaskSchema),
+                        schemaCommitter.getSavedTableSchemas(ctx));
+  }
+
+  @Test
+  public void testMergeTableSchemasWithDifferentTypes() {
+    Schema longSchema = Schema.recordOf("record", Schema.Field.of("id", Schema.of(Schema.Type.LONG)));
+    Schema stringSchema = Schema.recordOf("record", Schema.Field.of("id", Schema.of(Schema.Type.STRING)));
+    try {
+      DelegatingMultiSinkOutputCommitter.mergeTableSchemas("table1", Arrays.asList(longSchema, stringSchema));
+      Assert.fail("Schemas with different field types should not be merged");
+    } catch (IOException e) {
+      Assert.assertTrue(e.getMessage().contains("'id'"));
+    }
+  }
+
+  private static TaskAttemptContext createTaskContext(int taskId) {
+    TaskAttemptContext taskContext = mock(TaskAttemptContext.class);
+    when(taskContext.getConfiguration()).thenReturn(new Configuration());
+    when(taskContext.getTaskAttemptID()).thenReturn(new TaskAttemptID("job", 1, TaskType.MAP, taskId, 0));
+    return taskContext;
+  }
 }
@@ -0,0 +1,167 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.gcp.bigquery.sink;
+
+import com.google.cloud.bigquery.DatasetId;
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.cdap.api.data.schema.Schema;
+import io.cdap.plugin.gcp.bigquery.util.BigQueryConstants;
+import io.cdap.plugin.gcp.gcs.sink.GCSBatchSink;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.RawLocalFileSystem;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.mapreduce.OutputCommitter;
+import org.apache.hadoop.mapreduce.RecordWriter;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Tests for {@link DelegatingMultiSinkRecordWriter}.
+ */
+public class DelegatingMultiSinkRecordWriterTest {
+
+  private static final Schema SCHEMA = Schema.recordOf(
+    "record",
+    Schema.Field.of("tablename", Schema.of(Schema.Type.STRING)),
+    Schema.Field.of("id", Schema.of(Schema.Type.LONG)));
+
+  private Configuration conf;
+  private TaskAttemptContext context;
+  private DelegatingMultiSinkOutputCommitter committer;
+  private DelegatingMultiSinkRecordWriter writer;
+  // Record Writers in creation order, with the part file name and schema they were created with
+  private List<RecordWriter<StructuredRecord, NullWritable>> delegates;
+  private List<String> partNames;
+  private List<Schema> schemas;
+
+  @Before
+  @SuppressWarnings("unchecked")
+  public void setUp() throws Exception {
+    conf = new Configuration();
+    conf.setInt(BigQueryConstants.CONFIG_MULTI_SINK_MAX_OPEN_WRITERS, 2);
+    // The output is configured on GCS paths, but nothing is written to them
+    conf.setClass("fs.gs.impl", FakeGcsFileSystem.class, FileSystem.class);
+    conf.setBoolean("fs.gs.impl.disable.cache", true);
+    context = Mockito.mock(TaskAttemptContext.class);
+    Mockito.when(context.getConfiguration()).thenReturn(conf);
+    committer = Mockito.mock(DelegatingMultiSinkOutputCommitter.class);
+    delegates = new ArrayList<>();
+    partNames = new ArrayList<>();
+    schemas = new ArrayList<>();
+
+    BigQueryOutputFormat outputFormat = Mockito.mock(BigQueryOutputFormat.class);
+    Mockito.when(outputFormat.getOutputCommitter(context)).thenReturn(Mockito.mock(OutputCommitter.class));
+    Mockito.when(outputFormat.getRecordWriter(Mockito.eq(context), Mockito.any(Schema.class))).thenAnswer(invocation -> {
+      Assert.assertEquals(conf.get(GCSBatchSink.COMMON_NAMED_OUTPUT), conf.get(GCSBatchSink.AVRO_NAMED_OUTPUT));
+      partNames.add(conf.get(GCSBatchSink.COMMON_NAMED_OUTPUT));
+      schemas.add(invocation.getArgument(1));
+      RecordWriter<StructuredRecord, NullWritable> delegate = Mockito.mock(RecordWriter.class);
+      delegates.add(delegate);
+      return delegate;
+    });
+
+    writer = Mockito.spy(new DelegatingMultiSinkRecordWriter(context, "tablename", "bucket", "path",
+                                                             DatasetId.of("project", "dataset"), committer));
+    Mockito.doReturn(outputFormat).when(writer).createOutputFormat();
+  }
+
+  @Test
+  public void testLeastRecentlyUsedWriterClosed() throws Exception {
+    write("a");
+    write("b");
+    write("a");
+    // b is the least recently used table
+    write("c");
+    write("a");
+    // c is the least recently used table
+    write("b");
+
+    // Only the writers of b and c were closed to make room for new writers
+    Assert.assertEquals(4, delegates.size());
+    Mockito.verify(delegates.get(0), Mockito.never()).close(Mockito.any());
+    Mockito.verify(delegates.get(1)).close(context);
+    Mockito.verify(delegates.get(2)).close(context);
+    Mockito.verify(delegates.get(3), Mockito.never()).close(Mockito.any());
+    Mockito.verify(delegates.get(0), Mockito.times(3)).write(Mockito.any(), Mockito.any());
+    Assert.assertEquals(4, partNames.size());
+    Assert.assertEquals("part-1", partNames.get(3));
+
+    // Every table is committed once, whatever its number of part files
+    Mockito.verify(committer).addCommitterAndSchema(Mockito.any(), Mockito.eq("a"), Mockito.eq(SCHEMA),
+                                                    Mockito.eq(context));
+    Mockito.verify(committer).addCommitterAndSchema(Mockito.any(), Mockito.eq("b"), Mockito.eq(SCHEMA),
+                                                    Mockito.eq(context));
+    Mockito.verify(committer).addCommitterAndSchema(Mockito.any(), Mockito.eq("c"), Mockito.eq(SCHEMA),
+                                                    Mockito.eq(context));
+
+    writer.close(context);
+    Mockito.verify(delegates.get(0)).close(context);
+    Mockito.verify(delegates.get(3)).close(context);
+    Mockito.verify(committer).commitTask(context);
+  }
+
+  @Test
+  public void testReopenedWriterKeepsTableSchema() throws Exception {
+    write("a");
+    write("b");
+    write("c");
+    Schema otherSchema = Schema.recordOf(
+      "other",
+      Schema.Field.of("tablename", Schema.of(Schema.Type.STRING)),
+      Schema.Field.of("name", Schema.of(Schema.Type.STRING)));
+    writer.write(StructuredRecord.builder(otherSchema).set("tablename", "a").set("name", "x").build(),
+                 NullWritable.get());
+
+    // The part files of a table are loaded together, so they must share the same schema
+    Assert.assertEquals(Arrays.asList("part-0", "part-0", "part-0", "part-1"), partNames);
+    Assert.assertEquals(Arrays.asList(SCHEMA, SCHEMA, SCHEMA, SCHEMA), schemas);
+  }
+
+  private void write(String tableName) throws Exception {
+    writer.write(StructuredRecord.builder(SCHEMA).set("tablename", tableName).set("id", 1L).build(),
+                 NullWritable.get());
+  }
+
+  /**
+   * File system accepting GCS paths, so that the output can be configured without GCS credentials.
+   */
+  public static class FakeGcsFileSystem extends RawLocalFileSystem {
+    private URI uri;
+
+    @Override
+    public void initialize(URI name, Configuration conf) throws IOException {
+      super.initialize(name, conf);
+      uri = URI.create(name.getScheme() + "://" + name.getAuthority());
+    }
+
+    @Override
+    public URI getUri() {
+      // Called by the constructor for the local working directory
+      return uri == null ? super.getUri() : uri;
+    }
+  }
+}
@@ -0,0 +1,244 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.gcp.bigquery.source;
+
+import com.google.api.gax.core.NoCredentialsProvider;
+import com.google.api.gax.grpc.GrpcTransportChannel;
+import com.google.api.gax.rpc.FixedTransportChannelProvider;
+import com.google.cloud.bigquery.storage.v1.AvroRows;
+import com.google.cloud.bigquery.storage.v1.AvroSchema;
+import com.google.cloud.bigquery.storage.v1.BigQueryReadClient;
+import com.google.cloud.bigquery.storage.v1.BigQueryReadGrpc;
+import com.google.cloud.bigquery.storage.v1.BigQueryReadSettings;
+import com.google.cloud.bigquery.storage.v1.CreateReadSessionRequest;
+import com.google.cloud.bigquery.storage.v1.ReadRowsRequest;
+import com.google.cloud.bigquery.storage.v1.ReadRowsResponse;
+import com.google.cloud.bigquery.storage.v1.ReadSession;
+import com.google.cloud.bigquery.storage.v1.ReadStream;
+import com.google.cloud.bigquery.storage.v1.StreamStats;
+import com.google.cloud.hadoop.io.bigquery.BigQueryConfiguration;
+import com.google.protobuf.ByteString;
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.plugin.gcp.bigquery.util.BigQueryConstants;
+import io.grpc.ManagedChannel;
+import io.grpc.Server;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.stub.StreamObserver;
+import org.apache.avro.LogicalTypes;
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaBuilder;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericDatumWriter;
+import org.apache.avro.io.BinaryEncoder;
+import org.apache.avro.io.EncoderFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.JobID;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.TaskAttemptID;
+import org.apache.hadoop.mapreduce.TaskType;
+import org.apache.hadoop.mapreduce.task.JobContextImpl;
+import org.apache.hadoop.mapreduce.task.TaskAttemptContextImpl;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests for {@link BigQueryStorageReadInputFormat}, against an in-process fake of the BigQuery read service.
+ */
+public class BigQueryStorageReadInputFormatTest {
+
+  private static final Schema AVRO_SCHEMA = SchemaBuilder.record("record").fields()
+    .requiredLong("id")
+    .optionalString("name")
+    .name("day").type(LogicalTypes.date().addToSchema(Schema.create(Schema.Type.INT))).noDefault()
+    .name("time").type(LogicalTypes.timeMicros().addToSchema(Schema.create(Schema.Type.LONG))).noDefault()
+    .endRecord();
+
+  private FakeBigQueryRead fakeService;
+  private Server server;
+  private ManagedChannel channel;
+  private BigQueryStorageReadInputFormat inputFormat;
+  private Configuration conf;
+
+  @Before
+  public void setUp() throws Exception {
+    String serverName = InProcessServerBuilder.generateName();
+    fakeService = new FakeBigQueryRead();
+    server = InProcessServerBuilder.forName(serverName).directExecutor().addService(fakeService).build().start();
+    channel = InProcessChannelBuilder.forName(serverName).directExecutor().build();
+    inputFormat = new BigQueryStorageReadInputFormat() {
+      @Override
+      BigQueryReadClient createReadClient(Configuration configuration) throws IOException {
+        return BigQueryReadClient.create(
+          BigQueryReadSettings.newBuilder()
+            .setTransportChannelProvider(FixedTransportChannelProvider.create(GrpcTransportChannel.create(channel)))
+            .setCredentialsProvider(NoCredentialsProvider.create())
+            .build());
+      }
+    };
+
+    conf = new Configuration();
+    BigQueryConfiguration.configureBigQueryInput(conf, "data-project", "dataset", "table");
+    conf.set(BigQueryConfiguration.PROJECT_ID_KEY, "project");
+  }
+
+  @After
+  public void tearDown() {
+    channel.shutdownNow();
+    server.shutdownNow();
+  }
+
+  @Test
+  public void testSplitsCreatedFromReadSession() throws Exception {
+    conf.setStrings(BigQueryConstants.CONFIG_SELECTED_FIELDS, "id", "name");
+    conf.set(BigQueryConstants.CONFIG_ROW_RESTRICTION, "id > 10");
+    fakeService.streams.put("stream-0", Collections.emptyList());
+    fakeService.streams.put("stream-1", Collections.emptyList());
+
+    List<InputSplit> splits = inputFormat.getSplits(new JobContextImpl(conf, new JobID()));
+
+    CreateReadSessionRequest request = fakeService.sessionRequests.get(0);
+    Assert.assertEquals("projects/project", request.getParent());
+    Assert.assertEquals("projects/data-project/datasets/dataset/tables/table", request.getReadSession().getTable());
+    Assert.assertEquals(Arrays.asList("id", "name"),
+                        request.getReadSession().getReadOptions().getSelectedFieldsList());
+    Assert.assertEquals("id > 10", request.getReadSession().getReadOptions().getRowRestriction());
+    Assert.assertEquals(2, splits.size());
+
+    // Splits have to survive the serialization to the tasks
+    BigQueryStorageReadInputFormat.StorageReadSplit split =
+      (BigQueryStorageReadInputFormat.StorageReadSplit) splits.get(1);
+    DataOutputBuffer out = new DataOutputBuffer();
+    split.write(out);
+    DataInputBuffer in = new DataInputBuffer();
+    in.reset(out.getData(), out.getLength());
+    BigQueryStorageReadInputFormat.StorageReadSplit copy = new BigQueryStorageReadInputFormat.StorageReadSplit();
+    copy.readFields(in);
+    Assert.assertEquals("stream-1", copy.getStreamName());
+    Assert.assertEquals(AVRO_SCHEMA, new Schema.Parser().parse(copy.getAvroSchema()));
+  }
+
+  @Test
+  public void testReadRecords() throws Exception {
+    LocalDate day = LocalDate.of(2022, 3, 14);
+    LocalTime time = LocalTime.of(15, 9, 26);
+    fakeService.streams.put("stream-0", Arrays.asList(
+      createResponse(0.5, createRow(1L, "a", day, time), createRow(2L, null, day, time)),
+      // Responses without rows must be skipped
+      createResponse(0.5),
+      createResponse(1.0, createRow(3L, "c", day, time))));
+
+    List<InputSplit> splits = inputFormat.getSplits(new JobContextImpl(conf, new JobID()));
+    Assert.assertEquals(1, splits.size());
+
+    TaskAttemptContextImpl context =
+      new TaskAttemptContextImpl(conf, new TaskAttemptID("job", 1, TaskType.MAP, 0, 0));
+    List<StructuredRecord> records = new ArrayList<>();
+    List<Long> keys = new ArrayList<>();
+    BigQueryAvroToStructuredTransformer transformer = new BigQueryAvroToStructuredTransformer();
+    try (RecordReader<LongWritable, GenericData.Record> reader =
+           inputFormat.createRecordReader(splits.get(0), context)) {
+      reader.initialize(splits.get(0), context);
+      while (reader.nextKeyValue()) {
+        keys.add(reader.getCurrentKey().get());
+        records.add(transformer.transform(reader.getCurrentValue()));
+      }
+      Assert.assertEquals(1.0f, reader.getProgress(), 0.0f);
+    }
+
+    Assert.assertEquals(Arrays.asList(0L, 1L, 2L), keys);
+    Assert.assertEquals(3, records.size());
+    Assert.assertEquals(Long.valueOf(1L), records.get(0).get("id"));
+    Assert.assertEquals("a", records.get(0).get("name"));
+    Assert.assertNull(records.get(1).get("name"));
+    Assert.assertEquals(Long.valueOf(3L), records.get(2).get("id"));
+    Assert.assertEquals(day, records.get(2).getDate("day"));
+    Assert.assertEquals(time, records.get(2).getTime("time"));
+    Assert.assertEquals(Collections.singletonList(
+      ReadRowsRequest.newBuilder().setReadStream("stream-0").build()), fakeService.readRequests);
+  }
+
+  private static GenericData.Record createRow(long id, String name, LocalDate day, LocalTime time) {
+    GenericData.Record row = new GenericData.Record(AVRO_SCHEMA);
+    row.put("id", id);
+    row.put("name", name);
+    row.put("day", (int) day.toEpochDay());
+    row.put("time", TimeUnit.NANOSECONDS.toMicros(time.toNanoOfDay()));
+    return row;
+  }
+
+  private static ReadRowsResponse createResponse(double progress, GenericData.Record... rows) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    BinaryEncoder encoder = EncoderFactory.get().binaryEncoder(out, null);
+    GenericDatumWriter<GenericData.Record> writer = new GenericDatumWriter<>(AVRO_SCHEMA);
+    for (GenericData.Record row : rows) {
+      writer.write(row, encoder);
+    }
+    encoder.flush();
+    return ReadRowsResponse.newBuilder()
+      .setAvroRows(AvroRows.newBuilder().setSerializedBinaryRows(ByteString.copyFrom(out.toByteArray())))
+      .setRowCount(rows.length)
+      .setStats(StreamStats.newBuilder().setProgress(StreamStats.Progress.newBuilder().setAtResponseEnd(progress)))
+      .build();
+  }
+
+  /**
+   * Fake read service that serves a fixed list of responses for every stream.
+   */
+  private static class FakeBigQueryRead extends BigQueryReadGrpc.BigQueryReadImplBase {
+    private final Map<String, List<ReadRowsResponse>> streams = new ConcurrentHashMap<>();
+    private final List<CreateReadSessionRequest> sessionRequests = new ArrayList<>();
+    private final List<ReadRowsRequest> readRequests = new ArrayList<>();
+
+    @Override
+    public void createReadSession(CreateReadSessionRequest request, StreamObserver<ReadSession> responseObserver) {
+      sessionRequests.add(request);
+      ReadSession.Builder session = ReadSession.newBuilder()
+        .setName("session")
+        .setTable(request.getReadSession().getTable())
+        .setAvroSchema(AvroSchema.newBuilder().setSchema(AVRO_SCHEMA.toString()));
+      streams.keySet().stream().sorted().forEach(name -> session.addStreams(ReadStream.newBuilder().setName(name)));
+      responseObserver.onNext(session.build());
+      responseObserver.onCompleted();
+    }
+
+    @Override
+    public void readRows(ReadRowsRequest request, StreamObserver<ReadRowsResponse> responseObserver) {
+      readRequests.add(request);
+      streams.get(request.getReadStream()).forEach(responseObserver::onNext);
+      responseObserver.onCompleted();
+    }
+  }
+}
@@ -0,0 +1,229 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.gcp.bigquery.util;
+
+import com.google.api.gax.paging.Page;
+import com.google.cloud.NoCredentials;
+import com.google.cloud.bigquery.BigQuery;
+import com.google.cloud.bigquery.BigQueryException;
+import com.google.cloud.bigquery.BigQueryOptions;
+import com.google.cloud.bigquery.Job;
+import com.google.cloud.bigquery.JobId;
+import com.google.cloud.bigquery.JobStatus;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Tests for {@link BigQueryJobWaiter}, against a fake BigQuery client with simulated job states.
+ */
+public class BigQueryJobWaiterTest {
+
+  private ScheduledExecutorService scheduler;
+  private BigQuery bigQuery;
+  // Number of status checks left before a job is done
+  private Map<String, AtomicInteger> runningPolls;
+  private AtomicInteger getCalls;
+  private AtomicInteger listCalls;
+
+  @Before
+  public void setUp() {
+    scheduler = Executors.newSingleThreadScheduledExecutor();
+    runningPolls = new ConcurrentHashMap<>();
+    getCalls = new AtomicInteger();
+    listCalls = new AtomicInteger();
+
+    bigQuery = Mockito.mock(BigQuery.class);
+    Mockito.when(bigQuery.getOptions()).thenReturn(BigQueryOptions.newBuilder()
+                                                     .setProjectId("project")
+                                                     .setCredentials(NoCredentials.getInstance())
+                                                     .build());
+    Mockito.when(bigQuery.getJob(Mockito.any(JobId.class))).thenAnswer(invocation -> {
+      getCalls.incrementAndGet();
+      JobId jobId = invocation.getArgument(0);
+      AtomicInteger polls = runningPolls.get(jobId.getJob());
+      if (polls == null) {
+        return null;
+      }
+      return createJob(jobId.getJob(), polls.getAndDecrement() > 0 ? JobStatus.State.RUNNING : JobStatus.State.DONE);
+    });
+    Mockito.when(bigQuery.listJobs(Mockito.any())).thenAnswer(invocation -> {
+      listCalls.incrementAndGet();
+      List<Job> running = new ArrayList<>();
+      runningPolls.forEach((name, polls) -> {
+        if (polls.getAndDecrement() > 0) {
+          running.add(createJob(name, JobStatus.State.RUNNING));
+        }
+      });
+      @SuppressWarnings("unchecked")
+      Page<Job> page = Mockito.mock(Page.class);
+      Mockito.when(page.iterateAll()).thenReturn(running);
+      return page;
+    });
+  }
+
+  @After
+  public void tearDown() {
+    scheduler.shutdownNow();
+  }
+
+  @Test
+  public void testSingleJobPolledUntilDone() throws Exception {
+    runningPolls.put("job", new AtomicInteger(2));
+    AtomicInteger progress = new AtomicInteger();
+    BigQueryJobWaiter waiter = new BigQueryJobWaiter(bigQuery, scheduler, 1L, 10L, TimeUnit.MINUTES.toMillis(1));
+
+    Job job = waiter.await(JobId.newBuilder().setProject("project").setJob("job").build(),
+                           progress::incrementAndGet);
+
+    Assert.assertEquals(JobStatus.State.DONE, job.getStatus().getState());
+    Assert.assertEquals(3, getCalls.get());
+    Assert.assertEquals(0, listCalls.get());
+    // Progress is reported for every status check of a running job
+    Assert.assertEquals(2, progress.get());
+  }
+
+  @Test
+  public void testRunningJobsListedTogether() throws Exception {
+    List<String> names = new ArrayList<>();
+    for (int i = 0; i < 10; i++) {
+      names.add("job-" + i);
+      runningPolls.put("job-" + i, new AtomicInteger(i < 5 ? 3 : 0));
+    }
+    BigQueryJobWaiter waiter = new BigQueryJobWaiter(bigQuery, scheduler, 50L, 50L, TimeUnit.MINUTES.toMillis(1));
+
+    // Hold the poll thread so that all the jobs are due in the same rounds
+    CompletableFuture<Void> blocker = new CompletableFuture<>();
+    scheduler.execute(blocker::join);
+    List<CompletableFuture<Job>> futures = names.stream()
+      .map(name -> waiter.waitFor(JobId.newBuilder().setProject("project").setJob(name).build(), null))
+      .collect(Collectors.toList());
+    blocker.complete(null);
+
+    for (int i = 0; i < futures.size(); i++) {
+      Job job = futures.get(i).get(1, TimeUnit.MINUTES);
+      Assert.assertEquals(names.get(i), job.getJobId().getJob());
+      Assert.assertEquals(JobStatus.State.DONE, job.getStatus().getState());
+    }
+    // Every round lists the jobs once, and only the jobs that are done are fetched
+    Assert.assertEquals(4, listCalls.get());
+    Assert.assertEquals(10, getCalls.get());
+  }
+
+  @Test
+  public void testMissingJob() throws Exception {
+    BigQueryJobWaiter waiter = new BigQueryJobWaiter(bigQuery, scheduler, 1L, 10L, TimeUnit.MINUTES.toMillis(1));
+    Assert.assertNull(waiter.await(JobId.of("project", "missing"), null));
+  }
+
+  @Test
+  public void testJobNotCompletedInTime() throws Exception {
+    runningPolls.put("job", new AtomicInteger(Integer.MAX_VALUE));
+    BigQueryJobWaiter waiter = new BigQueryJobWaiter(bigQuery, scheduler, 1L, 10L, 50L);
+    try {
+      waiter.await(JobId.of("project", "job"), null);
+      Assert.fail("Job should not complete");
+    } catch (IOException e) {
+      Assert.assertTrue(e.getMessage().startsWith("Job job failed to complete after"));
+    }
+  }
+
+  @Test
+  public void testStatusCheckFailure() throws Exception {
+    Mockito.doThrow(new BigQueryException(403, "denied")).when(bigQuery).getJob(Mockito.any(JobId.class));
+    BigQueryJobWaiter waiter = new BigQueryJobWaiter(bigQuery, scheduler, 1L, 10L, TimeUnit.MINUTES.toMillis(1));
+    try {
+      waiter.waitFor(JobId.of("project", "job"), null).get(1, TimeUnit.MINUTES);
+      Assert.fail("Status check should fail");
+    } catch (ExecutionException e) {
+      Assert.assertTrue(e.getCause() instanceof BigQueryException);
+    }
+  }
+
+  @Test
+  public void testShortJobCompletesQuickly() throws Exception {
+    runningPolls.put("job", new AtomicInteger(1));
+    BigQueryJobWaiter waiter = new BigQueryJobWaiter(bigQuery);
+
+    long startMillis = System.currentTimeMillis();
+    Job job = waiter.await(JobId.of("project", "job"), null);
+
+    // The job is polled again after about a second, rather than after the long intervals of the Hadoop connector
+    Assert.assertEquals(JobStatus.State.DONE, job.getStatus().getState());
+    Assert.assertTrue(System.currentTimeMillis() - startMillis < TimeUnit.SECONDS.toMillis(5));
+  }
+
+  @Test
+  public void testRoundsOfWaiterNotConcurrent() throws Exception {
+    ScheduledExecutorService pool = Executors.newScheduledThreadPool(4);
+    AtomicInteger inFlight = new AtomicInteger();
+    AtomicInteger maxInFlight = new AtomicInteger();
+    Mockito.when(bigQuery.getJob(Mockito.any(JobId.class))).thenAnswer(invocation -> {
+      maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+      try {
+        TimeUnit.MILLISECONDS.sleep(5);
+        JobId jobId = invocation.getArgument(0);
+        AtomicInteger polls = runningPolls.get(jobId.getJob());
+        return createJob(jobId.getJob(), polls.getAndDecrement() > 0 ? JobStatus.State.RUNNING : JobStatus.State.DONE);
+      } finally {
+        inFlight.decrementAndGet();
+      }
+    });
+
+    try {
+      BigQueryJobWaiter waiter = new BigQueryJobWaiter(bigQuery, pool, 1L, 5L, TimeUnit.MINUTES.toMillis(1));
+      List<CompletableFuture<Job>> futures = new ArrayList<>();
+      for (int i = 0; i < 20; i++) {
+        // Jobs in another project are fetched one by one, while rounds are running
+        runningPolls.put("job-" + i, new AtomicInteger(3));
+        futures.add(waiter.waitFor(JobId.of("other", "job-" + i), null));
+        TimeUnit.MILLISECONDS.sleep(2);
+      }
+
+      for (CompletableFuture<Job> future : futures) {
+        Assert.assertEquals(JobStatus.State.DONE, future.get(1, TimeUnit.MINUTES).getStatus().getState());
+      }
+      Assert.assertEquals(1, maxInFlight.get());
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+
+  private static Job createJob(String name, JobStatus.State state) {
+    JobStatus status = Mockito.mock(JobStatus.class);
+    Mockito.when(status.getState()).thenReturn(state);
+    Job job = Mockito.mock(Job.class);
+    Mockito.when(job.getJobId()).thenReturn(JobId.of("project", name));
+    Mockito.when(job.getStatus()).thenReturn(status);
+    return job;
+  }
+}
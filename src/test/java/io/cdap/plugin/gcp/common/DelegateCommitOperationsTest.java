@@ -0,0 +1,158 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.gcp.common;
+
+import com.google.common.collect.ImmutableMap;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.mapreduce.Counter;
+import org.apache.hadoop.mapreduce.Counters;
+import org.apache.hadoop.mapreduce.StatusReporter;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.TaskAttemptID;
+import org.apache.hadoop.mapreduce.task.TaskAttemptContextImpl;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests for {@link DelegateCommitOperations}.
+ */
+public class DelegateCommitOperationsTest {
+
+  private static final Map<String, String> DELEGATES = ImmutableMap.of("a", "a", "b", "b", "c", "c");
+
+  @Test
+  public void testDelegatesRunConcurrently() throws Exception {
+    CountDownLatch started = new CountDownLatch(DELEGATES.size());
+    Set<String> committed = ConcurrentHashMap.newKeySet();
+
+    DelegateCommitOperations.commit("commitTask", createContext(DELEGATES.size()), DELEGATES, (name, delegate) -> {
+      started.countDown();
+      try {
+        // every delegate waits for all the others to start
+        Assert.assertTrue(started.await(10, TimeUnit.SECONDS));
+      } catch (InterruptedException e) {
+        throw new IOException(e);
+      }
+      committed.add(name);
+    });
+
+    Assert.assertEquals(DELEGATES.keySet(), committed);
+  }
+
+  @Test
+  public void testCommitStopsAfterFailure() {
+    Set<String> committed = ConcurrentHashMap.newKeySet();
+
+    try {
+      DelegateCommitOperations.commit("commitJob", createContext(1), DELEGATES, (name, delegate) -> {
+        committed.add(name);
+        if ("a".equals(name)) {
+          throw new IOException("failed " + name);
+        }
+        try {
+          // leaves time to cancel the delegates that didn't start
+          TimeUnit.MILLISECONDS.sleep(500);
+        } catch (InterruptedException e) {
+          throw new IOException(e);
+        }
+      });
+      Assert.fail("Commit should fail");
+    } catch (IOException e) {
+      Assert.assertEquals("failed a", e.getMessage());
+      Assert.assertEquals(0, e.getSuppressed().length);
+    }
+    // with a single thread, the last delegate is not committed
+    Assert.assertTrue(committed.contains("a"));
+    Assert.assertFalse(committed.contains("c"));
+  }
+
+  @Test
+  public void testAbortRunsAllDelegates() {
+    Set<String> aborted = ConcurrentHashMap.newKeySet();
+
+    try {
+      DelegateCommitOperations.abort("abortJob", createContext(2), DELEGATES, (name, delegate) -> {
+        aborted.add(name);
+        if (!"b".equals(name)) {
+          throw new IllegalStateException("failed " + name);
+        }
+      });
+      Assert.fail("Abort should fail");
+    } catch (IOException e) {
+      // runtime failures are wrapped, and all the failures are reported
+      Assert.assertTrue(e.getCause() instanceof IllegalStateException);
+      Assert.assertEquals(1, e.getSuppressed().length);
+    }
+    Assert.assertEquals(DELEGATES.keySet(), aborted);
+  }
+
+  @Test
+  public void testDelegateDurationsCounted() throws Exception {
+    Counters counters = new Counters();
+    Configuration conf = new Configuration(false);
+    TaskAttemptContext context = new TaskAttemptContextImpl(conf, new TaskAttemptID(), new StatusReporter() {
+      @Override
+      public Counter getCounter(Enum<?> name) {
+        return counters.findCounter(name);
+      }
+
+      @Override
+      public Counter getCounter(String group, String name) {
+        return counters.findCounter(group, name);
+      }
+
+      @Override
+      public void progress() {
+        // no-op
+      }
+
+      @Override
+      public float getProgress() {
+        return 0;
+      }
+
+      @Override
+      public void setStatus(String status) {
+        // no-op
+      }
+    });
+
+    DelegateCommitOperations.commit("commitTask", context, DELEGATES, (name, delegate) -> { });
+    DelegateCommitOperations.commit("commitTask", context, ImmutableMap.of("d", "d"), (name, delegate) -> { });
+
+    // every delegate is counted in the range of its duration
+    Assert.assertEquals(4, counters.findCounter(DelegateCommitOperations.COUNTER_GROUP,
+                                                "commitTask delegates in 0-1 s").getValue());
+    Assert.assertEquals(4, counters.findCounter(DelegateCommitOperations.COUNTER_GROUP,
+                                                "commitTask delegates").getValue());
+    Assert.assertEquals(0, counters.findCounter(DelegateCommitOperations.COUNTER_GROUP,
+                                                "commitTask delegates in 1-10 s").getValue());
+  }
+
+  private static TaskAttemptContext createContext(int threads) {
+    Configuration conf = new Configuration(false);
+    conf.setInt(DelegateCommitOperations.CONFIG_THREADS, threads);
+    return new TaskAttemptContextImpl(conf, new TaskAttemptID());
+  }
+}
@@ -0,0 +1,214 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.gcp.crypto;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SeekableByteChannel;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Tests for {@link ReadAheadSeekableByteChannel}.
+ */
+public class ReadAheadSeekableByteChannelTest {
+
+  private static final byte[] CONTENT = new byte[10_000];
+  private static volatile int failuresOfNewChannels;
+
+  static {
+    new Random(0).nextBytes(CONTENT);
+  }
+
+  @Test
+  public void testSequentialRead() throws IOException {
+    List<InMemoryChannel> channels = new CopyOnWriteArrayList<>();
+    try (SeekableByteChannel channel = createChannel(channels, 1000, 4, 3)) {
+      Assert.assertEquals(CONTENT.length, channel.size());
+      Assert.assertArrayEquals(CONTENT, readAll(channel, 333));
+      Assert.assertEquals(-1, channel.read(ByteBuffer.allocate(10)));
+    }
+
+    // chunks are read ahead by at most one channel per thread, besides the given channel
+    Assert.assertTrue(channels.size() > 1 && channels.size() <= 4);
+    Assert.assertTrue(channels.stream().noneMatch(InMemoryChannel::isOpen));
+  }
+
+  @Test
+  public void testNoReadAheadForRandomReads() throws IOException {
+    List<InMemoryChannel> channels = new CopyOnWriteArrayList<>();
+    try (SeekableByteChannel channel = createChannel(channels, 1000, 4, 3)) {
+      channel.position(9000);
+      assertRead(channel, 9000, 800);
+      channel.position(10);
+      assertRead(channel, 10, 500);
+      channel.position(5000);
+      assertRead(channel, 5000, 999);
+    }
+
+    // reads shorter than a chunk go directly to the given channel
+    Assert.assertEquals(1, channels.size());
+  }
+
+  @Test
+  public void testSeek() throws IOException {
+    try (SeekableByteChannel channel = createChannel(new CopyOnWriteArrayList<>(), 1000, 2, 2)) {
+      // within the window
+      channel.position(1500);
+      assertRead(channel, 1500, 700);
+      channel.position(1200);
+      assertRead(channel, 1200, 100);
+
+      // outside of the window, forward and backward
+      channel.position(8999);
+      assertRead(channel, 8999, 1001);
+      channel.position(10);
+      assertRead(channel, 10, 2500);
+      Assert.assertEquals(2510, channel.position());
+
+      channel.position(CONTENT.length + 10);
+      Assert.assertEquals(-1, channel.read(ByteBuffer.allocate(10)));
+    }
+  }
+
+  @Test
+  public void testReadFailure() throws IOException {
+    List<InMemoryChannel> channels = new CopyOnWriteArrayList<>();
+    try (SeekableByteChannel channel = createChannel(channels, 1000, 1, 1)) {
+      assertRead(channel, 0, 999);
+      // the first channel reading ahead fails
+      failuresOfNewChannels = 1;
+      try {
+        assertRead(channel, 999, 1000);
+        Assert.fail("Read should fail");
+      } catch (IOException e) {
+        Assert.assertEquals("failed read", e.getMessage());
+      }
+      // the failed channel is closed, and the chunk is read again from a new one
+      Assert.assertFalse(channels.get(1).isOpen());
+      assertRead(channel, (int) channel.position(), 3000);
+      Assert.assertEquals(3, channels.size());
+    }
+  }
+
+  @Test(expected = ClosedChannelException.class)
+  public void testReadAfterClose() throws IOException {
+    SeekableByteChannel channel = createChannel(new CopyOnWriteArrayList<>(), 1000, 2, 2);
+    channel.close();
+    channel.read(ByteBuffer.allocate(10));
+  }
+
+  private static SeekableByteChannel createChannel(List<InMemoryChannel> channels, int chunkSize, int windowChunks,
+                                                   int threads) throws IOException {
+    InMemoryChannel first = new InMemoryChannel();
+    channels.add(first);
+    failuresOfNewChannels = 0;
+    return new ReadAheadSeekableByteChannel(first, () -> {
+      InMemoryChannel channel = new InMemoryChannel();
+      channel.failures = failuresOfNewChannels;
+      failuresOfNewChannels = 0;
+      channels.add(channel);
+      return channel;
+    }, chunkSize, windowChunks, threads);
+  }
+
+  private static void assertRead(SeekableByteChannel channel, int start, int length) throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(length);
+    while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+      // read until the buffer is full
+    }
+    byte[] expected = new byte[length];
+    System.arraycopy(CONTENT, start, expected, 0, length);
+    Assert.assertArrayEquals(expected, buffer.array());
+  }
+
+  private static byte[] readAll(SeekableByteChannel channel, int bufferSize) throws IOException {
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    ByteBuffer buffer = ByteBuffer.allocate(bufferSize);
+    while (channel.read(buffer) >= 0) {
+      os.write(buffer.array(), 0, buffer.position());
+      buffer.clear();
+    }
+    return os.toByteArray();
+  }
+
+  /**
+   * Channel over {@link #CONTENT}, that reads at most 64 bytes at a time like a decrypting channel.
+   */
+  private static final class InMemoryChannel implements SeekableByteChannel {
+    private long position;
+    private boolean open = true;
+    private volatile int failures;
+
+    @Override
+    public int read(ByteBuffer dst) throws IOException {
+      if (failures > 0) {
+        failures--;
+        throw new IOException("failed read");
+      }
+      if (position >= CONTENT.length) {
+        return -1;
+      }
+      int length = (int) Math.min(Math.min(64, dst.remaining()), CONTENT.length - position);
+      dst.put(CONTENT, (int) position, length);
+      position += length;
+      return length;
+    }
+
+    @Override
+    public int write(ByteBuffer src) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public long position() {
+      return position;
+    }
+
+    @Override
+    public SeekableByteChannel position(long newPosition) {
+      position = newPosition;
+      return this;
+    }
+
+    @Override
+    public long size() {
+      return CONTENT.length;
+    }
+
+    @Override
+    public SeekableByteChannel truncate(long size) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean isOpen() {
+      return open;
+    }
+
+    @Override
+    public void close() {
+      open = false;
+    }
+  }
+}
@@ -0,0 +1,246 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.gcp.gcs;
+
+import com.google.api.client.googleapis.json.GoogleJsonError;
+import com.google.api.services.storage.model.Bucket;
+import com.google.api.services.storage.model.StorageObject;
+import com.google.cloud.NoCredentials;
+import com.google.cloud.Tuple;
+import com.google.cloud.storage.Storage;
+import com.google.cloud.storage.StorageException;
+import com.google.cloud.storage.StorageOptions;
+import com.google.cloud.storage.spi.v1.RpcBatch;
+import com.google.cloud.storage.testing.StorageRpcTestBase;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * In-memory implementation of the storage RPCs used to copy, move and delete objects, in the spirit of the
+ * LocalStorageHelper of google-cloud-nio. Objects only have a size.
+ */
+public class FakeStorageRpc extends StorageRpcTestBase {
+
+  private final Map<String, NavigableMap<String, StorageObject>> buckets = new ConcurrentHashMap<>();
+  private final int pageSize;
+  private final long bytesRewrittenPerCall;
+  private final Set<String> failingObjects = ConcurrentHashMap.newKeySet();
+  private final AtomicInteger objectGets = new AtomicInteger();
+  private final AtomicInteger rewriteCalls = new AtomicInteger();
+  private final AtomicInteger singleDeletes = new AtomicInteger();
+  private final List<Integer> batchSizes = Collections.synchronizedList(new ArrayList<>());
+  private final List<String> listedPrefixes = Collections.synchronizedList(new ArrayList<>());
+  private final AtomicInteger listedEntries = new AtomicInteger();
+
+  /**
+   * @param pageSize maximum number of objects returned by a list call
+   * @param bytesRewrittenPerCall maximum number of bytes rewritten by a rewrite call
+   */
+  public FakeStorageRpc(int pageSize, long bytesRewrittenPerCall) {
+    this.pageSize = pageSize;
+    this.bytesRewrittenPerCall = bytesRewrittenPerCall;
+  }
+
+  public Storage createStorage() {
+    return StorageOptions.newBuilder()
+      .setProjectId("project")
+      .setCredentials(NoCredentials.getInstance())
+      .setServiceRpcFactory(options -> this)
+      .build()
+      .getService();
+  }
+
+  public void createBucket(String bucket) {
+    buckets.put(bucket, new ConcurrentSkipListMap<>());
+  }
+
+  public void putObject(String bucket, String name, long size) {
+    buckets.get(bucket).put(name, new StorageObject().setBucket(bucket).setName(name)
+      .setSize(BigInteger.valueOf(size)).setGeneration(System.nanoTime()));
+  }
+
+  public Set<String> getObjectNames(String bucket) {
+    return buckets.get(bucket).keySet();
+  }
+
+  /**
+   * Makes the rewrites of the given source object fail.
+   */
+  public void failRewrite(String name) {
+    failingObjects.add(name);
+  }
+
+  public int getObjectGets() {
+    return objectGets.get();
+  }
+
+  public int getRewriteCalls() {
+    return rewriteCalls.get();
+  }
+
+  public int getSingleDeletes() {
+    return singleDeletes.get();
+  }
+
+  public List<Integer> getBatchSizes() {
+    return batchSizes;
+  }
+
+  /**
+   * Returns the bucket and prefix of every listing, as 'bucket/prefix'.
+   */
+  public List<String> getListedPrefixes() {
+    return listedPrefixes;
+  }
+
+  /**
+   * Returns the number of objects and directories returned by all the listings.
+   */
+  public int getListedEntries() {
+    return listedEntries.get();
+  }
+
+  @Override
+  public Bucket get(Bucket bucket, Map<Option, ?> options) {
+    return buckets.containsKey(bucket.getName()) ? new Bucket().setName(bucket.getName()) : null;
+  }
+
+  @Override
+  public StorageObject get(StorageObject object, Map<Option, ?> options) {
+    objectGets.incrementAndGet();
+    NavigableMap<String, StorageObject> objects = buckets.get(object.getBucket());
+    return objects == null ? null : objects.get(object.getName());
+  }
+
+  @Override
+  public Tuple<String, Iterable<StorageObject>> list(String bucket, Map<Option, ?> options) {
+    String prefix = options.containsKey(Option.PREFIX) ? (String) options.get(Option.PREFIX) : "";
+    String delimiter = (String) options.get(Option.DELIMITER);
+    // like GCS, pages continue after the last entry of the previous page, whatever was modified in between
+    String pageToken = (String) options.get(Option.PAGE_TOKEN);
+    if (pageToken == null) {
+      listedPrefixes.add(bucket + "/" + prefix);
+    }
+    NavigableMap<String, StorageObject> objects = buckets.get(bucket);
+    List<StorageObject> page = new ArrayList<>();
+    String lastEntry = null;
+    for (StorageObject object : (pageToken == null ? objects.tailMap(prefix, true) :
+      objects.tailMap(pageToken, false)).values()) {
+      if (!object.getName().startsWith(prefix)) {
+        break;
+      }
+      int delimiterIndex = delimiter == null ? -1 : object.getName().indexOf(delimiter, prefix.length());
+      String entry = delimiterIndex < 0 ? object.getName() :
+        object.getName().substring(0, delimiterIndex + delimiter.length());
+      if (entry.equals(lastEntry) || (pageToken != null && entry.compareTo(pageToken) <= 0)) {
+        // other object of the same directory
+        continue;
+      }
+      if (page.size() == pageSize) {
+        listedEntries.addAndGet(page.size());
+        return Tuple.of(lastEntry, page);
+      }
+      page.add(delimiterIndex < 0 ? object :
+                 new StorageObject().set("isDirectory", true).setBucket(bucket).setName(entry)
+                   .setSize(BigInteger.ZERO));
+      lastEntry = entry;
+    }
+    listedEntries.addAndGet(page.size());
+    return Tuple.of(null, page);
+  }
+
+  @Override
+  public boolean delete(StorageObject object, Map<Option, ?> options) {
+    singleDeletes.incrementAndGet();
+    return buckets.get(object.getBucket()).remove(object.getName()) != null;
+  }
+
+  @Override
+  public RewriteResponse openRewrite(RewriteRequest rewriteRequest) {
+    return rewrite(rewriteRequest, 0L);
+  }
+
+  @Override
+  public RewriteResponse continueRewrite(RewriteResponse previousResponse) {
+    return rewrite(previousResponse.rewriteRequest, previousResponse.totalBytesRewritten);
+  }
+
+  private RewriteResponse rewrite(RewriteRequest request, long bytesRewritten) {
+    rewriteCalls.incrementAndGet();
+    StorageObject source = buckets.get(request.source.getBucket()).get(request.source.getName());
+    if (source == null) {
+      throw new StorageException(404, "Not Found");
+    }
+    if (failingObjects.contains(source.getName())) {
+      throw new StorageException(403, "Forbidden");
+    }
+    long size = source.getSize().longValue();
+    long totalBytesRewritten = Math.min(size, bytesRewritten + bytesRewrittenPerCall);
+    if (totalBytesRewritten < size) {
+      return new RewriteResponse(request, null, size, false, "token-" + totalBytesRewritten, totalBytesRewritten);
+    }
+    StorageObject target = new StorageObject().setBucket(request.target.getBucket())
+      .setName(request.target.getName()).setSize(source.getSize()).setGeneration(System.nanoTime());
+    buckets.get(target.getBucket()).put(target.getName(), target);
+    return new RewriteResponse(request, target, size, true, null, totalBytesRewritten);
+  }
+
+  @Override
+  public RpcBatch createBatch() {
+    return new RpcBatch() {
+      private final List<Runnable> requests = new ArrayList<>();
+
+      @Override
+      public void addDelete(StorageObject object, Callback<Void> callback, Map<Option, ?> options) {
+        requests.add(() -> {
+          if (buckets.get(object.getBucket()).remove(object.getName()) != null) {
+            callback.onSuccess(null);
+          } else {
+            GoogleJsonError error = new GoogleJsonError();
+            error.setCode(404);
+            callback.onFailure(error);
+          }
+        });
+      }
+
+      @Override
+      public void addPatch(StorageObject object, Callback<StorageObject> callback, Map<Option, ?> options) {
+        throw new UnsupportedOperationException();
+      }
+
+      @Override
+      public void addGet(StorageObject object, Callback<StorageObject> callback, Map<Option, ?> options) {
+        throw new UnsupportedOperationException();
+      }
+
+      @Override
+      public void submit() {
+        batchSizes.add(requests.size());
+        requests.forEach(Runnable::run);
+      }
+    };
+  }
+}
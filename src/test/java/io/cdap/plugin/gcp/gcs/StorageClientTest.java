@@ -17,14 +17,31 @@
 package io.cdap.plugin.gcp.gcs;
 
 import com.google.cloud.storage.BlobId;
+import com.google.cloud.storage.StorageException;
+import com.google.common.collect.ImmutableSet;
 import org.junit.Assert;
+import org.junit.Before;
 import org.junit.Test;
 
+import java.util.HashSet;
+import java.util.Set;
+
 /**
  * Tests for storage client
  */
 public class StorageClientTest {
 
+  private FakeStorageRpc storageRpc;
+  private StorageClient storageClient;
+
+  @Before
+  public void setUp() {
+    storageRpc = new FakeStorageRpc(7, 1024);
+    storageRpc.createBucket("b0");
+    storageRpc.createBucket("b1");
+    storageClient = new StorageClient(storageRpc.createStorage(), 4);
+  }
+
   @Test
   public void testAppend() {
     Assert.assertEquals("a/b/c", StorageClient.append("a/", "/b/c"));
@@ -67,4 +84,165 @@ public class StorageClientTest {
     Assert.assertEquals(BlobId.of("b0", "subdir/dir2/a/b/c"),
                         StorageClient.resolve("dir1/dir2", "dir1/dir2/a/b/c", GCSPath.from("b0/subdir/"), false));
   }
+
+  @Test
+  public void testRecursiveCopy() {
+    Set<String> expected = new HashSet<>();
+    for (int i = 0; i < 250; i++) {
+      storageRpc.putObject("b0", String.format("dir1/dir2/d%d/f%d", i % 5, i), 10);
+      expected.add(String.format("subdir/d%d/f%d", i % 5, i));
+    }
+    storageRpc.putObject("b0", "dir1/other", 10);
+
+    storageClient.copy(GCSPath.from("b0/dir1/dir2"), GCSPath.from("b1/subdir"), true, false);
+
+    Assert.assertEquals(expected, storageRpc.getObjectNames("b1"));
+    Assert.assertEquals(251, storageRpc.getObjectNames("b0").size());
+    // only the destination base is looked up, the existing destinations are listed
+    Assert.assertEquals(2, storageRpc.getObjectGets());
+  }
+
+  @Test
+  public void testNonRecursiveCopy() {
+    storageRpc.putObject("b0", "dir1/f1", 10);
+    storageRpc.putObject("b0", "dir1/f2", 10);
+    storageRpc.putObject("b0", "dir1/dir2/f3", 10);
+
+    storageClient.copy(GCSPath.from("b0/dir1/"), GCSPath.from("b1/subdir/"), false, true);
+
+    Assert.assertEquals(ImmutableSet.of("subdir/f1", "subdir/f2"), storageRpc.getObjectNames("b1"));
+  }
+
+  @Test
+  public void testMoveDeletesInBatches() {
+    for (int i = 0; i < 250; i++) {
+      storageRpc.putObject("b0", "dir1/f" + i, 10);
+    }
+
+    storageClient.move(GCSPath.from("b0/dir1"), GCSPath.from("b1/"), true, true);
+
+    Assert.assertTrue(storageRpc.getObjectNames("b0").isEmpty());
+    Assert.assertEquals(250, storageRpc.getObjectNames("b1").size());
+    Assert.assertEquals(250, storageRpc.getBatchSizes().stream().mapToInt(Integer::intValue).sum());
+    Assert.assertTrue(storageRpc.getBatchSizes().stream().allMatch(size -> size <= 100));
+    Assert.assertEquals(0, storageRpc.getSingleDeletes());
+  }
+
+  @Test
+  public void testLargeObjectRewrittenInChunks() {
+    storageRpc.putObject("b0", "large", 10 * 1024 + 1);
+
+    storageClient.copy(GCSPath.from("b0/large"), GCSPath.from("b1/copy"), false, false);
+
+    Assert.assertEquals(ImmutableSet.of("copy"), storageRpc.getObjectNames("b1"));
+    Assert.assertEquals(11, storageRpc.getRewriteCalls());
+  }
+
+  @Test
+  public void testExistingObjectNotOverwritten() {
+    storageRpc.putObject("b0", "dir1/f1", 10);
+    storageRpc.putObject("b0", "dir1/f2", 10);
+    storageRpc.putObject("b1", "subdir/", 0);
+    storageRpc.putObject("b1", "subdir/dir1/", 0);
+    storageRpc.putObject("b1", "subdir/dir1/f2", 10);
+
+    try {
+      storageClient.move(GCSPath.from("b0/dir1"), GCSPath.from("b1/subdir"), true, false);
+      Assert.fail("Move should fail");
+    } catch (IllegalArgumentException e) {
+      Assert.assertEquals("gs://b1/subdir/dir1/f2 already exists.", e.getMessage());
+    }
+    // nothing is moved
+    Assert.assertEquals(ImmutableSet.of("dir1/f1", "dir1/f2"), storageRpc.getObjectNames("b0"));
+    Assert.assertEquals(0, storageRpc.getRewriteCalls());
+
+    // empty placeholders can be overwritten
+    storageRpc.putObject("b1", "subdir/dir1/f2", 0);
+    storageClient.move(GCSPath.from("b0/dir1"), GCSPath.from("b1/subdir"), true, false);
+    Assert.assertTrue(storageRpc.getObjectNames("b0").isEmpty());
+  }
+
+  @Test
+  public void testCopyIntoSourceDirectory() {
+    for (int i = 0; i < 30; i++) {
+      storageRpc.putObject("b0", "dir/a" + i, 10);
+    }
+
+    // the copies are listed after the sources, they must not be copied again
+    storageClient.copy(GCSPath.from("b0/dir"), GCSPath.from("b0/dir/backup"), true, true);
+
+    Set<String> expected = new HashSet<>();
+    for (int i = 0; i < 30; i++) {
+      expected.add("dir/a" + i);
+      expected.add("dir/backup/a" + i);
+    }
+    Assert.assertEquals(expected, storageRpc.getObjectNames("b0"));
+  }
+
+  @Test
+  public void testOnlyDestinationsListed() {
+    storageRpc.putObject("b0", "dir1/f1", 10);
+    storageRpc.putObject("b1", "sub/", 0);
+    storageRpc.putObject("b1", "sub/f1", 10);
+    storageRpc.putObject("b1", "subdir/f1", 10);
+
+    storageClient.copy(GCSPath.from("b0/dir1"), GCSPath.from("b1/sub"), true, false);
+    Assert.assertEquals(ImmutableSet.of("sub/", "sub/f1", "subdir/f1", "sub/dir1/f1"),
+                        storageRpc.getObjectNames("b1"));
+    // the objects of the destination directory are listed, not all the objects that start with its name
+    Assert.assertTrue(storageRpc.getListedPrefixes().contains("b1/sub/dir1/"));
+    Assert.assertFalse(storageRpc.getListedPrefixes().contains("b1/sub"));
+
+    try {
+      storageClient.copy(GCSPath.from("b0/dir1/f1"), GCSPath.from("b1/sub"), false, false);
+      Assert.fail("Copy should fail");
+    } catch (IllegalArgumentException e) {
+      Assert.assertEquals("gs://b1/sub/f1 already exists.", e.getMessage());
+    }
+  }
+
+  @Test
+  public void testNonRecursiveCopyListsOnlyDestinationDirectory() {
+    storageRpc.putObject("b0", "dir1/f1", 10);
+    storageRpc.putObject("b0", "dir1/f2", 10);
+    storageRpc.putObject("b0", "dir1/sub/f3", 10);
+    storageRpc.putObject("b1", "subdir/", 0);
+    for (int i = 0; i < 100; i++) {
+      storageRpc.putObject("b1", "subdir/deep/f" + i, 10);
+    }
+
+    storageClient.copy(GCSPath.from("b0/dir1/"), GCSPath.from("b1/subdir/"), false, false);
+    Assert.assertTrue(storageRpc.getObjectNames("b1").containsAll(ImmutableSet.of("subdir/f1", "subdir/f2")));
+    Assert.assertFalse(storageRpc.getObjectNames("b1").contains("subdir/sub/f3"));
+    // the deep objects are returned as a single directory instead of being listed one by one
+    Assert.assertTrue(storageRpc.getListedEntries() < 10);
+
+    try {
+      storageClient.copy(GCSPath.from("b0/dir1/"), GCSPath.from("b1/subdir/"), false, false);
+      Assert.fail("Copy should fail");
+    } catch (IllegalArgumentException e) {
+      Assert.assertEquals("gs://b1/subdir/f1 already exists.", e.getMessage());
+    }
+  }
+
+  @Test
+  public void testCopyFailure() {
+    for (int i = 0; i < 50; i++) {
+      storageRpc.putObject("b0", "dir1/f" + i, 10);
+    }
+    storageRpc.failRewrite("dir1/f20");
+
+    try {
+      storageClient.move(GCSPath.from("b0/dir1"), GCSPath.from("b1/subdir"), true, true);
+      Assert.fail("Move should fail");
+    } catch (StorageException e) {
+      Assert.assertEquals(403, e.getCode());
+    }
+    // objects are only deleted once copied
+    Assert.assertTrue(storageRpc.getObjectNames("b0").contains("dir1/f20"));
+    for (int i = 0; i < 50; i++) {
+      Assert.assertTrue(storageRpc.getObjectNames("b0").contains("dir1/f" + i)
+                          || storageRpc.getObjectNames("b1").contains("subdir/f" + i));
+    }
+  }
 }
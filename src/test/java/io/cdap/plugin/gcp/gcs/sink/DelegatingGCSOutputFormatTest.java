@@ -0,0 +1,166 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.gcp.gcs.sink;
+
+import com.google.common.collect.ImmutableList;
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.cdap.api.data.schema.Schema;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.mapreduce.JobContext;
+import org.apache.hadoop.mapreduce.OutputCommitter;
+import org.apache.hadoop.mapreduce.OutputFormat;
+import org.apache.hadoop.mapreduce.RecordWriter;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.TaskAttemptID;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+import org.apache.hadoop.mapreduce.task.TaskAttemptContextImpl;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Tests for {@link DelegatingGCSOutputFormat}.
+ */
+public class DelegatingGCSOutputFormatTest {
+
+  private static final Schema SCHEMA = Schema.recordOf(
+    "record",
+    Schema.Field.of("tablename", Schema.of(Schema.Type.STRING)),
+    Schema.Field.of("id", Schema.of(Schema.Type.INT)));
+  private static final List<FakeRecordWriter> WRITERS = Collections.synchronizedList(new ArrayList<>());
+  private static final List<OutputCommitter> COMMITTERS = Collections.synchronizedList(new ArrayList<>());
+
+  @Before
+  public void setUp() {
+    WRITERS.clear();
+    COMMITTERS.clear();
+  }
+
+  @Test
+  public void testLeastRecentlyUsedWriterClosed() throws Exception {
+    TaskAttemptContext context = createContext(2);
+    RecordWriter<NullWritable, StructuredRecord> writer = new DelegatingGCSOutputFormat().getRecordWriter(context);
+
+    for (String partition : ImmutableList.of("a", "b", "a", "c", "a", "b", "c")) {
+      writer.write(NullWritable.get(), createRecord(partition));
+      Assert.assertTrue(WRITERS.stream().filter(fakeWriter -> !fakeWriter.closed).count() <= 2);
+    }
+    writer.close(context);
+
+    // b is closed when c is opened, then c when b is opened again, and b when c is opened again
+    Assert.assertEquals(5, WRITERS.size());
+    Assert.assertEquals(3, WRITERS.get(0).records.size());
+    Assert.assertTrue(WRITERS.stream().allMatch(fakeWriter -> fakeWriter.closed));
+
+    // reopened partitions write new files in their own directory
+    Assert.assertEquals("gs://bucket/dir/b/suffix", WRITERS.get(3).outputDir);
+    Assert.assertEquals("part-1", WRITERS.get(3).outputName);
+    Assert.assertEquals("gs://bucket/dir/c/suffix", WRITERS.get(4).outputDir);
+    Assert.assertEquals("part-1", WRITERS.get(4).outputName);
+    Assert.assertNull(WRITERS.get(2).outputName);
+
+    // every partition is committed once, whatever its number of files
+    Assert.assertEquals(3, COMMITTERS.size());
+    for (OutputCommitter committer : COMMITTERS) {
+      Mockito.verify(committer).setupTask(Mockito.any());
+      Mockito.verify(committer).commitTask(Mockito.any());
+      Mockito.verify(committer).commitJob(Mockito.any());
+    }
+  }
+
+  @Test
+  public void testClusteredPartitionsOpenedOnce() throws Exception {
+    TaskAttemptContext context = createContext(1);
+    RecordWriter<NullWritable, StructuredRecord> writer = new DelegatingGCSOutputFormat().getRecordWriter(context);
+
+    for (String partition : ImmutableList.of("a", "a", "b", "b", "b", "c")) {
+      writer.write(NullWritable.get(), createRecord(partition));
+    }
+    writer.close(context);
+
+    Assert.assertEquals(3, WRITERS.size());
+    Assert.assertEquals(ImmutableList.of(2, 3, 1),
+                        ImmutableList.of(WRITERS.get(0).records.size(), WRITERS.get(1).records.size(),
+                                         WRITERS.get(2).records.size()));
+    Assert.assertTrue(WRITERS.stream().allMatch(fakeWriter -> fakeWriter.outputName == null));
+  }
+
+  private static TaskAttemptContext createContext(int maxOpenWriters) {
+    Configuration hConf = new Configuration(false);
+    DelegatingGCSOutputFormat.configure(FakeOutputFormat.class.getName(), "tablename", "gs://bucket/dir", "suffix",
+                                        maxOpenWriters).forEach(hConf::set);
+    return new TaskAttemptContextImpl(hConf, new TaskAttemptID());
+  }
+
+  private static StructuredRecord createRecord(String tableName) {
+    return StructuredRecord.builder(SCHEMA).set("tablename", tableName).set("id", 0).build();
+  }
+
+  /**
+   * Output format that keeps the written records in memory.
+   */
+  public static class FakeOutputFormat extends OutputFormat<NullWritable, StructuredRecord> {
+
+    @Override
+    public RecordWriter<NullWritable, StructuredRecord> getRecordWriter(TaskAttemptContext context) {
+      FakeRecordWriter writer = new FakeRecordWriter(context.getConfiguration());
+      WRITERS.add(writer);
+      return writer;
+    }
+
+    @Override
+    public void checkOutputSpecs(JobContext context) {
+      // no-op
+    }
+
+    @Override
+    public OutputCommitter getOutputCommitter(TaskAttemptContext context) {
+      OutputCommitter committer = Mockito.mock(OutputCommitter.class);
+      COMMITTERS.add(committer);
+      return committer;
+    }
+  }
+
+  private static class FakeRecordWriter extends RecordWriter<NullWritable, StructuredRecord> {
+    private final String outputDir;
+    private final String outputName;
+    private final List<StructuredRecord> records;
+    private boolean closed;
+
+    private FakeRecordWriter(Configuration hConf) {
+      this.outputDir = hConf.get(FileOutputFormat.OUTDIR);
+      this.outputName = hConf.get(GCSBatchSink.COMMON_NAMED_OUTPUT);
+      this.records = new ArrayList<>();
+    }
+
+    @Override
+    public void write(NullWritable key, StructuredRecord record) {
+      records.add(record);
+    }
+
+    @Override
+    public void close(TaskAttemptContext context) {
+      closed = true;
+    }
+  }
+}
@@ -1,5 +1,7 @@
 package io.cdap.plugin.gcp.gcs.sink;
 
+import com.google.cloud.storage.Blob;
+import com.google.common.collect.ImmutableList;
 import io.cdap.cdap.api.data.format.StructuredRecord;
 import io.cdap.plugin.gcp.gcs.StorageClient;
 import org.apache.hadoop.conf.Configuration;
@@ -9,13 +11,19 @@ import org.apache.hadoop.mapreduce.JobContext;
 import org.apache.hadoop.mapreduce.JobStatus;
 import org.apache.hadoop.mapreduce.RecordWriter;
 import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.TaskAttemptID;
 import org.apache.hadoop.mapreduce.lib.output.FileOutputCommitter;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+import org.apache.hadoop.mapreduce.task.TaskAttemptContextImpl;
 import org.junit.Assert;
 import org.junit.Test;
 import org.mockito.Mockito;
 
 import java.io.IOException;
 import java.net.URISyntaxException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Consumer;
 
 /**
  * Tests for GCSOutputformatProvider
@@ -97,4 +105,66 @@ public class GCSOutputformatProviderTest {
     committerToTest.commitTask(mockContext);
     Mockito.verify(fileOutputCommitter, Mockito.times(1)).commitTask(mockContext);
   }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testGCSOutputCommitterManifest() throws IOException {
+    Configuration configuration = new Configuration(false);
+    configuration.set(FileOutputFormat.OUTDIR, "gs://bucket/output");
+    configuration.set(GCSOutputManifest.NAME, "_manifest-run.json");
+    FileOutputCommitter fileOutputCommitter = Mockito.mock(FileOutputCommitter.class);
+    GCSOutputCommitter committer = Mockito.spy(new GCSOutputCommitter(fileOutputCommitter));
+
+    // blobs created by the committer, by path
+    Map<String, byte[]> contents = new HashMap<>();
+    Map<String, Map<String, String>> metaData = new HashMap<>();
+    StorageClient storageClient = Mockito.mock(StorageClient.class);
+    Mockito.doAnswer(invocation -> {
+      contents.put(invocation.getArgument(0), invocation.getArgument(1));
+      metaData.put(invocation.getArgument(0), invocation.getArgument(2));
+      return null;
+    }).when(storageClient).createBlob(Mockito.anyString(), Mockito.any(), Mockito.any());
+    Mockito.doAnswer(invocation -> {
+      String prefix = invocation.getArgument(0);
+      metaData.forEach((path, blobMetaData) -> {
+        if (path.startsWith(prefix)) {
+          ((Consumer<Map<String, String>>) invocation.getArgument(1)).accept(blobMetaData);
+        }
+      });
+      return null;
+    }).when(storageClient).mapMetaDataForAllBlobs(Mockito.anyString(), Mockito.any());
+    Mockito.when(storageClient.readBlob(Mockito.anyString()))
+      .thenAnswer(invocation -> contents.get(invocation.<String>getArgument(0)));
+    Mockito.doReturn(storageClient).when(committer).getStorageClient(Mockito.any());
+
+    for (int task = 0; task < 2; task++) {
+      TaskAttemptID taskAttemptID = TaskAttemptID.forName(String.format("attempt_200707121733_0003_m_00000%d_0", task));
+      configuration.setLong(String.format(GCSOutputFormatProvider.RECORD_COUNT_FORMAT, taskAttemptID), 10 + task);
+      TaskAttemptContext context = new TaskAttemptContextImpl(configuration, taskAttemptID);
+      String taskAttemptPath = "output/_temporary/0/_temporary/" + context.getTaskAttemptID();
+      Mockito.when(fileOutputCommitter.getTaskAttemptPath(context)).thenReturn(new Path("gs://bucket/" +
+                                                                                         taskAttemptPath));
+      Blob blob = Mockito.mock(Blob.class, Mockito.RETURNS_DEEP_STUBS);
+      Mockito.when(blob.getName()).thenReturn(String.format("%s/part-m-0000%d.avro", taskAttemptPath, task));
+      Mockito.when(blob.getSize()).thenReturn(100L + task);
+      Mockito.when(storageClient.listBlobs(String.format("gs://bucket/%s/", taskAttemptPath)))
+        .thenReturn(ImmutableList.of(blob));
+
+      committer.commitTask(context);
+    }
+    committer.commitJob(new TaskAttemptContextImpl(configuration, new TaskAttemptID()));
+    Mockito.verify(fileOutputCommitter).commitJob(Mockito.any());
+
+    GCSOutputManifest manifest = GCSOutputManifest.read(storageClient, "gs://bucket/output/_manifest-run.json");
+    Assert.assertNotNull(manifest);
+    Assert.assertEquals(21L, manifest.getRecords());
+    Assert.assertEquals(2, manifest.getTasks().size());
+    for (GCSOutputManifest.TaskEntry taskEntry : manifest.getTasks()) {
+      Assert.assertEquals(1, taskEntry.getFiles().size());
+      GCSOutputManifest.FileEntry file = taskEntry.getFiles().get(0);
+      int task = (int) taskEntry.getRecords() - 10;
+      Assert.assertEquals(String.format("part-m-0000%d.avro", task), file.getName());
+      Assert.assertEquals(100L + task, file.getSize());
+    }
+  }
 }
@@ -0,0 +1,226 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.gcp.gcs.sink;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.cdap.api.data.schema.Schema;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.mapreduce.JobContext;
+import org.apache.hadoop.mapreduce.OutputCommitter;
+import org.apache.hadoop.mapreduce.OutputFormat;
+import org.apache.hadoop.mapreduce.RecordWriter;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.TaskAttemptID;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+import org.apache.hadoop.mapreduce.task.TaskAttemptContextImpl;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Tests for {@link RecordRouterOutputFormat}.
+ */
+public class RecordRouterOutputFormatTest {
+
+  private static final String CONFIG_KEY = "test.destination.config";
+  private static final Schema INPUT_SCHEMA = Schema.recordOf(
+    "input",
+    Schema.Field.of("tablename", Schema.nullableOf(Schema.of(Schema.Type.STRING))),
+    Schema.Field.of("id", Schema.of(Schema.Type.INT)),
+    Schema.Field.of("name", Schema.nullableOf(Schema.of(Schema.Type.STRING))));
+  private static final Schema OUTPUT_SCHEMA = Schema.recordOf(
+    "output",
+    Schema.Field.of("id", Schema.of(Schema.Type.INT)),
+    Schema.Field.of("name", Schema.nullableOf(Schema.of(Schema.Type.STRING))));
+  private static final List<FakeRecordWriter> WRITERS = Collections.synchronizedList(new ArrayList<>());
+  // Committers by output directory
+  private static final Map<String, OutputCommitter> COMMITTERS = new ConcurrentHashMap<>();
+
+  @Before
+  public void setUp() {
+    WRITERS.clear();
+    COMMITTERS.clear();
+  }
+
+  @Test
+  public void testRecordsRoutedToTheirDestination() throws Exception {
+    TaskAttemptContext context = createContext(ImmutableList.of("a", "b"), 10);
+    RecordWriter<NullWritable, StructuredRecord> writer = new RecordRouterOutputFormat().getRecordWriter(context);
+
+    writer.write(NullWritable.get(), createRecord("a", 1));
+    writer.write(NullWritable.get(), createRecord("B", 2));
+    writer.write(NullWritable.get(), createRecord("c", 3));
+    writer.write(NullWritable.get(), createRecord(null, 4));
+    writer.write(NullWritable.get(), createRecord("A", 5));
+    writer.close(context);
+
+    Assert.assertEquals(2, WRITERS.size());
+    FakeRecordWriter writerA = WRITERS.get(0);
+    Assert.assertEquals("gs://bucket/dir/a/suffix", writerA.outputDir);
+    Assert.assertEquals("config-a", writerA.config);
+    Assert.assertEquals(ImmutableList.of(createOutputRecord(1), createOutputRecord(5)), writerA.records);
+    FakeRecordWriter writerB = WRITERS.get(1);
+    Assert.assertEquals("gs://bucket/dir/b/suffix", writerB.outputDir);
+    Assert.assertEquals("config-b", writerB.config);
+    Assert.assertEquals(ImmutableList.of(createOutputRecord(2)), writerB.records);
+    Assert.assertTrue(writerA.closed && writerB.closed);
+    // the output is committed by the output committer, not by the tasks
+    Assert.assertTrue(COMMITTERS.isEmpty());
+  }
+
+  @Test
+  public void testAllDestinationsCommitted() throws Exception {
+    TaskAttemptContext context = createContext(ImmutableList.of("a", "b", "c"), 10);
+    RecordRouterOutputFormat outputFormat = new RecordRouterOutputFormat();
+    OutputCommitter outputCommitter = outputFormat.getOutputCommitter(context);
+    outputCommitter.setupJob(context);
+
+    RecordWriter<NullWritable, StructuredRecord> writer = outputFormat.getRecordWriter(context);
+    writer.write(NullWritable.get(), createRecord("a", 1));
+    writer.write(NullWritable.get(), createRecord("b", 2));
+    writer.close(context);
+    Assert.assertTrue(outputCommitter.needsTaskCommit(context));
+    outputCommitter.commitTask(context);
+    outputCommitter.commitJob(context);
+
+    Assert.assertSame(outputCommitter, outputFormat.getOutputCommitter(context));
+    Assert.assertEquals(ImmutableSet.of("gs://bucket/dir/a/suffix", "gs://bucket/dir/b/suffix",
+                                        "gs://bucket/dir/c/suffix"), COMMITTERS.keySet());
+    for (String destination : ImmutableList.of("a", "b", "c")) {
+      String outputDir = String.format("gs://bucket/dir/%s/suffix", destination);
+      OutputCommitter committer = COMMITTERS.get(outputDir);
+      Mockito.verify(committer).setupJob(Mockito.argThat(jobContext -> hasOutputDir(jobContext, outputDir)));
+      // every destination is committed with its own configuration, including the ones without records
+      Mockito.verify(committer).commitJob(Mockito.argThat(
+        jobContext -> hasOutputDir(jobContext, outputDir)
+          && ("config-" + destination).equals(jobContext.getConfiguration().get(CONFIG_KEY))));
+    }
+    Mockito.verify(COMMITTERS.get("gs://bucket/dir/a/suffix")).commitTask(Mockito.any());
+    Mockito.verify(COMMITTERS.get("gs://bucket/dir/b/suffix")).commitTask(Mockito.any());
+    Mockito.verify(COMMITTERS.get("gs://bucket/dir/c/suffix"), Mockito.never()).commitTask(Mockito.any());
+  }
+
+  @Test
+  public void testOpenWritersBounded() throws Exception {
+    TaskAttemptContext context = createContext(ImmutableList.of("a", "b", "c"), 2);
+    RecordWriter<NullWritable, StructuredRecord> writer = new RecordRouterOutputFormat().getRecordWriter(context);
+
+    for (String destination : ImmutableList.of("a", "b", "a", "c", "a", "b")) {
+      writer.write(NullWritable.get(), createRecord(destination, 0));
+      Assert.assertTrue(WRITERS.stream().filter(fakeWriter -> !fakeWriter.closed).count() <= 2);
+    }
+    writer.close(context);
+
+    // b was closed when c was opened, and is written to a new file
+    Assert.assertEquals(4, WRITERS.size());
+    Assert.assertEquals("gs://bucket/dir/b/suffix", WRITERS.get(3).outputDir);
+    Assert.assertEquals("part-1", WRITERS.get(3).outputName);
+    Assert.assertNull(WRITERS.get(1).outputName);
+    Assert.assertEquals(3, WRITERS.get(0).records.size());
+  }
+
+  private static TaskAttemptContext createContext(List<String> destinations, int maxOpenWriters) {
+    Configuration hConf = new Configuration(false);
+    RecordRouterOutputFormat.configure(FakeOutputFormat.class.getName(), "tablename", "gs://bucket/dir", "suffix",
+                                       destinations).forEach(hConf::set);
+    for (String destination : destinations) {
+      RecordRouterOutputFormat.configureDestination(destination, OUTPUT_SCHEMA,
+                                                    ImmutableMap.of(CONFIG_KEY, "config-" + destination))
+        .forEach(hConf::set);
+    }
+    hConf.setInt(RecordRouterOutputFormat.MAX_OPEN_WRITERS, maxOpenWriters);
+    return new TaskAttemptContextImpl(hConf, new TaskAttemptID());
+  }
+
+  private static boolean hasOutputDir(JobContext context, String outputDir) {
+    return outputDir.equals(context.getConfiguration().get(FileOutputFormat.OUTDIR));
+  }
+
+  private static StructuredRecord createRecord(String tableName, int id) {
+    return StructuredRecord.builder(INPUT_SCHEMA).set("tablename", tableName).set("id", id).set("name", "n").build();
+  }
+
+  private static StructuredRecord createOutputRecord(int id) {
+    return StructuredRecord.builder(OUTPUT_SCHEMA).set("id", id).set("name", "n").build();
+  }
+
+  /**
+   * Output format that keeps the written records in memory.
+   */
+  public static class FakeOutputFormat extends OutputFormat<NullWritable, StructuredRecord> {
+
+    @Override
+    public RecordWriter<NullWritable, StructuredRecord> getRecordWriter(TaskAttemptContext context) {
+      FakeRecordWriter writer = new FakeRecordWriter(context.getConfiguration());
+      WRITERS.add(writer);
+      return writer;
+    }
+
+    @Override
+    public void checkOutputSpecs(JobContext context) {
+      // no-op
+    }
+
+    @Override
+    public OutputCommitter getOutputCommitter(TaskAttemptContext context) throws IOException {
+      // only the destinations that were written have a task output
+      String outputDir = context.getConfiguration().get(FileOutputFormat.OUTDIR);
+      OutputCommitter committer = Mockito.mock(OutputCommitter.class);
+      Mockito.when(committer.needsTaskCommit(Mockito.any()))
+        .thenAnswer(invocation -> WRITERS.stream().anyMatch(writer -> outputDir.equals(writer.outputDir)));
+      COMMITTERS.put(outputDir, committer);
+      return committer;
+    }
+  }
+
+  private static class FakeRecordWriter extends RecordWriter<NullWritable, StructuredRecord> {
+    private final String outputDir;
+    private final String outputName;
+    private final String config;
+    private final List<StructuredRecord> records;
+    private boolean closed;
+
+    private FakeRecordWriter(Configuration hConf) {
+      this.outputDir = hConf.get(FileOutputFormat.OUTDIR);
+      this.outputName = hConf.get(GCSBatchSink.COMMON_NAMED_OUTPUT);
+      this.config = hConf.get(CONFIG_KEY);
+      this.records = new ArrayList<>();
+    }
+
+    @Override
+    public void write(NullWritable key, StructuredRecord record) {
+      records.add(record);
+    }
+
+    @Override
+    public void close(TaskAttemptContext context) {
+      closed = true;
+    }
+  }
+}
@@ -0,0 +1,225 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.gcp.gcs.source;
+
+import com.google.crypto.tink.Aead;
+import com.google.crypto.tink.JsonKeysetWriter;
+import com.google.crypto.tink.KeysetHandle;
+import com.google.crypto.tink.KmsClient;
+import com.google.crypto.tink.KmsClients;
+import com.google.crypto.tink.StreamingAead;
+import com.google.crypto.tink.config.TinkConfig;
+import com.google.crypto.tink.streamingaead.StreamingAeadKeyTemplates;
+import com.google.crypto.tink.subtle.AesGcmJce;
+import com.google.crypto.tink.subtle.Random;
+import io.cdap.plugin.gcp.crypto.ReadAheadSeekableByteChannel;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.json.JSONObject;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests for {@link TinkDecryptor}, with a local KMS.
+ */
+public class TinkDecryptorTest {
+
+  @ClassRule
+  public static final TemporaryFolder TEMP_FOLDER = new TemporaryFolder();
+
+  private static final String KMS_URI = "fake-kms://projects/p/locations/global/keyRings/r/cryptoKeys/k";
+  private static final String METADATA_SUFFIX = ".metadata";
+  private static final AtomicInteger KMS_DECRYPTS = new AtomicInteger();
+
+  private static Aead kek;
+
+  @BeforeClass
+  public static void setupClass() throws GeneralSecurityException {
+    TinkConfig.register();
+    kek = new AesGcmJce(Random.randBytes(16));
+    KmsClients.add(new FakeKmsClient());
+  }
+
+  @Before
+  public void setUp() {
+    TinkDecryptor.invalidateKeysetCache();
+    KMS_DECRYPTS.set(0);
+  }
+
+  @Test
+  public void testKeysetUnwrappedOncePerKeyset() throws Exception {
+    KeysetHandle keyset = KeysetHandle.generateNew(StreamingAeadKeyTemplates.AES128_GCM_HKDF_4KB);
+    File dir = TEMP_FOLDER.newFolder();
+    // the files share the same wrapped keyset
+    JSONObject wrappedKeyset = wrap(keyset);
+    Path first = writeEncrypted(dir, "first", keyset, wrappedKeyset, "first file");
+    Path second = writeEncrypted(dir, "second", keyset, wrappedKeyset, "second file");
+
+    TinkDecryptor decryptor = createDecryptor();
+    FileSystem fs = FileSystem.getLocal(new Configuration());
+    long hits = TinkDecryptor.getKeysetCacheStats().hitCount();
+
+    Assert.assertEquals("first file", read(decryptor.open(fs, first, 4096)));
+    Assert.assertEquals("second file", read(decryptor.open(fs, second, 4096)));
+    Assert.assertEquals("first file", read(createDecryptor().open(fs, first, 4096)));
+
+    Assert.assertEquals(1, KMS_DECRYPTS.get());
+    Assert.assertEquals(2, TinkDecryptor.getKeysetCacheStats().hitCount() - hits);
+    // the statistics of the decryptor are logged when its file system is closed
+    Assert.assertEquals(2, decryptor.getKeysetLookups());
+    Assert.assertEquals(1, decryptor.getKeysetUnwraps());
+    decryptor.close();
+  }
+
+  @Test
+  public void testKeysetsCachedSeparately() throws Exception {
+    File dir = TEMP_FOLDER.newFolder();
+    KeysetHandle firstKeyset = KeysetHandle.generateNew(StreamingAeadKeyTemplates.AES128_GCM_HKDF_4KB);
+    KeysetHandle secondKeyset = KeysetHandle.generateNew(StreamingAeadKeyTemplates.AES128_GCM_HKDF_4KB);
+    Path first = writeEncrypted(dir, "first", firstKeyset, wrap(firstKeyset), "first file");
+    Path second = writeEncrypted(dir, "second", secondKeyset, wrap(secondKeyset), "second file");
+
+    TinkDecryptor decryptor = createDecryptor();
+    FileSystem fs = FileSystem.getLocal(new Configuration());
+
+    Assert.assertEquals("first file", read(decryptor.open(fs, first, 4096)));
+    Assert.assertEquals("second file", read(decryptor.open(fs, second, 4096)));
+
+    Assert.assertEquals(2, KMS_DECRYPTS.get());
+  }
+
+  @Test
+  public void testReadAhead() throws Exception {
+    KeysetHandle keyset = KeysetHandle.generateNew(StreamingAeadKeyTemplates.AES128_GCM_HKDF_4KB);
+    StringBuilder content = new StringBuilder();
+    for (int i = 0; i < 10000; i++) {
+      content.append("line ").append(i).append('\n');
+    }
+    Path path = writeEncrypted(TEMP_FOLDER.newFolder(), "large", keyset, wrap(keyset), content.toString());
+
+    TinkDecryptor decryptor = createDecryptor();
+    FileSystem fs = FileSystem.getLocal(new Configuration());
+    ReadAheadSeekableByteChannel.ChannelOpener opener = decryptor.getChannelOpener(fs, path, 4096);
+    // the channels share the metadata read by the opener
+    Assert.assertTrue(fs.delete(new Path(path.getParent(), path.getName() + METADATA_SUFFIX), false));
+    // chunks are decrypted concurrently from channels positioned in the middle of the file
+    SeekableByteChannel channel = new ReadAheadSeekableByteChannel(opener.open(), opener, 10000, 4, 3);
+    Assert.assertEquals(content.toString(), read(channel));
+  }
+
+  private static TinkDecryptor createDecryptor() throws GeneralSecurityException {
+    Configuration conf = new Configuration(false);
+    TinkDecryptor.configure(METADATA_SUFFIX, new HashMap<>()).forEach(conf::set);
+    TinkDecryptor decryptor = new TinkDecryptor();
+    decryptor.setConf(conf);
+    return decryptor;
+  }
+
+  private static JSONObject wrap(KeysetHandle keyset) throws IOException, GeneralSecurityException {
+    ByteArrayOutputStream wrappedKeyset = new ByteArrayOutputStream();
+    keyset.write(JsonKeysetWriter.withOutputStream(wrappedKeyset), kek);
+    return new JSONObject(new String(wrappedKeyset.toByteArray(), StandardCharsets.UTF_8));
+  }
+
+  private static Path writeEncrypted(File dir, String name, KeysetHandle keyset, JSONObject wrappedKeyset,
+                                     String content) throws IOException, GeneralSecurityException {
+    byte[] aad = Random.randBytes(8);
+    File file = new File(dir, name);
+    StreamingAead streamingAead = keyset.getPrimitive(StreamingAead.class);
+    try (OutputStream os = streamingAead.newEncryptingStream(new FileOutputStream(file), aad)) {
+      os.write(content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    Map<String, Object> metadata = new HashMap<>();
+    metadata.put("kms", KMS_URI);
+    metadata.put("keyset", wrappedKeyset);
+    metadata.put("aad", Base64.getEncoder().encodeToString(aad));
+    try (OutputStream os = new FileOutputStream(new File(dir, name + METADATA_SUFFIX))) {
+      os.write(new JSONObject(metadata).toString().getBytes(StandardCharsets.UTF_8));
+    }
+    return new Path(file.toURI());
+  }
+
+  private static String read(SeekableByteChannel channel) throws IOException {
+    try (SeekableByteChannel ch = channel) {
+      ByteArrayOutputStream os = new ByteArrayOutputStream();
+      ByteBuffer buffer = ByteBuffer.allocate(1024);
+      while (ch.read(buffer) >= 0) {
+        buffer.flip();
+        os.write(buffer.array(), 0, buffer.limit());
+        buffer.clear();
+      }
+      return new String(os.toByteArray(), StandardCharsets.UTF_8);
+    }
+  }
+
+  /**
+   * KMS client of a local key, that counts the unwrapped keysets.
+   */
+  private static final class FakeKmsClient implements KmsClient {
+
+    @Override
+    public boolean doesSupport(String keyUri) {
+      return keyUri.startsWith("fake-kms://");
+    }
+
+    @Override
+    public KmsClient withCredentials(String credentialPath) {
+      return this;
+    }
+
+    @Override
+    public KmsClient withDefaultCredentials() {
+      return this;
+    }
+
+    @Override
+    public Aead getAead(String keyUri) {
+      return new Aead() {
+        @Override
+        public byte[] encrypt(byte[] plaintext, byte[] associatedData) throws GeneralSecurityException {
+          return kek.encrypt(plaintext, associatedData);
+        }
+
+        @Override
+        public byte[] decrypt(byte[] ciphertext, byte[] associatedData) throws GeneralSecurityException {
+          KMS_DECRYPTS.incrementAndGet();
+          return kek.decrypt(ciphertext, associatedData);
+        }
+      };
+    }
+  }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.gcp.publisher;
+
+import com.google.protobuf.ByteString;
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.cdap.api.data.schema.Schema;
+import io.cdap.cdap.format.StructuredRecordStringConverter;
+import io.cdap.plugin.format.avro.AvroToStructuredTransformer;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.io.DecoderFactory;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+
+/**
+ * Tests for {@link PubSubMessageEncoder}.
+ */
+public class PubSubMessageEncoderTest {
+
+  private static final Schema SCHEMA =
+    Schema.recordOf("record",
+                    Schema.Field.of("name", Schema.of(Schema.Type.STRING)),
+                    Schema.Field.of("count", Schema.nullableOf(Schema.of(Schema.Type.LONG))));
+  private static final Schema OTHER_SCHEMA =
+    Schema.recordOf("other",
+                    Schema.Field.of("flag", Schema.of(Schema.Type.BOOLEAN)));
+
+  @Test
+  public void testAvroEncoding() throws IOException {
+    PubSubMessageEncoder encoder = PubSubMessageEncoder.create(PubSubConstants.AVRO, null);
+
+    // the buffer and the binary encoder are reused across records and schemas
+    for (int i = 0; i < 3; i++) {
+      StructuredRecord record = createRecord("name" + i, i == 1 ? null : (long) i);
+      Assert.assertEquals(record, decodeAvro(encoder.encode(record), SCHEMA));
+
+      StructuredRecord other = StructuredRecord.builder(OTHER_SCHEMA).set("flag", i % 2 == 0).build();
+      Assert.assertEquals(other, decodeAvro(encoder.encode(other), OTHER_SCHEMA));
+    }
+  }
+
+  @Test
+  public void testJsonEncoding() throws IOException {
+    PubSubMessageEncoder encoder = PubSubMessageEncoder.create(PubSubConstants.JSON, null);
+
+    for (String name : new String[] {"first", "second é漢"}) {
+      StructuredRecord record = createRecord(name, 5L);
+      Assert.assertEquals(StructuredRecordStringConverter.toJsonString(record), encoder.encode(record).toStringUtf8());
+    }
+  }
+
+  @Test
+  public void testDelimitedEncoding() throws IOException {
+    StructuredRecord record = createRecord("name", 5L);
+
+    Assert.assertEquals("name,5", PubSubMessageEncoder.create(PubSubConstants.CSV, null)
+      .encode(record).toStringUtf8());
+    Assert.assertEquals("name\t5", PubSubMessageEncoder.create(PubSubConstants.TSV, null)
+      .encode(record).toStringUtf8());
+    Assert.assertEquals("name|5", PubSubMessageEncoder.create(PubSubConstants.DELIMITED, "|")
+      .encode(record).toStringUtf8());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testUnsupportedFormat() {
+    PubSubMessageEncoder.create("xml", null);
+  }
+
+  private static StructuredRecord createRecord(String name, Long count) {
+    return StructuredRecord.builder(SCHEMA).set("name", name).set("count", count).build();
+  }
+
+  private static StructuredRecord decodeAvro(ByteString data, Schema schema) throws IOException {
+    org.apache.avro.Schema avroSchema = new org.apache.avro.Schema.Parser().parse(schema.toString());
+    GenericRecord record = new GenericDatumReader<GenericRecord>(avroSchema)
+      .read(null, DecoderFactory.get().binaryDecoder(data.toByteArray(), null));
+    return new AvroToStructuredTransformer().transform(record, schema);
+  }
+}
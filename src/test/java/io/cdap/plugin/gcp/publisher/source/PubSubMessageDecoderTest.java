@@ -0,0 +1,124 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.gcp.publisher.source;
+
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.cdap.api.data.schema.Schema;
+import io.cdap.plugin.gcp.publisher.PubSubConstants;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericDatumWriter;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.io.BinaryEncoder;
+import org.apache.avro.io.EncoderFactory;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Tests for {@link PubSubMessageDecoder}.
+ */
+public class PubSubMessageDecoderTest {
+
+  private static final Schema MESSAGE_SCHEMA =
+    Schema.recordOf("payload",
+                    Schema.Field.of("name", Schema.of(Schema.Type.STRING)),
+                    Schema.Field.of("count", Schema.of(Schema.Type.LONG)));
+  private static final Schema OUTPUT_SCHEMA =
+    Schema.recordOf("event",
+                    Schema.Field.of("message", MESSAGE_SCHEMA),
+                    Schema.Field.of("id", Schema.of(Schema.Type.STRING)),
+                    Schema.Field.of("timestamp", Schema.of(Schema.LogicalType.TIMESTAMP_MICROS)),
+                    Schema.Field.of("attributes", Schema.mapOf(Schema.of(Schema.Type.STRING),
+                                                               Schema.of(Schema.Type.STRING))));
+
+  @Test
+  public void testDecodeAvroMessages() throws IOException {
+    PubSubMessageDecoder decoder = new PubSubMessageDecoder(OUTPUT_SCHEMA, PubSubConstants.AVRO, null);
+
+    // the reused binary decoder must not leak the content of a message to the next one
+    for (int i = 0; i < 3; i++) {
+      StructuredRecord record = decoder.decode(createMessage("id" + i, toAvro("name" + i, i),
+                                                             Collections.singletonMap("key", "value")));
+      StructuredRecord payload = record.get("message");
+      Assert.assertEquals("name" + i, payload.get("name"));
+      Assert.assertEquals((long) i, (long) payload.get("count"));
+      Assert.assertEquals("id" + i, record.get("id"));
+      Assert.assertEquals(Collections.singletonMap("key", "value"), record.get("attributes"));
+    }
+  }
+
+  @Test
+  public void testDecodeJsonMessage() throws IOException {
+    PubSubMessageDecoder decoder = new PubSubMessageDecoder(OUTPUT_SCHEMA, PubSubConstants.JSON, null);
+    Instant publishTime = Instant.ofEpochSecond(1000, 123000);
+
+    StructuredRecord record = decoder.decode(
+      new PubSubMessage("id", null, "ackId", "{\"name\":\"json\",\"count\":5}".getBytes(StandardCharsets.UTF_8),
+                        null, publishTime));
+
+    StructuredRecord payload = record.get("message");
+    Assert.assertEquals("json", payload.get("name"));
+    Assert.assertEquals(5L, (long) payload.get("count"));
+    Assert.assertEquals(publishTime, record.getTimestamp("timestamp").toInstant());
+    Assert.assertEquals(Collections.emptyMap(), record.get("attributes"));
+  }
+
+  @Test
+  public void testDecodeTextMessage() throws IOException {
+    Schema outputSchema =
+      Schema.recordOf("event",
+                      Schema.Field.of("message", Schema.of(Schema.Type.BYTES)),
+                      Schema.Field.of("id", Schema.of(Schema.Type.STRING)),
+                      Schema.Field.of("timestamp", Schema.of(Schema.LogicalType.TIMESTAMP_MICROS)),
+                      Schema.Field.of("attributes", Schema.mapOf(Schema.of(Schema.Type.STRING),
+                                                                 Schema.of(Schema.Type.STRING))));
+    PubSubMessageDecoder decoder = new PubSubMessageDecoder(outputSchema, PubSubConstants.TEXT, null);
+    byte[] data = "text".getBytes(StandardCharsets.UTF_8);
+    Map<String, String> attributes = new HashMap<>();
+    attributes.put("key", "value");
+
+    StructuredRecord record = decoder.decode(createMessage("id", data, attributes));
+
+    Assert.assertSame(data, record.get("message"));
+    // the attributes of received messages are serializable, and not copied again
+    Assert.assertSame(attributes, record.get("attributes"));
+  }
+
+  private static PubSubMessage createMessage(String id, byte[] data, Map<String, String> attributes) {
+    return new PubSubMessage(id, null, "ackId", data, attributes, Instant.now());
+  }
+
+  private static byte[] toAvro(String name, long count) throws IOException {
+    org.apache.avro.Schema avroSchema = new org.apache.avro.Schema.Parser().parse(MESSAGE_SCHEMA.toString());
+    GenericRecord record = new GenericData.Record(avroSchema);
+    record.put("name", name);
+    record.put("count", count);
+
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    BinaryEncoder encoder = EncoderFactory.get().binaryEncoder(os, null);
+    new GenericDatumWriter<GenericRecord>(avroSchema).write(record, encoder);
+    encoder.flush();
+    return os.toByteArray();
+  }
+}
@@ -9,6 +9,7 @@ import com.google.cloud.pubsub.v1.stub.SubscriberStubSettings;
 import com.google.protobuf.Empty;
 import com.google.protobuf.GeneratedMessageV3;
 import com.google.pubsub.v1.AcknowledgeRequest;
+import com.google.pubsub.v1.ModifyAckDeadlineRequest;
 import com.google.pubsub.v1.PullRequest;
 import com.google.pubsub.v1.PullResponse;
 import com.google.pubsub.v1.ReceivedMessage;
@@ -73,6 +74,8 @@ public class PubSubReceiverMessagePullingTest {
   @Mock
   UnaryCallable<AcknowledgeRequest, Empty> acknowledgeCallable;
   @Mock
+  UnaryCallable<ModifyAckDeadlineRequest, Empty> modifyAckDeadlineCallable;
+  @Mock
   PubSubReceiver.BackoffConfig backoffConfig;
   @Mock
   ScheduledThreadPoolExecutor executor;
@@ -82,6 +85,8 @@ public class PubSubReceiverMessagePullingTest {
   ArgumentCaptor<PullRequest> pullRequestArgumentCaptor;
   @Captor
   ArgumentCaptor<AcknowledgeRequest> acknowledgeRequestArgumentCaptor;
+  @Captor
+  ArgumentCaptor<ModifyAckDeadlineRequest> modifyAckDeadlineRequestArgumentCaptor;
 
   PubSubReceiver receiver;
 
@@ -101,6 +106,7 @@ public class PubSubReceiverMessagePullingTest {
     doReturn(subscriber).when(receiver).buildSubscriberClient();
     when(subscriber.pullCallable()).thenReturn(pullCallable);
     when(subscriber.acknowledgeCallable()).thenReturn(acknowledgeCallable);
+    when(subscriber.modifyAckDeadlineCallable()).thenReturn(modifyAckDeadlineCallable);
 
     when(backoffConfig.getInitialBackoffMs()).thenReturn(100);
     when(backoffConfig.getBackoffFactor()).thenReturn(2.0);
@@ -110,8 +116,12 @@ public class PubSubReceiverMessagePullingTest {
   }
 
   public void configureReceiver(boolean autoAcknowledge) {
+    configureReceiver(autoAcknowledge, AckMode.IMMEDIATE);
+  }
+
+  public void configureReceiver(boolean autoAcknowledge, AckMode ackMode) {
     receiver = new PubSubReceiver("my-project", "my-topic", "my-subscription", credentials,
-                                  autoAcknowledge, level, backoffConfig, executor, subscriber, tokenBucket);
+                                  autoAcknowledge, level, backoffConfig, executor, subscriber, tokenBucket, ackMode);
     receiver = spy(receiver);
 
     //Set up receiver status
@@ -137,6 +147,20 @@ public class PubSubReceiverMessagePullingTest {
       .scheduleWithFixedDelay(any(), eq(100L), eq(100L), eq(TimeUnit.MILLISECONDS));
   }
 
+  @Test
+  public void testScheduleFetchSchedulesBatchedAcknowledgements() throws IOException {
+    configureReceiver(true, AckMode.BATCHED);
+
+    receiver.scheduleTasks();
+
+    verify(executor, times(1))
+      .scheduleWithFixedDelay(any(), eq(100L), eq(100L), eq(TimeUnit.MILLISECONDS));
+    verify(executor, times(1))
+      .scheduleWithFixedDelay(any(), eq(500L), eq(500L), eq(TimeUnit.MILLISECONDS));
+    verify(executor, times(1))
+      .scheduleWithFixedDelay(any(), eq(5L), eq(5L), eq(TimeUnit.SECONDS));
+  }
+
   @Test
   public void testScheduleFetchDoesntScheduleTasksWhenReceiverIsStopped() throws IOException {
     doReturn(true).when(receiver).isStopped();
@@ -270,6 +294,92 @@ public class PubSubReceiverMessagePullingTest {
     Assert.assertEquals(pullRequest.getMaxMessages(), 12345);
   }
 
+  @Test
+  public void testFetchAndAckWithBatchedAcknowledgements() throws IOException {
+    configureReceiver(true, AckMode.BATCHED);
+
+    when(pullCallable.call(any()))
+      .thenReturn(PullResponse.newBuilder().addReceivedMessages(getReceivedMessage("a"))
+                    .addReceivedMessages(getReceivedMessage("b")).buildPartial())
+      .thenReturn(PullResponse.newBuilder().addReceivedMessages(getReceivedMessage("c")).buildPartial());
+
+    receiver.fetchAndAck();
+    receiver.fetchAndAck();
+
+    verify(receiver, times(2)).store(any(Iterator.class));
+    verify(acknowledgeCallable, times(0)).call(any());
+
+    //The stored messages are acknowledged with a single request.
+    receiver.acknowledgePendingMessages();
+    receiver.acknowledgePendingMessages();
+
+    verify(acknowledgeCallable, times(1)).call(acknowledgeRequestArgumentCaptor.capture());
+    Assert.assertEquals(Arrays.asList("a", "b", "c"), acknowledgeRequestArgumentCaptor.getValue().getAckIdsList());
+
+    //Acknowledged messages don't have their ack deadline extended.
+    receiver.extendAckDeadlines();
+    verify(modifyAckDeadlineCallable, times(0)).call(any());
+  }
+
+  @Test
+  public void testFetchAndAckWithBatchedAcknowledgementsExtendsAckDeadlines() throws IOException {
+    configureReceiver(true, AckMode.BATCHED);
+    doAnswer(invocationOnMock -> {
+      receiver.extendAckDeadlines();
+      return null;
+    }).when(receiver).store(any(Iterator.class));
+
+    when(pullCallable.call(any()))
+      .thenReturn(PullResponse.newBuilder().addReceivedMessages(getReceivedMessage("a")).buildPartial());
+
+    receiver.fetchAndAck();
+
+    //The ack deadline is extended while the messages are stored.
+    verify(modifyAckDeadlineCallable, times(1)).call(modifyAckDeadlineRequestArgumentCaptor.capture());
+    ModifyAckDeadlineRequest request = modifyAckDeadlineRequestArgumentCaptor.getValue();
+    Assert.assertEquals(Collections.singletonList("a"), request.getAckIdsList());
+    Assert.assertEquals(60, request.getAckDeadlineSeconds());
+  }
+
+  @Test
+  public void testFetchAndAckWithBatchedAcknowledgementsStoreFailure() throws IOException {
+    configureReceiver(true, AckMode.BATCHED);
+    doThrow(new IllegalStateException("Block could not be stored")).when(receiver).store(any(Iterator.class));
+
+    when(pullCallable.call(any()))
+      .thenReturn(PullResponse.newBuilder().addReceivedMessages(getReceivedMessage("a")).buildPartial());
+
+    try {
+      receiver.fetchAndAck();
+      Assert.fail("Expected the store failure to be thrown");
+    } catch (IllegalStateException e) {
+      // expected
+    }
+
+    //The messages that failed to be stored are neither acknowledged nor extended, so that they are redelivered.
+    receiver.acknowledgePendingMessages();
+    receiver.extendAckDeadlines();
+    verify(acknowledgeCallable, times(0)).call(any());
+    verify(modifyAckDeadlineCallable, times(0)).call(any());
+  }
+
+  @Test
+  public void testBatchedAcknowledgementsRetriedOnRetryableApiException() throws IOException {
+    configureReceiver(true, AckMode.BATCHED);
+
+    when(pullCallable.call(any()))
+      .thenReturn(PullResponse.newBuilder().addReceivedMessages(getReceivedMessage("a")).buildPartial());
+    when(apiException.isRetryable()).thenReturn(true);
+    when(acknowledgeCallable.call(any())).thenThrow(apiException).thenReturn(Empty.getDefaultInstance());
+
+    receiver.fetchAndAck();
+    receiver.acknowledgePendingMessages();
+    receiver.acknowledgePendingMessages();
+
+    verify(acknowledgeCallable, times(2)).call(acknowledgeRequestArgumentCaptor.capture());
+    Assert.assertEquals(Collections.singletonList("a"), acknowledgeRequestArgumentCaptor.getValue().getAckIdsList());
+  }
+
   @Test
   public void testFetchAndAckReturnsNoNewMessages() throws IOException {
     //Set up messages list
@@ -0,0 +1,322 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.gcp.publisher.source;
+
+import com.google.api.gax.core.NoCredentialsProvider;
+import com.google.api.gax.grpc.GrpcTransportChannel;
+import com.google.api.gax.rpc.FixedTransportChannelProvider;
+import com.google.cloud.pubsub.v1.MessageReceiver;
+import com.google.cloud.pubsub.v1.Subscriber;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.Empty;
+import com.google.protobuf.Message;
+import com.google.pubsub.v1.AcknowledgeRequest;
+import com.google.pubsub.v1.ModifyAckDeadlineRequest;
+import com.google.pubsub.v1.PubsubMessage;
+import com.google.pubsub.v1.ReceivedMessage;
+import com.google.pubsub.v1.StreamingPullRequest;
+import com.google.pubsub.v1.StreamingPullResponse;
+import io.grpc.ManagedChannel;
+import io.grpc.MethodDescriptor;
+import io.grpc.Server;
+import io.grpc.ServerServiceDefinition;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.protobuf.ProtoUtils;
+import io.grpc.stub.ServerCalls;
+import io.grpc.stub.StreamObserver;
+import org.apache.spark.storage.StorageLevel;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import java.util.function.LongSupplier;
+import java.util.stream.Collectors;
+
+/**
+ * Tests for the streaming pull method of {@link PubSubReceiver}, against an in-process Pub/Sub subscriber service.
+ */
+public class PubSubReceiverStreamingPullTest {
+
+  private static final String SUBSCRIPTION = "projects/my-project/subscriptions/my-subscription";
+
+  private FakeSubscriberService service;
+  private Server server;
+  private ManagedChannel channel;
+  private ScheduledThreadPoolExecutor executor;
+  private final AtomicBoolean stopped = new AtomicBoolean();
+  private final AtomicLong rateLimit = new AtomicLong(Long.MAX_VALUE);
+  private final List<PubSubMessage> stored = new CopyOnWriteArrayList<>();
+
+  @Before
+  public void setUp() throws Exception {
+    String name = InProcessServerBuilder.generateName();
+    service = new FakeSubscriberService();
+    server = InProcessServerBuilder.forName(name).directExecutor().addService(service.definition()).build().start();
+    channel = InProcessChannelBuilder.forName(name).usePlaintext().build();
+    executor = new ScheduledThreadPoolExecutor(3);
+    stopped.set(false);
+    rateLimit.set(Long.MAX_VALUE);
+    stored.clear();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    executor.shutdownNow();
+    channel.shutdownNow().awaitTermination(10, TimeUnit.SECONDS);
+    server.shutdownNow().awaitTermination(10, TimeUnit.SECONDS);
+  }
+
+  @Test
+  public void testMessagesStoredAndAcknowledged() throws Exception {
+    service.publish(20);
+    PubSubReceiver receiver = createReceiver(true, 1000);
+
+    receiver.startStreamingPull();
+    waitFor(() -> service.acknowledged.size() == 20);
+
+    Assert.assertEquals(20, stored.size());
+    for (int i = 0; i < 20; i++) {
+      Assert.assertTrue(service.acknowledged.contains("ack-" + i));
+    }
+    PubSubMessage message = stored.stream().filter(m -> "id-3".equals(m.getMessageId())).findFirst().get();
+    Assert.assertEquals("message 3", new String(message.getData(), StandardCharsets.UTF_8));
+    Assert.assertEquals("3", message.getAttributes().get("index"));
+    Assert.assertEquals(SUBSCRIPTION, service.subscriptions.iterator().next());
+
+    stop(receiver);
+  }
+
+  @Test
+  public void testStoredMessagesNotRedeliveredWithoutAutoAcknowledge() throws Exception {
+    service.publish(12);
+    PubSubReceiver receiver = createReceiver(false, 1000);
+
+    receiver.startStreamingPull();
+    waitFor(() -> stored.size() == 12);
+    // nacked messages would be redelivered and stored again right away
+    TimeUnit.MILLISECONDS.sleep(500);
+
+    Assert.assertEquals(12, stored.size());
+    Assert.assertTrue(service.nacked.isEmpty());
+    Assert.assertTrue(service.acknowledged.isEmpty());
+
+    stop(receiver);
+  }
+
+  @Test
+  public void testRateLimit() throws Exception {
+    service.publish(12);
+    AtomicInteger rateUpdates = new AtomicInteger();
+    // 5 messages in the first second, then none until the limit is lifted
+    PubSubReceiver receiver = createReceiver(true, 1000, () -> rateUpdates.getAndIncrement() == 0 ?
+      5 : rateLimit.get());
+    rateLimit.set(0);
+
+    receiver.startStreamingPull();
+    waitFor(() -> stored.size() == 5);
+    TimeUnit.MILLISECONDS.sleep(500);
+    Assert.assertEquals(5, stored.size());
+
+    rateLimit.set(Long.MAX_VALUE);
+    waitFor(() -> service.acknowledged.size() == 12);
+    Assert.assertEquals(12, stored.size());
+
+    stop(receiver);
+  }
+
+  private PubSubReceiver createReceiver(boolean autoAcknowledge, long maxOutstandingMessages) {
+    return createReceiver(autoAcknowledge, maxOutstandingMessages, rateLimit::get);
+  }
+
+  private PubSubReceiver createReceiver(boolean autoAcknowledge, long maxOutstandingMessages,
+                                        LongSupplier rateLimitSupplier) {
+    return new PubSubReceiver("my-project", SUBSCRIPTION, null, autoAcknowledge, StorageLevel.MEMORY_ONLY(),
+                              executor, new AtomicInteger(), maxOutstandingMessages, 100L * 1024 * 1024) {
+      @Override
+      public boolean isStopped() {
+        return stopped.get();
+      }
+
+      @Override
+      public void store(Iterator<PubSubMessage> dataIterator) {
+        dataIterator.forEachRemaining(stored::add);
+      }
+
+      @Override
+      public void restart(String message, Throwable error) {
+        stopped.set(true);
+      }
+
+      @Override
+      protected long getCurrentRateLimit() {
+        return rateLimitSupplier.getAsLong();
+      }
+
+      @Override
+      protected Subscriber.Builder buildStreamingSubscriber(MessageReceiver messageReceiver) {
+        return super.buildStreamingSubscriber(messageReceiver)
+          .setChannelProvider(FixedTransportChannelProvider.create(GrpcTransportChannel.create(channel)))
+          .setCredentialsProvider(NoCredentialsProvider.create());
+      }
+    };
+  }
+
+  private void stop(PubSubReceiver receiver) throws InterruptedException {
+    stopped.set(true);
+    executor.shutdown();
+    executor.awaitTermination(10, TimeUnit.SECONDS);
+    receiver.stopStreamingPull();
+  }
+
+  private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(20);
+    while (!condition.getAsBoolean()) {
+      if (System.currentTimeMillis() > deadline) {
+        Assert.fail("Condition not met in time");
+      }
+      TimeUnit.MILLISECONDS.sleep(10);
+    }
+  }
+
+  /**
+   * Subscriber service that sends all the published messages on the first streaming pull stream, and records the
+   * acknowledgements and nacks. Nacked messages are redelivered right away on that stream, as Pub/Sub does.
+   */
+  private static final class FakeSubscriberService {
+    private static final String SERVICE_NAME = "google.pubsub.v1.Subscriber";
+
+    private final List<ReceivedMessage> published = new ArrayList<>();
+    private final Set<String> subscriptions = ConcurrentHashMap.newKeySet();
+    private final Set<String> acknowledged = ConcurrentHashMap.newKeySet();
+    // Ack ids whose deadline was set to 0, which are sent in other requests than the deadline extensions
+    private final Set<String> nacked = ConcurrentHashMap.newKeySet();
+    private StreamObserver<StreamingPullResponse> stream;
+
+    void publish(int count) {
+      for (int i = 0; i < count; i++) {
+        published.add(ReceivedMessage.newBuilder()
+                        .setAckId("ack-" + i)
+                        .setMessage(PubsubMessage.newBuilder()
+                                      .setMessageId("id-" + i)
+                                      .setData(ByteString.copyFromUtf8("message " + i))
+                                      .putAttributes("index", String.valueOf(i)))
+                        .build());
+      }
+    }
+
+    ServerServiceDefinition definition() {
+      return ServerServiceDefinition.builder(SERVICE_NAME)
+        .addMethod(method("StreamingPull", MethodDescriptor.MethodType.BIDI_STREAMING,
+                          StreamingPullRequest.getDefaultInstance(), StreamingPullResponse.getDefaultInstance()),
+                   ServerCalls.asyncBidiStreamingCall(this::streamingPull))
+        .addMethod(method("Acknowledge", MethodDescriptor.MethodType.UNARY,
+                          AcknowledgeRequest.getDefaultInstance(), Empty.getDefaultInstance()),
+                   ServerCalls.asyncUnaryCall((request, observer) -> {
+                     acknowledged.addAll(request.getAckIdsList());
+                     complete(observer);
+                   }))
+        .addMethod(method("ModifyAckDeadline", MethodDescriptor.MethodType.UNARY,
+                          ModifyAckDeadlineRequest.getDefaultInstance(), Empty.getDefaultInstance()),
+                   ServerCalls.asyncUnaryCall((request, observer) -> {
+                     if (request.getAckDeadlineSeconds() == 0) {
+                       nack(request.getAckIdsList());
+                     }
+                     complete(observer);
+                   }))
+        .build();
+    }
+
+    private StreamObserver<StreamingPullRequest> streamingPull(StreamObserver<StreamingPullResponse> responses) {
+      return new StreamObserver<StreamingPullRequest>() {
+        @Override
+        public void onNext(StreamingPullRequest request) {
+          if (!request.getSubscription().isEmpty()) {
+            subscriptions.add(request.getSubscription());
+          }
+          acknowledged.addAll(request.getAckIdsList());
+          List<String> nackedAckIds = new ArrayList<>();
+          for (int i = 0; i < request.getModifyDeadlineAckIdsCount(); i++) {
+            if (request.getModifyDeadlineSeconds(i) == 0) {
+              nackedAckIds.add(request.getModifyDeadlineAckIds(i));
+            }
+          }
+          nack(nackedAckIds);
+          if (!request.getSubscription().isEmpty()) {
+            open(responses);
+          }
+        }
+
+        @Override
+        public void onError(Throwable t) {
+          // the client closed the stream
+        }
+
+        @Override
+        public void onCompleted() {
+          responses.onCompleted();
+        }
+      };
+    }
+
+    private synchronized void open(StreamObserver<StreamingPullResponse> responses) {
+      if (stream == null) {
+        stream = responses;
+        stream.onNext(StreamingPullResponse.newBuilder().addAllReceivedMessages(published).build());
+      }
+    }
+
+    private synchronized void nack(List<String> ackIds) {
+      nacked.addAll(ackIds);
+      List<ReceivedMessage> redelivered = published.stream()
+        .filter(message -> ackIds.contains(message.getAckId()))
+        .collect(Collectors.toList());
+      if (stream != null && !redelivered.isEmpty()) {
+        stream.onNext(StreamingPullResponse.newBuilder().addAllReceivedMessages(redelivered).build());
+      }
+    }
+
+    private static void complete(StreamObserver<Empty> observer) {
+      observer.onNext(Empty.getDefaultInstance());
+      observer.onCompleted();
+    }
+
+    private static <Q extends Message, R extends Message>
+    MethodDescriptor<Q, R> method(String name, MethodDescriptor.MethodType type, Q request, R response) {
+      return MethodDescriptor.<Q, R>newBuilder()
+        .setType(type)
+        .setFullMethodName(MethodDescriptor.generateFullMethodName(SERVICE_NAME, name))
+        .setRequestMarshaller(ProtoUtils.marshaller(request))
+        .setResponseMarshaller(ProtoUtils.marshaller(response))
+        .build();
+    }
+  }
+}
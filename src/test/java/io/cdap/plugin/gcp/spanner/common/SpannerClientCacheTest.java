@@ -0,0 +1,117 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.gcp.spanner.common;
+
+import com.google.cloud.spanner.SessionPoolOptions;
+import com.google.cloud.spanner.Spanner;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests for {@link SpannerClientCache}.
+ */
+public class SpannerClientCacheTest {
+
+  private final List<Spanner> created = new CopyOnWriteArrayList<>();
+
+  @Test
+  public void testSharedServices() throws IOException {
+    SpannerClientCache cache = createCache(TimeUnit.MINUTES.toMillis(1));
+    SessionPoolOptions sessionPoolOptions = SessionPoolOptions.newBuilder().setMinSessions(1).build();
+
+    SpannerClientCache.Lease first = cache.lease("account", false, "project", null);
+    SpannerClientCache.Lease second = cache.lease("account", false, "project", null);
+    Assert.assertSame(first.getSpanner(), second.getSpanner());
+
+    // services differ by credentials, project and session pool options
+    Assert.assertNotSame(first.getSpanner(), cache.lease("other", false, "project", null).getSpanner());
+    Assert.assertNotSame(first.getSpanner(), cache.lease(null, true, "project", null).getSpanner());
+    Assert.assertNotSame(first.getSpanner(), cache.lease("account", false, "other", null).getSpanner());
+    SpannerClientCache.Lease pooled = cache.lease("account", false, "project", sessionPoolOptions);
+    Assert.assertNotSame(first.getSpanner(), pooled.getSpanner());
+    Assert.assertSame(pooled.getSpanner(), cache.lease("account", false, "project",
+                                                       SessionPoolOptions.newBuilder().setMinSessions(1).build())
+      .getSpanner());
+
+    Assert.assertEquals(5, created.size());
+    Assert.assertEquals(5, cache.size());
+  }
+
+  @Test
+  public void testIdleServicesClosed() throws Exception {
+    SpannerClientCache cache = createCache(100);
+    SpannerClientCache.Lease first = cache.lease("account", false, "project", null);
+    SpannerClientCache.Lease second = cache.lease("account", false, "project", null);
+    Spanner spanner = first.getSpanner();
+
+    // closing a lease more than once releases the service once
+    first.close();
+    first.close();
+    TimeUnit.MILLISECONDS.sleep(300);
+    Assert.assertEquals(1, cache.size());
+    Mockito.verify(spanner, Mockito.never()).close();
+
+    second.close();
+    waitForSize(cache, 0);
+    // the service is closed once it was removed
+    Mockito.verify(spanner, Mockito.timeout(TimeUnit.SECONDS.toMillis(10))).close();
+
+    // a new service is created once the idle one was closed
+    Assert.assertNotSame(spanner, cache.lease("account", false, "project", null).getSpanner());
+  }
+
+  @Test
+  public void testServiceLeasedAgainBeforeIdleTimeout() throws Exception {
+    SpannerClientCache cache = createCache(200);
+    SpannerClientCache.Lease lease = cache.lease("account", false, "project", null);
+    Spanner spanner = lease.getSpanner();
+    lease.close();
+
+    SpannerClientCache.Lease next = cache.lease("account", false, "project", null);
+    Assert.assertSame(spanner, next.getSpanner());
+    TimeUnit.MILLISECONDS.sleep(400);
+    Assert.assertEquals(1, cache.size());
+    Mockito.verify(spanner, Mockito.never()).close();
+
+    next.close();
+    waitForSize(cache, 0);
+    // the service is closed once it was removed
+    Mockito.verify(spanner, Mockito.timeout(TimeUnit.SECONDS.toMillis(10))).close();
+  }
+
+  private SpannerClientCache createCache(long idleTimeoutMillis) {
+    return new SpannerClientCache(key -> {
+      Spanner spanner = Mockito.mock(Spanner.class);
+      created.add(spanner);
+      return spanner;
+    }, idleTimeoutMillis);
+  }
+
+  private static void waitForSize(SpannerClientCache cache, int size) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(10);
+    while (cache.size() != size && System.currentTimeMillis() < deadline) {
+      TimeUnit.MILLISECONDS.sleep(10);
+    }
+    Assert.assertEquals(size, cache.size());
+  }
+}
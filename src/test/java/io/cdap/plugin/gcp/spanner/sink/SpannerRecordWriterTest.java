@@ -0,0 +1,213 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.gcp.spanner.sink;
+
+import com.google.api.core.SettableApiFuture;
+import com.google.cloud.spanner.AsyncRunner;
+import com.google.cloud.spanner.DatabaseClient;
+import com.google.cloud.spanner.ErrorCode;
+import com.google.cloud.spanner.Mutation;
+import com.google.cloud.spanner.SpannerException;
+import com.google.cloud.spanner.SpannerExceptionFactory;
+import com.google.cloud.spanner.TransactionContext;
+import com.google.common.base.Strings;
+import io.cdap.plugin.gcp.spanner.common.BytesCounter;
+import io.cdap.plugin.gcp.spanner.common.SpannerUtil;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.mapreduce.Counter;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormatCounter;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests for {@link SpannerOutputFormat.SpannerRecordWriter}.
+ */
+public class SpannerRecordWriterTest {
+
+  private final List<SettableApiFuture<Void>> commits = new CopyOnWriteArrayList<>();
+  private final List<List<Mutation>> batches = new CopyOnWriteArrayList<>();
+  private volatile boolean completeCommits;
+  private Closeable spannerLease;
+  private DatabaseClient client;
+  private TaskAttemptContext context;
+
+  @Before
+  @SuppressWarnings("unchecked")
+  public void setUp() {
+    spannerLease = Mockito.mock(Closeable.class);
+    client = Mockito.mock(DatabaseClient.class);
+    context = Mockito.mock(TaskAttemptContext.class);
+    Mockito.when(context.getCounter(FileOutputFormatCounter.BYTES_WRITTEN)).thenReturn(Mockito.mock(Counter.class));
+
+    // every commit runs the work, and completes when its future is set
+    Mockito.when(client.runAsync()).thenAnswer(runAsync -> {
+      AsyncRunner runner = Mockito.mock(AsyncRunner.class);
+      Mockito.when(runner.runAsync(Mockito.any(), Mockito.any())).thenAnswer(invocation -> {
+        TransactionContext transaction = Mockito.mock(TransactionContext.class);
+        Mockito.doAnswer(buffer -> batches.add(new ArrayList<>((List<Mutation>) buffer.getArgument(0))))
+          .when(transaction).buffer(Mockito.<Iterable<Mutation>>any());
+        invocation.<AsyncRunner.AsyncWork<Void>>getArgument(0).doWorkAsync(transaction);
+        SettableApiFuture<Void> commit = SettableApiFuture.create();
+        if (completeCommits) {
+          commit.set(null);
+        }
+        commits.add(commit);
+        return commit;
+      });
+      return runner;
+    });
+  }
+
+  @Test
+  public void testCommitsInFlight() throws Exception {
+    SpannerOutputFormat.SpannerRecordWriter writer = createWriter(2, 2);
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      CountDownLatch written = new CountDownLatch(1);
+      Future<?> writes = executor.submit(() -> {
+        for (int i = 0; i < 10; i++) {
+          writer.write(NullWritable.get(), createMutation(i, "value"));
+        }
+        written.countDown();
+        writer.close(context);
+        return null;
+      });
+
+      // the third batch waits for a commit to complete, and the last one is committed on close
+      waitForCommits(2);
+      Assert.assertFalse(written.await(100, TimeUnit.MILLISECONDS));
+      Assert.assertEquals(2, commits.size());
+
+      commits.get(0).set(null);
+      Assert.assertTrue(written.await(10, TimeUnit.SECONDS));
+      waitForCommits(3);
+      commits.get(1).set(null);
+      commits.get(2).set(null);
+      waitForCommits(4);
+      commits.get(3).set(null);
+      writes.get(10, TimeUnit.SECONDS);
+    } finally {
+      executor.shutdownNow();
+    }
+
+    Assert.assertEquals(4, batches.size());
+    Assert.assertEquals(3, batches.get(0).size());
+    Assert.assertEquals(1, batches.get(3).size());
+    Assert.assertEquals(9L, batches.get(3).get(0).asMap().get("id").getInt64());
+    Mockito.verify(spannerLease).close();
+  }
+
+  @Test
+  public void testBatchesWithinCommitLimits() throws Exception {
+    SpannerOutputFormat.SpannerRecordWriter writer = createWriter(1000, 1);
+    String value = Strings.repeat("a", 1024 * 1024);
+    completeCommits = true;
+
+    for (int i = 0; i < 9; i++) {
+      writer.write(NullWritable.get(), createMutation(i, value));
+    }
+    writer.close(context);
+
+    // batches are committed before their data exceeds the size limit
+    Assert.assertEquals(3, batches.size());
+    for (List<Mutation> batch : batches) {
+      Assert.assertEquals(3, batch.size());
+    }
+  }
+
+  @Test
+  public void testCommitFailure() throws Exception {
+    SpannerOutputFormat.SpannerRecordWriter writer = createWriter(0, 2);
+
+    writer.write(NullWritable.get(), createMutation(0, "value"));
+    commits.get(0).setException(SpannerExceptionFactory.newSpannerException(ErrorCode.INTERNAL, "failed"));
+
+    try {
+      writer.write(NullWritable.get(), createMutation(1, "value"));
+      Assert.fail("Write should fail after a failed commit");
+    } catch (IOException e) {
+      Assert.assertEquals(ErrorCode.INTERNAL, ((SpannerException) e.getCause()).getErrorCode());
+    }
+  }
+
+  @Test
+  public void testCommitsInTaskContext() throws Exception {
+    // the transactions run on the executor of the writer, in the context that counts the bytes of the task
+    List<BytesCounter> counters = new CopyOnWriteArrayList<>();
+    List<Thread> threads = new CopyOnWriteArrayList<>();
+    Mockito.when(client.runAsync()).thenAnswer(runAsync -> {
+      AsyncRunner runner = Mockito.mock(AsyncRunner.class);
+      Mockito.when(runner.runAsync(Mockito.any(), Mockito.any())).thenAnswer(invocation -> {
+        SettableApiFuture<Void> commit = SettableApiFuture.create();
+        invocation.<Executor>getArgument(1).execute(() -> {
+          counters.add(SpannerUtil.WRITE_BYTES_COUNTER.get());
+          threads.add(Thread.currentThread());
+          commit.set(null);
+        });
+        return commit;
+      });
+      return runner;
+    });
+
+    BytesCounter counter = new BytesCounter();
+    SpannerOutputFormat.SpannerRecordWriter writer =
+      new SpannerOutputFormat.SpannerRecordWriter(spannerLease, client, 0, 2, counter);
+    for (int i = 0; i < 3; i++) {
+      writer.write(NullWritable.get(), createMutation(i, "value"));
+    }
+    writer.close(context);
+
+    Assert.assertEquals(3, counters.size());
+    for (int i = 0; i < 3; i++) {
+      Assert.assertSame(counter, counters.get(i));
+      Assert.assertNotSame(Thread.currentThread(), threads.get(i));
+    }
+    Assert.assertNull(SpannerUtil.WRITE_BYTES_COUNTER.get());
+  }
+
+  private SpannerOutputFormat.SpannerRecordWriter createWriter(int batchSize, int maxInFlightCommits) {
+    return new SpannerOutputFormat.SpannerRecordWriter(spannerLease, client, batchSize, maxInFlightCommits,
+                                                        new BytesCounter());
+  }
+
+  private void waitForCommits(int count) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(10);
+    while (commits.size() < count && System.currentTimeMillis() < deadline) {
+      TimeUnit.MILLISECONDS.sleep(10);
+    }
+    Assert.assertEquals(count, commits.size());
+  }
+
+  private static Mutation createMutation(long id, String value) {
+    return Mutation.newInsertOrUpdateBuilder("table").set("id").to(id).set("value").to(value).build();
+  }
+}
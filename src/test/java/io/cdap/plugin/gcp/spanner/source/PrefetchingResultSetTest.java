@@ -0,0 +1,159 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.gcp.spanner.source;
+
+import com.google.cloud.spanner.ErrorCode;
+import com.google.cloud.spanner.ForwardingResultSet;
+import com.google.cloud.spanner.ResultSet;
+import com.google.cloud.spanner.ResultSets;
+import com.google.cloud.spanner.SpannerException;
+import com.google.cloud.spanner.SpannerExceptionFactory;
+import com.google.cloud.spanner.Struct;
+import com.google.cloud.spanner.Type;
+import com.google.common.util.concurrent.Uninterruptibles;
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.cdap.api.data.schema.Schema;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests for {@link PrefetchingResultSet}.
+ */
+public class PrefetchingResultSetTest {
+  private static final Type TYPE = Type.struct(Type.StructField.of("id", Type.int64()),
+                                               Type.StructField.of("name", Type.string()));
+
+  @Test
+  public void testRowsInOrder() {
+    Schema schema = Schema.recordOf("record",
+                                    Schema.Field.of("id", Schema.of(Schema.Type.LONG)),
+                                    Schema.Field.of("name", Schema.nullableOf(Schema.of(Schema.Type.STRING))));
+    ResultSetToRecordTransformer transformer = new ResultSetToRecordTransformer(schema);
+
+    try (ResultSet resultSet = new PrefetchingResultSet(ResultSets.forRows(TYPE, createRows(50)), 4)) {
+      for (long i = 0; i < 50; i++) {
+        Assert.assertTrue(resultSet.next());
+        Assert.assertEquals(TYPE, resultSet.getType());
+        StructuredRecord record = transformer.transform(resultSet);
+        Assert.assertEquals(i, (long) record.get("id"));
+        Assert.assertEquals(i % 2 == 0 ? null : "name" + i, record.get("name"));
+      }
+      Assert.assertFalse(resultSet.next());
+      Assert.assertFalse(resultSet.next());
+    }
+  }
+
+  @Test
+  public void testFailure() {
+    ResultSet failing = new ForwardingResultSet(ResultSets.forRows(TYPE, createRows(3))) {
+      private int rows;
+
+      @Override
+      public boolean next() {
+        if (rows++ == 2) {
+          throw SpannerExceptionFactory.newSpannerException(ErrorCode.UNAVAILABLE, "failed");
+        }
+        return super.next();
+      }
+    };
+
+    try (ResultSet resultSet = new PrefetchingResultSet(failing, 10)) {
+      // rows read before the failure are returned first
+      Assert.assertTrue(resultSet.next());
+      Assert.assertTrue(resultSet.next());
+      try {
+        resultSet.next();
+        Assert.fail("Failure of the result set should be thrown");
+      } catch (SpannerException e) {
+        Assert.assertEquals(ErrorCode.UNAVAILABLE, e.getErrorCode());
+      }
+      Assert.assertFalse(resultSet.next());
+    }
+  }
+
+  @Test
+  public void testCloseStopsPrefetching() {
+    AtomicInteger fetched = new AtomicInteger();
+    AtomicBoolean closed = new AtomicBoolean();
+    ResultSet counting = new ForwardingResultSet(ResultSets.forRows(TYPE, createRows(1000))) {
+      @Override
+      public boolean next() {
+        fetched.incrementAndGet();
+        return super.next();
+      }
+
+      @Override
+      public void close() {
+        closed.set(true);
+        super.close();
+      }
+    };
+
+    ResultSet resultSet = new PrefetchingResultSet(counting, 2);
+    Assert.assertTrue(resultSet.next());
+    resultSet.close();
+
+    // reading stops once the buffer is full
+    Assert.assertTrue(fetched.get() < 10);
+    Assert.assertTrue(closed.get());
+  }
+
+  @Test(timeout = 10000)
+  public void testCloseCancelsBlockedRead() {
+    CountDownLatch cancelled = new CountDownLatch(1);
+    ResultSet blocking = new ForwardingResultSet(ResultSets.forRows(TYPE, createRows(1))) {
+      private boolean first = true;
+
+      @Override
+      public boolean next() {
+        if (first) {
+          first = false;
+          return super.next();
+        }
+        // like a stream waiting for rows from Spanner, which is not interruptible
+        Uninterruptibles.awaitUninterruptibly(cancelled);
+        throw SpannerExceptionFactory.newSpannerException(ErrorCode.CANCELLED, "cancelled");
+      }
+
+      @Override
+      public void close() {
+        cancelled.countDown();
+        super.close();
+      }
+    };
+
+    ResultSet resultSet = new PrefetchingResultSet(blocking, 2);
+    Assert.assertTrue(resultSet.next());
+    // closing cancels the read the prefetching is blocked on
+    resultSet.close();
+    Assert.assertEquals(0, cancelled.getCount());
+  }
+
+  private static List<Struct> createRows(int count) {
+    List<Struct> rows = new ArrayList<>();
+    for (long i = 0; i < count; i++) {
+      rows.add(Struct.newBuilder().set("id").to(i).set("name").to(i % 2 == 0 ? null : "name" + i).build());
+    }
+    return rows;
+  }
+}
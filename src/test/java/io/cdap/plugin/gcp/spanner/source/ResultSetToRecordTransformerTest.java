@@ -20,6 +20,8 @@ import com.google.cloud.ByteArray;
 import com.google.cloud.Date;
 import com.google.cloud.Timestamp;
 import com.google.cloud.spanner.ResultSet;
+import com.google.cloud.spanner.ResultSets;
+import com.google.cloud.spanner.Struct;
 import com.google.cloud.spanner.Type;
 import com.google.common.base.Charsets;
 import io.cdap.cdap.api.data.format.StructuredRecord;
@@ -27,7 +29,6 @@ import io.cdap.cdap.api.data.format.UnexpectedFormatException;
 import io.cdap.cdap.api.data.schema.Schema;
 import org.junit.Assert;
 import org.junit.Test;
-import org.mockito.Mockito;
 
 import java.time.Instant;
 import java.time.LocalDate;
@@ -36,6 +37,7 @@ import java.time.ZoneId;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 public class ResultSetToRecordTransformerTest {
@@ -58,82 +60,48 @@ public class ResultSetToRecordTransformerTest {
 
   @Test
   public void testTransform() {
-    ResultSet rsMock = Mockito.mock(ResultSet.class);
-
-    Mockito.when(rsMock.getColumnType("bool_filed")).thenReturn(Type.bool());
-    Mockito.when(rsMock.isNull("bool_filed")).thenReturn(false);
-    Mockito.when(rsMock.getBoolean("bool_filed")).thenReturn(true);
-
-    Mockito.when(rsMock.getColumnType("int_field")).thenReturn(Type.int64());
-    Mockito.when(rsMock.isNull("int_field")).thenReturn(false);
-    Mockito.when(rsMock.getLong("int_field")).thenReturn(1234L);
-
-    Mockito.when(rsMock.getColumnType("float_field")).thenReturn(Type.float64());
-    Mockito.when(rsMock.isNull("float_field")).thenReturn(false);
-    Mockito.when(rsMock.getDouble("float_field")).thenReturn(1.1234);
-
-    Mockito.when(rsMock.getColumnType("string_field")).thenReturn(Type.string());
-    Mockito.when(rsMock.isNull("string_field")).thenReturn(false);
-    Mockito.when(rsMock.getString("string_field")).thenReturn("test");
-
-    Mockito.when(rsMock.getColumnType("bytes_field")).thenReturn(Type.bytes());
-    Mockito.when(rsMock.isNull("bytes_field")).thenReturn(false);
-    Mockito.when(rsMock.getBytes("bytes_field")).thenReturn(ByteArray.copyFrom("test"));
-
     LocalDate expectedDate = LocalDate.now();
-    Mockito.when(rsMock.getColumnType("date_field")).thenReturn(Type.date());
-    Mockito.when(rsMock.isNull("date_field")).thenReturn(false);
-    Mockito.when(rsMock.getDate("date_field")).thenReturn(Date.fromYearMonthDay(
-      expectedDate.getYear(),
-      expectedDate.getMonthValue(),
-      expectedDate.getDayOfMonth()
-    ));
-
     Instant timestampInstant = Instant.now();
     ZonedDateTime expectedTime = ZonedDateTime.ofInstant(timestampInstant, ZoneId.of("UTC"));
     Timestamp timestamp = Timestamp.ofTimeSecondsAndNanos(
       timestampInstant.getEpochSecond(),
       timestampInstant.getNano()
     );
-    Mockito.when(rsMock.getColumnType("timestamp_field")).thenReturn(Type.timestamp());
-    Mockito.when(rsMock.isNull("timestamp_field")).thenReturn(false);
-    Mockito.when(rsMock.getTimestamp("timestamp_field")).thenReturn(timestamp);
-
     List<Boolean> expectedBoolList = Arrays.asList(true, false, null);
-    Mockito.when(rsMock.getColumnType("bool_array")).thenReturn(Type.array(Type.bool()));
-    Mockito.when(rsMock.isNull("bool_array")).thenReturn(false);
-    Mockito.when(rsMock.getBooleanList("bool_array")).thenReturn(expectedBoolList);
-
     List<Long> expectedIntList = Arrays.asList(1234L, 1234L, null);
-    Mockito.when(rsMock.getColumnType("int_array")).thenReturn(Type.array(Type.int64()));
-    Mockito.when(rsMock.isNull("int_array")).thenReturn(false);
-    Mockito.when(rsMock.getLongList("int_array")).thenReturn(expectedIntList);
-
     List<Double> expectedFloatList = Arrays.asList(1.1234, 1.1234, null);
-    Mockito.when(rsMock.getColumnType("float_array")).thenReturn(Type.array(Type.float64()));
-    Mockito.when(rsMock.isNull("float_array")).thenReturn(false);
-    Mockito.when(rsMock.getDoubleList("float_array")).thenReturn(expectedFloatList);
-
     List<String> expectedStringList = Arrays.asList("1", "2", null);
-    Mockito.when(rsMock.getColumnType("string_array")).thenReturn(Type.array(Type.string()));
-    Mockito.when(rsMock.isNull("string_array")).thenReturn(false);
-    Mockito.when(rsMock.getStringList("string_array")).thenReturn(expectedStringList);
-
-    Mockito.when(rsMock.getColumnType("bytes_array")).thenReturn(Type.array(Type.bytes()));
-    Mockito.when(rsMock.isNull("bytes_array")).thenReturn(false);
-    Mockito.when(rsMock.getBytesList("bytes_array")).thenReturn(Arrays.asList(
-      ByteArray.copyFrom("1"),
-      ByteArray.copyFrom("2"),
-      null)
-    );
-
     LocalDateTime datetime = LocalDateTime.now();
     String formattedDatetime = datetime.format(DateTimeFormatter.ISO_DATE_TIME);
-    Mockito.when(rsMock.getColumnType("datetime_field")).thenReturn(Type.string());
-    Mockito.when(rsMock.getString("datetime_field")).thenReturn(formattedDatetime);
+
+    Struct row = Struct.newBuilder()
+      .set("bool_filed").to(true)
+      .set("int_field").to(1234L)
+      .set("float_field").to(1.1234)
+      .set("string_field").to("test")
+      .set("bytes_field").to(ByteArray.copyFrom("test"))
+      .set("date_field").to(Date.fromYearMonthDay(
+        expectedDate.getYear(),
+        expectedDate.getMonthValue(),
+        expectedDate.getDayOfMonth()
+      ))
+      .set("timestamp_field").to(timestamp)
+      .set("bool_array").toBoolArray(expectedBoolList)
+      .set("int_array").toInt64Array(expectedIntList)
+      .set("float_array").toFloat64Array(expectedFloatList)
+      .set("string_array").toStringArray(expectedStringList)
+      .set("bytes_array").toBytesArray(Arrays.asList(
+        ByteArray.copyFrom("1"),
+        ByteArray.copyFrom("2"),
+        null)
+      )
+      .set("datetime_field").to(formattedDatetime)
+      .build();
+    ResultSet resultSet = ResultSets.forRows(row.getType(), Collections.singletonList(row));
+    Assert.assertTrue(resultSet.next());
 
     ResultSetToRecordTransformer transformer = new ResultSetToRecordTransformer(TEST_SCHEMA);
-    StructuredRecord record = transformer.transform(rsMock);
+    StructuredRecord record = transformer.transform(resultSet);
 
     Assert.assertEquals(1234L, (long) record.get("int_field"));
     Assert.assertTrue(record.get("bool_filed"));
@@ -150,14 +118,59 @@ public class ResultSetToRecordTransformerTest {
     Assert.assertEquals(formattedDatetime, record.get("datetime_field"));
   }
 
+  @Test
+  public void testTransformRows() {
+    Schema schema = Schema.recordOf(
+      "record",
+      Schema.Field.of("id", Schema.of(Schema.Type.LONG)),
+      Schema.Field.of("name", Schema.nullableOf(Schema.of(Schema.Type.STRING))),
+      Schema.Field.of("dates", Schema.arrayOf(Schema.nullableOf(Schema.of(Schema.LogicalType.DATE)))),
+      Schema.Field.of("timestamps", Schema.arrayOf(Schema.of(Schema.LogicalType.TIMESTAMP_MICROS))));
+    Type type = Type.struct(Type.StructField.of("timestamps", Type.array(Type.timestamp())),
+                            Type.StructField.of("name", Type.string()),
+                            Type.StructField.of("id", Type.int64()),
+                            Type.StructField.of("dates", Type.array(Type.date())));
+    Timestamp timestamp = Timestamp.ofTimeSecondsAndNanos(1000L, 123456789);
+    List<Struct> rows = Arrays.asList(
+      Struct.newBuilder()
+        .set("timestamps").toTimestampArray(Arrays.asList(timestamp, null))
+        .set("name").to("first")
+        .set("id").to(1L)
+        .set("dates").toDateArray(Arrays.asList(Date.fromYearMonthDay(1970, 1, 2), null))
+        .build(),
+      Struct.newBuilder()
+        .set("timestamps").toTimestampArray(null)
+        .set("name").to((String) null)
+        .set("id").to(2L)
+        .set("dates").toDateArray(null)
+        .build());
+    ResultSet resultSet = ResultSets.forRows(type, rows);
+    ResultSetToRecordTransformer transformer = new ResultSetToRecordTransformer(schema);
+
+    // the columns are read by index, in an order that differs from the schema
+    Assert.assertTrue(resultSet.next());
+    StructuredRecord record = transformer.transform(resultSet);
+    Assert.assertEquals(1L, (long) record.get("id"));
+    Assert.assertEquals("first", record.get("name"));
+    Assert.assertArrayEquals(new Object[]{1, null}, record.get("dates"));
+    Assert.assertArrayEquals(new Object[]{1000123456L, null}, record.get("timestamps"));
+
+    Assert.assertTrue(resultSet.next());
+    record = transformer.transform(resultSet);
+    Assert.assertEquals(2L, (long) record.get("id"));
+    Assert.assertNull(record.get("name"));
+    Assert.assertArrayEquals(new Object[0], record.get("dates"));
+    Assert.assertArrayEquals(new Object[0], record.get("timestamps"));
+  }
+
   @Test(expected = UnexpectedFormatException.class)
   public void testInvalidDateTime() {
     Schema testSchema = Schema
       .recordOf("record", Schema.Field.of("datetime_field", Schema.of(Schema.LogicalType.DATETIME)));
-    ResultSet rsMock = Mockito.mock(ResultSet.class);
-    Mockito.when(rsMock.getColumnType("datetime_field")).thenReturn(Type.string());
     //date time not in ISO-8601 format
-    Mockito.when(rsMock.getString("datetime_field")).thenReturn("2020-10-10 09:08:10");
-    new ResultSetToRecordTransformer(testSchema).transform(rsMock);
+    Struct row = Struct.newBuilder().set("datetime_field").to("2020-10-10 09:08:10").build();
+    ResultSet resultSet = ResultSets.forRows(row.getType(), Collections.singletonList(row));
+    Assert.assertTrue(resultSet.next());
+    new ResultSetToRecordTransformer(testSchema).transform(resultSet);
   }
 }
@@ -0,0 +1,79 @@
+/*
+ * Copyright © 2022 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.plugin.gcp.spanner.source;
+
+import com.google.cloud.spanner.BatchReadOnlyTransaction;
+import com.google.cloud.spanner.Options;
+import com.google.cloud.spanner.Partition;
+import com.google.cloud.spanner.PartitionOptions;
+import com.google.cloud.spanner.Statement;
+import io.cdap.plugin.gcp.spanner.SpannerConstants;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Tests for {@link SpannerInputFormat}.
+ */
+public class SpannerInputFormatTest {
+
+  @Test
+  public void testSplitPerPartition() {
+    Configuration configuration = new Configuration();
+    configuration.set(SpannerConstants.QUERY, "Select * from table;");
+    configuration.setLong(SpannerConstants.PARTITION_SIZE_BYTES, 1024L * 1024);
+    configuration.setLong(SpannerConstants.MAX_PARTITIONS, 10);
+    configuration.set(SpannerConstants.SPANNER_READ_PRIORITY, Options.RpcPriority.LOW.name());
+
+    List<Partition> partitions = Arrays.asList(Mockito.mock(Partition.class), Mockito.mock(Partition.class));
+    BatchReadOnlyTransaction transaction = Mockito.mock(BatchReadOnlyTransaction.class);
+    ArgumentCaptor<PartitionOptions> partitionOptions = ArgumentCaptor.forClass(PartitionOptions.class);
+    Mockito.when(transaction.partitionQuery(partitionOptions.capture(),
+                                            Mockito.eq(Statement.of("Select * from table;")), Mockito.any()))
+      .thenReturn(partitions);
+
+    List<InputSplit> splits = SpannerInputFormat.getSplits(transaction, configuration);
+
+    // every split carries only its own partition
+    Assert.assertEquals(2, splits.size());
+    for (int i = 0; i < splits.size(); i++) {
+      Assert.assertSame(partitions.get(i), ((PartitionInputSplit) splits.get(i)).getPartition());
+    }
+    Assert.assertEquals(1024L * 1024, partitionOptions.getValue().getPartitionSizeBytes());
+    Assert.assertEquals(10L, partitionOptions.getValue().getMaxPartitions());
+  }
+
+  @Test
+  public void testDefaultPartitionOptions() {
+    Configuration configuration = new Configuration();
+    configuration.set(SpannerConstants.QUERY, "Select * from table;");
+
+    BatchReadOnlyTransaction transaction = Mockito.mock(BatchReadOnlyTransaction.class);
+    Mockito.when(transaction.partitionQuery(Mockito.any(), Mockito.any(), Mockito.any()))
+      .thenReturn(Arrays.asList(Mockito.mock(Partition.class)));
+
+    Assert.assertEquals(1, SpannerInputFormat.getSplits(transaction, configuration).size());
+    Mockito.verify(transaction).partitionQuery(Mockito.eq(PartitionOptions.getDefaultInstance()),
+                                               Mockito.eq(Statement.of("Select * from table;")), Mockito.any());
+  }
+}